@@ -0,0 +1,72 @@
+package performance;
+
+import org.dataloader.BatchLoader;
+import org.dataloader.DataLoader;
+import org.dataloader.DataLoaderFactory;
+import org.dataloader.DataLoaderOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Many threads loading into the one hot data loader, comparing a single loader queue against a striped one
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 4)
+@Fork(1)
+public class DataLoaderContentionPerformance {
+
+    static BatchLoader<Integer, Integer> identityBatchLoader = CompletableFuture::completedFuture;
+
+    @State(Scope.Benchmark)
+    public static class LoaderState {
+
+        @Param({"1", "16"})
+        int loaderQueueStripes;
+
+        DataLoader<Integer, Integer> dataLoader;
+
+        @Setup
+        public void setup() {
+            // caching is off so that every load lands in the loader queue
+            DataLoaderOptions options = DataLoaderOptions.newOptions()
+                    .setCachingEnabled(false)
+                    .setLoaderQueueStripes(loaderQueueStripes)
+                    .build();
+            dataLoader = DataLoaderFactory.newDataLoader(identityBatchLoader, options);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        int loads;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Threads(Threads.MAX)
+    public void contendedLoad(LoaderState loaderState, ThreadState threadState, Blackhole blackhole) {
+        DataLoader<Integer, Integer> dataLoader = loaderState.dataLoader;
+        int key = threadState.loads++;
+        blackhole.consume(dataLoader.load(key));
+        // every so often a thread dispatches so the queue does not grow forever
+        if ((key & 1023) == 1023) {
+            blackhole.consume(dataLoader.dispatch());
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package performance;
+
+import org.dataloader.BatchLoader;
+import org.dataloader.DataLoader;
+import org.dataloader.DataLoaderFactory;
+import org.dataloader.DataLoaderOptions;
+import org.dataloader.stats.NoOpStatisticsCollector;
+import org.dataloader.stats.SimpleStatisticsCollector;
+import org.dataloader.stats.StatisticsCollector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * The cost of loading a batch of keys and dispatching it with the default no-op statistics, which take the allocation
+ * free fast path, against a {@link SimpleStatisticsCollector}, which needs a statistics context object per call.  A batch
+ * of up to 8 keys fits in the first segment of the load queue, while larger ones span a chain of segments.
+ * <p>
+ * This is best run with the JMH gc profiler ({@code -prof gc}), whose {@code gc.alloc.rate.norm} is the bytes
+ * allocated per operation.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 4)
+@Fork(1)
+public class DataLoaderLoadAllocationPerformance {
+
+    static BatchLoader<Integer, Integer> identityBatchLoader = CompletableFuture::completedFuture;
+
+    @State(Scope.Thread)
+    public static class LoaderState {
+
+        @Param({"noop", "simple"})
+        String statistics;
+
+        @Param({"1", "8", "100"})
+        int loadsPerDispatch;
+
+        DataLoader<Integer, Integer> dataLoader;
+
+        @Setup
+        public void setup() {
+            Supplier<StatisticsCollector> collector = "noop".equals(statistics) ? NoOpStatisticsCollector::new : SimpleStatisticsCollector::new;
+            // caching is off so that every load is queued and dispatched rather than served from the cache
+            DataLoaderOptions options = DataLoaderOptions.newOptions()
+                    .setCachingEnabled(false)
+                    .setStatisticsCollector(collector)
+                    .build();
+            dataLoader = DataLoaderFactory.newDataLoader(identityBatchLoader, options);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void loadAndDispatch(LoaderState loaderState, Blackhole blackhole) {
+        DataLoader<Integer, Integer> dataLoader = loaderState.dataLoader;
+        for (int i = 0; i < loaderState.loadsPerDispatch; i++) {
+            blackhole.consume(dataLoader.load(i));
+        }
+        blackhole.consume(dataLoader.dispatch());
+    }
+}
@@ -5,11 +5,13 @@ import org.dataloader.impl.Assertions;
 import org.jspecify.annotations.NullMarked;
 import org.jspecify.annotations.Nullable;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 /**
  * This object is passed to a batch loader as calling context.  It could contain security credentials
@@ -20,13 +22,18 @@ import java.util.Map;
 public class BatchLoaderEnvironment {
 
     private final @Nullable Object context;
-    private final Map<Object, Object> keyContexts;
-    private final List<Object> keyContextsList;
-
-    private BatchLoaderEnvironment(@Nullable Object context, List<Object> keyContextsList, Map<Object, Object> keyContexts) {
+    private final List<?> keys;
+    private final List<Object> suppliedKeyContexts;
+    private final @Nullable Instant earliestDeadline;
+    // the key contexts are only shaped into a map or list if the batch loader asks for them
+    private volatile @Nullable Map<Object, Object> keyContexts;
+    private volatile @Nullable List<Object> keyContextsList;
+
+    private BatchLoaderEnvironment(@Nullable Object context, List<?> keys, List<Object> suppliedKeyContexts, @Nullable Instant earliestDeadline) {
         this.context = context;
-        this.keyContexts = keyContexts;
-        this.keyContextsList = keyContextsList;
+        this.keys = keys;
+        this.suppliedKeyContexts = suppliedKeyContexts;
+        this.earliestDeadline = earliestDeadline;
     }
 
     /**
@@ -48,7 +55,18 @@ public class BatchLoaderEnvironment {
      * @return a map of key context objects
      */
     public Map<Object, Object> getKeyContexts() {
-        return keyContexts;
+        Map<Object, Object> map = keyContexts;
+        if (map == null) {
+            map = new HashMap<>();
+            for (int i = 0; i < keys.size(); i++) {
+                Object keyContext = keyContextAt(i);
+                if (keyContext != null) {
+                    map.put(keys.get(i), keyContext);
+                }
+            }
+            keyContexts = map;
+        }
+        return map;
     }
 
     /**
@@ -59,7 +77,36 @@ public class BatchLoaderEnvironment {
      * @return a list of key context objects in the order they were encountered
      */
     public List<Object> getKeyContextsList() {
-        return keyContextsList;
+        List<Object> list = keyContextsList;
+        if (list == null) {
+            if (suppliedKeyContexts.size() == keys.size()) {
+                list = Collections.unmodifiableList(suppliedKeyContexts);
+            } else {
+                // there is a key context for every key even if fewer were supplied
+                list = new ArrayList<>(keys.size());
+                for (int i = 0; i < keys.size(); i++) {
+                    list.add(keyContextAt(i));
+                }
+                list = Collections.unmodifiableList(list);
+            }
+            keyContextsList = list;
+        }
+        return list;
+    }
+
+    private @Nullable Object keyContextAt(int index) {
+        return index < suppliedKeyContexts.size() ? suppliedKeyContexts.get(index) : null;
+    }
+
+    /**
+     * Each call to {@link org.dataloader.DataLoader#load(Object, Object, java.time.Duration)} can be given a timeout,
+     * after which its future is failed.  This is the soonest deadline of all the loads in this batch, which the batch
+     * loader can use to set a timeout on its own call to the backend.
+     *
+     * @return an optional with the earliest deadline, or empty if none of the loads in this batch have a timeout
+     */
+    public Optional<Instant> getEarliestDeadline() {
+        return Optional.ofNullable(earliestDeadline);
     }
 
     public static Builder newBatchLoaderEnvironment() {
@@ -68,8 +115,9 @@ public class BatchLoaderEnvironment {
 
     public static class Builder {
         private @Nullable Object context;
-        private Map<Object, Object> keyContexts = Collections.emptyMap();
-        private List<Object> keyContextsList = Collections.emptyList();
+        private List<?> keys = Collections.emptyList();
+        private List<Object> keyContexts = Collections.emptyList();
+        private @Nullable Instant earliestDeadline;
 
         private Builder() {
 
@@ -80,30 +128,28 @@ public class BatchLoaderEnvironment {
             return this;
         }
 
+        /**
+         * The keys and key contexts are not copied, so they must not be changed once the environment is built
+         *
+         * @param keys        the keys of the batch
+         * @param keyContexts the key context of each key, in the same order
+         * @param <K>         the type of keys
+         *
+         * @return this builder for fluent coding
+         */
         public <K> Builder keyContexts(List<K> keys, List<Object> keyContexts) {
-            Assertions.nonNull(keys);
-            Assertions.nonNull(keyContexts);
+            this.keys = Assertions.nonNull(keys);
+            this.keyContexts = Assertions.nonNull(keyContexts);
+            return this;
+        }
 
-            Map<Object, Object> map = new HashMap<>();
-            List<Object> list = new ArrayList<>(keys.size());
-            for (int i = 0; i < keys.size(); i++) {
-                K key = keys.get(i);
-                Object keyContext = null;
-                if (i < keyContexts.size()) {
-                    keyContext = keyContexts.get(i);
-                }
-                if (keyContext != null) {
-                    map.put(key, keyContext);
-                }
-                list.add(keyContext);
-            }
-            this.keyContexts = map;
-            this.keyContextsList = list;
+        public Builder earliestDeadline(@Nullable Instant earliestDeadline) {
+            this.earliestDeadline = earliestDeadline;
             return this;
         }
 
         public BatchLoaderEnvironment build() {
-            return new BatchLoaderEnvironment(context, keyContextsList, keyContexts);
+            return new BatchLoaderEnvironment(context, keys, keyContexts, earliestDeadline);
         }
     }
 }
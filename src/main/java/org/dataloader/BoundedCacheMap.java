@@ -0,0 +1,485 @@
+package org.dataloader;
+
+import org.dataloader.annotations.PublicApi;
+import org.dataloader.impl.FrequencySketch;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.dataloader.impl.Assertions.assertState;
+import static org.dataloader.impl.Assertions.nonNull;
+
+/**
+ * A {@link CacheMap} that holds at most a maximum number of futures, or a maximum total weight of values, and that
+ * evicts entries with a W-TinyLFU style policy once it is full.
+ * <p>
+ * New entries go into a small LRU window.  Entries that fall out of the window have to compete for a place in the
+ * main segmented LRU space against that space's own eviction victim, and whichever of the two keys has been
+ * loaded less often recently, according to a {@link FrequencySketch}, is the one evicted.  This keeps a one off scan
+ * of keys from flushing out the keys that are loaded again and again, which suits long-lived data loaders of
+ * reference data.
+ * <p>
+ * A future that has not completed yet is never evicted, since there may be loads waiting on it and the data loader
+ * relies on handing out the same future for a key while it is in flight.  If every entry is in flight the cache may
+ * go over its bounds for a while and is trimmed once they complete.  With {@link Builder#maximumWeight(long, Weigher)}
+ * an entry only has a weight once its future has completed.
+ * <p>
+ * Lookups never block.  Writes and the book keeping for evictions happen under a lock, and a lookup that cannot get
+ * that lock straight away simply does not count towards the frequency of its key.
+ *
+ * @param <K> type parameter indicating the type of the cache keys
+ * @param <V> type parameter indicating the type of the data that is cached
+ */
+@PublicApi
+@NullMarked
+public class BoundedCacheMap<K, V> implements CacheMap<K, V> {
+
+    /**
+     * Works out the weight of a cached value, for caches that are bounded by a {@link Builder#maximumWeight(long, Weigher)}
+     *
+     * @param <K> type parameter indicating the type of the cache keys
+     * @param <V> type parameter indicating the type of the data that is cached
+     */
+    @FunctionalInterface
+    public interface Weigher<K, V> {
+        /**
+         * Called once the future of an entry has completed with a value.  Entries whose futures failed, or completed
+         * with null, have a weight of one.
+         *
+         * @param key   the key of the entry
+         * @param value the value the future completed with
+         *
+         * @return the weight of the entry, which must not be negative
+         */
+        int weigh(K key, V value);
+    }
+
+    private enum Region {
+        WINDOW, PROBATION, PROTECTED, REMOVED
+    }
+
+    private static class Node<K, V> {
+        final K key;
+        // only swapped under the eviction lock, by a replace, but read without it
+        volatile CompletableFuture<V> future;
+        long weight;
+        Region region = Region.WINDOW;
+        @Nullable Node<K, V> prev;
+        @Nullable Node<K, V> next;
+
+        Node(K key, CompletableFuture<V> future, long weight) {
+            this.key = key;
+            this.future = future;
+            this.weight = weight;
+        }
+
+        boolean isEvictable() {
+            return future.isDone();
+        }
+    }
+
+    /**
+     * An intrusive doubly linked list of nodes, least recently used first
+     */
+    private static class AccessOrder<K, V> {
+        @Nullable Node<K, V> head;
+        @Nullable Node<K, V> tail;
+        long weight;
+
+        void addLast(Node<K, V> node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+            weight += node.weight;
+        }
+
+        void remove(Node<K, V> node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            weight -= node.weight;
+        }
+
+        void moveToLast(Node<K, V> node) {
+            if (tail != node) {
+                remove(node);
+                addLast(node);
+            }
+        }
+
+        @Nullable Node<K, V> firstEvictable() {
+            for (Node<K, V> node = head; node != null; node = node.next) {
+                if (node.isEvictable()) {
+                    return node;
+                }
+            }
+            return null;
+        }
+
+        void clear() {
+            head = null;
+            tail = null;
+            weight = 0;
+        }
+    }
+
+    private final ConcurrentHashMap<K, Node<K, V>> data = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final FrequencySketch sketch = new FrequencySketch();
+    private final AccessOrder<K, V> window = new AccessOrder<>();
+    private final AccessOrder<K, V> probation = new AccessOrder<>();
+    private final AccessOrder<K, V> protectedSegment = new AccessOrder<>();
+    private final @Nullable Weigher<? super K, ? super V> weigher;
+    private final long maximum;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+    private long totalWeight;
+    private volatile long evictionCount;
+    private volatile long evictionWeight;
+
+    private BoundedCacheMap(long maximum, @Nullable Weigher<? super K, ? super V> weigher) {
+        this.maximum = maximum;
+        this.weigher = weigher;
+        // the proportions W-TinyLFU recommends, 1% of the space for the window and 80% of the main space kept protected
+        this.windowMaximum = Math.max(1, maximum / 100);
+        this.protectedMaximum = (long) ((maximum - windowMaximum) * 0.8);
+        this.sketch.ensureCapacity(weigher == null ? maximum : Math.min(maximum, 1024));
+    }
+
+    /**
+     * @param <K> type parameter indicating the type of the cache keys
+     * @param <V> type parameter indicating the type of the data that is cached
+     *
+     * @return a builder of bounded cache maps
+     */
+    public static <K, V> Builder<K, V> newBoundedCacheMap() {
+        return new Builder<>();
+    }
+
+    /**
+     * @return the number of entries that have been evicted to keep the cache within its bounds
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return the total weight of the entries that have been evicted to keep the cache within its bounds, which is the
+     * same as the eviction count when the cache is bounded by size
+     */
+    public long getEvictionWeight() {
+        return evictionWeight;
+    }
+
+    /**
+     * @return the total weight of the entries currently in the cache, which is the number of entries when the cache is
+     * bounded by size
+     */
+    public long getWeightedSize() {
+        evictionLock.lock();
+        try {
+            return totalWeight;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return data.containsKey(key);
+    }
+
+    @Override
+    public @Nullable CompletableFuture<V> get(K key) {
+        Node<K, V> node = data.get(key);
+        if (node == null) {
+            return null;
+        }
+        // a busy cache drops the odd access rather than make a lookup wait
+        if (evictionLock.tryLock()) {
+            try {
+                onAccess(node);
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+        return node.future;
+    }
+
+    @Override
+    public Collection<CompletableFuture<V>> getAll() {
+        List<CompletableFuture<V>> futures = new ArrayList<>(data.size());
+        for (Node<K, V> node : data.values()) {
+            futures.add(node.future);
+        }
+        return futures;
+    }
+
+    @Override
+    public @Nullable CompletableFuture<V> putIfAbsentAtomically(K key, CompletableFuture<V> value) {
+        Node<K, V> node;
+        evictionLock.lock();
+        try {
+            Node<K, V> existing = data.get(key);
+            if (existing != null) {
+                onAccess(existing);
+                return existing.future;
+            }
+            node = new Node<>(key, value, weigher == null ? 1 : 0);
+            data.put(key, node);
+            if (weigher != null) {
+                // there is no telling how many entries fit in a weight up front, so the sketch grows with the cache
+                sketch.ensureCapacity(data.size());
+            }
+            sketch.increment(key.hashCode());
+            window.addLast(node);
+            totalWeight += node.weight;
+            evict();
+        } finally {
+            evictionLock.unlock();
+        }
+        if (weigher != null || !value.isDone()) {
+            // the entry may only be weighed, or evicted, once its value has arrived
+            value.whenComplete((result, throwable) -> onCompleted(node, result, throwable));
+        }
+        return null;
+    }
+
+    @Override
+    public boolean replaceAtomically(K key, CompletableFuture<V> expectedValue, CompletableFuture<V> value) {
+        Node<K, V> node;
+        evictionLock.lock();
+        try {
+            node = data.get(key);
+            if (node == null || node.future != expectedValue) {
+                return false;
+            }
+            // the entry keeps its place, since a replaced value is the same key loaded again
+            node.future = value;
+            onAccess(node);
+        } finally {
+            evictionLock.unlock();
+        }
+        if (weigher != null || !value.isDone()) {
+            value.whenComplete((result, throwable) -> onCompleted(node, result, throwable));
+        }
+        return true;
+    }
+
+    @Override
+    public CacheMap<K, V> delete(K key) {
+        evictionLock.lock();
+        try {
+            Node<K, V> node = data.remove(key);
+            if (node != null) {
+                unlink(node);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+        return this;
+    }
+
+    @Override
+    public CacheMap<K, V> clear() {
+        evictionLock.lock();
+        try {
+            for (Node<K, V> node : data.values()) {
+                node.region = Region.REMOVED;
+            }
+            data.clear();
+            window.clear();
+            probation.clear();
+            protectedSegment.clear();
+            totalWeight = 0;
+        } finally {
+            evictionLock.unlock();
+        }
+        return this;
+    }
+
+    @Override
+    public int size() {
+        return data.size();
+    }
+
+    private void onCompleted(Node<K, V> node, @Nullable V result, @Nullable Throwable throwable) {
+        evictionLock.lock();
+        try {
+            if (node.region == Region.REMOVED) {
+                return;
+            }
+            if (weigher != null) {
+                int weight = throwable == null && result != null ? weigher.weigh(node.key, result) : 1;
+                assertState(weight >= 0, () -> "The weight of a cache entry MUST NOT be negative");
+                AccessOrder<K, V> order = accessOrderOf(node);
+                order.remove(node);
+                totalWeight += weight - node.weight;
+                node.weight = weight;
+                order.addLast(node);
+            }
+            evict();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private void onAccess(Node<K, V> node) {
+        if (node.region == Region.REMOVED) {
+            return;
+        }
+        sketch.increment(node.key.hashCode());
+        if (node.region == Region.PROBATION) {
+            // a second hit in the main space earns the entry a place in the protected segment
+            probation.remove(node);
+            node.region = Region.PROTECTED;
+            protectedSegment.addLast(node);
+            while (protectedSegment.weight > protectedMaximum && protectedSegment.head != null) {
+                Node<K, V> demoted = protectedSegment.head;
+                protectedSegment.remove(demoted);
+                demoted.region = Region.PROBATION;
+                probation.addLast(demoted);
+            }
+        } else {
+            accessOrderOf(node).moveToLast(node);
+        }
+    }
+
+    private void evict() {
+        // entries that fall out of the window have to win their place in the main space
+        while (window.weight > windowMaximum && window.head != null) {
+            Node<K, V> candidate = window.head;
+            window.remove(candidate);
+            candidate.region = Region.PROBATION;
+            probation.addLast(candidate);
+            if (totalWeight > maximum && candidate.isEvictable()) {
+                Node<K, V> victim = probation.firstEvictable();
+                if (victim != null && victim != candidate) {
+                    evictNode(admit(candidate, victim) ? victim : candidate);
+                }
+            }
+        }
+        // in flight futures may have kept us over the maximum, or a newly weighed value may have tipped us over it
+        while (totalWeight > maximum) {
+            Node<K, V> victim = probation.firstEvictable();
+            if (victim == null) {
+                victim = window.firstEvictable();
+            }
+            if (victim == null) {
+                victim = protectedSegment.firstEvictable();
+            }
+            if (victim == null) {
+                return;
+            }
+            evictNode(victim);
+        }
+    }
+
+    private boolean admit(Node<K, V> candidate, Node<K, V> victim) {
+        // ties go to the victim, so a burst of new keys cannot push out an entry that has proven itself
+        return sketch.frequency(candidate.key.hashCode()) > sketch.frequency(victim.key.hashCode());
+    }
+
+    private void evictNode(Node<K, V> node) {
+        data.remove(node.key, node);
+        unlink(node);
+        evictionCount++;
+        evictionWeight += node.weight;
+    }
+
+    private void unlink(Node<K, V> node) {
+        if (node.region != Region.REMOVED) {
+            accessOrderOf(node).remove(node);
+            totalWeight -= node.weight;
+            node.region = Region.REMOVED;
+        }
+    }
+
+    private AccessOrder<K, V> accessOrderOf(Node<K, V> node) {
+        switch (node.region) {
+            case WINDOW:
+                return window;
+            case PROBATION:
+                return probation;
+            default:
+                return protectedSegment;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BoundedCacheMap{" +
+                "size=" + data.size() +
+                ", maximum=" + maximum +
+                ", evictionCount=" + evictionCount +
+                '}';
+    }
+
+    /**
+     * A builder of {@link BoundedCacheMap}s.  Exactly one of {@link #maximumSize(long)} or
+     * {@link #maximumWeight(long, Weigher)} must be set.
+     *
+     * @param <K> type parameter indicating the type of the cache keys
+     * @param <V> type parameter indicating the type of the data that is cached
+     */
+    public static class Builder<K, V> {
+        private long maximumSize = -1;
+        private long maximumWeight = -1;
+        private @Nullable Weigher<? super K, ? super V> weigher;
+
+        Builder() {
+        }
+
+        /**
+         * Sets the maximum number of entries the cache may hold
+         *
+         * @param maximumSize the maximum number of entries
+         *
+         * @return this builder for fluent coding
+         */
+        public Builder<K, V> maximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        /**
+         * Sets the maximum total weight of the values the cache may hold
+         *
+         * @param maximumWeight the maximum total weight
+         * @param weigher       works out the weight of each value
+         *
+         * @return this builder for fluent coding
+         */
+        public Builder<K, V> maximumWeight(long maximumWeight, Weigher<? super K, ? super V> weigher) {
+            this.maximumWeight = maximumWeight;
+            this.weigher = nonNull(weigher);
+            return this;
+        }
+
+        public BoundedCacheMap<K, V> build() {
+            assertState(maximumSize < 0 || maximumWeight < 0, () -> "Only one of maximumSize or maximumWeight may be set");
+            assertState(maximumSize > 0 || maximumWeight > 0, () -> "The maximumSize or maximumWeight MUST be greater than zero");
+            return maximumSize > 0 ? new BoundedCacheMap<>(maximumSize, null) : new BoundedCacheMap<>(maximumWeight, weigher);
+        }
+    }
+}
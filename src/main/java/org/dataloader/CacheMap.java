@@ -106,6 +106,28 @@ public interface CacheMap<K,V> {
      */
     @Nullable CompletableFuture<V> putIfAbsentAtomically(K key, CompletableFuture<V> value);
 
+    /**
+     * Atomically replaces the value of the specified key, but only if the key is still cached with the expected value.
+     * <p>
+     * The data loader uses this to swap a refreshed value in for a stale one, without overwriting a value that has been
+     * cleared or loaded again in the meantime.  The default implementation is made of {@link #get(Object)},
+     * {@link #delete(Object)} and {@link #putIfAbsentAtomically(Object, CompletableFuture)} and so is NOT atomic.  If
+     * you write your own {@link CacheMap} implementation then you SHOULD override it with an atomic one.
+     *
+     * @param key           the key to replace the value of
+     * @param expectedValue the value the key is expected to be cached with
+     * @param value         the new value to cache
+     *
+     * @return {@code true} if the value was replaced, {@code false} otherwise
+     */
+    default boolean replaceAtomically(K key, CompletableFuture<V> expectedValue, CompletableFuture<V> value) {
+        if (get(key) != expectedValue) {
+            return false;
+        }
+        delete(key);
+        return putIfAbsentAtomically(key, value) == null;
+    }
+
     /**
      * Deletes the entry with the specified key from the cache map, if it exists.
      *
@@ -0,0 +1,101 @@
+package org.dataloader;
+
+import org.dataloader.annotations.PublicApi;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.dataloader.impl.Assertions.nonNull;
+
+/**
+ * The result of a bulk {@link ValueCache#getCachedValues(List)} call.  For each key that was asked for, there is a position in the
+ * values list and a bit in the hits {@link BitSet} that is set if that key was found in the cache.
+ * <p>
+ * The values at positions that were cache misses are never read, so a {@link ValueCache} can leave them as null.
+ *
+ * @param <V> the type of cache values
+ */
+@PublicApi
+@NullMarked
+public class CachedValues<V extends @Nullable Object> {
+
+    private final List<V> values;
+    private final BitSet hits;
+
+    private CachedValues(List<V> values, BitSet hits) {
+        this.values = values;
+        this.hits = hits;
+    }
+
+    /**
+     * Creates the cached values for a batch of keys
+     *
+     * @param values the cached values, which MUST be the same size as the keys that were asked for
+     * @param hits   which of the keys were found in the cache
+     * @param <V>    the type of cache values
+     *
+     * @return the cached values
+     */
+    public static <V extends @Nullable Object> CachedValues<V> of(List<V> values, BitSet hits) {
+        return new CachedValues<>(nonNull(values), nonNull(hits));
+    }
+
+    /**
+     * Converts the list of {@link Try}s returned by {@link ValueCache#getValues(List)} into cached values,
+     * where a successful try is a cache hit
+     *
+     * @param cacheGets the list of {@link Try} cached values
+     * @param <V>       the type of cache values
+     *
+     * @return the cached values
+     */
+    @SuppressWarnings("unchecked")
+    public static <V extends @Nullable Object> CachedValues<V> fromTries(List<Try<V>> cacheGets) {
+        int size = cacheGets.size();
+        Object[] values = new Object[size];
+        BitSet hits = new BitSet(size);
+        for (int i = 0; i < size; i++) {
+            Try<V> cacheGet = cacheGets.get(i);
+            if (cacheGet.isSuccess()) {
+                values[i] = cacheGet.get();
+                hits.set(i);
+            }
+        }
+        return new CachedValues<>((List<V>) Arrays.asList(values), hits);
+    }
+
+    /**
+     * @return the number of keys that were asked for
+     */
+    public int size() {
+        return values.size();
+    }
+
+    /**
+     * @return the number of keys that were found in the cache
+     */
+    public int hitCount() {
+        return hits.cardinality();
+    }
+
+    /**
+     * @param index the position of the key that was asked for
+     *
+     * @return true if the key at that position was found in the cache
+     */
+    public boolean isHit(int index) {
+        return hits.get(index);
+    }
+
+    /**
+     * @param index the position of the key that was asked for
+     *
+     * @return the cached value at that position, which is only meaningful if {@link #isHit(int)} is true
+     */
+    public V getValue(int index) {
+        return values.get(index);
+    }
+}
@@ -72,12 +72,14 @@ import static org.dataloader.impl.Assertions.nonNull;
 public class DataLoader<K, V extends @Nullable Object> {
 
     private final @Nullable String name;
-    private final DataLoaderHelper<K, V> helper;
+    // null for the subclasses that load, cache and dispatch by themselves
+    private final @Nullable DataLoaderHelper<K, V> helper;
     private final StatisticsCollector stats;
     private final CacheMap<Object, V> futureCache;
     private final ValueCache<K, V> valueCache;
     private final DataLoaderOptions options;
     private final Object batchLoadFunction;
+    private volatile @Nullable LoadQueueListener loadQueueListener;
 
     @VisibleForTesting
     DataLoader(@Nullable String name, Object batchLoadFunction, @Nullable DataLoaderOptions options) {
@@ -97,6 +99,50 @@ public class DataLoader<K, V extends @Nullable Object> {
         this.helper = new DataLoaderHelper<>(this, batchLoadFunction, loaderOptions, this.futureCache, this.valueCache, this.stats, clock);
     }
 
+    /**
+     * For subclasses, such as {@link LongDataLoader}, that override the loading, caching and dispatching methods with
+     * their own, so no helper is built for them.  They report to the statistics collector that
+     * {@link #getStatistics()} reads, which they can get via {@link #getStatisticsCollector()}.
+     */
+    DataLoader(@Nullable String name, Object batchLoadFunction, @Nullable DataLoaderOptions options, CacheMap<Object, V> futureCache) {
+        DataLoaderOptions loaderOptions = options == null ? new DataLoaderOptions() : options;
+        this.futureCache = nonNull(futureCache);
+        this.valueCache = ValueCache.defaultValueCache();
+        this.stats = nonNull(loaderOptions.getStatisticsCollector());
+        this.batchLoadFunction = nonNull(batchLoadFunction);
+        this.options = loaderOptions;
+        this.name = name;
+        this.helper = null;
+    }
+
+    private DataLoaderHelper<K, V> helper() {
+        return nonNull(helper);
+    }
+
+    /**
+     * Sets the listener told each time a load is queued in this data loader.  A data loader has at most one listener,
+     * so the registry that set it last is the one told.
+     *
+     * @param loadQueueListener the listener or null for none
+     */
+    void setLoadQueueListener(@Nullable LoadQueueListener loadQueueListener) {
+        this.loadQueueListener = loadQueueListener;
+    }
+
+    @Nullable LoadQueueListener getLoadQueueListener() {
+        return loadQueueListener;
+    }
+
+    /**
+     * Called by the load path once a load has been queued
+     */
+    void loadQueued() {
+        LoadQueueListener loadQueueListener = this.loadQueueListener;
+        if (loadQueueListener != null) {
+            loadQueueListener.loadQueued(this);
+        }
+    }
+
 
     @SuppressWarnings("unchecked")
     private CacheMap<Object, V> determineFutureCache(DataLoaderOptions loaderOptions) {
@@ -148,7 +194,7 @@ public class DataLoader<K, V extends @Nullable Object> {
      * @return the instant since the last dispatch
      */
     public Instant getLastDispatchTime() {
-        return helper.getLastDispatchTime();
+        return helper().getLastDispatchTime();
     }
 
     /**
@@ -157,7 +203,7 @@ public class DataLoader<K, V extends @Nullable Object> {
      * @return the time duration since the last dispatch
      */
     public Duration getTimeSinceDispatch() {
-        return Duration.between(helper.getLastDispatchTime(), helper.now());
+        return Duration.between(helper().getLastDispatchTime(), helper().now());
     }
 
     /**
@@ -166,16 +212,17 @@ public class DataLoader<K, V extends @Nullable Object> {
      * If you do get a present CompletableFuture it does not mean it has been dispatched and completed yet.  It just means
      * it's at least pending and in cache.
      * <p>
-     * If caching is disabled there will never be a present Optional returned.
+     * If caching is disabled there will never be a present Optional returned, and neither will it be for a future that
+     * is past its {@link DataLoaderOptions#expireAfterWrite()} time.
      * <p>
-     * NOTE : This will NOT cause a data load to happen. You must call {@link #load(Object)} for that to happen.
+     * NOTE : This will NOT cause a data load to happen, nor a refresh. You must call {@link #load(Object)} for that to happen.
      *
      * @param key the key to check
      *
      * @return an Optional to the future of the value
      */
     public Optional<CompletableFuture<V>> getIfPresent(K key) {
-        return helper.getIfPresent(key);
+        return helper().getIfPresent(key);
     }
 
     /**
@@ -194,12 +241,12 @@ public class DataLoader<K, V extends @Nullable Object> {
      * @return an Optional to the future of the value
      */
     public Optional<CompletableFuture<V>> getIfCompleted(K key) {
-        return helper.getIfCompleted(key);
+        return helper().getIfCompleted(key);
     }
 
 
     private CompletableFuture<V> loadImpl(@NonNull K key, @Nullable Object keyContext) {
-        return helper.load(nonNull(key), keyContext);
+        return helper().load(nonNull(key), keyContext);
     }
 
     /**
@@ -235,6 +282,26 @@ public class DataLoader<K, V extends @Nullable Object> {
         return loadImpl(key, keyContext);
     }
 
+    /**
+     * Requests to load the data with the specified key asynchronously, and returns a future of the resulting value
+     * which is failed with a {@link java.util.concurrent.TimeoutException} if the value has not arrived within the timeout.
+     * <p>
+     * Only the future returned to this call fails when it times out, and any other load of the same key still gets
+     * the value.  If the timeout of every load of the key passes before {@link DataLoader#dispatch()} is called, the
+     * key is dropped from the batch, never presented to the batch loader and removed from the cache so that a later
+     * load of the key will try again.  Otherwise, the earliest deadline of the keys in a batch is made available via
+     * {@link BatchLoaderEnvironment#getEarliestDeadline()} so that the batch loader can bound its own backend call.
+     *
+     * @param key        the key to load
+     * @param keyContext a context object that is specific to this key
+     * @param timeout    how long to wait for the value
+     *
+     * @return the future of the value
+     */
+    public CompletableFuture<V> load(@NonNull K key, @Nullable Object keyContext, Duration timeout) {
+        return helper().load(nonNull(key), keyContext, nonNull(timeout));
+    }
+
     /**
      * Requests to load the list of data provided by the specified keys asynchronously, and returns a composite future
      * of the resulting values.
@@ -314,11 +381,13 @@ public class DataLoader<K, V extends @Nullable Object> {
      * Dispatches the queued load requests to the batch execution function and returns a promise of the result.
      * <p>
      * If batching is disabled, or there are no queued requests, then a succeeded promise is returned.
+     * <p>
+     * Queued load requests whose futures have been cancelled are not presented to the batch execution function.
      *
      * @return the promise of the queued load requests
      */
     public CompletableFuture<List<V>> dispatch() {
-        return helper.dispatch().getPromisedResults();
+        return helper().dispatch().getPromisedResults();
     }
 
     /**
@@ -331,7 +400,7 @@ public class DataLoader<K, V extends @Nullable Object> {
      * @return the promise of the queued load requests and the number of keys dispatched.
      */
     public DispatchResult<V> dispatchWithCounts() {
-        return helper.dispatch();
+        return helper().dispatch();
     }
 
     /**
@@ -357,7 +426,7 @@ public class DataLoader<K, V extends @Nullable Object> {
      * @return the depth of the batched key loads that need to be dispatched
      */
     public int dispatchDepth() {
-        return helper.dispatchDepth();
+        return helper().dispatchDepth();
     }
 
 
@@ -466,7 +535,7 @@ public class DataLoader<K, V extends @Nullable Object> {
      * @return the cache key after the input is transformed with the cache key function
      */
     public Object getCacheKey(K key) {
-        return helper.getCacheKey(key);
+        return helper().getCacheKey(key);
     }
 
     /**
@@ -479,6 +548,10 @@ public class DataLoader<K, V extends @Nullable Object> {
         return stats.getStatistics();
     }
 
+    StatisticsCollector getStatisticsCollector() {
+        return stats;
+    }
+
     /**
      * Gets the cacheMap associated with this data loader passed in via {@link DataLoaderOptions#cacheMap()}
      *
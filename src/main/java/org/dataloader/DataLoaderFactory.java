@@ -770,7 +770,49 @@ public class DataLoaderFactory {
         return mkDataLoader(nonNull(name), batchLoadFunction, options);
     }
 
+    /**
+     * Creates new {@link LongDataLoader} with the specified primitive key batch loader function and default options
+     * (batching, caching and unlimited batch size).
+     *
+     * @param batchLoadFunction the batch load function to use
+     * @param <V>               the value type
+     * @return a new LongDataLoader
+     */
+    public static <V> LongDataLoader<V> newLongDataLoader(LongBatchLoader<V> batchLoadFunction) {
+        return newLongDataLoader(batchLoadFunction, null);
+    }
+
+    /**
+     * Creates new {@link LongDataLoader} with the specified primitive key batch loader function with the provided options
+     *
+     * @param batchLoadFunction the batch load function to use
+     * @param options           the options to use
+     * @param <V>               the value type
+     * @return a new LongDataLoader
+     */
+    public static <V> LongDataLoader<V> newLongDataLoader(LongBatchLoader<V> batchLoadFunction, @Nullable DataLoaderOptions options) {
+        return new LongDataLoader<>(null, nonNull(batchLoadFunction), options);
+    }
+
+    /**
+     * Creates new {@link LongDataLoader} with the specified primitive key batch loader function with the provided options
+     *
+     * @param name              the name to use
+     * @param batchLoadFunction the batch load function to use
+     * @param options           the options to use
+     * @param <V>               the value type
+     * @return a new LongDataLoader
+     */
+    public static <V> LongDataLoader<V> newLongDataLoader(String name, LongBatchLoader<V> batchLoadFunction, @Nullable DataLoaderOptions options) {
+        return new LongDataLoader<>(nonNull(name), nonNull(batchLoadFunction), options);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
     static <K, V> DataLoader<K, V> mkDataLoader(@Nullable String name, Object batchLoadFunction, @Nullable DataLoaderOptions options) {
+        if (batchLoadFunction instanceof LongBatchLoader) {
+            // transforming a long data loader, say to name it in a registry, must give back a long data loader
+            return (DataLoader) new LongDataLoader<>(name, (LongBatchLoader<V>) batchLoadFunction, options);
+        }
         return new DataLoader<>(name, batchLoadFunction, options);
     }
 
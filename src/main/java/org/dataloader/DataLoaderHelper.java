@@ -1,43 +1,63 @@
 package org.dataloader;
 
 import org.dataloader.annotations.Internal;
+import org.dataloader.batching.BatchSizeController;
 import org.dataloader.impl.CompletableFutureKit;
+import org.dataloader.impl.DataLoaderAssertionException;
+import org.dataloader.impl.SharedTimer;
 import org.dataloader.instrumentation.DataLoaderInstrumentation;
 import org.dataloader.instrumentation.DataLoaderInstrumentationContext;
+import org.dataloader.instrumentation.DataLoaderInstrumentationHelper;
 import org.dataloader.reactive.ReactiveSupport;
 import org.dataloader.scheduler.BatchLoaderScheduler;
+import org.dataloader.stats.NoOpStatisticsCollector;
 import org.dataloader.stats.StatisticsCollector;
 import org.dataloader.stats.context.IncrementBatchLoadCountByStatisticsContext;
 import org.dataloader.stats.context.IncrementBatchLoadExceptionCountStatisticsContext;
 import org.dataloader.stats.context.IncrementCacheHitCountStatisticsContext;
+import org.dataloader.stats.context.IncrementCoalescedCountStatisticsContext;
 import org.dataloader.stats.context.IncrementLoadCountStatisticsContext;
 import org.dataloader.stats.context.IncrementLoadErrorCountStatisticsContext;
-import org.jspecify.annotations.Nullable;
+import org.dataloader.stats.context.IncrementValueCacheHitCountStatisticsContext;
+import org.dataloader.stats.context.RecordBatchSizeStatisticsContext;
 import org.reactivestreams.Subscriber;
 
 import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.RandomAccess;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
-import static java.util.concurrent.CompletableFuture.allOf;
 import static java.util.concurrent.CompletableFuture.completedFuture;
-import static java.util.stream.Collectors.toList;
 import static org.dataloader.impl.Assertions.assertState;
 import static org.dataloader.impl.Assertions.nonNull;
+import static org.dataloader.instrumentation.DataLoaderInstrumentationHelper.NOOP_INSTRUMENTATION;
 import static org.dataloader.instrumentation.DataLoaderInstrumentationHelper.ctxOrNoopCtx;
+import static org.dataloader.instrumentation.DataLoaderInstrumentationHelper.noOpCtx;
 
 /**
  * This helps break up the large DataLoader class functionality, and it contains the logic to dispatch the
@@ -49,32 +69,103 @@ import static org.dataloader.instrumentation.DataLoaderInstrumentationHelper.ctx
 @Internal
 class DataLoaderHelper<K, V> {
 
-    private static class LoaderQueueEntry<K, V> {
+    /**
+     * The future of a load that was given a timeout or that will age in the future cache.  It carries the deadline
+     * of the load, so that it can be dropped from the queue or passed on to the batch loader, and the instant it was
+     * written to the cache, so that it can be expired or refreshed.
+     * <p>
+     * The future is shared by every load of the key, so its deadline is the latest one of the loads waiting on it,
+     * or none once a load without a timeout is waiting on it too.
+     */
+    private static class LoadFuture<V> extends CompletableFuture<V> {
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<LoadFuture> REFRESHING =
+                AtomicIntegerFieldUpdater.newUpdater(LoadFuture.class, "refreshing");
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<LoadFuture, Instant> DEADLINE =
+                AtomicReferenceFieldUpdater.newUpdater(LoadFuture.class, Instant.class, "deadline");
+        // the deadline of a load that has been dropped from its batch, which no other load may wait on
+        private static final Instant DROPPED = Instant.MIN;
+
+        volatile Instant deadline;
+        final Instant writtenAt;
+        volatile int refreshing;
+
+        LoadFuture(Instant deadline, Instant writtenAt) {
+            this.deadline = deadline;
+            this.writtenAt = writtenAt;
+        }
 
-        final K key;
-        final CompletableFuture<V> value;
-        final Object callContext;
-        final LoaderQueueEntry<K, V> prev;
-        final int queueSize;
+        /*
+         * Another load waits on this future until the given deadline, or for as long as it takes when there is none.
+         * It returns false when the future has already been dropped from its batch.
+         */
+        boolean waitUntil(Instant waitDeadline) {
+            while (true) {
+                Instant current = deadline;
+                if (current == DROPPED) {
+                    return false;
+                }
+                if (current == null) {
+                    return true;
+                }
+                Instant extended = waitDeadline == null || waitDeadline.isAfter(current) ? waitDeadline : current;
+                if (extended == current || DEADLINE.compareAndSet(this, current, extended)) {
+                    return true;
+                }
+            }
+        }
 
-        public LoaderQueueEntry(K key, CompletableFuture<V> value, Object callContext, LoaderQueueEntry<K, V> prev, int queueSize) {
-            this.key = key;
-            this.value = value;
-            this.callContext = callContext;
-            this.prev = prev;
-            this.queueSize = queueSize;
+        /*
+         * Drops the load from its batch if no load is waiting on it past the given instant any more.
+         */
+        boolean dropIfPast(Instant now) {
+            while (true) {
+                Instant current = deadline;
+                if (current == null || current == DROPPED || current.isAfter(now)) {
+                    return false;
+                }
+                if (DEADLINE.compareAndSet(this, current, DROPPED)) {
+                    return true;
+                }
+            }
         }
 
-        K getKey() {
-            return key;
+        Instant getDeadline() {
+            Instant current = deadline;
+            return current == DROPPED ? null : current;
         }
 
-        CompletableFuture<V> getValue() {
-            return value;
+        boolean startRefresh() {
+            return REFRESHING.compareAndSet(this, 0, 1);
         }
 
-        Object getCallContext() {
-            return callContext;
+        void refreshFailed() {
+            refreshing = 0;
+        }
+    }
+
+    /**
+     * The future of a background reload of a key whose cached value is being refreshed.  Nobody is waiting on it, so
+     * when it fails the cached value is left in place rather than cleared.
+     */
+    private static class RefreshFuture<V> extends CompletableFuture<V> {
+    }
+
+    /**
+     * The linger timer of the loads that are queued right now.  Arming writes the timeout before reading disarmed and
+     * disarming writes disarmed before reading the timeout, so one of them always sees the other and cancels it.
+     */
+    private static class LingerTimer {
+        volatile ScheduledFuture<?> timeout;
+        volatile boolean disarmed;
+
+        void disarm() {
+            disarmed = true;
+            ScheduledFuture<?> timeout = this.timeout;
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
         }
     }
 
@@ -83,11 +174,25 @@ class DataLoaderHelper<K, V> {
     private final DataLoaderOptions loaderOptions;
     private final CacheMap<Object, V> futureCache;
     private final ValueCache<K, V> valueCache;
-    //    private final List<LoaderQueueEntry<K, CompletableFuture<V>>> loaderQueue;
-    private final AtomicReference<@Nullable LoaderQueueEntry<K, V>> loaderQueue = new AtomicReference<>();
+    private final LoaderQueue<K, V> loaderQueue;
     private final StatisticsCollector stats;
+    // with the default no-op statistics and instrumentation, loads skip the context objects and completion stages
+    // that would only be handed to them, which keeps the load path free of allocations beyond the future itself
+    private final boolean statsEnabled;
+    private final boolean instrumentationEnabled;
+    private final boolean environmentNeeded;
     private final Clock clock;
     private final AtomicReference<Instant> lastDispatchTime;
+    private final Duration lingerTime;
+    private final AtomicReference<LingerTimer> lingerTimer = new AtomicReference<>();
+    private final BatchSizeController batchSizeController;
+    private final Duration expireAfterWrite;
+    private final Duration refreshAfterWrite;
+    private final InFlightRegistry inFlightRegistry;
+    // true when cached futures age, so loads have to stamp them and cache hits have to check them
+    private final boolean entriesAge;
+    // set once the first load with a timeout is queued, so loaders that never use timeouts never look for deadlines
+    private volatile boolean deadlinesQueued;
 
     DataLoaderHelper(DataLoader<K, V> dataLoader,
                      Object batchLoadFunction,
@@ -102,9 +207,19 @@ class DataLoaderHelper<K, V> {
         this.futureCache = futureCache;
         this.valueCache = valueCache;
         this.stats = stats;
+        this.statsEnabled = stats.getClass() != NoOpStatisticsCollector.class;
+        this.instrumentationEnabled = loaderOptions.getInstrumentation() != NOOP_INSTRUMENTATION;
+        this.environmentNeeded = instrumentationEnabled || usesEnvironment(batchLoadFunction);
         this.clock = clock;
+        this.loaderQueue = new LoaderQueue<>(loaderOptions.loaderQueueStripes());
         this.lastDispatchTime = new AtomicReference<>();
         this.lastDispatchTime.set(now());
+        this.lingerTime = loaderOptions.lingerTime().orElse(null);
+        this.batchSizeController = loaderOptions.batchSizeController().orElse(null);
+        this.expireAfterWrite = loaderOptions.expireAfterWrite().orElse(null);
+        this.refreshAfterWrite = loaderOptions.refreshAfterWrite().orElse(null);
+        this.inFlightRegistry = loaderOptions.inFlightRegistry().orElse(null);
+        this.entriesAge = loaderOptions.cachingEnabled() && (expireAfterWrite != null || refreshAfterWrite != null);
     }
 
     Instant now() {
@@ -121,8 +236,15 @@ class DataLoaderHelper<K, V> {
             Object cacheKey = getCacheKey(nonNull(key));
             try {
                 CompletableFuture<V> cacheValue = futureCache.get(cacheKey);
+                if (cacheValue != null && entriesAge && isExpired(cacheValue)) {
+                    // peeking at the cache does not refresh it, but it must not hand out what a load would not
+                    removeFromFutureCache(cacheKey, cacheValue);
+                    cacheValue = null;
+                }
                 if (cacheValue != null) {
-                    stats.incrementCacheHitCount(new IncrementCacheHitCountStatisticsContext<>(key));
+                    if (statsEnabled) {
+                        stats.incrementCacheHitCount(new IncrementCacheHitCountStatisticsContext<>(key));
+                    }
                     return Optional.of(cacheValue);
                 }
             } catch (Exception ignored) {
@@ -144,71 +266,258 @@ class DataLoaderHelper<K, V> {
 
 
     CompletableFuture<V> load(K key, Object loadContext) {
+        return load(key, loadContext, null);
+    }
+
+    CompletableFuture<V> load(K key, Object loadContext, Duration timeout) {
         boolean batchingEnabled = loaderOptions.batchingEnabled();
         boolean futureCachingEnabled = loaderOptions.cachingEnabled();
 
-        stats.incrementLoadCount(new IncrementLoadCountStatisticsContext<>(key, loadContext));
-        DataLoaderInstrumentationContext<Object> ctx = ctxOrNoopCtx(instrumentation().beginLoad(dataLoader, key, loadContext));
+        if (statsEnabled) {
+            stats.incrementLoadCount(new IncrementLoadCountStatisticsContext<>(key, loadContext));
+        }
+        DataLoaderInstrumentationContext<Object> ctx = instrumentationEnabled ? ctxOrNoopCtx(instrumentation().beginLoad(dataLoader, key, loadContext)) : noOpCtx();
         Object cacheKey = null;
         if (futureCachingEnabled) {
             cacheKey = loadContext == null ? getCacheKey(key) : getCacheKeyWithContext(key, loadContext);
             try {
                 CompletableFuture<V> cachedFuture = futureCache.get(cacheKey);
-                if (cachedFuture != null) {
+                if (cachedFuture != null && entriesAge) {
+                    cachedFuture = expireOrRefresh(key, loadContext, cacheKey, cachedFuture);
+                }
+                if (cachedFuture != null && waitOn(cachedFuture, timeout)) {
                     // We already have a promise for this key, no need to check value cache or queue this load
-                    return incrementCacheHitAndReturnCF(ctx, key, loadContext, cachedFuture);
+                    return withTimeout(key, incrementCacheHitAndReturnCF(ctx, key, loadContext, cachedFuture), timeout);
                 }
             } catch (Exception ignored) {
             }
         }
         CompletableFuture<V> loadCallFuture;
         if (batchingEnabled) {
-            loadCallFuture = new CompletableFuture<>();
+            loadCallFuture = newLoadFuture(timeout);
             if (futureCachingEnabled) {
-                CompletableFuture<V> cachedFuture = futureCache.putIfAbsentAtomically(cacheKey, loadCallFuture);
-                if (cachedFuture != null) {
-                    // another thread was faster and created a matching CF ... hence this is really a cache hit and we are done
-                    return incrementCacheHitAndReturnCF(ctx, key, loadContext, cachedFuture);
+                CompletableFuture<V> cachedFuture;
+                while ((cachedFuture = futureCache.putIfAbsentAtomically(cacheKey, loadCallFuture)) != null) {
+                    if (waitOn(cachedFuture, timeout)) {
+                        // another thread was faster and created a matching CF ... hence this is really a cache hit and we are done
+                        return withTimeout(key, incrementCacheHitAndReturnCF(ctx, key, loadContext, cachedFuture), timeout);
+                    }
+                    // it has just been dropped from its batch, so we take it out of the cache ahead of the dispatcher
+                    removeFromFutureCache(cacheKey, cachedFuture);
                 }
             }
             addEntryToLoaderQueue(key, loadCallFuture, loadContext);
         } else {
-            stats.incrementBatchLoadCountBy(1, new IncrementBatchLoadCountByStatisticsContext<>(key, loadContext));
+            if (statsEnabled) {
+                stats.incrementBatchLoadCountBy(1, new IncrementBatchLoadCountByStatisticsContext<>(key, loadContext));
+            }
             // immediate execution of batch function
             loadCallFuture = invokeLoaderImmediately(key, loadContext, loaderOptions.cachingEnabled());
+            if (entriesAge) {
+                LoadFuture<V> agingFuture = new LoadFuture<>(null, now());
+                completeFrom(loadCallFuture, agingFuture);
+                loadCallFuture = agingFuture;
+            }
             if (futureCachingEnabled) {
                 CompletableFuture<V> cachedFuture = futureCache.putIfAbsentAtomically(cacheKey, loadCallFuture);
                 if (cachedFuture != null) {
                     // another thread was faster and the loader was invoked twice with the same key
                     // we are disregarding the result of our dispatch call and use the already cached value
                     // meaning this is a cache hit and we are done
-                    return incrementCacheHitAndReturnCF(ctx, key, loadContext, cachedFuture);
+                    return withTimeout(key, incrementCacheHitAndReturnCF(ctx, key, loadContext, cachedFuture), timeout);
                 }
             }
         }
 
         ctx.onDispatched();
-        loadCallFuture.whenComplete(ctx::onCompleted);
-        return loadCallFuture;
+        whenCompleted(loadCallFuture, ctx);
+        if (batchingEnabled) {
+            possiblyAutoDispatch();
+        }
+        return withTimeout(key, loadCallFuture, timeout);
     }
 
-    private CompletableFuture<V> incrementCacheHitAndReturnCF(DataLoaderInstrumentationContext<Object> ctx, K key, Object loadContext, CompletableFuture<V> cachedFuture) {
-        stats.incrementCacheHitCount(new IncrementCacheHitCountStatisticsContext<>(key, loadContext));
-        ctx.onDispatched();
-        cachedFuture.whenComplete(ctx::onCompleted);
+    private CompletableFuture<V> newLoadFuture(Duration timeout) {
+        if (timeout == null && !entriesAge) {
+            return new CompletableFuture<>();
+        }
+        if (timeout != null) {
+            // set before the future can be found in the cache, so that every load that waits on it moves its deadline
+            deadlinesQueued = true;
+        }
+        Instant now = now();
+        return new LoadFuture<>(timeout == null ? null : now.plus(timeout), entriesAge ? now : null);
+    }
+
+    /*
+     * A cached future that is still queued is only dropped from its batch once every load waiting on it is past its
+     * deadline, so a cache hit moves the deadline out to its own.  It returns false if the cached future has just
+     * been dropped, in which case it must not be waited on.
+     */
+    private boolean waitOn(CompletableFuture<V> cachedFuture, Duration timeout) {
+        if (!deadlinesQueued || !(cachedFuture instanceof LoadFuture) || cachedFuture.isDone()) {
+            return true;
+        }
+        return ((LoadFuture<V>) cachedFuture).waitUntil(timeout == null ? null : now().plus(timeout));
+    }
+
+    /*
+     * A cached future that is past its expire after write time is taken out of the cache and treated as a miss.  One
+     * that is past its refresh after write time is still served, but the first load to notice queues a reload of the
+     * key that will replace it.  Futures that are still in flight are never expired or refreshed.
+     */
+    private CompletableFuture<V> expireOrRefresh(K key, Object loadContext, Object cacheKey, CompletableFuture<V> cachedFuture) {
+        Duration age = ageOf(cachedFuture);
+        if (age == null) {
+            return cachedFuture;
+        }
+        if (expireAfterWrite != null && age.compareTo(expireAfterWrite) >= 0) {
+            removeFromFutureCache(cacheKey, cachedFuture);
+            return null;
+        }
+        LoadFuture<V> entry = (LoadFuture<V>) cachedFuture;
+        if (refreshAfterWrite != null && age.compareTo(refreshAfterWrite) >= 0
+                && !entry.isCompletedExceptionally() && entry.startRefresh()) {
+            refresh(key, loadContext, cacheKey, entry);
+        }
         return cachedFuture;
     }
 
-    private void addEntryToLoaderQueue(K key, CompletableFuture<V> future, Object loadContext) {
-        while (true) {
-            LoaderQueueEntry<K, V> prev = loaderQueue.get();
-            LoaderQueueEntry<K, V> curr = new LoaderQueueEntry<>(key, future, loadContext, prev, prev != null ? prev.queueSize + 1 : 1);
-            if (loaderQueue.compareAndSet(prev, curr)) {
+    private boolean isExpired(CompletableFuture<V> cachedFuture) {
+        Duration age = expireAfterWrite != null ? ageOf(cachedFuture) : null;
+        return age != null && age.compareTo(expireAfterWrite) >= 0;
+    }
+
+    /*
+     * The time since a completed future was written to the cache, or null if it does not age
+     */
+    private Duration ageOf(CompletableFuture<V> cachedFuture) {
+        if (!(cachedFuture instanceof LoadFuture) || !cachedFuture.isDone()) {
+            return null;
+        }
+        Instant writtenAt = ((LoadFuture<V>) cachedFuture).writtenAt;
+        return writtenAt == null ? null : Duration.between(writtenAt, now());
+    }
+
+    private void refresh(K key, Object loadContext, Object cacheKey, LoadFuture<V> staleEntry) {
+        CompletableFuture<V> reload;
+        if (loaderOptions.batchingEnabled()) {
+            reload = new RefreshFuture<>();
+            addEntryToLoaderQueue(key, reload, loadContext);
+        } else {
+            reload = invokeLoaderImmediately(key, loadContext, true);
+        }
+        reload.whenComplete((value, throwable) -> {
+            if (throwable != null) {
+                // keep serving the stale value, and let a later load try again
+                staleEntry.refreshFailed();
                 return;
             }
+            LoadFuture<V> freshEntry = new LoadFuture<>(null, now());
+            freshEntry.complete(value);
+            // the stale entry may have been cleared, or even loaded again, since the refresh started
+            futureCache.replaceAtomically(cacheKey, staleEntry, freshEntry);
+        });
+        if (loaderOptions.batchingEnabled()) {
+            possiblyAutoDispatch();
+        }
+    }
+
+    private void timeOut(Object cacheKey, CompletableFuture<V> future, String message) {
+        // out of the cache first, so that no later load is handed the failed future
+        removeFromFutureCache(cacheKey, future);
+        future.completeExceptionally(new TimeoutException(message));
+    }
+
+    private void removeFromFutureCache(Object cacheKey, CompletableFuture<V> future) {
+        // only if it is still our future, since the key may have been cleared and loaded again since
+        if (cacheKey != null && futureCache.get(cacheKey) == future) {
+            futureCache.delete(cacheKey);
+        }
+    }
+
+    /*
+     * The future of a load is shared with every other load of the key, and it is the one that is queued and cached,
+     * so rather than failing it when a load times out, that load is given its own copy of it to fail.  A load that
+     * has not completed by its deadline fails there and then, whether it is still queued or already with the batch
+     * loader.
+     */
+    private CompletableFuture<V> withTimeout(K key, CompletableFuture<V> future, Duration timeout) {
+        if (timeout == null || future.isDone()) {
+            return future;
+        }
+        CompletableFuture<V> copy = future.copy();
+        ScheduledFuture<?> timer = SharedTimer.get().schedule(
+                () -> copy.completeExceptionally(new TimeoutException("The load of key '" + key + "' did not complete within " + timeout)),
+                timeout.toNanos(), TimeUnit.NANOSECONDS);
+        copy.whenComplete((value, throwable) -> timer.cancel(false));
+        return copy;
+    }
+
+    private static <T> void whenCompleted(CompletableFuture<T> future, DataLoaderInstrumentationContext<? super T> ctx) {
+        // there is no point adding a completion stage that does nothing
+        if (ctx != noOpCtx()) {
+            future.whenComplete(ctx::onCompleted);
+        }
+    }
+
+    private void possiblyAutoDispatch() {
+        int autoDispatchBatchSize = loaderOptions.autoDispatchBatchSize();
+        if (autoDispatchBatchSize > 0 && loaderQueue.size() >= autoDispatchBatchSize) {
+            // the queue is full enough, so there is no need to wait for someone to call dispatch
+            dispatch();
+        } else if (lingerTime != null) {
+            possiblyArmLingerTimer();
+        }
+    }
+
+    private void possiblyArmLingerTimer() {
+        // only the first load into an empty queue starts the timer, every other load lingers along with it
+        if (lingerTimer.get() == null) {
+            LingerTimer timer = new LingerTimer();
+            if (lingerTimer.compareAndSet(null, timer)) {
+                timer.timeout = loaderOptions.getLingerScheduler().schedule(() -> lingerTimeExpired(timer), lingerTime.toNanos(), TimeUnit.NANOSECONDS);
+                if (timer.disarmed) {
+                    timer.disarm();
+                }
+            }
+        }
+    }
+
+    private void lingerTimeExpired(LingerTimer timer) {
+        // the timer is left alone if the loads it was armed for have been dispatched some other way, and otherwise the
+        // dispatch is handed off so that the batch loader does not start on the thread that times every data loader
+        if (lingerTimer.get() == timer) {
+            loaderOptions.getLingerDispatchExecutor().execute(() -> {
+                if (lingerTimer.get() == timer && loaderQueue.size() > 0) {
+                    dispatch();
+                }
+            });
         }
     }
 
+    private void disarmLingerTimer() {
+        // taken before the queue is drained, so any load racing in behind the drain will start a new timer
+        LingerTimer timer = lingerTimer.getAndSet(null);
+        if (timer != null) {
+            timer.disarm();
+        }
+    }
+
+    private CompletableFuture<V> incrementCacheHitAndReturnCF(DataLoaderInstrumentationContext<Object> ctx, K key, Object loadContext, CompletableFuture<V> cachedFuture) {
+        if (statsEnabled) {
+            stats.incrementCacheHitCount(new IncrementCacheHitCountStatisticsContext<>(key, loadContext));
+        }
+        ctx.onDispatched();
+        whenCompleted(cachedFuture, ctx);
+        return cachedFuture;
+    }
+
+    private void addEntryToLoaderQueue(K key, CompletableFuture<V> future, Object loadContext) {
+        loaderQueue.add(key, future, loadContext);
+        dataLoader.loadQueued();
+    }
+
     @SuppressWarnings("unchecked")
     Object getCacheKey(K key) {
         return loaderOptions.cacheKeyFunction().isPresent() ?
@@ -221,45 +530,32 @@ class DataLoaderHelper<K, V> {
                 loaderOptions.cacheKeyFunction().get().getKeyWithContext(key, context) : key;
     }
 
-    @SuppressWarnings("unchecked")
     DispatchResult<V> dispatch() {
-        DataLoaderInstrumentationContext<DispatchResult<?>> instrCtx = ctxOrNoopCtx(instrumentation().beginDispatch(dataLoader));
+        DataLoaderInstrumentationContext<DispatchResult<?>> instrCtx = instrumentationEnabled ? ctxOrNoopCtx(instrumentation().beginDispatch(dataLoader)) : noOpCtx();
 
         boolean batchingEnabled = loaderOptions.batchingEnabled();
 
-        LoaderQueueEntry<K, V> loaderQueueEntryHead;
-        //noinspection ConditionalBreakInInfiniteLoop
-        while (true) {
-            loaderQueueEntryHead = loaderQueue.get();
-            if (loaderQueue.compareAndSet(loaderQueueEntryHead, null)) {
-                // one or more threads competed and this one won.  This thread holds
-                // the loader queue root in the local variable loaderQueueEntryHead
-                break;
-            }
+        if (lingerTime != null) {
+            disarmLingerTimer();
         }
-        if (loaderQueueEntryHead == null) {
+        // one or more threads may compete to dispatch and only one of them will take each queued load
+        LoaderQueue.DrainedQueue<K, V> drainedQueue = loaderQueue.drain();
+        if (drainedQueue == null) {
             lastDispatchTime.set(now());
             instrCtx.onDispatched();
             return endDispatchCtx(instrCtx, emptyDispatchResult());
         }
-        int queueSize = loaderQueueEntryHead.queueSize;
-        // we copy the pre-loaded set of futures ready for dispatch
-        Object[] keysArray = new Object[queueSize];
-        CompletableFuture<V>[] queuedFuturesArray = new CompletableFuture[queueSize];
-        Object[] callContextsArray = new Object[queueSize];
-        int index = queueSize - 1;
-        while (loaderQueueEntryHead != null) {
-            keysArray[index] = loaderQueueEntryHead.getKey();
-            queuedFuturesArray[index] = loaderQueueEntryHead.getValue();
-            callContextsArray[index] = loaderQueueEntryHead.getCallContext();
-            loaderQueueEntryHead = loaderQueueEntryHead.prev;
-            index--;
-        }
-        final List<K> keys = (List<K>) Arrays.asList(keysArray);
-        final List<CompletableFuture<V>> queuedFutures = Arrays.asList(queuedFuturesArray);
-        final List<Object> callContexts = Arrays.asList(callContextsArray);
+        drainedQueue = dropAbandonedLoads(drainedQueue);
+        final List<K> keys = drainedQueue.keys;
+        final List<CompletableFuture<V>> queuedFutures = drainedQueue.queuedFutures;
+        final List<Object> callContexts = drainedQueue.callContexts;
 
         lastDispatchTime.set(now());
+        if (keys.isEmpty()) {
+            // every queued load was cancelled or past its deadline so there is nothing to ask the batch loader for
+            instrCtx.onDispatched();
+            return endDispatchCtx(instrCtx, emptyDispatchResult());
+        }
         if (!batchingEnabled) {
             instrCtx.onDispatched();
             return endDispatchCtx(instrCtx, emptyDispatchResult());
@@ -277,18 +573,183 @@ class DataLoaderHelper<K, V> {
         // the previously cached future objects that the client already has been given
         // via calls to load("foo") and loadMany(["foo","bar"])
         //
-        int maxBatchSize = loaderOptions.maxBatchSize();
         CompletableFuture<List<V>> futureList;
-        if (maxBatchSize > 0 && maxBatchSize < keys.size()) {
-            futureList = sliceIntoBatchesOfBatches(keys, queuedFutures, callContexts, maxBatchSize);
+        if (loaderOptions.batchKeyDeduplicationEnabled()) {
+            futureList = dispatchDistinctKeys(keys, callContexts, queuedFutures);
         } else {
-            futureList = dispatchQueueBatch(keys, callContexts, queuedFutures);
+            futureList = dispatchKeys(keys, callContexts, queuedFutures);
         }
         instrCtx.onDispatched();
         return endDispatchCtx(instrCtx, new DispatchResult<>(futureList, totalEntriesHandled));
     }
 
+    /*
+     * Loads whose futures have been cancelled, or that are already past their deadline, are not presented to the
+     * batch loader.  Nobody is waiting on them, so they are also taken out of the future cache so that a later load
+     * of the same key will try again.
+     */
+    private LoaderQueue.DrainedQueue<K, V> dropAbandonedLoads(LoaderQueue.DrainedQueue<K, V> drainedQueue) {
+        Instant now = deadlinesQueued ? now() : null;
+        List<CompletableFuture<V>> queuedFutures = drainedQueue.queuedFutures;
+        int size = queuedFutures.size();
+        BitSet abandoned = null;
+        for (int idx = 0; idx < size; idx++) {
+            CompletableFuture<V> future = queuedFutures.get(idx);
+            if (future.isCancelled()) {
+                K key = drainedQueue.keys.get(idx);
+                removeFromFutureCache(cacheKeyOf(key, drainedQueue.callContexts.get(idx)), future);
+            } else if (now != null && future instanceof LoadFuture && ((LoadFuture<V>) future).dropIfPast(now)) {
+                // every load waiting on it has timed out, and nobody else can start waiting on it now
+                K key = drainedQueue.keys.get(idx);
+                timeOut(cacheKeyOf(key, drainedQueue.callContexts.get(idx)), future,
+                        "The load of key '" + key + "' was past its deadline when it was dispatched");
+            } else {
+                continue;
+            }
+            if (abandoned == null) {
+                abandoned = new BitSet(size);
+            }
+            abandoned.set(idx);
+        }
+        if (abandoned == null) {
+            return drainedQueue;
+        }
+        int liveSize = size - abandoned.cardinality();
+        List<K> keys = new ArrayList<>(liveSize);
+        List<CompletableFuture<V>> liveFutures = new ArrayList<>(liveSize);
+        List<Object> callContexts = new ArrayList<>(liveSize);
+        for (int idx = abandoned.nextClearBit(0); idx < size; idx = abandoned.nextClearBit(idx + 1)) {
+            keys.add(drainedQueue.keys.get(idx));
+            liveFutures.add(queuedFutures.get(idx));
+            callContexts.add(drainedQueue.callContexts.get(idx));
+        }
+        return new LoaderQueue.DrainedQueue<>(keys, liveFutures, callContexts);
+    }
+
+    private Object cacheKeyOf(K key, Object callContext) {
+        if (!loaderOptions.cachingEnabled()) {
+            return null;
+        }
+        return callContext == null ? getCacheKey(key) : getCacheKeyWithContext(key, callContext);
+    }
+
+    private static Instant earliestDeadline(List<? extends CompletableFuture<?>> queuedFutures) {
+        Instant earliest = null;
+        for (CompletableFuture<?> future : queuedFutures) {
+            Instant deadline = future instanceof LoadFuture ? ((LoadFuture<?>) future).getDeadline() : null;
+            if (deadline != null) {
+                if (earliest == null || deadline.isBefore(earliest)) {
+                    earliest = deadline;
+                }
+            }
+        }
+        return earliest;
+    }
+
+    private CompletableFuture<List<V>> dispatchKeys(List<K> keys, List<Object> callContexts, List<CompletableFuture<V>> queuedFutures) {
+        int maxBatchSize = maxBatchSize();
+        if (maxBatchSize > 0 && maxBatchSize < keys.size()) {
+            return sliceIntoBatchesOfBatches(keys, queuedFutures, callContexts, maxBatchSize);
+        } else {
+            return dispatchQueueBatch(keys, callContexts, queuedFutures);
+        }
+    }
+
+    private int maxBatchSize() {
+        int maxBatchSize = loaderOptions.maxBatchSize();
+        if (batchSizeController == null) {
+            return maxBatchSize;
+        }
+        // the controller can only go below a fixed max batch size, which stays a hard limit
+        int controlledBatchSize = batchSizeController.getBatchSize();
+        return maxBatchSize > 0 ? Math.min(maxBatchSize, controlledBatchSize) : controlledBatchSize;
+    }
+
+    /*
+     * Each cache key is only sent to the batch loader once, and all the loads of a repeated cache key are completed
+     * from the one value.  The values are then spread back out so the promised list of values still has one value
+     * per queued load.
+     */
+    private CompletableFuture<List<V>> dispatchDistinctKeys(List<K> keys, List<Object> callContexts, List<CompletableFuture<V>> queuedFutures) {
+        int size = keys.size();
+        Object[] cacheKeys = new Object[size];
+        // most batches have no repeated keys, and those are told apart without boxing an index for every key
+        Set<Object> seenCacheKeys = new HashSet<>();
+        int hashed = 0;
+        boolean repeated = false;
+        while (hashed < size && !repeated) {
+            cacheKeys[hashed] = distinctKeyOf(keys.get(hashed), callContexts.get(hashed));
+            repeated = !seenCacheKeys.add(cacheKeys[hashed++]);
+        }
+        if (!repeated) {
+            return dispatchKeys(keys, callContexts, queuedFutures);
+        }
+
+        Map<Object, Integer> distinctIndexByCacheKey = new HashMap<>();
+        int[] distinctIndexes = new int[size];
+        boolean[] shared = new boolean[size];
+        List<K> distinctKeys = new ArrayList<>();
+        List<Object> distinctCallContexts = new ArrayList<>();
+        List<CompletableFuture<V>> distinctFutures = new ArrayList<>();
+        for (int idx = 0; idx < size; idx++) {
+            Object cacheKey = idx < hashed ? cacheKeys[idx] : distinctKeyOf(keys.get(idx), callContexts.get(idx));
+            Integer distinctIndex = distinctIndexByCacheKey.putIfAbsent(cacheKey, distinctKeys.size());
+            if (distinctIndex == null) {
+                distinctIndexes[idx] = distinctKeys.size();
+                distinctKeys.add(keys.get(idx));
+                distinctCallContexts.add(callContexts.get(idx));
+                distinctFutures.add(queuedFutures.get(idx));
+                continue;
+            }
+            distinctIndexes[idx] = distinctIndex;
+            // a repeated key is loaded into a future of our own, which every load of the key is then completed from,
+            // so a caller that cancels its future cannot take the value away from the others
+            CompletableFuture<V> distinctFuture = distinctFutures.get(distinctIndex);
+            boolean refreshOnly = distinctFuture instanceof RefreshFuture && queuedFutures.get(idx) instanceof RefreshFuture;
+            if (!shared[distinctIndex] || (distinctFuture instanceof RefreshFuture && !refreshOnly)) {
+                // a failed refresh keeps its stale value, but a failed load of the same key must still be cleared
+                distinctFutures.set(distinctIndex, refreshOnly ? new RefreshFuture<>() : new CompletableFuture<>());
+                shared[distinctIndex] = true;
+            }
+        }
+        for (int idx = 0; idx < size; idx++) {
+            int distinctIndex = distinctIndexes[idx];
+            if (shared[distinctIndex]) {
+                completeFrom(distinctFutures.get(distinctIndex), queuedFutures.get(idx));
+            }
+        }
+        return dispatchKeys(distinctKeys, distinctCallContexts, distinctFutures).thenApply(distinctValues -> {
+            if (distinctValues.size() != distinctKeys.size()) {
+                // the batch failed as a whole and there are no values to spread out
+                return distinctValues;
+            }
+            List<V> values = new ArrayList<>(size);
+            for (int distinctIndex : distinctIndexes) {
+                values.add(distinctValues.get(distinctIndex));
+            }
+            return values;
+        });
+    }
+
+    private Object distinctKeyOf(K key, Object callContext) {
+        // keys are told apart by their cache key even when caching is disabled
+        return callContext == null ? getCacheKey(key) : getCacheKeyWithContext(key, callContext);
+    }
+
+    private static <V> void completeFrom(CompletableFuture<V> source, CompletableFuture<V> target) {
+        source.whenComplete((value, throwable) -> {
+            if (throwable != null) {
+                target.completeExceptionally(throwable);
+            } else {
+                target.complete(value);
+            }
+        });
+    }
+
     private DispatchResult<V> endDispatchCtx(DataLoaderInstrumentationContext<DispatchResult<?>> instrCtx, DispatchResult<V> dispatchResult) {
+        if (instrCtx == DataLoaderInstrumentationHelper.<DispatchResult<?>>noOpCtx()) {
+            return dispatchResult;
+        }
         // once the CF completes, we can tell the instrumentation
         dispatchResult.getPromisedResults()
                 .whenComplete((result, throwable) -> instrCtx.onCompleted(dispatchResult, throwable));
@@ -298,32 +759,105 @@ class DataLoaderHelper<K, V> {
     private CompletableFuture<List<V>> sliceIntoBatchesOfBatches(List<K> keys, List<CompletableFuture<V>> queuedFutures, List<Object> callContexts, int maxBatchSize) {
         // the number of keys is > than what the batch loader function can accept
         // so make multiple calls to the loader
-        int len = keys.size();
-        int batchCount = (int) Math.ceil(len / (double) maxBatchSize);
-        List<CompletableFuture<List<V>>> allBatches = new ArrayList<>(batchCount);
-        for (int i = 0; i < batchCount; i++) {
+        return new SlicedBatches(keys, queuedFutures, callContexts, maxBatchSize).start();
+    }
+
+    /**
+     * This runs the slices of a large dispatch through the batch loader, keeping at most
+     * {@link DataLoaderOptions#maxConcurrentBatches()} of them in flight and starting the next slice
+     * as each one completes.  The values are put back together in key order once they are all done.
+     */
+    private class SlicedBatches {
+        private final List<K> keys;
+        private final List<CompletableFuture<V>> queuedFutures;
+        private final List<Object> callContexts;
+        private final int maxBatchSize;
+        private final int batchCount;
+        private final List<V>[] batchValues;
+        private final AtomicInteger remainingBatches;
+        private final AtomicInteger pendingStarts = new AtomicInteger();
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final CompletableFuture<List<V>> result = new CompletableFuture<>();
+        // only ever touched by the thread that won the pendingStarts counter
+        private int nextBatch;
+
+        @SuppressWarnings("unchecked")
+        SlicedBatches(List<K> keys, List<CompletableFuture<V>> queuedFutures, List<Object> callContexts, int maxBatchSize) {
+            this.keys = keys;
+            this.queuedFutures = queuedFutures;
+            this.callContexts = callContexts;
+            this.maxBatchSize = maxBatchSize;
+            this.batchCount = (keys.size() + maxBatchSize - 1) / maxBatchSize;
+            this.batchValues = (List<V>[]) new List<?>[batchCount];
+            this.remainingBatches = new AtomicInteger(batchCount);
+        }
+
+        CompletableFuture<List<V>> start() {
+            int maxConcurrentBatches = loaderOptions.maxConcurrentBatches();
+            int concurrentBatches = maxConcurrentBatches > 0 ? Math.min(maxConcurrentBatches, batchCount) : batchCount;
+            for (int i = 0; i < concurrentBatches; i++) {
+                startNextBatch();
+            }
+            return result;
+        }
+
+        private void startNextBatch() {
+            // batches that complete straight away ask for the next batch from inside this loop, so rather than
+            // recursing we count the request and let the thread already in the loop start it
+            if (pendingStarts.getAndIncrement() != 0) {
+                return;
+            }
+            do {
+                int batch = nextBatch++;
+                if (batch < batchCount) {
+                    dispatchBatch(batch);
+                }
+            } while (pendingStarts.decrementAndGet() != 0);
+        }
 
-            int fromIndex = i * maxBatchSize;
-            int toIndex = Math.min((i + 1) * maxBatchSize, len);
+        private void dispatchBatch(int batch) {
+            int fromIndex = batch * maxBatchSize;
+            int toIndex = Math.min(fromIndex + maxBatchSize, keys.size());
 
             List<K> subKeys = keys.subList(fromIndex, toIndex);
             List<CompletableFuture<V>> subFutures = queuedFutures.subList(fromIndex, toIndex);
             List<Object> subCallContexts = callContexts.subList(fromIndex, toIndex);
 
-            allBatches.add(dispatchQueueBatch(subKeys, subCallContexts, subFutures));
+            dispatchQueueBatch(subKeys, subCallContexts, subFutures).whenComplete((values, throwable) -> {
+                if (throwable != null) {
+                    failure.compareAndSet(null, throwable);
+                } else {
+                    batchValues[batch] = values;
+                }
+                if (remainingBatches.decrementAndGet() == 0) {
+                    complete();
+                } else {
+                    startNextBatch();
+                }
+            });
+        }
+
+        private void complete() {
+            Throwable throwable = failure.get();
+            if (throwable != null) {
+                result.completeExceptionally(throwable);
+                return;
+            }
+            //
+            // now reassemble all the values into the one complete set of results
+            List<V> values = new ArrayList<>(keys.size());
+            for (List<V> batch : batchValues) {
+                values.addAll(batch);
+            }
+            result.complete(values);
         }
-        //
-        // now reassemble all the futures into one that is the complete set of results
-        return allOf(allBatches.toArray(new CompletableFuture[0]))
-                .thenApply(v -> allBatches.stream()
-                        .map(CompletableFuture::join)
-                        .flatMap(Collection::stream)
-                        .collect(toList()));
     }
 
     @SuppressWarnings("unchecked")
     private CompletableFuture<List<V>> dispatchQueueBatch(List<K> keys, List<Object> callContexts, List<CompletableFuture<V>> queuedFutures) {
-        stats.incrementBatchLoadCountBy(keys.size(), new IncrementBatchLoadCountByStatisticsContext<>(keys, callContexts));
+        if (statsEnabled) {
+            stats.incrementBatchLoadCountBy(keys.size(), new IncrementBatchLoadCountByStatisticsContext<>(keys, callContexts));
+        }
         CompletableFuture<List<V>> batchLoad = invokeLoader(keys, callContexts, queuedFutures, loaderOptions.cachingEnabled());
         return batchLoad
                 .thenApply(values -> {
@@ -340,9 +874,11 @@ class DataLoaderHelper<K, V> {
                         Object callContext = callContexts.get(idx);
                         CompletableFuture<V> future = queuedFutures.get(idx);
                         if (value instanceof Throwable) {
-                            stats.incrementLoadErrorCount(new IncrementLoadErrorCountStatisticsContext<>(key, callContext));
+                            if (statsEnabled) {
+                                stats.incrementLoadErrorCount(new IncrementLoadErrorCountStatisticsContext<>(key, callContext));
+                            }
                             future.completeExceptionally((Throwable) value);
-                            clearCacheKeys.add(keys.get(idx));
+                            possiblyClearOnException(clearCacheKeys, key, future);
                         } else if (value instanceof Try) {
                             // we allow the batch loader to return a Try so we can better represent a computation
                             // that might have worked or not.
@@ -350,9 +886,11 @@ class DataLoaderHelper<K, V> {
                             if (tryValue.isSuccess()) {
                                 future.complete(tryValue.get());
                             } else {
-                                stats.incrementLoadErrorCount(new IncrementLoadErrorCountStatisticsContext<>(key, callContext));
+                                if (statsEnabled) {
+                                    stats.incrementLoadErrorCount(new IncrementLoadErrorCountStatisticsContext<>(key, callContext));
+                                }
                                 future.completeExceptionally(tryValue.getThrowable());
-                                clearCacheKeys.add(keys.get(idx));
+                                possiblyClearOnException(clearCacheKeys, key, future);
                             }
                         } else {
                             future.complete(value);
@@ -361,7 +899,9 @@ class DataLoaderHelper<K, V> {
                     possiblyClearCacheEntriesOnExceptions(clearCacheKeys);
                     return values;
                 }).exceptionally(ex -> {
-                    stats.incrementBatchLoadExceptionCount(new IncrementBatchLoadExceptionCountStatisticsContext<>(keys, callContexts));
+                    if (statsEnabled) {
+                        stats.incrementBatchLoadExceptionCount(new IncrementBatchLoadExceptionCountStatisticsContext<>(keys, callContexts));
+                    }
                     if (ex instanceof CompletionException) {
                         ex = ex.getCause();
                     }
@@ -369,8 +909,10 @@ class DataLoaderHelper<K, V> {
                         K key = keys.get(idx);
                         CompletableFuture<V> future = queuedFutures.get(idx);
                         future.completeExceptionally(ex);
-                        // clear any cached view of this key because they all failed
-                        dataLoader.clear(key);
+                        // clear any cached view of this key because they all failed, unless a stale value was being refreshed
+                        if (!(future instanceof RefreshFuture)) {
+                            dataLoader.clear(key);
+                        }
                     }
                     return emptyList();
                 });
@@ -381,6 +923,13 @@ class DataLoaderHelper<K, V> {
         assertState(keys.size() == values.size(), () -> "The size of the promised values MUST be the same size as the key list");
     }
 
+    private static <K> void possiblyClearOnException(List<K> clearCacheKeys, K key, CompletableFuture<?> future) {
+        // a failed refresh leaves the stale value it was refreshing in the cache
+        if (!(future instanceof RefreshFuture)) {
+            clearCacheKeys.add(key);
+        }
+    }
+
     private void possiblyClearCacheEntriesOnExceptions(List<K> keys) {
         if (keys.isEmpty()) {
             return;
@@ -405,81 +954,223 @@ class DataLoaderHelper<K, V> {
 
     CompletableFuture<List<V>> invokeLoader(List<K> keys, List<Object> keyContexts, List<CompletableFuture<V>> queuedFutures, boolean cachingEnabled) {
         if (!cachingEnabled) {
-            return invokeLoader(keys, keyContexts, queuedFutures);
+            return invokeLoaderSharingFlights(keys, keyContexts, queuedFutures);
         }
-        CompletableFuture<List<Try<V>>> cacheCallCF = getFromValueCache(keys);
+        CompletableFuture<CachedValues<V>> cacheCallCF = getFromValueCache(keys);
         return cacheCallCF.thenCompose(cachedValues -> {
-
+            int size = keys.size();
             // the following is NOT a Map because keys in data loader can repeat (by design)
             // and hence "a","b","c","b" is a valid set of keys
-            List<Try<V>> valuesInKeyOrder = new ArrayList<>();
-            List<Integer> missedKeyIndexes = new ArrayList<>();
-            List<K> missedKeys = new ArrayList<>();
-            List<Object> missedKeyContexts = new ArrayList<>();
-            List<CompletableFuture<V>> missedQueuedFutures = new ArrayList<>();
+            Object[] valuesInKeyOrder = new Object[size];
+            // the positions of the missed keys, or null if every key was missed
+            int[] missedKeyIndexes = null;
 
-            // if they return a ValueCachingNotSupported exception then we insert this special marker value, and it
+            // if they return a ValueCachingNotSupported exception then we get this special marker value, and it
             // means it's a total miss, we need to get all these keys via the batch loader
-            if (cachedValues == NOT_SUPPORTED_LIST) {
-                for (int i = 0; i < keys.size(); i++) {
-                    valuesInKeyOrder.add(ALWAYS_FAILED);
-                    missedKeyIndexes.add(i);
-                    missedKeys.add(keys.get(i));
-                    missedKeyContexts.add(keyContexts.get(i));
-                    missedQueuedFutures.add(queuedFutures.get(i));
-                }
-            } else {
-                assertState(keys.size() == cachedValues.size(), () -> "The size of the cached values MUST be the same size as the key list");
-                for (int i = 0; i < keys.size(); i++) {
-                    Try<V> cacheGet = cachedValues.get(i);
-                    valuesInKeyOrder.add(cacheGet);
-                    if (cacheGet.isFailure()) {
-                        missedKeyIndexes.add(i);
-                        missedKeys.add(keys.get(i));
-                        missedKeyContexts.add(keyContexts.get(i));
-                        missedQueuedFutures.add(queuedFutures.get(i));
-                    } else {
-                        queuedFutures.get(i).complete(cacheGet.get());
+            if (cachedValues != NOT_SUPPORTED_VALUES) {
+                assertState(size == cachedValues.size(), () -> "The size of the cached values MUST be the same size as the key list");
+                int hitCount = cachedValues.hitCount();
+                if (hitCount > 0) {
+                    if (statsEnabled) {
+                        stats.incrementValueCacheHitCountBy(hitCount, new IncrementValueCacheHitCountStatisticsContext<>(keys, keyContexts));
+                    }
+                    missedKeyIndexes = new int[size - hitCount];
+                    int missed = 0;
+                    for (int i = 0; i < size; i++) {
+                        if (cachedValues.isHit(i)) {
+                            V value = cachedValues.getValue(i);
+                            valuesInKeyOrder[i] = value;
+                            queuedFutures.get(i).complete(value);
+                        } else {
+                            missedKeyIndexes[missed++] = i;
+                        }
                     }
                 }
             }
-            if (missedKeys.isEmpty()) {
+            if (missedKeyIndexes != null && missedKeyIndexes.length == 0) {
                 //
                 // everything was cached
                 //
-                List<V> assembledValues = valuesInKeyOrder.stream().map(Try::get).collect(toList());
-                return completedFuture(assembledValues);
-            } else {
-                //
-                // we missed some keys from cache, so send them to the batch loader
-                // and then fill in their values
+                return completedFuture(valuesOf(valuesInKeyOrder));
+            }
+            //
+            // we missed some keys from cache, so send them to the batch loader
+            // and then fill in their values
+            //
+            List<K> missedKeys = missedKeyIndexes == null ? keys : new IndexedListView<>(keys, missedKeyIndexes);
+            List<Object> missedKeyContexts = missedKeyIndexes == null ? keyContexts : new IndexedListView<>(keyContexts, missedKeyIndexes);
+            List<CompletableFuture<V>> missedQueuedFutures = missedKeyIndexes == null ? queuedFutures : new IndexedListView<>(queuedFutures, missedKeyIndexes);
+            int[] missedIndexes = missedKeyIndexes;
+            CompletableFuture<List<V>> batchLoad = invokeLoaderSharingFlights(missedKeys, missedKeyContexts, missedQueuedFutures);
+            return batchLoad.thenCompose(missedValues -> {
+                assertResultSize(missedKeys, missedValues);
+
+                for (int i = 0; i < missedValues.size(); i++) {
+                    valuesInKeyOrder[missedIndexes == null ? i : missedIndexes[i]] = missedValues.get(i);
+                }
                 //
-                CompletableFuture<List<V>> batchLoad = invokeLoader(missedKeys, missedKeyContexts, missedQueuedFutures);
-                return batchLoad.thenCompose(missedValues -> {
-                    assertResultSize(missedKeys, missedValues);
-
-                    for (int i = 0; i < missedValues.size(); i++) {
-                        V v = missedValues.get(i);
-                        Integer listIndex = missedKeyIndexes.get(i);
-                        valuesInKeyOrder.set(listIndex, Try.succeeded(v));
+                // fire off a call to the ValueCache to allow it to set values into the
+                // cache now that we have them
+                return setToValueCache(valuesOf(valuesInKeyOrder), missedKeys, missedValues);
+            });
+        });
+    }
+
+    /*
+     * With an in flight registry, the keys that another data loader is already loading are left out of the batch and
+     * take their values from that data loader's batch instead.  Each key this batch does load gets a flight future in
+     * the registry that completes as soon as the batch loader's values arrive, rather than when this dispatch is done,
+     * so that two data loaders waiting on each other's keys can never deadlock.  A key repeated within this batch finds
+     * the flight that this batch registered for it, and is loaded with the batch rather than coalesced with itself.
+     */
+    @SuppressWarnings("unchecked")
+    private CompletableFuture<List<V>> invokeLoaderSharingFlights(List<K> keys, List<Object> keyContexts, List<CompletableFuture<V>> queuedFutures) {
+        if (inFlightRegistry == null) {
+            return invokeLoader(keys, keyContexts, queuedFutures);
+        }
+        int size = keys.size();
+        CompletableFuture<V>[] flights = (CompletableFuture<V>[]) new CompletableFuture<?>[size];
+        int[] loadedIndexes = new int[size];
+        int[] coalescedIndexes = new int[size];
+        int loaded = 0;
+        int coalesced = 0;
+        Set<CompletableFuture<V>> ownFlights = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int idx = 0; idx < size; idx++) {
+            K key = keys.get(idx);
+            Object keyContext = keyContexts.get(idx);
+            Object cacheKey = keyContext == null ? getCacheKey(key) : getCacheKeyWithContext(key, keyContext);
+            CompletableFuture<V> flight = new CompletableFuture<>();
+            CompletableFuture<V> existing = inFlightRegistry.putIfAbsent(cacheKey, flight);
+            if (existing == null) {
+                flights[idx] = flight;
+                ownFlights.add(flight);
+                loadedIndexes[loaded++] = idx;
+            } else if (ownFlights.contains(existing)) {
+                // the flight is completed by the first load of the key, so this one leaves flights[idx] empty
+                loadedIndexes[loaded++] = idx;
+            } else {
+                flights[idx] = existing;
+                coalescedIndexes[coalesced++] = idx;
+            }
+        }
+        if (coalesced == 0) {
+            CompletableFuture<List<V>> batchLoad = invokeLoader(keys, keyContexts, queuedFutures);
+            completeFlights(batchLoad, flights, loadedIndexes, loaded);
+            return batchLoad;
+        }
+        int[] loadedKeyIndexes = Arrays.copyOf(loadedIndexes, loaded);
+        int[] coalescedKeyIndexes = Arrays.copyOf(coalescedIndexes, coalesced);
+        if (statsEnabled) {
+            stats.incrementCoalescedCountBy(coalesced, new IncrementCoalescedCountStatisticsContext<>(
+                    new IndexedListView<>(keys, coalescedKeyIndexes), new IndexedListView<>(keyContexts, coalescedKeyIndexes)));
+        }
+        CompletableFuture<List<V>> batchLoad;
+        if (loaded == 0) {
+            batchLoad = completedFuture(emptyList());
+        } else {
+            batchLoad = invokeLoader(new IndexedListView<>(keys, loadedKeyIndexes), new IndexedListView<>(keyContexts, loadedKeyIndexes),
+                    new IndexedListView<>(queuedFutures, loadedKeyIndexes));
+            completeFlights(batchLoad, flights, loadedKeyIndexes, loaded);
+        }
+        CompletableFuture<?>[] coalescedFlights = new CompletableFuture<?>[coalesced];
+        for (int i = 0; i < coalesced; i++) {
+            int idx = coalescedKeyIndexes[i];
+            coalescedFlights[i] = flights[idx];
+            if (isPublisher() || isMappedPublisher()) {
+                // publishers complete the queued futures as their values arrive, so these ones have to be done here
+                completeFrom(flights[idx], queuedFutures.get(idx));
+            }
+        }
+        return batchLoad.thenCompose(loadedValues -> CompletableFuture.allOf(coalescedFlights).handle((ignored, throwable) -> {
+            Object[] values = new Object[size];
+            for (int i = 0; i < loadedKeyIndexes.length; i++) {
+                values[loadedKeyIndexes[i]] = loadedValues.get(i);
+            }
+            for (int idx : coalescedKeyIndexes) {
+                CompletableFuture<V> flight = flights[idx];
+                // a key that failed in the other batch fails here too, just as if the batch loader had returned the error
+                values[idx] = flight.isCompletedExceptionally() ? CompletableFutureKit.cause(flight) : flight.join();
+            }
+            return valuesOf(values);
+        }));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> void completeFlights(CompletableFuture<List<V>> batchLoad, CompletableFuture<V>[] flights, int[] loadedIndexes, int loaded) {
+        batchLoad.whenComplete((values, throwable) -> {
+            if (throwable instanceof CompletionException && throwable.getCause() != null) {
+                throwable = throwable.getCause();
+            } else if (throwable == null && values.size() != loaded) {
+                throwable = new DataLoaderAssertionException("The size of the promised values MUST be the same size as the key list");
+            }
+            for (int i = 0; i < loaded; i++) {
+                CompletableFuture<V> flight = flights[loadedIndexes[i]];
+                if (flight == null) {
+                    continue;
+                }
+                if (throwable != null) {
+                    flight.completeExceptionally(throwable);
+                    continue;
+                }
+                Object value = values.get(i);
+                if (value instanceof Throwable) {
+                    flight.completeExceptionally((Throwable) value);
+                } else if (value instanceof Try) {
+                    Try<V> tryValue = (Try<V>) value;
+                    if (tryValue.isSuccess()) {
+                        flight.complete(tryValue.get());
+                    } else {
+                        flight.completeExceptionally(tryValue.getThrowable());
                     }
-                    List<V> assembledValues = valuesInKeyOrder.stream().map(Try::get).collect(toList());
-                    //
-                    // fire off a call to the ValueCache to allow it to set values into the
-                    // cache now that we have them
-                    return setToValueCache(assembledValues, missedKeys, missedValues);
-                });
+                } else {
+                    flight.complete((V) value);
+                }
             }
         });
     }
 
+    @SuppressWarnings("unchecked")
+    private static <V> List<V> valuesOf(Object[] values) {
+        return (List<V>) Arrays.asList(values);
+    }
+
+    /**
+     * A read only list view of the elements of another list at the given positions
+     */
+    private static class IndexedListView<E> extends AbstractList<E> implements RandomAccess {
+        private final List<E> list;
+        private final int[] indexes;
+
+        IndexedListView(List<E> list, int[] indexes) {
+            this.list = list;
+            this.indexes = indexes;
+        }
+
+        @Override
+        public E get(int index) {
+            return list.get(indexes[index]);
+        }
+
+        @Override
+        public int size() {
+            return indexes.length;
+        }
+    }
+
     CompletableFuture<List<V>> invokeLoader(List<K> keys, List<Object> keyContexts, List<CompletableFuture<V>> queuedFutures) {
-        Object context = loaderOptions.getBatchLoaderContextProvider().getContext();
-        BatchLoaderEnvironment environment = BatchLoaderEnvironment.newBatchLoaderEnvironment()
-                .context(context).keyContexts(keys, keyContexts).build();
+        // only the "with context" batch loaders and the instrumentation ever see the environment
+        BatchLoaderEnvironment environment = null;
+        if (environmentNeeded) {
+            Object context = loaderOptions.getBatchLoaderContextProvider().getContext();
+            environment = BatchLoaderEnvironment.newBatchLoaderEnvironment()
+                    .context(context).keyContexts(keys, keyContexts)
+                    .earliestDeadline(deadlinesQueued ? earliestDeadline(queuedFutures) : null)
+                    .build();
+        }
 
-        DataLoaderInstrumentationContext<List<?>> instrCtx = ctxOrNoopCtx(instrumentation().beginBatchLoader(dataLoader, keys, environment));
+        DataLoaderInstrumentationContext<List<?>> instrCtx = instrumentationEnabled ? ctxOrNoopCtx(instrumentation().beginBatchLoader(dataLoader, keys, environment)) : noOpCtx();
 
+        Instant batchStart = batchSizeController != null ? now() : null;
         CompletableFuture<List<V>> batchLoad;
         try {
             if (isMapLoader()) {
@@ -496,10 +1187,21 @@ class DataLoaderHelper<K, V> {
             instrCtx.onDispatched();
             batchLoad = CompletableFutureKit.failedFuture(e);
         }
-        batchLoad.whenComplete(instrCtx::onCompleted);
+        whenCompleted(batchLoad, instrCtx);
+        if (batchStart != null) {
+            batchLoad.whenComplete((values, throwable) -> onBatchCompleted(keys, batchStart, throwable == null));
+        }
         return batchLoad;
     }
 
+    private void onBatchCompleted(List<K> keys, Instant batchStart, boolean successful) {
+        Duration latency = Duration.between(batchStart, now());
+        batchSizeController.onBatchCompleted(keys.size(), latency, successful);
+        if (statsEnabled) {
+            stats.recordBatchSize(new RecordBatchSizeStatisticsContext<>(keys, maxBatchSize(), latency));
+        }
+    }
+
 
     @SuppressWarnings("unchecked")
     private CompletableFuture<List<V>> invokeListBatchLoader(List<K> keys, BatchLoaderEnvironment environment) {
@@ -617,6 +1319,13 @@ class DataLoaderHelper<K, V> {
         return loadResult;
     }
 
+    private static boolean usesEnvironment(Object batchLoadFunction) {
+        return batchLoadFunction instanceof BatchLoaderWithContext
+                || batchLoadFunction instanceof MappedBatchLoaderWithContext
+                || batchLoadFunction instanceof BatchPublisherWithContext
+                || batchLoadFunction instanceof MappedBatchPublisherWithContext;
+    }
+
     private boolean isMapLoader() {
         return batchLoadFunction instanceof MappedBatchLoader || batchLoadFunction instanceof MappedBatchLoaderWithContext;
     }
@@ -634,22 +1343,16 @@ class DataLoaderHelper<K, V> {
     }
 
     int dispatchDepth() {
-        LoaderQueueEntry<K, V> loaderQueueEntry = loaderQueue.get();
-        if (loaderQueueEntry != null) {
-            return loaderQueueEntry.queueSize;
-        } else {
-            return 0;
-        }
+        return loaderQueue.size();
     }
 
 
-    private final List<Try<V>> NOT_SUPPORTED_LIST = emptyList();
-    private final CompletableFuture<List<Try<V>>> NOT_SUPPORTED = CompletableFuture.completedFuture(NOT_SUPPORTED_LIST);
-    private final Try<V> ALWAYS_FAILED = Try.alwaysFailed();
+    private final CachedValues<V> NOT_SUPPORTED_VALUES = CachedValues.of(emptyList(), new BitSet());
+    private final CompletableFuture<CachedValues<V>> NOT_SUPPORTED = CompletableFuture.completedFuture(NOT_SUPPORTED_VALUES);
 
-    private CompletableFuture<List<Try<V>>> getFromValueCache(List<K> keys) {
+    private CompletableFuture<CachedValues<V>> getFromValueCache(List<K> keys) {
         try {
-            return nonNull(valueCache.getValues(keys), () -> "Your ValueCache.getValues function MUST return a non null CompletableFuture");
+            return nonNull(valueCache.getCachedValues(keys), () -> "Your ValueCache.getCachedValues function MUST return a non null CompletableFuture");
         } catch (ValueCache.ValueCachingNotSupported ignored) {
             // use of a final field prevents CF object allocation for this special purpose
             return NOT_SUPPORTED;
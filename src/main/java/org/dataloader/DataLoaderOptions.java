@@ -17,14 +17,20 @@
 package org.dataloader;
 
 import org.dataloader.annotations.PublicApi;
+import org.dataloader.batching.BatchSizeController;
+import org.dataloader.impl.SharedTimer;
 import org.dataloader.instrumentation.DataLoaderInstrumentation;
 import org.dataloader.instrumentation.DataLoaderInstrumentationHelper;
 import org.dataloader.scheduler.BatchLoaderScheduler;
 import org.dataloader.stats.NoOpStatisticsCollector;
 import org.dataloader.stats.StatisticsCollector;
 
+import java.time.Duration;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
@@ -46,10 +52,21 @@ public class DataLoaderOptions {
     private final boolean batchingEnabled;
     private final boolean cachingEnabled;
     private final boolean cachingExceptionsEnabled;
+    private final boolean batchKeyDeduplicationEnabled;
     private final CacheKey<?> cacheKeyFunction;
     private final CacheMap<?, ?> cacheMap;
     private final ValueCache<?, ?> valueCache;
     private final int maxBatchSize;
+    private final BatchSizeController batchSizeController;
+    private final int maxConcurrentBatches;
+    private final int loaderQueueStripes;
+    private final int autoDispatchBatchSize;
+    private final Duration lingerTime;
+    private final ScheduledExecutorService lingerScheduler;
+    private final Executor lingerDispatchExecutor;
+    private final Duration expireAfterWrite;
+    private final Duration refreshAfterWrite;
+    private final InFlightRegistry inFlightRegistry;
     private final Supplier<StatisticsCollector> statisticsCollector;
     private final BatchLoaderContextProvider environmentProvider;
     private final ValueCacheOptions valueCacheOptions;
@@ -63,10 +80,21 @@ public class DataLoaderOptions {
         batchingEnabled = true;
         cachingEnabled = true;
         cachingExceptionsEnabled = true;
+        batchKeyDeduplicationEnabled = false;
         cacheKeyFunction = null;
         cacheMap = null;
         valueCache = null;
         maxBatchSize = -1;
+        batchSizeController = null;
+        maxConcurrentBatches = -1;
+        loaderQueueStripes = 1;
+        autoDispatchBatchSize = -1;
+        lingerTime = null;
+        lingerScheduler = null;
+        lingerDispatchExecutor = null;
+        expireAfterWrite = null;
+        refreshAfterWrite = null;
+        inFlightRegistry = null;
         statisticsCollector = NOOP_COLLECTOR;
         environmentProvider = NULL_PROVIDER;
         valueCacheOptions = DEFAULT_VALUE_CACHE_OPTIONS;
@@ -78,10 +106,21 @@ public class DataLoaderOptions {
         this.batchingEnabled = builder.batchingEnabled;
         this.cachingEnabled = builder.cachingEnabled;
         this.cachingExceptionsEnabled = builder.cachingExceptionsEnabled;
+        this.batchKeyDeduplicationEnabled = builder.batchKeyDeduplicationEnabled;
         this.cacheKeyFunction = builder.cacheKeyFunction;
         this.cacheMap = builder.cacheMap;
         this.valueCache = builder.valueCache;
         this.maxBatchSize = builder.maxBatchSize;
+        this.batchSizeController = builder.batchSizeController;
+        this.maxConcurrentBatches = builder.maxConcurrentBatches;
+        this.loaderQueueStripes = builder.loaderQueueStripes;
+        this.autoDispatchBatchSize = builder.autoDispatchBatchSize;
+        this.lingerTime = builder.lingerTime;
+        this.lingerScheduler = builder.lingerScheduler;
+        this.lingerDispatchExecutor = builder.lingerDispatchExecutor;
+        this.expireAfterWrite = builder.expireAfterWrite;
+        this.refreshAfterWrite = builder.refreshAfterWrite;
+        this.inFlightRegistry = builder.inFlightRegistry;
         this.statisticsCollector = builder.statisticsCollector;
         this.environmentProvider = builder.environmentProvider;
         this.valueCacheOptions = builder.valueCacheOptions;
@@ -131,7 +170,18 @@ public class DataLoaderOptions {
         return batchingEnabled == that.batchingEnabled
                 && cachingEnabled == that.cachingEnabled
                 && cachingExceptionsEnabled == that.cachingExceptionsEnabled
+                && batchKeyDeduplicationEnabled == that.batchKeyDeduplicationEnabled
                 && maxBatchSize == that.maxBatchSize
+                && Objects.equals(batchSizeController, that.batchSizeController)
+                && maxConcurrentBatches == that.maxConcurrentBatches
+                && loaderQueueStripes == that.loaderQueueStripes
+                && autoDispatchBatchSize == that.autoDispatchBatchSize
+                && Objects.equals(lingerTime, that.lingerTime)
+                && Objects.equals(lingerScheduler, that.lingerScheduler)
+                && Objects.equals(lingerDispatchExecutor, that.lingerDispatchExecutor)
+                && Objects.equals(expireAfterWrite, that.expireAfterWrite)
+                && Objects.equals(refreshAfterWrite, that.refreshAfterWrite)
+                && Objects.equals(inFlightRegistry, that.inFlightRegistry)
                 && Objects.equals(cacheKeyFunction, that.cacheKeyFunction) &&
                 Objects.equals(cacheMap, that.cacheMap) &&
                 Objects.equals(valueCache, that.valueCache) &&
@@ -174,6 +224,20 @@ public class DataLoaderOptions {
         return cachingExceptionsEnabled;
     }
 
+    /**
+     * Option that determines whether repeated keys in a dispatched batch are collapsed into one, or not (the default).
+     * <p>
+     * With caching enabled the same key is only ever queued once, however with caching disabled each load of a key
+     * is queued, and hence the same key can be presented to the batch loader many times.  When this option is on, only
+     * the distinct keys (according to the {@link CacheKey} function, if any) are presented to the batch loader and
+     * each value is then given to every load of that key.
+     *
+     * @return {@code true} when batch key de-duplication is enabled, {@code false} otherwise
+     */
+    public boolean batchKeyDeduplicationEnabled() {
+        return batchKeyDeduplicationEnabled;
+    }
+
     /**
      * Gets an (optional) function to invoke for creation of the cache key, if caching is enabled.
      * <p>
@@ -207,6 +271,108 @@ public class DataLoaderOptions {
         return maxBatchSize;
     }
 
+    /**
+     * Gets the (optional) {@link BatchSizeController} that decides how many keys are presented to the {@link BatchLoader}
+     * function in one call, below the {@link #maxBatchSize()} if one is set.
+     *
+     * @return an optional with the batch size controller, or empty
+     */
+    public Optional<BatchSizeController> batchSizeController() {
+        return Optional.ofNullable(batchSizeController);
+    }
+
+    /**
+     * Gets the maximum number of {@link #maxBatchSize()} sized batches that a {@link DataLoader} will have in flight
+     * with the {@link BatchLoader} function at any one time, when a dispatch is split into multiple batches.
+     *
+     * @return the maximum number of concurrent batches or -1 if there is no limit
+     */
+    public int maxConcurrentBatches() {
+        return maxConcurrentBatches;
+    }
+
+    /**
+     * Gets the number of striped sub-queues that {@link DataLoader#load(Object)} calls are appended to
+     * while they wait to be dispatched.
+     *
+     * @return the number of loader queue stripes, 1 being a single queue
+     */
+    public int loaderQueueStripes() {
+        return loaderQueueStripes;
+    }
+
+    /**
+     * Gets the number of queued loads that will cause the {@link DataLoader} to dispatch itself, without waiting
+     * for a call to {@link DataLoader#dispatch()}.
+     *
+     * @return the auto dispatch batch size or -1 if loads are only ever dispatched manually
+     */
+    public int autoDispatchBatchSize() {
+        return autoDispatchBatchSize;
+    }
+
+    /**
+     * Gets the (optional) linger time, which is the longest that a load will wait in the queue before the
+     * {@link DataLoader} dispatches itself.
+     *
+     * @return an optional with the linger time, or empty if loads are not dispatched on a timer
+     */
+    public Optional<Duration> lingerTime() {
+        return Optional.ofNullable(lingerTime);
+    }
+
+    /**
+     * Gets the {@link ScheduledExecutorService} used to time the {@link #lingerTime()}.  If none was set then
+     * a single daemon thread timer that is shared by all data loaders is used.
+     *
+     * @return the linger scheduler to use
+     */
+    public ScheduledExecutorService getLingerScheduler() {
+        return lingerScheduler != null ? lingerScheduler : SharedTimer.get();
+    }
+
+    /**
+     * Gets the {@link Executor} that a {@link DataLoader} dispatches itself on once its {@link #lingerTime()} is up,
+     * so that the linger scheduler thread only ever times the loads.  If none was set then the
+     * {@link ForkJoinPool#commonPool()} is used.
+     *
+     * @return the linger dispatch executor to use
+     */
+    public Executor getLingerDispatchExecutor() {
+        return lingerDispatchExecutor != null ? lingerDispatchExecutor : ForkJoinPool.commonPool();
+    }
+
+    /**
+     * Gets the (optional) time after which a cached future is expired.  Once a completed future has been in the
+     * future cache for this long, the next load of its key is treated as a cache miss and loads the key again.
+     *
+     * @return an optional with the expire after write time, or empty if cached futures never expire
+     */
+    public Optional<Duration> expireAfterWrite() {
+        return Optional.ofNullable(expireAfterWrite);
+    }
+
+    /**
+     * Gets the (optional) time after which a cached value is refreshed.  Once a completed future has been in the
+     * future cache for this long, the next load of its key still gets the cached future but also queues a reload
+     * of the key, and the reloaded value replaces the cached one when it arrives.
+     *
+     * @return an optional with the refresh after write time, or empty if cached values are never refreshed
+     */
+    public Optional<Duration> refreshAfterWrite() {
+        return Optional.ofNullable(refreshAfterWrite);
+    }
+
+    /**
+     * Gets the (optional) registry of keys that are in flight, which data loaders share so that a key that one of
+     * them is already loading is not loaded again by another.
+     *
+     * @return an optional with the in flight registry, or empty if loads are not shared between data loaders
+     */
+    public Optional<InFlightRegistry> inFlightRegistry() {
+        return Optional.ofNullable(inFlightRegistry);
+    }
+
     /**
      * @return the statistics collector to use with these options
      */
@@ -258,10 +424,21 @@ public class DataLoaderOptions {
         private boolean batchingEnabled;
         private boolean cachingEnabled;
         private boolean cachingExceptionsEnabled;
+        private boolean batchKeyDeduplicationEnabled;
         private CacheKey<?> cacheKeyFunction;
         private CacheMap<?, ?> cacheMap;
         private ValueCache<?, ?> valueCache;
         private int maxBatchSize;
+        private BatchSizeController batchSizeController;
+        private int maxConcurrentBatches;
+        private int loaderQueueStripes;
+        private int autoDispatchBatchSize;
+        private Duration lingerTime;
+        private ScheduledExecutorService lingerScheduler;
+        private Executor lingerDispatchExecutor;
+        private Duration expireAfterWrite;
+        private Duration refreshAfterWrite;
+        private InFlightRegistry inFlightRegistry;
         private Supplier<StatisticsCollector> statisticsCollector;
         private BatchLoaderContextProvider environmentProvider;
         private ValueCacheOptions valueCacheOptions;
@@ -276,10 +453,21 @@ public class DataLoaderOptions {
             this.batchingEnabled = other.batchingEnabled;
             this.cachingEnabled = other.cachingEnabled;
             this.cachingExceptionsEnabled = other.cachingExceptionsEnabled;
+            this.batchKeyDeduplicationEnabled = other.batchKeyDeduplicationEnabled;
             this.cacheKeyFunction = other.cacheKeyFunction;
             this.cacheMap = other.cacheMap;
             this.valueCache = other.valueCache;
             this.maxBatchSize = other.maxBatchSize;
+            this.batchSizeController = other.batchSizeController;
+            this.maxConcurrentBatches = other.maxConcurrentBatches;
+            this.loaderQueueStripes = other.loaderQueueStripes;
+            this.autoDispatchBatchSize = other.autoDispatchBatchSize;
+            this.lingerTime = other.lingerTime;
+            this.lingerScheduler = other.lingerScheduler;
+            this.lingerDispatchExecutor = other.lingerDispatchExecutor;
+            this.expireAfterWrite = other.expireAfterWrite;
+            this.refreshAfterWrite = other.refreshAfterWrite;
+            this.inFlightRegistry = other.inFlightRegistry;
             this.statisticsCollector = other.statisticsCollector;
             this.environmentProvider = other.environmentProvider;
             this.valueCacheOptions = other.valueCacheOptions;
@@ -320,6 +508,19 @@ public class DataLoaderOptions {
             return this;
         }
 
+        /**
+         * Sets the option that determines whether repeated keys in a dispatched batch are collapsed into one.
+         * <p>
+         * This is most useful when caching is disabled, since then every load of a key is queued.
+         *
+         * @param batchKeyDeduplicationEnabled {@code true} to only present distinct keys to the batch loader, {@code false} otherwise
+         * @return this builder for fluent coding
+         */
+        public Builder setBatchKeyDeduplicationEnabled(boolean batchKeyDeduplicationEnabled) {
+            this.batchKeyDeduplicationEnabled = batchKeyDeduplicationEnabled;
+            return this;
+        }
+
         /**
          * Sets the function to use for creating the cache key, if caching is enabled.
          *
@@ -365,6 +566,166 @@ public class DataLoaderOptions {
             return this;
         }
 
+        /**
+         * Sets the {@link BatchSizeController} that decides how many keys are presented to the {@link BatchLoader}
+         * function in one call.
+         * <p>
+         * When set, the controller's current batch size is used each time the {@link DataLoader} is dispatched, and the
+         * controller is told the size and latency of each batch loader call so that it can adapt.  A max batch size set
+         * with {@link #setMaxBatchSize(int)} stays a hard limit that the controller's batch size is capped at.  See {@link org.dataloader.batching.AimdBatchSizeController}.
+         *
+         * @param batchSizeController the batch size controller, or null to use the fixed max batch size
+         * @return this builder for fluent coding
+         */
+        public Builder setBatchSizeController(BatchSizeController batchSizeController) {
+            this.batchSizeController = batchSizeController;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of batches that will be in flight with the {@link BatchLoader} function at any one
+         * time, when a dispatch has more keys than {@link #setMaxBatchSize(int)} and is split into multiple batches.
+         * <p>
+         * By default, all of those batches are called at once.  With a limit set, the next batch is only called as
+         * an earlier one completes.
+         *
+         * @param maxConcurrentBatches the maximum number of concurrent batches, or -1 for no limit
+         * @return this builder for fluent coding
+         */
+        public Builder setMaxConcurrentBatches(int maxConcurrentBatches) {
+            this.maxConcurrentBatches = maxConcurrentBatches;
+            return this;
+        }
+
+        /**
+         * Sets the number of striped sub-queues that loads are appended to while they wait to be dispatched.
+         * <p>
+         * By default, every {@link DataLoader#load(Object)} call is added to a single queue, which can become
+         * contended when many threads load into the one data loader at the same time.  With more than one
+         * stripe, each thread appends to its own sub-queue and {@link DataLoader#dispatch()} drains them all,
+         * still presenting the keys to the batch loader in the order they were loaded, as told by {@link System#nanoTime()}.
+         * <p>
+         * The value is rounded up to the next power of two.
+         *
+         * @param loaderQueueStripes the number of loader queue stripes
+         * @return this builder for fluent coding
+         */
+        public Builder setLoaderQueueStripes(int loaderQueueStripes) {
+            this.loaderQueueStripes = loaderQueueStripes;
+            return this;
+        }
+
+        /**
+         * Sets the number of queued loads that will cause the {@link DataLoader} to dispatch itself.
+         * <p>
+         * By default, loads only leave the queue when {@link DataLoader#dispatch()} is called.  With an auto dispatch
+         * batch size set, the {@link DataLoader#load(Object)} call that fills the queue to that size will dispatch
+         * it straight away, so the batch loader can start work while more keys are still being loaded.  This is
+         * typically set to the same value as {@link #setMaxBatchSize(int)}.
+         * <p>
+         * You still need to call {@link DataLoader#dispatch()} to send any remaining keys to the batch loader.
+         *
+         * @param autoDispatchBatchSize the auto dispatch batch size, or -1 to turn it off
+         * @return this builder for fluent coding
+         */
+        public Builder setAutoDispatchBatchSize(int autoDispatchBatchSize) {
+            this.autoDispatchBatchSize = autoDispatchBatchSize;
+            return this;
+        }
+
+        /**
+         * Sets the linger time, which is the longest that a load will wait in the queue before the {@link DataLoader}
+         * dispatches itself.
+         * <p>
+         * The first {@link DataLoader#load(Object)} into an empty queue starts a timer, and the queue is dispatched
+         * when that timer goes off or when the {@link #setAutoDispatchBatchSize(int)} is reached, whichever comes first.
+         * The loads in the meantime are batched together as normal.
+         *
+         * @param lingerTime the linger time or null to turn it off
+         * @return this builder for fluent coding
+         */
+        public Builder setLingerTime(Duration lingerTime) {
+            this.lingerTime = lingerTime;
+            return this;
+        }
+
+        /**
+         * Sets the {@link ScheduledExecutorService} used to time the linger time.  By default, a single daemon thread
+         * timer that is shared by all data loaders is used, so you only need this if you want to control that thread.
+         * <p>
+         * The linger tasks are quick, as they hand the {@link DataLoader#dispatch()} off to the
+         * {@link #setLingerDispatchExecutor(Executor)}.
+         *
+         * @param lingerScheduler the linger scheduler to use
+         * @return this builder for fluent coding
+         */
+        public Builder setLingerScheduler(ScheduledExecutorService lingerScheduler) {
+            this.lingerScheduler = lingerScheduler;
+            return this;
+        }
+
+        /**
+         * Sets the {@link Executor} that a data loader dispatches itself on once its linger time is up, which is where
+         * the start of your batch loader function runs.  By default, the {@link ForkJoinPool#commonPool()} is used.
+         *
+         * @param lingerDispatchExecutor the linger dispatch executor to use
+         * @return this builder for fluent coding
+         */
+        public Builder setLingerDispatchExecutor(Executor lingerDispatchExecutor) {
+            this.lingerDispatchExecutor = lingerDispatchExecutor;
+            return this;
+        }
+
+        /**
+         * Sets the time after which a completed future in the future cache is expired, so that the next load of its
+         * key goes to the batch loader again.  Futures that are still in flight never expire.
+         * <p>
+         * The age of an entry is measured with the clock of the {@link DataLoader}, from when the data loader put the
+         * future into the cache.  Entries that are put into the cache by other means, such as
+         * {@link DataLoader#prime(Object, Object)}, never expire.
+         *
+         * @param expireAfterWrite the expire after write time or null to turn it off
+         * @return this builder for fluent coding
+         */
+        public Builder setExpireAfterWrite(Duration expireAfterWrite) {
+            this.expireAfterWrite = expireAfterWrite;
+            return this;
+        }
+
+        /**
+         * Sets the time after which a completed value in the future cache is refreshed.  The first load of a key
+         * whose entry is older than this is still given the cached future, and one reload of the key is queued to go
+         * out with the next {@link DataLoader#dispatch()}.  Every load of the key is served the cached value until the
+         * reloaded value arrives and replaces it.  If the reload fails the cached value is kept and a later load will
+         * try again.
+         * <p>
+         * This is normally set shorter than {@link #setExpireAfterWrite(Duration)}, so that a key that is loaded
+         * regularly is refreshed in the background and never has to wait for its value to be loaded again.
+         *
+         * @param refreshAfterWrite the refresh after write time or null to turn it off
+         * @return this builder for fluent coding
+         */
+        public Builder setRefreshAfterWrite(Duration refreshAfterWrite) {
+            this.refreshAfterWrite = refreshAfterWrite;
+            return this;
+        }
+
+        /**
+         * Sets the registry of keys that are in flight, which many data loaders, say one per request, can share.  When
+         * a data loader dispatches a batch, any key that another data loader sharing the registry is already loading is
+         * left out of the batch, and the load of that key completes with the value from the other data loader's batch.
+         * <p>
+         * Keys are matched by their cache key, so the data loaders that share a registry should all load the same
+         * kind of values.
+         *
+         * @param inFlightRegistry the in flight registry or null to not share loads between data loaders
+         * @return this builder for fluent coding
+         */
+        public Builder setInFlightRegistry(InFlightRegistry inFlightRegistry) {
+            this.inFlightRegistry = inFlightRegistry;
+            return this;
+        }
+
         /**
          * Sets the statistics collector supplier that will be used with these data loader options.  Since it uses
          * the supplier pattern, you can create a new statistics collector on each call, or you can reuse
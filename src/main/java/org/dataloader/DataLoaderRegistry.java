@@ -2,6 +2,7 @@ package org.dataloader;
 
 import org.dataloader.annotations.PublicApi;
 import org.dataloader.impl.Assertions;
+import org.dataloader.impl.CompletableFutureKit;
 import org.dataloader.instrumentation.ChainedDataLoaderInstrumentation;
 import org.dataloader.instrumentation.DataLoaderInstrumentation;
 import org.dataloader.instrumentation.DataLoaderInstrumentationHelper;
@@ -9,15 +10,22 @@ import org.dataloader.stats.Statistics;
 import org.jspecify.annotations.NullMarked;
 import org.jspecify.annotations.Nullable;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Function;
 
 import static org.dataloader.impl.Assertions.assertState;
@@ -39,12 +47,22 @@ import static org.dataloader.impl.Assertions.assertState;
  * then a {@link ChainedDataLoaderInstrumentation} is created with the registry {@link DataLoaderInstrumentation} in it first and then any other
  * {@link DataLoaderInstrumentation}s added after that.  If the registry {@link DataLoaderInstrumentation} instance and {@link DataLoader} {@link DataLoaderInstrumentation} instance
  * are the same object, then nothing is changed, since the same instrumentation code is being run.
+ * <p>
+ * Notes on dependencies : When the keys of one {@link DataLoader} come from the values of another, say
+ * {@code dataLoaderA.load(x).thenCompose(dataLoaderB::load)}, declare it with {@link #dependsOn(String, String)}.  Then
+ * {@link #dispatchAll()} dispatches the upstream data loader before the downstream one and, as soon as the upstream batch
+ * completes, dispatches the downstream data loader again to pick up the keys that batch produced.  This saves waiting
+ * for another dispatch to load them.  Keys that are only loaded after an asynchronous hop, say in a
+ * {@code thenComposeAsync}, may not be queued yet when the upstream batch completes.
  */
 @PublicApi
 @NullMarked
 public class DataLoaderRegistry {
     protected final Map<String, DataLoader<?, ?>> dataLoaders;
     protected final @Nullable DataLoaderInstrumentation instrumentation;
+    protected final Map<String, Set<String>> downstreamKeys = new ConcurrentHashMap<>();
+    private final LoadQueueListener loadQueueListener = this::loadQueued;
+    private volatile boolean listeningForQueuedLoads;
 
 
     public DataLoaderRegistry() {
@@ -53,6 +71,7 @@ public class DataLoaderRegistry {
 
     private DataLoaderRegistry(Builder builder) {
         this(builder.dataLoaders, builder.instrumentation);
+        builder.downstreamKeys.forEach((upstreamKey, keys) -> keys.forEach(key -> dependsOn(key, upstreamKey)));
     }
 
     protected DataLoaderRegistry(Map<String, DataLoader<?, ?>> dataLoaders, @Nullable DataLoaderInstrumentation instrumentation) {
@@ -107,6 +126,13 @@ public class DataLoaderRegistry {
         }
     }
 
+    private DataLoader<?, ?> listenTo(DataLoader<?, ?> dataLoader) {
+        if (listeningForQueuedLoads) {
+            dataLoader.setLoadQueueListener(loadQueueListener);
+        }
+        return dataLoader;
+    }
+
     private static DataLoader<?, ?> checkAndSetName(String key, DataLoader<?, ?> dataLoader) {
         if (dataLoader.getName() == null) {
             return dataLoader.transform(b -> b.name(key));
@@ -144,7 +170,7 @@ public class DataLoaderRegistry {
      */
     public DataLoaderRegistry register(DataLoader<?, ?> dataLoader) {
         String name = Assertions.nonNull(dataLoader.getName(), () -> "The DataLoader must have a non null name");
-        dataLoaders.put(name, nameAndInstrumentDL(name, instrumentation, dataLoader));
+        dataLoaders.put(name, listenTo(nameAndInstrumentDL(name, instrumentation, dataLoader)));
         return this;
     }
 
@@ -160,7 +186,7 @@ public class DataLoaderRegistry {
      * @return this registry
      */
     public DataLoaderRegistry register(String key, DataLoader<?, ?> dataLoader) {
-        dataLoaders.put(key, nameAndInstrumentDL(key, instrumentation, dataLoader));
+        dataLoaders.put(key, listenTo(nameAndInstrumentDL(key, instrumentation, dataLoader)));
         return this;
     }
 
@@ -176,7 +202,7 @@ public class DataLoaderRegistry {
      * @return the data loader instance that was registered
      */
     public <K, V> DataLoader<K, V> registerAndGet(String key, DataLoader<?, ?> dataLoader) {
-        dataLoaders.put(key, nameAndInstrumentDL(key, instrumentation, dataLoader));
+        dataLoaders.put(key, listenTo(nameAndInstrumentDL(key, instrumentation, dataLoader)));
         return Objects.requireNonNull(getDataLoader(key));
     }
 
@@ -202,7 +228,7 @@ public class DataLoaderRegistry {
                                                    final Function<String, DataLoader<?, ?>> mappingFunction) {
         return (DataLoader<K, V>) dataLoaders.computeIfAbsent(key, (k) -> {
             DataLoader<?, ?> dl = mappingFunction.apply(k);
-            return nameAndInstrumentDL(key, instrumentation, dl);
+            return listenTo(nameAndInstrumentDL(key, instrumentation, dl));
         });
     }
 
@@ -218,6 +244,8 @@ public class DataLoaderRegistry {
 
         this.dataLoaders.forEach(combined::register);
         registry.dataLoaders.forEach(combined::register);
+        this.downstreamKeys.forEach((upstreamKey, keys) -> keys.forEach(key -> combined.dependsOn(key, upstreamKey)));
+        registry.downstreamKeys.forEach((upstreamKey, keys) -> keys.forEach(key -> combined.dependsOn(key, upstreamKey)));
         return combined;
     }
 
@@ -242,7 +270,10 @@ public class DataLoaderRegistry {
      * @return this registry
      */
     public DataLoaderRegistry unregister(String key) {
-        dataLoaders.remove(key);
+        DataLoader<?, ?> dataLoader = dataLoaders.remove(key);
+        if (dataLoader != null && dataLoader.getLoadQueueListener() == loadQueueListener) {
+            dataLoader.setLoadQueueListener(null);
+        }
         return this;
     }
 
@@ -266,12 +297,95 @@ public class DataLoaderRegistry {
         return new HashSet<>(dataLoaders.keySet());
     }
 
+    /**
+     * This declares that the keys of the data loader registered under {@code key} come from the values of the data loader
+     * registered under {@code upstreamKey}, so that {@link #dispatchAll()} dispatches them in that order and dispatches the
+     * downstream data loader again when an upstream batch completes.  The data loaders do not have to be registered yet.
+     *
+     * @param key         the key of the downstream data loader
+     * @param upstreamKey the key of the data loader whose values the downstream keys come from
+     * @return this registry
+     */
+    public DataLoaderRegistry dependsOn(String key, String upstreamKey) {
+        synchronized (downstreamKeys) {
+            assertState(!isDownstream(upstreamKey, key),
+                    () -> String.format("Data loader '%s' can't depend on '%s' since that would make a cycle", key, upstreamKey));
+            downstreamKeys.computeIfAbsent(upstreamKey, k -> ConcurrentHashMap.newKeySet()).add(key);
+        }
+        return this;
+    }
+
+    /**
+     * @param upstreamKey the key of an upstream data loader
+     * @return the keys of the data loaders that have been declared to depend on it
+     */
+    public Set<String> getDownstreamKeys(String upstreamKey) {
+        Set<String> keys = downstreamKeys.get(upstreamKey);
+        return keys == null ? Collections.emptySet() : new HashSet<>(keys);
+    }
+
+    private boolean isDownstream(String key, String upstreamKey) {
+        Deque<String> toVisit = new ArrayDeque<>();
+        Set<String> visited = new HashSet<>();
+        toVisit.push(upstreamKey);
+        while (!toVisit.isEmpty()) {
+            String visiting = toVisit.pop();
+            if (visiting.equals(key)) {
+                return true;
+            }
+            if (visited.add(visiting)) {
+                toVisit.addAll(downstreamKeys.getOrDefault(visiting, Collections.emptySet()));
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the keys of the registered data loaders in levels, where a data loader comes in a later level than every
+     * registered data loader it depends on
+     */
+    public List<List<String>> getDispatchLevels() {
+        Map<String, Integer> upstreamCounts = new LinkedHashMap<>();
+        for (String key : dataLoaders.keySet()) {
+            upstreamCounts.putIfAbsent(key, 0);
+            for (String downstreamKey : getDownstreamKeys(key)) {
+                if (dataLoaders.containsKey(downstreamKey)) {
+                    upstreamCounts.merge(downstreamKey, 1, Integer::sum);
+                }
+            }
+        }
+        List<List<String>> levels = new ArrayList<>();
+        List<String> level = new ArrayList<>();
+        for (Map.Entry<String, Integer> upstreamCount : upstreamCounts.entrySet()) {
+            if (upstreamCount.getValue() == 0) {
+                level.add(upstreamCount.getKey());
+            }
+        }
+        while (!level.isEmpty()) {
+            levels.add(level);
+            List<String> nextLevel = new ArrayList<>();
+            for (String key : level) {
+                for (String downstreamKey : getDownstreamKeys(key)) {
+                    if (upstreamCounts.containsKey(downstreamKey) && upstreamCounts.merge(downstreamKey, -1, Integer::sum) == 0) {
+                        nextLevel.add(downstreamKey);
+                    }
+                }
+            }
+            level = nextLevel;
+        }
+        return levels;
+    }
+
     /**
      * This will be called {@link org.dataloader.DataLoader#dispatch()} on each of the registered
      * {@link org.dataloader.DataLoader}s
      */
     public void dispatchAll() {
-        getDataLoaders().forEach(DataLoader::dispatch);
+        if (downstreamKeys.isEmpty()) {
+            getDataLoaders().forEach(DataLoader::dispatch);
+        } else {
+            dispatchAllInLevels();
+        }
     }
 
     /**
@@ -281,6 +395,9 @@ public class DataLoaderRegistry {
      * @return total number of entries that were dispatched from registered {@link org.dataloader.DataLoader}s.
      */
     public int dispatchAllWithCount() {
+        if (!downstreamKeys.isEmpty()) {
+            return dispatchAllInLevels();
+        }
         int sum = 0;
         for (DataLoader<?, ?> dataLoader : getDataLoaders()) {
             sum += dataLoader.dispatchWithCounts().getKeysCount();
@@ -288,6 +405,196 @@ public class DataLoaderRegistry {
         return sum;
     }
 
+    /**
+     * Like {@link #dispatchAllWithCount()}, but the {@link org.dataloader.DataLoader#dispatch()} calls are fanned out over
+     * the {@link ForkJoinPool#commonPool()}, so that the work each data loader does to start its batch loader call runs in
+     * parallel rather than one data loader after another on the calling thread.
+     *
+     * @return a promise of the total number of keys dispatched
+     * @see #dispatchAllInParallel(Executor)
+     */
+    public CompletableFuture<Integer> dispatchAllInParallel() {
+        return dispatchAllInParallel(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Like {@link #dispatchAllWithCount()}, but the {@link org.dataloader.DataLoader#dispatch()} calls are fanned out over
+     * the executor, so that the work each data loader does to start its batch loader call runs in parallel rather than one
+     * data loader after another on the calling thread.
+     * <p>
+     * Declared dependencies are still respected: the data loaders of a level of {@link #getDispatchLevels()} are only
+     * dispatched once every data loader of the level before has been dispatched.
+     *
+     * @param executor the executor to dispatch the data loaders on
+     * @return a promise of the total number of keys dispatched, which completes once every data loader has been dispatched
+     */
+    public CompletableFuture<Integer> dispatchAllInParallel(Executor executor) {
+        Assertions.nonNull(executor);
+        CompletableFuture<Integer> dispatched = CompletableFuture.completedFuture(0);
+        for (List<String> level : getDispatchLevels()) {
+            dispatched = dispatched.thenCompose(dispatchedSoFar -> {
+                List<CompletableFuture<Integer>> keyCounts = new ArrayList<>(level.size());
+                for (String key : level) {
+                    keyCounts.add(CompletableFuture.supplyAsync(() -> dispatchAndFollow(key), executor));
+                }
+                return CompletableFutureKit.allOf(keyCounts).thenApply(levelKeyCounts -> {
+                    int sum = dispatchedSoFar;
+                    for (int keyCount : levelKeyCounts) {
+                        sum += keyCount;
+                    }
+                    return sum;
+                });
+            });
+        }
+        return dispatched;
+    }
+
+    /**
+     * This keeps dispatching the registered {@link org.dataloader.DataLoader}s until they are quiescent, which is when no
+     * data loader has keys queued and none of the batches it dispatched are still in flight.  Each time the batches in
+     * flight complete, the data loaders are dispatched again to load the keys that chained loads have queued since, say via
+     * {@code dataLoaderA.load(x).thenCompose(dataLoaderB::load)}.
+     * <p>
+     * The data loaders are dispatched in the order of {@link #getDispatchLevels()} and, in a
+     * {@link org.dataloader.registries.ScheduledDataLoaderRegistry}, without testing the dispatch predicates.
+     *
+     * @return a promise of the total number of keys dispatched, which completes once the data loaders are quiescent, or
+     * completes exceptionally if dispatching a data loader throws
+     */
+    public CompletableFuture<Integer> dispatchAllUntilQuiescent() {
+        CompletableFuture<Integer> quiescent = new CompletableFuture<>();
+        dispatchUntilQuiescent(0, quiescent);
+        return quiescent;
+    }
+
+    private void dispatchUntilQuiescent(int dispatchedSoFar, CompletableFuture<Integer> quiescent) {
+        try {
+            dispatchRoundsUntilQuiescent(dispatchedSoFar, quiescent);
+        } catch (Throwable throwable) {
+            // a later round runs in a completion callback, where a thrown exception would be lost along with the promise
+            quiescent.completeExceptionally(throwable);
+        }
+    }
+
+    private void dispatchRoundsUntilQuiescent(int dispatchedSoFar, CompletableFuture<Integer> quiescent) {
+        int dispatched = dispatchedSoFar;
+        while (true) {
+            List<CompletableFuture<?>> inFlight = new ArrayList<>();
+            for (List<String> level : getDispatchLevels()) {
+                for (String key : level) {
+                    DataLoader<?, ?> dataLoader = dataLoaders.get(key);
+                    if (dataLoader == null) {
+                        continue;
+                    }
+                    DispatchResult<?> dispatchResult = dataLoader.dispatchWithCounts();
+                    if (dispatchResult.getKeysCount() > 0) {
+                        dispatched += dispatchResult.getKeysCount();
+                        inFlight.add(dispatchResult.getPromisedResults());
+                    }
+                }
+            }
+            if (inFlight.isEmpty()) {
+                // nothing was queued, or what is queued can't be dispatched, so there is nothing left to wait for
+                quiescent.complete(dispatched);
+                return;
+            }
+            CompletableFuture<Void> batches = CompletableFuture.allOf(inFlight.toArray(new CompletableFuture<?>[0]));
+            if (!batches.isDone()) {
+                int total = dispatched;
+                // failed batches are the business of the loads, so they don't stop the next round
+                batches.whenComplete((result, throwable) -> dispatchUntilQuiescent(total, quiescent));
+                return;
+            }
+        }
+    }
+
+    private int dispatchAllInLevels() {
+        int sum = 0;
+        for (List<String> level : getDispatchLevels()) {
+            for (String key : level) {
+                sum += dispatchAndFollow(key);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Once this is called, {@link #loadQueued(DataLoader)} is called each time a load is queued in any of the data loaders
+     * registered with this registry.  The data loaders are told directly rather than via a {@link DataLoaderInstrumentation},
+     * so loading stays as cheap as it is without one.
+     */
+    protected void listenForQueuedLoads() {
+        listeningForQueuedLoads = true;
+        dataLoaders.values().forEach(dataLoader -> dataLoader.setLoadQueueListener(loadQueueListener));
+    }
+
+    /**
+     * Called on the loading thread each time a load is queued in one of the data loaders of this registry, once
+     * {@link #listenForQueuedLoads()} has been called.  This does nothing by default.
+     *
+     * @param dataLoader the data loader the load was queued in
+     */
+    protected void loadQueued(DataLoader<?, ?> dataLoader) {
+    }
+
+    /**
+     * Dispatches a data loader and, once the batch it dispatched completes, its downstream data loaders.  When the batch
+     * has already completed by the time the dispatch returns, the downstream data loaders are dispatched straight away
+     * and the keys they dispatched are counted too.
+     *
+     * @param key the key of the data loader
+     * @return the number of keys dispatched
+     */
+    protected int dispatchAndFollow(String key) {
+        DataLoader<?, ?> dataLoader = dataLoaders.get(key);
+        if (dataLoader == null) {
+            return 0;
+        }
+        DispatchResult<?> dispatchResult = dispatchWithCounts(key, dataLoader);
+        int keysCount = dispatchResult.getKeysCount();
+        Set<String> downstream = downstreamKeys.get(key);
+        if (downstream != null && keysCount > 0) {
+            CompletableFuture<?> promisedResults = dispatchResult.getPromisedResults();
+            if (promisedResults.isDone()) {
+                keysCount += followDownstream(downstream);
+            } else {
+                promisedResults.whenComplete((values, throwable) -> followDownstream(downstream));
+            }
+        }
+        return keysCount;
+    }
+
+    /**
+     * Dispatches one of the registered data loaders on behalf of the dispatches that follow declared dependencies, which
+     * a registry can override to decide whether the data loader is dispatched at all
+     *
+     * @param key        the key of the data loader
+     * @param dataLoader the data loader registered under that key
+     * @return the result of the dispatch
+     */
+    protected DispatchResult<?> dispatchWithCounts(String key, DataLoader<?, ?> dataLoader) {
+        return dataLoader.dispatchWithCounts();
+    }
+
+    /**
+     * @param registry a registry
+     * @return the declared dependencies of the registry, as the keys of the downstream data loaders by upstream key
+     */
+    protected static Map<String, Set<String>> downstreamKeysOf(DataLoaderRegistry registry) {
+        return registry.downstreamKeys;
+    }
+
+    private int followDownstream(Set<String> downstream) {
+        int keysCount = 0;
+        for (String downstreamKey : downstream) {
+            DataLoader<?, ?> downstreamLoader = dataLoaders.get(downstreamKey);
+            if (downstreamLoader != null && downstreamLoader.dispatchDepth() > 0) {
+                keysCount += dispatchAndFollow(downstreamKey);
+            }
+        }
+        return keysCount;
+    }
+
     /**
      * @return The sum of all batched key loads that need to be dispatched from all registered
      * {@link org.dataloader.DataLoader}s
@@ -322,6 +629,7 @@ public class DataLoaderRegistry {
     public static class Builder {
 
         private final Map<String, DataLoader<?, ?>> dataLoaders = new HashMap<>();
+        private final Map<String, Set<String>> downstreamKeys = new LinkedHashMap<>();
         private @Nullable DataLoaderInstrumentation instrumentation;
 
         /**
@@ -345,6 +653,21 @@ public class DataLoaderRegistry {
          */
         public Builder registerAll(DataLoaderRegistry otherRegistry) {
             dataLoaders.putAll(otherRegistry.dataLoaders);
+            otherRegistry.downstreamKeys.forEach((upstreamKey, keys) -> keys.forEach(key -> dependsOn(key, upstreamKey)));
+            return this;
+        }
+
+        /**
+         * This declares that the keys of the data loader registered under {@code key} come from the values of the data
+         * loader registered under {@code upstreamKey}
+         *
+         * @param key         the key of the downstream data loader
+         * @param upstreamKey the key of the data loader whose values the downstream keys come from
+         * @return this builder for a fluent pattern
+         * @see DataLoaderRegistry#dependsOn(String, String)
+         */
+        public Builder dependsOn(String key, String upstreamKey) {
+            downstreamKeys.computeIfAbsent(upstreamKey, k -> new LinkedHashSet<>()).add(key);
             return this;
         }
 
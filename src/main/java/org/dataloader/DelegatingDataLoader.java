@@ -67,6 +67,13 @@ public class DelegatingDataLoader<K, V> extends DataLoader<K, V> {
         return delegate;
     }
 
+    @Override
+    void setLoadQueueListener(@Nullable LoadQueueListener loadQueueListener) {
+        super.setLoadQueueListener(loadQueueListener);
+        // the loads are queued in the delegate, which tells the listener about this data loader rather than itself
+        delegate.setLoadQueueListener(loadQueueListener == null ? null : dataLoader -> loadQueueListener.loadQueued(this));
+    }
+
     @Override
     public CompletableFuture<V> load(K key) {
         return delegate.load(key);
@@ -77,6 +84,11 @@ public class DelegatingDataLoader<K, V> extends DataLoader<K, V> {
         return delegate.load(key, keyContext);
     }
 
+    @Override
+    public CompletableFuture<V> load(@NonNull K key, @Nullable Object keyContext, Duration timeout) {
+        return delegate.load(key, keyContext, timeout);
+    }
+
     @Override
     public CompletableFuture<List<V>> loadMany(List<K> keys) {
         return delegate.loadMany(keys);
@@ -0,0 +1,72 @@
+package org.dataloader;
+
+import org.dataloader.annotations.PublicApi;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A registry of the keys that {@link DataLoader}s are loading right now, which lets many data loaders, say one per
+ * request, share their batch loads.  It is set on each data loader with
+ * {@link DataLoaderOptions.Builder#setInFlightRegistry(InFlightRegistry)}.
+ * <p>
+ * When a data loader sharing the registry dispatches a batch, each key whose cache key is already in flight in another
+ * data loader's batch is left out of its own batch, and the load of that key completes with the value from the other
+ * batch instead.  A key is only in flight from the moment its batch loader is called until the values of that batch
+ * arrive, so this never holds on to values, it just saves loading the same key many times at once.
+ * <p>
+ * Keys are matched by their cache key alone, so a registry should only be shared between data loaders that load the
+ * same kind of values, typically by keeping one registry per batch loader function for the life of the process.
+ * <p>
+ * The {@link org.dataloader.stats.Statistics#getCoalescedCount()} of a data loader counts the keys it left out of its
+ * batches this way.
+ */
+@PublicApi
+@NullMarked
+public class InFlightRegistry {
+
+    private final ConcurrentHashMap<Object, CompletableFuture<?>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * @return a new in flight registry
+     */
+    public static InFlightRegistry newInFlightRegistry() {
+        return new InFlightRegistry();
+    }
+
+    /**
+     * @return the number of keys that are in flight right now
+     */
+    public int size() {
+        return inFlight.size();
+    }
+
+    /**
+     * Puts the future that will complete with the value of a key into the registry, unless another data loader already
+     * has the key in flight, in which case that data loader's future is returned instead.  The future is taken out of
+     * the registry again once it completes.
+     *
+     * @param cacheKey the cache key of the key
+     * @param flight   the future that will complete with the value of the key
+     * @param <V>      the type of the value
+     *
+     * @return the future of the data loader that already has the key in flight, or null if the given future is now in flight
+     */
+    @SuppressWarnings("unchecked")
+    <V> @Nullable CompletableFuture<V> putIfAbsent(Object cacheKey, CompletableFuture<V> flight) {
+        CompletableFuture<V> existing = (CompletableFuture<V>) inFlight.putIfAbsent(cacheKey, flight);
+        if (existing == null) {
+            flight.whenComplete((value, throwable) -> inFlight.remove(cacheKey, flight));
+        }
+        return existing;
+    }
+
+    @Override
+    public String toString() {
+        return "InFlightRegistry{" +
+                "inFlight=" + inFlight.size() +
+                '}';
+    }
+}
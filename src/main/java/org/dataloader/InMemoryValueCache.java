@@ -0,0 +1,292 @@
+package org.dataloader;
+
+import org.dataloader.annotations.PublicApi;
+import org.dataloader.impl.CompletableFutureKit;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.dataloader.impl.Assertions.assertState;
+import static org.dataloader.impl.Assertions.nonNull;
+
+/**
+ * A bounded, in-process {@link ValueCache} that is meant to be shared by many short-lived {@link DataLoader}s, say one per
+ * request.  Each data loader's {@link CacheMap} of futures is then the first level cache and this is the second level
+ * cache that outlives them.
+ * <p>
+ * Values are held in a {@link BoundedCacheMap}, so the cache is safe to use from many threads at once and evicts the
+ * values that are loaded least often once it is full.  Values can also be given a time to live with
+ * {@link Builder#expireAfterWrite(Duration)}.
+ * <p>
+ * Since nothing here is remote, every method does its work straight away and returns an already completed future, and
+ * so looking up a batch of keys via {@link #getCachedValues(List)} does not add an async hop to a batch load.
+ * <p>
+ * How well the two levels are doing shows up in the {@link org.dataloader.stats.Statistics} of each data loader as
+ * {@link org.dataloader.stats.Statistics#getCacheHitRatio()} and {@link org.dataloader.stats.Statistics#getValueCacheHitRatio()},
+ * while {@link #getHitRatio()} is the hit ratio of this cache across all the data loaders that share it.
+ *
+ * @param <K> the type of cache keys
+ * @param <V> the type of cache values
+ */
+@PublicApi
+@NullMarked
+public class InMemoryValueCache<K, V> implements ValueCache<K, V> {
+
+    private static final NoSuchElementException MISSING = new NoSuchElementException("The key is not in the value cache") {
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    };
+
+    private static final ValueCachingNotSupported EMPTY = new ValueCachingNotSupported();
+
+    private static class CachedValue<V> extends CompletableFuture<V> {
+        final long writtenAt;
+
+        CachedValue(@Nullable V value, long writtenAt) {
+            this.writtenAt = writtenAt;
+            complete(value);
+        }
+    }
+
+    private final BoundedCacheMap<K, V> values;
+    private final long expireAfterWriteMillis;
+    private final Clock clock;
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+
+    private InMemoryValueCache(Builder<K, V> builder) {
+        this.values = BoundedCacheMap.<K, V>newBoundedCacheMap().maximumSize(builder.maximumSize).build();
+        this.expireAfterWriteMillis = builder.expireAfterWrite == null ? -1 : builder.expireAfterWrite.toMillis();
+        this.clock = builder.clock;
+    }
+
+    /**
+     * @param <K> the type of cache keys
+     * @param <V> the type of cache values
+     *
+     * @return a builder of in-memory value caches
+     */
+    public static <K, V> Builder<K, V> newInMemoryValueCache() {
+        return new Builder<>();
+    }
+
+    @Override
+    public CompletableFuture<V> get(K key) {
+        CachedValue<V> cachedValue = lookup(key);
+        if (cachedValue == null) {
+            return CompletableFutureKit.failedFuture(MISSING);
+        }
+        return cachedValue;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<List<Try<V>>> getValues(List<K> keys) {
+        Object[] tries = new Object[keys.size()];
+        for (int i = 0; i < tries.length; i++) {
+            CachedValue<V> cachedValue = lookup(keys.get(i));
+            tries[i] = cachedValue == null ? Try.failed(MISSING) : Try.succeeded(cachedValue.join());
+        }
+        return CompletableFuture.completedFuture((List<Try<V>>) (List<?>) Arrays.asList(tries));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<CachedValues<V>> getCachedValues(List<K> keys) throws ValueCachingNotSupported {
+        if (values.size() == 0) {
+            missCount.add(keys.size());
+            // nothing to find, so let the data loader skip straight to the batch loader
+            throw EMPTY;
+        }
+        int size = keys.size();
+        Object[] found = new Object[size];
+        BitSet hits = new BitSet(size);
+        for (int i = 0; i < size; i++) {
+            CachedValue<V> cachedValue = lookup(keys.get(i));
+            if (cachedValue != null) {
+                found[i] = cachedValue.join();
+                hits.set(i);
+            }
+        }
+        return CompletableFuture.completedFuture(CachedValues.of((List<V>) Arrays.asList(found), hits));
+    }
+
+    @Override
+    public CompletableFuture<V> set(K key, V value) {
+        store(key, value, clock.millis());
+        return CompletableFuture.completedFuture(value);
+    }
+
+    /**
+     * Stores the values of a batch.  The batch loader may have failed individual keys by returning a {@link Throwable}
+     * or a failed {@link Try} for them, and those are not cached, while a successful {@link Try} is cached as its value.
+     *
+     * @param keys   the keys to store
+     * @param values the values to store
+     *
+     * @return a future containing the values as they were given
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<List<V>> setValues(List<K> keys, List<V> values) {
+        long now = clock.millis();
+        for (int i = 0; i < keys.size(); i++) {
+            Object value = values.get(i);
+            if (value instanceof Try) {
+                Try<V> tryValue = (Try<V>) value;
+                if (tryValue.isSuccess()) {
+                    store(keys.get(i), tryValue.get(), now);
+                }
+            } else if (!(value instanceof Throwable)) {
+                store(keys.get(i), (V) value, now);
+            }
+        }
+        return CompletableFuture.completedFuture(values);
+    }
+
+    @Override
+    public CompletableFuture<Void> delete(K key) {
+        values.delete(key);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> clear() {
+        values.clear();
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * @return the number of values in the cache, which may include values that have expired but not been looked up since
+     */
+    public int size() {
+        return values.size();
+    }
+
+    /**
+     * @return the number of keys that have been found in the cache
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * @return the number of keys that have not been found in the cache, including those that had expired
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * @return hits / (hits + misses) across all the data loaders that share this cache
+     */
+    public double getHitRatio() {
+        long hits = hitCount.sum();
+        long lookups = hits + missCount.sum();
+        return lookups == 0 ? 0 : ((double) hits) / ((double) lookups);
+    }
+
+    /**
+     * @return the number of values that have been evicted to keep the cache within its maximum size
+     */
+    public long getEvictionCount() {
+        return values.getEvictionCount();
+    }
+
+    private @Nullable CachedValue<V> lookup(K key) {
+        CachedValue<V> cachedValue = (CachedValue<V>) values.get(key);
+        if (cachedValue != null && expireAfterWriteMillis >= 0 && clock.millis() - cachedValue.writtenAt >= expireAfterWriteMillis) {
+            values.delete(key);
+            cachedValue = null;
+        }
+        if (cachedValue == null) {
+            missCount.increment();
+        } else {
+            hitCount.increment();
+        }
+        return cachedValue;
+    }
+
+    private void store(K key, @Nullable V value, long now) {
+        // a set replaces any value that is there already, and if another thread sets the same key at the same time then one of them wins
+        values.delete(key);
+        values.putIfAbsentAtomically(key, new CachedValue<>(value, now));
+    }
+
+    @Override
+    public String toString() {
+        return "InMemoryValueCache{" +
+                "size=" + values.size() +
+                ", hitCount=" + hitCount.sum() +
+                ", missCount=" + missCount.sum() +
+                ", evictionCount=" + values.getEvictionCount() +
+                '}';
+    }
+
+    /**
+     * A builder of {@link InMemoryValueCache}s.  The {@link #maximumSize(long)} must be set.
+     *
+     * @param <K> the type of cache keys
+     * @param <V> the type of cache values
+     */
+    public static class Builder<K, V> {
+        private long maximumSize = -1;
+        private @Nullable Duration expireAfterWrite;
+        private Clock clock = Clock.systemUTC();
+
+        Builder() {
+        }
+
+        /**
+         * Sets the maximum number of values the cache may hold
+         *
+         * @param maximumSize the maximum number of values
+         *
+         * @return this builder for fluent coding
+         */
+        public Builder<K, V> maximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        /**
+         * Sets how long after a value has been set it is treated as missing and loaded again
+         *
+         * @param expireAfterWrite the time to live of each value
+         *
+         * @return this builder for fluent coding
+         */
+        public Builder<K, V> expireAfterWrite(Duration expireAfterWrite) {
+            this.expireAfterWrite = nonNull(expireAfterWrite);
+            return this;
+        }
+
+        /**
+         * Sets the clock used to work out whether values have expired, which is mostly useful in tests
+         *
+         * @param clock the clock to use
+         *
+         * @return this builder for fluent coding
+         */
+        public Builder<K, V> clock(Clock clock) {
+            this.clock = nonNull(clock);
+            return this;
+        }
+
+        public InMemoryValueCache<K, V> build() {
+            assertState(maximumSize > 0, () -> "The maximumSize MUST be greater than zero");
+            assertState(expireAfterWrite == null || !expireAfterWrite.isNegative(), () -> "The expireAfterWrite MUST not be negative");
+            return new InMemoryValueCache<>(this);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package org.dataloader;
+
+import org.jspecify.annotations.NullMarked;
+
+/**
+ * Told each time a load is queued in a {@link DataLoader}, which lets a {@link DataLoaderRegistry} dispatch as soon as
+ * it should without instrumenting the load path
+ */
+@NullMarked
+interface LoadQueueListener {
+
+    /**
+     * Called once the load has been queued, on the thread that called load
+     *
+     * @param dataLoader the data loader the load was queued in
+     */
+    void loadQueued(DataLoader<?, ?> dataLoader);
+}
@@ -0,0 +1,391 @@
+package org.dataloader;
+
+import org.dataloader.annotations.Internal;
+import org.jspecify.annotations.Nullable;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * The queue of loads that are waiting to be dispatched on behalf of a {@link DataLoaderHelper}.
+ * <p>
+ * Loads are written into chunks of parallel key, future and call context arrays.  A load claims its slot in the
+ * current chunk with a single atomic increment and when a chunk is full a new, larger one is linked in.  With a
+ * single stripe (the default) every load claims from the one chunk chain.  With more than one stripe, each thread
+ * appends to its own cache line padded stripe and the {@link System#nanoTime()} of the load is recorded next to it,
+ * so that {@link #drain()} can merge the stripes back into the order in which the keys were loaded without the
+ * threads ever writing to shared state.  Loads of different threads that read the same clock value keep the order of
+ * their stripes.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ */
+@Internal
+class LoaderQueue<K, V> {
+
+    static final int INITIAL_SEGMENT_CAPACITY = 8;
+    static final int MAX_SEGMENT_CAPACITY = 1024;
+
+    // once a segment has been taken by a drain its claim count is pushed past any capacity so no more loads land in it
+    private static final int CLOSED = Integer.MAX_VALUE / 2;
+
+    /**
+     * A fixed size chunk of queued loads.  The future is written last and with release semantics, so a non-null
+     * future means the key and call context of that slot are visible too.
+     */
+    private static class Segment {
+        final Object[] keys;
+        final Object[] futures;
+        final Object[] callContexts;
+        final long @Nullable [] loadedAt;
+        final @Nullable Segment prev;
+        final int base;
+        volatile int claimed;
+
+        Segment(@Nullable Segment prev, int capacity, boolean timed) {
+            this.keys = new Object[capacity];
+            this.futures = new Object[capacity];
+            this.callContexts = new Object[capacity];
+            this.loadedAt = timed ? new long[capacity] : null;
+            this.prev = prev;
+            this.base = prev == null ? 0 : prev.base + prev.capacity();
+        }
+
+        int capacity() {
+            return keys.length;
+        }
+
+        int nextCapacity() {
+            return Math.min(capacity() * 2, MAX_SEGMENT_CAPACITY);
+        }
+
+        void write(int index, Object key, Object future, Object callContext, long loadTime) {
+            keys[index] = key;
+            callContexts[index] = callContext;
+            if (loadedAt != null) {
+                loadedAt[index] = loadTime;
+            }
+            FUTURES.setRelease(futures, index, future);
+        }
+
+        void awaitWritten(int count) {
+            for (int i = 0; i < count; i++) {
+                // a load may have claimed its slot but not yet finished writing it
+                while (FUTURES.getAcquire(futures, i) == null) {
+                    Thread.onSpinWait();
+                }
+            }
+        }
+    }
+
+    /**
+     * The keys, futures and call contexts of a drained queue, in load order
+     *
+     * @param <K> the type of keys
+     * @param <V> the type of values
+     */
+    static class DrainedQueue<K, V> {
+        final List<K> keys;
+        final List<CompletableFuture<V>> queuedFutures;
+        final List<Object> callContexts;
+
+        DrainedQueue(List<K> keys, List<CompletableFuture<V>> queuedFutures, List<Object> callContexts) {
+            this.keys = keys;
+            this.queuedFutures = queuedFutures;
+            this.callContexts = callContexts;
+        }
+    }
+
+    /**
+     * A read only list view over one of the parallel arrays of a chain of drained segments
+     */
+    private static class SegmentListView<E> extends AbstractList<E> implements RandomAccess {
+        private final Object[][] arrays;
+        private final int[] bases;
+        private final int size;
+
+        SegmentListView(Object[][] arrays, int[] bases, int size) {
+            this.arrays = arrays;
+            this.bases = bases;
+            this.size = size;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            int segment = Arrays.binarySearch(bases, index);
+            if (segment < 0) {
+                segment = -segment - 2;
+            }
+            return (E) arrays[segment][index - bases[segment]];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * A read only list view over the first slots of one array, for a drain that took a single segment
+     */
+    private static class ArrayPrefixView<E> extends AbstractList<E> implements RandomAccess {
+        private final Object[] array;
+        private final int size;
+
+        ArrayPrefixView(Object[] array, int size) {
+            this.array = array;
+            this.size = size;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return (E) array[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    // the padding keeps the tail of one stripe off the cache line of its neighbours
+    @SuppressWarnings("unused")
+    private static class LhsPadding {
+        long p01, p02, p03, p04, p05, p06, p07;
+    }
+
+    private static class StripeTail extends LhsPadding {
+        volatile @Nullable Segment tail;
+    }
+
+    @SuppressWarnings("unused")
+    private static class Stripe extends StripeTail {
+        long p11, p12, p13, p14, p15, p16, p17;
+    }
+
+    private static final VarHandle FUTURES = MethodHandles.arrayElementVarHandle(Object[].class);
+    private static final AtomicIntegerFieldUpdater<Segment> CLAIMED =
+            AtomicIntegerFieldUpdater.newUpdater(Segment.class, "claimed");
+    private static final AtomicReferenceFieldUpdater<StripeTail, Segment> TAIL =
+            AtomicReferenceFieldUpdater.newUpdater(StripeTail.class, Segment.class, "tail");
+
+    private final Stripe[] stripes;
+    private final int stripeMask;
+
+    LoaderQueue(int stripeCount) {
+        int size = stripeCount <= 1 ? 1 : Integer.highestOneBit(stripeCount - 1) << 1;
+        this.stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            this.stripes[i] = new Stripe();
+        }
+        this.stripeMask = size - 1;
+    }
+
+    int stripeCount() {
+        return stripes.length;
+    }
+
+    void add(K key, CompletableFuture<V> future, Object callContext) {
+        boolean striped = stripeMask != 0;
+        Stripe stripe = stripes[striped ? stripeIndex() : 0];
+        // the clock is read per thread, unlike a shared counter that every load of every thread would contend on
+        long loadTime = striped ? System.nanoTime() : 0L;
+        while (true) {
+            Segment tail = stripe.tail;
+            if (tail != null) {
+                int index = CLAIMED.getAndIncrement(tail);
+                if (index < tail.capacity()) {
+                    tail.write(index, key, future, callContext, loadTime);
+                    return;
+                }
+            }
+            // the tail is full or has been drained, so we try to link in a new segment with our load already in it
+            Segment next = new Segment(tail, tail == null ? INITIAL_SEGMENT_CAPACITY : tail.nextCapacity(), striped);
+            next.claimed = 1;
+            next.write(0, key, future, callContext, loadTime);
+            if (TAIL.compareAndSet(stripe, tail, next)) {
+                return;
+            }
+        }
+    }
+
+    private int stripeIndex() {
+        // a thread always lands on the same stripe, so its own loads never need re-ordering amongst themselves
+        long id = Thread.currentThread().getId();
+        return (int) (id ^ (id >>> 32)) & stripeMask;
+    }
+
+    /**
+     * @return the number of loads currently waiting in the queue
+     */
+    int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            Segment tail = stripe.tail;
+            if (tail != null) {
+                size += tail.base + Math.min(tail.claimed, tail.capacity());
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Atomically takes all the loads that are currently queued, leaving an empty queue behind
+     *
+     * @return the drained loads in load order or null if the queue was empty
+     */
+    @Nullable DrainedQueue<K, V> drain() {
+        if (stripes.length == 1) {
+            // one or more threads may compete to dispatch and only one of them will take the queued loads
+            Segment tail = TAIL.getAndSet(stripes[0], null);
+            return tail == null ? null : viewOf(tail, close(tail));
+        }
+        Segment[] tails = new Segment[stripes.length];
+        int[] sizes = new int[stripes.length];
+        int queueSize = 0;
+        int nonEmpty = 0;
+        int lastIndex = -1;
+        for (int i = 0; i < stripes.length; i++) {
+            // one or more threads may compete to dispatch and only one of them will take each stripe
+            Segment tail = TAIL.getAndSet(stripes[i], null);
+            if (tail != null) {
+                tails[i] = tail;
+                sizes[i] = close(tail);
+                queueSize += sizes[i];
+                nonEmpty++;
+                lastIndex = i;
+            }
+        }
+        if (nonEmpty == 0) {
+            return null;
+        }
+        if (nonEmpty == 1) {
+            return viewOf(tails[lastIndex], sizes[lastIndex]);
+        }
+        return mergeByLoadTime(tails, sizes, queueSize);
+    }
+
+    /*
+     * Stops any more loads landing in a tail that has been taken and waits for the loads that already claimed a slot in
+     * its chain to finish writing them, returning how many loads the chain holds.
+     */
+    private static int close(Segment tail) {
+        int claimed = Math.min(CLAIMED.getAndSet(tail, CLOSED), tail.capacity());
+        for (Segment segment = tail; segment != null; segment = segment.prev) {
+            segment.awaitWritten(segment == tail ? claimed : segment.capacity());
+        }
+        return tail.base + claimed;
+    }
+
+    private DrainedQueue<K, V> viewOf(Segment tail, int size) {
+        if (tail.prev == null) {
+            // a small batch fits in the first segment, so its lists index straight into the arrays
+            return new DrainedQueue<>(new ArrayPrefixView<>(tail.keys, size),
+                    new ArrayPrefixView<>(tail.futures, size),
+                    new ArrayPrefixView<>(tail.callContexts, size));
+        }
+        int segmentCount = 0;
+        for (Segment segment = tail; segment != null; segment = segment.prev) {
+            segmentCount++;
+        }
+        Object[][] keys = new Object[segmentCount][];
+        Object[][] futures = new Object[segmentCount][];
+        Object[][] callContexts = new Object[segmentCount][];
+        int[] bases = new int[segmentCount];
+        int index = segmentCount - 1;
+        for (Segment segment = tail; segment != null; segment = segment.prev) {
+            keys[index] = segment.keys;
+            futures[index] = segment.futures;
+            callContexts[index] = segment.callContexts;
+            bases[index] = segment.base;
+            index--;
+        }
+        return new DrainedQueue<>(new SegmentListView<>(keys, bases, size),
+                new SegmentListView<>(futures, bases, size),
+                new SegmentListView<>(callContexts, bases, size));
+    }
+
+    @SuppressWarnings("unchecked")
+    private DrainedQueue<K, V> mergeByLoadTime(Segment[] tails, int[] sizes, int queueSize) {
+        Object[] keysArray = new Object[queueSize];
+        Object[] queuedFuturesArray = new Object[queueSize];
+        Object[] callContextsArray = new Object[queueSize];
+        long[] loadTimes = new long[queueSize];
+        int offset = 0;
+        for (int i = 0; i < tails.length; i++) {
+            for (Segment segment = tails[i]; segment != null; segment = segment.prev) {
+                int count = Math.min(sizes[i] - segment.base, segment.capacity());
+                int at = offset + segment.base;
+                System.arraycopy(segment.keys, 0, keysArray, at, count);
+                System.arraycopy(segment.futures, 0, queuedFuturesArray, at, count);
+                System.arraycopy(segment.callContexts, 0, callContextsArray, at, count);
+                // striped segments always carry load times
+                System.arraycopy(segment.loadedAt, 0, loadTimes, at, count);
+            }
+            offset += sizes[i];
+        }
+        int[] order = loadOrder(loadTimes);
+        Object[] keys = new Object[queueSize];
+        Object[] queuedFutures = new Object[queueSize];
+        Object[] callContexts = new Object[queueSize];
+        for (int i = 0; i < queueSize; i++) {
+            keys[i] = keysArray[order[i]];
+            queuedFutures[i] = queuedFuturesArray[order[i]];
+            callContexts[i] = callContextsArray[order[i]];
+        }
+        return new DrainedQueue<>((List<K>) Arrays.asList(keys),
+                (List<CompletableFuture<V>>) (List<?>) Arrays.asList(queuedFutures),
+                Arrays.asList(callContexts));
+    }
+
+    /*
+     * Sorts the positions of the drained loads by their load times, keeping stripe and slot order for equal times.
+     * The times and positions are packed into primitive longs so that no boxing is needed, which is always possible
+     * unless the loads in the one drain span more than 2^31 nanoseconds, a little over two seconds.
+     */
+    private static int[] loadOrder(long[] loadTimes) {
+        int size = loadTimes.length;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (long loadTime : loadTimes) {
+            min = Math.min(min, loadTime);
+            max = Math.max(max, loadTime);
+        }
+        int[] order = new int[size];
+        if (max - min < Integer.MAX_VALUE) {
+            long[] packed = new long[size];
+            for (int i = 0; i < size; i++) {
+                packed[i] = ((loadTimes[i] - min) << 32) | i;
+            }
+            Arrays.sort(packed);
+            for (int i = 0; i < size; i++) {
+                order[i] = (int) packed[i];
+            }
+        } else {
+            Integer[] boxed = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                boxed[i] = i;
+            }
+            Arrays.sort(boxed, (a, b) -> Long.compare(loadTimes[a], loadTimes[b]));
+            for (int i = 0; i < size; i++) {
+                order[i] = boxed[i];
+            }
+        }
+        return order;
+    }
+}
@@ -0,0 +1,36 @@
+package org.dataloader;
+
+import org.dataloader.annotations.PublicSpi;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * A batch loader function for {@link LongDataLoader}s that is given its keys as a primitive {@code long[]} rather
+ * than as a list of boxed {@link Long}s.  Integer identifiers can be loaded with it too, since every {@code int}
+ * fits in a {@code long}.
+ * <p>
+ * See {@link org.dataloader.BatchLoader} for more details on the design invariants that you must implement in order to
+ * use this interface.  In particular the list of values MUST be the same size as the array of keys and in the same order.
+ *
+ * @param <V> type parameter indicating the type of values returned
+ */
+@FunctionalInterface
+@PublicSpi
+@NullMarked
+public interface LongBatchLoader<V extends @Nullable Object> {
+
+    /**
+     * Called to batch load the provided keys and return a promise to a list of values.
+     * <p>
+     * The key array MUST NOT be modified, since the data loader matches the returned values back up to it.
+     *
+     * @param keys        the keys to load
+     * @param environment an environment object that can help with the call
+     *
+     * @return a promise of the values for those keys
+     */
+    CompletionStage<List<V>> load(long[] keys, BatchLoaderEnvironment environment);
+}
@@ -0,0 +1,525 @@
+package org.dataloader;
+
+import org.dataloader.annotations.PublicApi;
+import org.dataloader.annotations.VisibleForTesting;
+import org.dataloader.impl.CompletableFutureKit;
+import org.dataloader.impl.LongFutureCache;
+import org.dataloader.instrumentation.DataLoaderInstrumentation;
+import org.dataloader.instrumentation.DataLoaderInstrumentationContext;
+import org.dataloader.instrumentation.DataLoaderInstrumentationHelper;
+import org.dataloader.scheduler.BatchLoaderScheduler;
+import org.dataloader.stats.NoOpStatisticsCollector;
+import org.dataloader.stats.StatisticsCollector;
+import org.dataloader.stats.context.IncrementBatchLoadCountByStatisticsContext;
+import org.dataloader.stats.context.IncrementBatchLoadExceptionCountStatisticsContext;
+import org.dataloader.stats.context.IncrementCacheHitCountStatisticsContext;
+import org.dataloader.stats.context.IncrementLoadCountStatisticsContext;
+import org.dataloader.stats.context.IncrementLoadErrorCountStatisticsContext;
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.RandomAccess;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+import static java.util.Collections.emptyList;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.dataloader.impl.Assertions.assertState;
+import static org.dataloader.impl.Assertions.nonNull;
+import static org.dataloader.instrumentation.DataLoaderInstrumentationHelper.NOOP_INSTRUMENTATION;
+import static org.dataloader.instrumentation.DataLoaderInstrumentationHelper.ctxOrNoopCtx;
+import static org.dataloader.instrumentation.DataLoaderInstrumentationHelper.noOpCtx;
+
+/**
+ * A {@link DataLoader} that is specialised for primitive {@code long} keys, such as database identifiers.
+ * <p>
+ * The {@link #load(long)} path never boxes its key.  Loads are queued in a {@code long[]}, futures are cached in a
+ * primitive open addressing table rather than a {@link java.util.concurrent.ConcurrentHashMap} of {@link Long}s and
+ * the {@link LongBatchLoader} is handed the keys of a batch as a {@code long[]}.  Keys are only boxed when
+ * statistics or instrumentation are enabled and need to be told about them, or when the boxed {@link DataLoader}
+ * methods are called.
+ * <p>
+ * Because it is a {@link DataLoader}, a long data loader can be registered in a {@link DataLoaderRegistry} and it
+ * reports to the {@link org.dataloader.stats.StatisticsCollector} and
+ * {@link org.dataloader.instrumentation.DataLoaderInstrumentation} of its {@link DataLoaderOptions} just as any other
+ * data loader does.  Batching, caching, caching of exceptions, the max batch size, the batch loader context provider
+ * and the batch loader scheduler options are honoured.  A load can be given a timeout, which fails that caller's
+ * future when it runs out, but the load stays in its batch and no deadline is put on the
+ * {@link BatchLoaderEnvironment}.
+ * <p>
+ * The other options only make sense for arbitrary keys or for the general purpose loader queue, and building a
+ * long data loader with any of them set fails with a {@link org.dataloader.impl.DataLoaderAssertionException}.
+ * Those are the cache map, cache key function, value cache, batch key de-duplication, batch size controller, max
+ * concurrent batches, loader queue stripes, auto dispatch batch size, linger time, expire and refresh after write
+ * and in flight registry options.
+ *
+ * @param <V> type parameter indicating the type of the data that is returned
+ */
+@PublicApi
+@NullMarked
+public class LongDataLoader<V extends @Nullable Object> extends DataLoader<Long, V> {
+
+    private static final DispatchResult<?> EMPTY_DISPATCH_RESULT = new DispatchResult<>(completedFuture(emptyList()), 0);
+
+    private final LongBatchLoader<V> batchLoadFunction;
+    private final DataLoaderOptions loaderOptions;
+    private final LongFutureCache<V> futureCache;
+    private final LongLoaderQueue<V> loaderQueue;
+    private final StatisticsCollector stats;
+    private final boolean statsEnabled;
+    private final boolean instrumentationEnabled;
+    private final Clock clock;
+    private final AtomicReference<Instant> lastDispatchTime;
+
+    LongDataLoader(@Nullable String name, LongBatchLoader<V> batchLoadFunction, @Nullable DataLoaderOptions options) {
+        this(name, batchLoadFunction, options, Clock.systemUTC());
+    }
+
+    @VisibleForTesting
+    LongDataLoader(@Nullable String name, LongBatchLoader<V> batchLoadFunction, @Nullable DataLoaderOptions options, Clock clock) {
+        this(name, batchLoadFunction, assertSupported(options), clock, new LongFutureCache<>());
+    }
+
+    private LongDataLoader(@Nullable String name, LongBatchLoader<V> batchLoadFunction, @Nullable DataLoaderOptions options, Clock clock, LongFutureCache<V> futureCache) {
+        super(name, batchLoadFunction, options, futureCache);
+        this.batchLoadFunction = batchLoadFunction;
+        this.loaderOptions = getOptions();
+        this.futureCache = futureCache;
+        this.loaderQueue = new LongLoaderQueue<>();
+        // the same collector that getStatistics() reads
+        this.stats = getStatisticsCollector();
+        this.statsEnabled = stats.getClass() != NoOpStatisticsCollector.class;
+        this.instrumentationEnabled = loaderOptions.getInstrumentation() != NOOP_INSTRUMENTATION;
+        this.clock = clock;
+        this.lastDispatchTime = new AtomicReference<>(clock.instant());
+    }
+
+    private static @Nullable DataLoaderOptions assertSupported(@Nullable DataLoaderOptions options) {
+        if (options != null) {
+            assertState(!options.cacheMap().isPresent(), () -> "A LongDataLoader caches its futures by itself and cannot use a cache map");
+            assertState(!options.cacheKeyFunction().isPresent(), () -> "A LongDataLoader caches by the long key and cannot use a cache key function");
+            assertState(!options.valueCache().isPresent(), () -> "A LongDataLoader does not support a value cache");
+            assertState(!options.batchKeyDeduplicationEnabled(), () -> "A LongDataLoader does not support batch key de-duplication");
+            assertState(!options.batchSizeController().isPresent(), () -> "A LongDataLoader does not support a batch size controller");
+            assertState(options.maxConcurrentBatches() <= 0, () -> "A LongDataLoader does not support max concurrent batches");
+            assertState(options.loaderQueueStripes() <= 1, () -> "A LongDataLoader does not support loader queue stripes");
+            assertState(options.autoDispatchBatchSize() <= 0, () -> "A LongDataLoader does not support an auto dispatch batch size");
+            assertState(!options.lingerTime().isPresent(), () -> "A LongDataLoader does not support a linger time");
+            assertState(!options.expireAfterWrite().isPresent() && !options.refreshAfterWrite().isPresent(),
+                    () -> "A LongDataLoader does not support expire or refresh after write");
+            assertState(!options.inFlightRegistry().isPresent(), () -> "A LongDataLoader does not support an in flight registry");
+        }
+        return options;
+    }
+
+    @Override
+    public Instant getLastDispatchTime() {
+        return lastDispatchTime.get();
+    }
+
+    @Override
+    public Duration getTimeSinceDispatch() {
+        return Duration.between(lastDispatchTime.get(), clock.instant());
+    }
+
+    @Override
+    public Optional<CompletableFuture<V>> getIfPresent(Long key) {
+        if (loaderOptions.cachingEnabled()) {
+            CompletableFuture<V> cachedFuture = futureCache.get(nonNull(key).longValue());
+            if (cachedFuture != null) {
+                if (statsEnabled) {
+                    stats.incrementCacheHitCount(new IncrementCacheHitCountStatisticsContext<>(key));
+                }
+                return Optional.of(cachedFuture);
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<CompletableFuture<V>> getIfCompleted(Long key) {
+        return getIfPresent(key).filter(CompletableFuture::isDone);
+    }
+
+    /**
+     * Requests to load the data with the specified key asynchronously, and returns a future of the resulting value.
+     * <p>
+     * If batching is enabled (the default), you'll have to call {@link DataLoader#dispatch()} at a later stage to
+     * start batch execution. If you forget this call the future will never be completed (unless already completed,
+     * and returned from cache).
+     *
+     * @param key the key to load
+     *
+     * @return the future of the value
+     */
+    public CompletableFuture<V> load(long key) {
+        return load(key, null);
+    }
+
+    /**
+     * Requests to load the data with the specified key asynchronously, and returns a future of the resulting value.
+     * <p>
+     * If batching is enabled (the default), you'll have to call {@link DataLoader#dispatch()} at a later stage to
+     * start batch execution. If you forget this call the future will never be completed (unless already completed,
+     * and returned from cache).
+     *
+     * @param key        the key to load
+     * @param keyContext a context object that is specific to this key
+     *
+     * @return the future of the value
+     */
+    public CompletableFuture<V> load(long key, @Nullable Object keyContext) {
+        if (statsEnabled) {
+            stats.incrementLoadCount(new IncrementLoadCountStatisticsContext<>(key, keyContext));
+        }
+        DataLoaderInstrumentationContext<Object> ctx = instrumentationEnabled ? ctxOrNoopCtx(instrumentation().beginLoad(this, key, keyContext)) : noOpCtx();
+        boolean cachingEnabled = loaderOptions.cachingEnabled();
+        if (cachingEnabled) {
+            CompletableFuture<V> cachedFuture = futureCache.get(key);
+            if (cachedFuture != null) {
+                return cacheHit(ctx, key, keyContext, cachedFuture);
+            }
+        }
+        CompletableFuture<V> loadCallFuture = new CompletableFuture<>();
+        if (cachingEnabled) {
+            CompletableFuture<V> cachedFuture = futureCache.putIfAbsent(key, loadCallFuture);
+            if (cachedFuture != null) {
+                // another thread was faster and created a matching CF ... hence this is really a cache hit and we are done
+                return cacheHit(ctx, key, keyContext, cachedFuture);
+            }
+        }
+        if (loaderOptions.batchingEnabled()) {
+            loaderQueue.add(key, loadCallFuture, keyContext);
+            loadQueued();
+        } else {
+            // immediate execution of batch function
+            dispatchBatch(new long[]{key}, newFutures(loadCallFuture), keyContext == null ? null : new Object[]{keyContext});
+        }
+        ctx.onDispatched();
+        whenCompleted(loadCallFuture, ctx);
+        return loadCallFuture;
+    }
+
+    /**
+     * Requests to load the data with the specified keys asynchronously, and returns a composite future of the
+     * resulting values.
+     *
+     * @param keys the keys to load
+     *
+     * @return the composite future of the list of values
+     */
+    public CompletableFuture<List<V>> loadMany(long... keys) {
+        List<CompletableFuture<V>> futures = new ArrayList<>(keys.length);
+        for (long key : keys) {
+            futures.add(load(key, null));
+        }
+        return CompletableFutureKit.allOf(futures);
+    }
+
+    @Override
+    public CompletableFuture<V> load(Long key) {
+        return load(nonNull(key).longValue(), null);
+    }
+
+    @Override
+    public CompletableFuture<V> load(@NonNull Long key, @Nullable Object keyContext) {
+        return load(nonNull(key).longValue(), keyContext);
+    }
+
+    @Override
+    public CompletableFuture<V> load(@NonNull Long key, @Nullable Object keyContext, Duration timeout) {
+        nonNull(timeout);
+        CompletableFuture<V> future = load(nonNull(key).longValue(), keyContext);
+        if (future.isDone()) {
+            return future;
+        }
+        // the shared future is left alone, so the timeout only ever fails this caller's copy
+        return future.copy().orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public CompletableFuture<List<V>> loadMany(List<Long> keys, List<Object> keyContexts) {
+        nonNull(keys);
+        nonNull(keyContexts);
+
+        List<CompletableFuture<V>> collect = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            Object keyContext = i < keyContexts.size() ? keyContexts.get(i) : null;
+            collect.add(load(nonNull(keys.get(i)).longValue(), keyContext));
+        }
+        return CompletableFutureKit.allOf(collect);
+    }
+
+    @Override
+    public CompletableFuture<Map<Long, V>> loadMany(Map<Long, ?> keysAndContexts) {
+        nonNull(keysAndContexts);
+
+        Map<Long, CompletableFuture<V>> collect = new HashMap<>(keysAndContexts.size());
+        for (Map.Entry<Long, ?> entry : keysAndContexts.entrySet()) {
+            collect.put(entry.getKey(), load(nonNull(entry.getKey()).longValue(), entry.getValue()));
+        }
+        return CompletableFutureKit.allOf(collect);
+    }
+
+    @Override
+    public CompletableFuture<List<V>> dispatch() {
+        return dispatchWithCounts().getPromisedResults();
+    }
+
+    @Override
+    public DispatchResult<V> dispatchWithCounts() {
+        DataLoaderInstrumentationContext<DispatchResult<?>> instrCtx = instrumentationEnabled ? ctxOrNoopCtx(instrumentation().beginDispatch(this)) : noOpCtx();
+
+        // one or more threads may compete to dispatch and only one of them will take each queued load
+        LongLoaderQueue.DrainedQueue<V> drainedQueue = loaderQueue.drain();
+        lastDispatchTime.set(clock.instant());
+        if (drainedQueue == null) {
+            instrCtx.onDispatched();
+            return endDispatchCtx(instrCtx, emptyDispatchResult());
+        }
+        long[] keys = drainedQueue.keys;
+        int maxBatchSize = loaderOptions.maxBatchSize();
+        CompletableFuture<List<V>> futureList;
+        if (maxBatchSize > 0 && maxBatchSize < keys.length) {
+            futureList = dispatchSlices(drainedQueue, maxBatchSize);
+        } else {
+            futureList = dispatchBatch(keys, drainedQueue.queuedFutures, drainedQueue.callContexts);
+        }
+        instrCtx.onDispatched();
+        return endDispatchCtx(instrCtx, new DispatchResult<>(futureList, keys.length));
+    }
+
+    private CompletableFuture<List<V>> dispatchSlices(LongLoaderQueue.DrainedQueue<V> drainedQueue, int maxBatchSize) {
+        long[] keys = drainedQueue.keys;
+        Object[] callContexts = drainedQueue.callContexts;
+        List<CompletableFuture<List<V>>> slices = new ArrayList<>((keys.length + maxBatchSize - 1) / maxBatchSize);
+        for (int from = 0; from < keys.length; from += maxBatchSize) {
+            int to = Math.min(from + maxBatchSize, keys.length);
+            slices.add(dispatchBatch(Arrays.copyOfRange(keys, from, to),
+                    Arrays.copyOfRange(drainedQueue.queuedFutures, from, to),
+                    callContexts == null ? null : Arrays.copyOfRange(callContexts, from, to)));
+        }
+        return CompletableFutureKit.allOf(slices).thenApply(sliceValues -> {
+            List<V> values = new ArrayList<>(keys.length);
+            for (List<V> slice : sliceValues) {
+                values.addAll(slice);
+            }
+            return values;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private CompletableFuture<List<V>> dispatchBatch(long[] keys, CompletableFuture<V>[] queuedFutures, Object @Nullable [] callContexts) {
+        List<Long> keyList = new LongListView(keys);
+        List<Object> callContextList = callContexts == null ? emptyList() : Arrays.asList(callContexts);
+        if (statsEnabled) {
+            stats.incrementBatchLoadCountBy(keys.length, new IncrementBatchLoadCountByStatisticsContext<>(keyList, callContextList));
+        }
+        return invokeLoader(keys, keyList, callContextList)
+                .thenApply(values -> {
+                    assertState(keys.length == values.size(), () -> "The size of the promised values MUST be the same size as the key list");
+                    for (int idx = 0; idx < keys.length; idx++) {
+                        Object value = values.get(idx);
+                        CompletableFuture<V> future = queuedFutures[idx];
+                        if (value instanceof Throwable) {
+                            loadFailed(keys[idx], callContexts, idx, future, (Throwable) value);
+                        } else if (value instanceof Try) {
+                            // we allow the batch loader to return a Try so we can better represent a computation
+                            // that might have worked or not.
+                            Try<V> tryValue = (Try<V>) value;
+                            if (tryValue.isSuccess()) {
+                                future.complete(tryValue.get());
+                            } else {
+                                loadFailed(keys[idx], callContexts, idx, future, tryValue.getThrowable());
+                            }
+                        } else {
+                            future.complete((V) value);
+                        }
+                    }
+                    return values;
+                }).exceptionally(ex -> {
+                    if (statsEnabled) {
+                        stats.incrementBatchLoadExceptionCount(new IncrementBatchLoadExceptionCountStatisticsContext<>(keyList, callContextList));
+                    }
+                    Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                    for (int idx = 0; idx < keys.length; idx++) {
+                        queuedFutures[idx].completeExceptionally(cause);
+                        // clear any cached view of this key because they all failed
+                        futureCache.delete(keys[idx]);
+                    }
+                    return emptyList();
+                });
+    }
+
+    private void loadFailed(long key, Object @Nullable [] callContexts, int idx, CompletableFuture<V> future, Throwable failure) {
+        if (statsEnabled) {
+            stats.incrementLoadErrorCount(new IncrementLoadErrorCountStatisticsContext<>(key, callContexts == null ? null : callContexts[idx]));
+        }
+        future.completeExceptionally(failure);
+        // by default, we don't clear the cached view of this entry to avoid frequently loading the same error
+        if (!loaderOptions.cachingExceptionsEnabled()) {
+            futureCache.delete(key);
+        }
+    }
+
+    private CompletableFuture<List<V>> invokeLoader(long[] keys, List<Long> keyList, List<Object> callContextList) {
+        Object context = loaderOptions.getBatchLoaderContextProvider().getContext();
+        BatchLoaderEnvironment environment = BatchLoaderEnvironment.newBatchLoaderEnvironment()
+                .context(context).keyContexts(keyList, callContextList)
+                .build();
+
+        DataLoaderInstrumentationContext<List<?>> instrCtx = instrumentationEnabled ? ctxOrNoopCtx(instrumentation().beginBatchLoader(this, keyList, environment)) : noOpCtx();
+
+        CompletableFuture<List<V>> batchLoad;
+        try {
+            CompletionStage<List<V>> loadResult;
+            BatchLoaderScheduler batchLoaderScheduler = loaderOptions.getBatchLoaderScheduler();
+            if (batchLoaderScheduler != null) {
+                BatchLoaderScheduler.ScheduledBatchLoaderCall<V> loadCall = () -> batchLoadFunction.load(keys, environment);
+                loadResult = batchLoaderScheduler.scheduleBatchLoader(loadCall, keyList, environment);
+            } else {
+                loadResult = batchLoadFunction.load(keys, environment);
+            }
+            batchLoad = nonNull(loadResult, () -> "Your batch loader function MUST return a non null CompletionStage").toCompletableFuture();
+            instrCtx.onDispatched();
+        } catch (Exception e) {
+            instrCtx.onDispatched();
+            batchLoad = CompletableFutureKit.failedFuture(e);
+        }
+        whenCompleted(batchLoad, instrCtx);
+        return batchLoad;
+    }
+
+    private CompletableFuture<V> cacheHit(DataLoaderInstrumentationContext<Object> ctx, long key, @Nullable Object keyContext, CompletableFuture<V> cachedFuture) {
+        if (statsEnabled) {
+            stats.incrementCacheHitCount(new IncrementCacheHitCountStatisticsContext<>(key, keyContext));
+        }
+        ctx.onDispatched();
+        whenCompleted(cachedFuture, ctx);
+        return cachedFuture;
+    }
+
+    private static <T> void whenCompleted(CompletableFuture<T> future, DataLoaderInstrumentationContext<? super T> ctx) {
+        // there is no point adding a completion stage that does nothing
+        if (ctx != noOpCtx()) {
+            future.whenComplete(ctx::onCompleted);
+        }
+    }
+
+    private DispatchResult<V> endDispatchCtx(DataLoaderInstrumentationContext<DispatchResult<?>> instrCtx, DispatchResult<V> dispatchResult) {
+        if (instrCtx == DataLoaderInstrumentationHelper.<DispatchResult<?>>noOpCtx()) {
+            return dispatchResult;
+        }
+        // once the CF completes, we can tell the instrumentation
+        dispatchResult.getPromisedResults()
+                .whenComplete((result, throwable) -> instrCtx.onCompleted(dispatchResult, throwable));
+        return dispatchResult;
+    }
+
+    private DataLoaderInstrumentation instrumentation() {
+        return loaderOptions.getInstrumentation();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> CompletableFuture<V>[] newFutures(CompletableFuture<V> future) {
+        return (CompletableFuture<V>[]) new CompletableFuture<?>[]{future};
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> DispatchResult<T> emptyDispatchResult() {
+        return (DispatchResult<T>) EMPTY_DISPATCH_RESULT;
+    }
+
+    @Override
+    public int dispatchDepth() {
+        return loaderQueue.size();
+    }
+
+    /**
+     * Clears the future with the specified key from the cache, if caching is enabled, so it will be re-fetched
+     * on the next load request.
+     *
+     * @param key the key to remove
+     *
+     * @return the data loader for fluent coding
+     */
+    public LongDataLoader<V> clear(long key) {
+        futureCache.delete(key);
+        return this;
+    }
+
+    @Override
+    public LongDataLoader<V> clear(Long key, BiConsumer<Void, Throwable> handler) {
+        futureCache.delete(nonNull(key).longValue());
+        CompletableFuture.<Void>completedFuture(null).whenComplete(handler);
+        return this;
+    }
+
+    @Override
+    public LongDataLoader<V> clearAll(BiConsumer<Void, Throwable> handler) {
+        futureCache.clear();
+        CompletableFuture.<Void>completedFuture(null).whenComplete(handler);
+        return this;
+    }
+
+    /**
+     * Primes the cache with the given key and value.
+     *
+     * @param key   the key
+     * @param value the value
+     *
+     * @return the data loader for fluent coding
+     */
+    public LongDataLoader<V> prime(long key, V value) {
+        futureCache.putIfAbsent(key, completedFuture(value));
+        return this;
+    }
+
+    @Override
+    public LongDataLoader<V> prime(Long key, CompletableFuture<V> value) {
+        futureCache.putIfAbsent(nonNull(key).longValue(), value);
+        return this;
+    }
+
+    @Override
+    public Object getCacheKey(Long key) {
+        return key;
+    }
+
+    /**
+     * A read only list of boxed keys over the primitive keys of a batch, for the statistics, instrumentation and
+     * environment that deal in lists of keys.  A key is only boxed when it is read.
+     */
+    private static class LongListView extends AbstractList<Long> implements RandomAccess {
+        private final long[] keys;
+
+        LongListView(long[] keys) {
+            this.keys = keys;
+        }
+
+        @Override
+        public Long get(int index) {
+            return keys[index];
+        }
+
+        @Override
+        public int size() {
+            return keys.length;
+        }
+    }
+}
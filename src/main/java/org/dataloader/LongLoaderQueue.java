@@ -0,0 +1,170 @@
+package org.dataloader;
+
+import org.dataloader.annotations.Internal;
+import org.jspecify.annotations.Nullable;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * The queue of loads that are waiting to be dispatched on behalf of a {@link LongDataLoader}.
+ * <p>
+ * Loads are written into chunks of a {@code long[]} of keys next to an array of futures, in the same way as the
+ * {@link LoaderQueue} of the general purpose data loaders.  A load claims its slot in the current chunk with a single
+ * atomic increment and when a chunk is full a new, larger one is linked in, so no lock is taken.  A chunk only
+ * gets an array of call contexts once a load actually passes one.
+ *
+ * @param <V> the type of values
+ */
+@Internal
+class LongLoaderQueue<V> {
+
+    static final int INITIAL_SEGMENT_CAPACITY = 16;
+    static final int MAX_SEGMENT_CAPACITY = 1024;
+
+    // once a segment has been taken by a drain its claim count is pushed past any capacity so no more loads land in it
+    private static final int CLOSED = Integer.MAX_VALUE / 2;
+
+    /**
+     * A fixed size chunk of queued loads.  The future is written last and with release semantics, so a non-null
+     * future means the key and call context of that slot are visible too.
+     */
+    private static class Segment {
+        final long[] keys;
+        final Object[] futures;
+        volatile Object @Nullable [] callContexts;
+        final @Nullable Segment prev;
+        final int base;
+        volatile int claimed;
+
+        Segment(@Nullable Segment prev, int capacity) {
+            this.keys = new long[capacity];
+            this.futures = new Object[capacity];
+            this.prev = prev;
+            this.base = prev == null ? 0 : prev.base + prev.capacity();
+        }
+
+        int capacity() {
+            return keys.length;
+        }
+
+        int nextCapacity() {
+            return Math.min(capacity() * 2, MAX_SEGMENT_CAPACITY);
+        }
+
+        void write(int index, long key, Object future, @Nullable Object callContext) {
+            keys[index] = key;
+            if (callContext != null) {
+                Object[] contexts = callContexts;
+                if (contexts == null) {
+                    CALL_CONTEXTS.compareAndSet(this, null, new Object[capacity()]);
+                    contexts = callContexts;
+                }
+                contexts[index] = callContext;
+            }
+            FUTURES.setRelease(futures, index, future);
+        }
+
+        void awaitWritten(int count) {
+            for (int i = 0; i < count; i++) {
+                // a load may have claimed its slot but not yet finished writing it
+                while (FUTURES.getAcquire(futures, i) == null) {
+                    Thread.onSpinWait();
+                }
+            }
+        }
+    }
+
+    /**
+     * The keys, futures and call contexts of a drained queue, in load order
+     *
+     * @param <V> the type of values
+     */
+    static class DrainedQueue<V> {
+        final long[] keys;
+        final CompletableFuture<V>[] queuedFutures;
+        // null when no load in the batch had a call context
+        final Object @Nullable [] callContexts;
+
+        DrainedQueue(long[] keys, CompletableFuture<V>[] queuedFutures, Object @Nullable [] callContexts) {
+            this.keys = keys;
+            this.queuedFutures = queuedFutures;
+            this.callContexts = callContexts;
+        }
+    }
+
+    private static final VarHandle FUTURES = MethodHandles.arrayElementVarHandle(Object[].class);
+    private static final AtomicIntegerFieldUpdater<Segment> CLAIMED =
+            AtomicIntegerFieldUpdater.newUpdater(Segment.class, "claimed");
+    private static final AtomicReferenceFieldUpdater<Segment, Object[]> CALL_CONTEXTS =
+            AtomicReferenceFieldUpdater.newUpdater(Segment.class, Object[].class, "callContexts");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<LongLoaderQueue, Segment> TAIL =
+            AtomicReferenceFieldUpdater.newUpdater(LongLoaderQueue.class, Segment.class, "tail");
+
+    private volatile @Nullable Segment tail;
+
+    void add(long key, CompletableFuture<V> future, @Nullable Object callContext) {
+        while (true) {
+            Segment tail = this.tail;
+            if (tail != null) {
+                int index = CLAIMED.getAndIncrement(tail);
+                if (index < tail.capacity()) {
+                    tail.write(index, key, future, callContext);
+                    return;
+                }
+            }
+            // the tail is full or has been drained, so we try to link in a new segment with our load already in it
+            Segment next = new Segment(tail, tail == null ? INITIAL_SEGMENT_CAPACITY : tail.nextCapacity());
+            next.claimed = 1;
+            next.write(0, key, future, callContext);
+            if (TAIL.compareAndSet(this, tail, next)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the number of loads currently waiting in the queue
+     */
+    int size() {
+        Segment tail = this.tail;
+        return tail == null ? 0 : tail.base + Math.min(tail.claimed, tail.capacity());
+    }
+
+    /**
+     * Atomically takes all the loads that are currently queued, leaving an empty queue behind
+     *
+     * @return the drained loads in load order or null if the queue was empty
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable DrainedQueue<V> drain() {
+        // one or more threads may compete to dispatch and only one of them will take the queued loads
+        Segment tail = TAIL.getAndSet(this, null);
+        if (tail == null) {
+            return null;
+        }
+        int claimed = Math.min(CLAIMED.getAndSet(tail, CLOSED), tail.capacity());
+        int size = tail.base + claimed;
+        long[] keys = new long[size];
+        CompletableFuture<V>[] queuedFutures = (CompletableFuture<V>[]) new CompletableFuture<?>[size];
+        Object[] callContexts = null;
+        for (Segment segment = tail; segment != null; segment = segment.prev) {
+            int count = segment == tail ? claimed : segment.capacity();
+            segment.awaitWritten(count);
+            System.arraycopy(segment.keys, 0, keys, segment.base, count);
+            System.arraycopy(segment.futures, 0, queuedFutures, segment.base, count);
+            Object[] segmentContexts = segment.callContexts;
+            if (segmentContexts != null) {
+                if (callContexts == null) {
+                    callContexts = new Object[size];
+                }
+                System.arraycopy(segmentContexts, 0, callContexts, segment.base, count);
+            }
+        }
+        return new DrainedQueue<>(keys, queuedFutures, callContexts);
+    }
+}
@@ -0,0 +1,546 @@
+package org.dataloader;
+
+import org.dataloader.annotations.PublicApi;
+import org.dataloader.impl.CompletableFutureKit;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.CRC32;
+
+import static org.dataloader.impl.Assertions.assertState;
+import static org.dataloader.impl.Assertions.nonNull;
+
+/**
+ * A {@link ValueCache} that keeps its values in a memory-mapped file, so that a process that restarts can open the file
+ * again and have a warm cache straight away, rather than sending every key to its batch loaders.
+ * <p>
+ * The file is an append-only log of records.  Setting a key appends its key and value, and deleting a key appends a
+ * tombstone, while an in-memory index points each key at its latest record.  When the file is opened again the log is
+ * replayed to rebuild the index, stopping at the first record that is incomplete or whose checksum does not match, which
+ * is where a process that died part way through a write left off.  Keys and values are turned into bytes by
+ * {@link ValueCacheCodec}s.
+ * <p>
+ * Overwritten and deleted records are garbage, and once there is more garbage in the log than live records the live
+ * records are copied into a new file that then replaces the old one.  {@link #clear()} simply starts the log again.
+ * <p>
+ * Writes go to the operating system's page cache and so survive the process, but {@link #force()} must be called for
+ * them to be sure to survive the machine.  Every method does its work straight away under a lock and returns an already
+ * completed future.  Only one process should have the file open at a time.
+ * <p>
+ * The file is mapped as a whole, so it can be at most 2GB in size.
+ *
+ * @param <K> the type of cache keys
+ * @param <V> the type of cache values
+ */
+@PublicApi
+@NullMarked
+public class MappedFileValueCache<K, V> implements ValueCache<K, V>, Closeable {
+
+    private static final int MAGIC = 0x444c5643;
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER = 8;
+    // the length of the body and its checksum
+    private static final int RECORD_HEADER = 8;
+    // the zero length that marks the end of the log
+    private static final int TERMINATOR = 4;
+    private static final int MAX_FILE_SIZE = Integer.MAX_VALUE - 8;
+    private static final int MIN_GARBAGE_TO_COMPACT = 64 * 1024;
+
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+
+    private static final NoSuchElementException MISSING = new NoSuchElementException("The key is not in the value cache") {
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    };
+
+    private final Path file;
+    private final ValueCacheCodec<K> keyCodec;
+    private final ValueCacheCodec<V> valueCodec;
+    private final int initialSize;
+    private final Map<K, Integer> index = new HashMap<>();
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int writePosition;
+    private long liveBytes;
+    private long garbageBytes;
+    private boolean closed;
+
+    private MappedFileValueCache(Builder<K, V> builder) throws IOException {
+        this.file = builder.file;
+        this.keyCodec = builder.keyCodec;
+        this.valueCodec = builder.valueCodec;
+        this.initialSize = builder.initialSize;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long fileSize = channel.size();
+            assertState(fileSize <= MAX_FILE_SIZE, () -> "The value cache file is too large to be mapped : " + file);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(fileSize, initialSize));
+            if (fileSize < FILE_HEADER) {
+                writeHeader(buffer);
+                this.writePosition = FILE_HEADER;
+                buffer.putInt(writePosition, 0);
+            } else {
+                replay();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @param file       the file to keep the values in, which is created if it does not exist
+     * @param keyCodec   the codec of the keys
+     * @param valueCodec the codec of the values
+     * @param <K>        the type of cache keys
+     * @param <V>        the type of cache values
+     *
+     * @return a builder of memory-mapped value caches
+     */
+    public static <K, V> Builder<K, V> newMappedFileValueCache(Path file, ValueCacheCodec<K> keyCodec, ValueCacheCodec<V> valueCodec) {
+        return new Builder<>(file, keyCodec, valueCodec);
+    }
+
+    @Override
+    public synchronized CompletableFuture<V> get(K key) {
+        Integer offset = closed ? null : index.get(key);
+        if (offset == null) {
+            return CompletableFutureKit.failedFuture(MISSING);
+        }
+        return CompletableFuture.completedFuture(readValue(offset));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized CompletableFuture<List<Try<V>>> getValues(List<K> keys) throws ValueCachingNotSupported {
+        Object[] tries = new Object[keys.size()];
+        for (int i = 0; i < tries.length; i++) {
+            Integer offset = closed ? null : index.get(keys.get(i));
+            tries[i] = offset == null ? Try.failed(MISSING) : Try.succeeded(readValue(offset));
+        }
+        return CompletableFuture.completedFuture((List<Try<V>>) (List<?>) Arrays.asList(tries));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized CompletableFuture<CachedValues<V>> getCachedValues(List<K> keys) throws ValueCachingNotSupported {
+        if (closed || index.isEmpty()) {
+            throw new ValueCachingNotSupported();
+        }
+        int size = keys.size();
+        Object[] values = new Object[size];
+        BitSet hits = new BitSet(size);
+        for (int i = 0; i < size; i++) {
+            Integer offset = index.get(keys.get(i));
+            if (offset != null) {
+                values[i] = readValue(offset);
+                hits.set(i);
+            }
+        }
+        return CompletableFuture.completedFuture(CachedValues.of((List<V>) Arrays.asList(values), hits));
+    }
+
+    @Override
+    public synchronized CompletableFuture<V> set(K key, V value) {
+        try {
+            put(key, value);
+            compactIfMostlyGarbage();
+            return CompletableFuture.completedFuture(value);
+        } catch (IOException | RuntimeException e) {
+            return CompletableFutureKit.failedFuture(e);
+        }
+    }
+
+    /**
+     * Appends the values of a batch.  The batch loader may have failed individual keys by returning a {@link Throwable}
+     * or a failed {@link Try} for them, and those are not written, while a successful {@link Try} is written as its value.
+     *
+     * @param keys   the keys to store
+     * @param values the values to store
+     *
+     * @return a future containing the values as they were given
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized CompletableFuture<List<V>> setValues(List<K> keys, List<V> values) throws ValueCachingNotSupported {
+        try {
+            for (int i = 0; i < keys.size(); i++) {
+                Object value = values.get(i);
+                if (value instanceof Try) {
+                    Try<V> tryValue = (Try<V>) value;
+                    if (tryValue.isSuccess()) {
+                        put(keys.get(i), tryValue.get());
+                    }
+                } else if (!(value instanceof Throwable)) {
+                    put(keys.get(i), (V) value);
+                }
+            }
+            compactIfMostlyGarbage();
+            return CompletableFuture.completedFuture(values);
+        } catch (IOException | RuntimeException e) {
+            return CompletableFutureKit.failedFuture(e);
+        }
+    }
+
+    @Override
+    public synchronized CompletableFuture<Void> delete(K key) {
+        try {
+            assertOpen();
+            Integer offset = index.remove(key);
+            if (offset != null) {
+                int recordSize = recordSize(offset);
+                liveBytes -= recordSize;
+                garbageBytes += recordSize;
+                byte[] keyBytes = keyCodec.encode(key);
+                append(DELETE, keyBytes, null);
+                garbageBytes += RECORD_HEADER + bodySize(DELETE, keyBytes, null);
+                compactIfMostlyGarbage();
+            }
+            return CompletableFuture.completedFuture(null);
+        } catch (IOException | RuntimeException e) {
+            return CompletableFutureKit.failedFuture(e);
+        }
+    }
+
+    @Override
+    public synchronized CompletableFuture<Void> clear() {
+        try {
+            assertOpen();
+            index.clear();
+            writePosition = FILE_HEADER;
+            buffer.putInt(writePosition, 0);
+            liveBytes = 0;
+            garbageBytes = 0;
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            return CompletableFutureKit.failedFuture(e);
+        }
+    }
+
+    /**
+     * Copies the live records into a new file that replaces the current one, dropping all the garbage
+     *
+     * @throws UncheckedIOException if the new file cannot be written
+     */
+    public synchronized void compact() {
+        assertOpen();
+        try {
+            compactLog();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Forces the writes made so far out to the storage device
+     */
+    public synchronized void force() {
+        assertOpen();
+        buffer.force();
+    }
+
+    /**
+     * @return the number of keys in the cache
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * @return the number of bytes of the records that the keys in the cache point at
+     */
+    public synchronized long getLiveBytes() {
+        return liveBytes;
+    }
+
+    /**
+     * @return the number of bytes of the records that have been overwritten or deleted and not yet compacted away
+     */
+    public synchronized long getGarbageBytes() {
+        return garbageBytes;
+    }
+
+    /**
+     * Forces the writes made so far out to the storage device and closes the file.  Lookups in a closed cache are
+     * always misses and writes to it fail.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            buffer.force();
+            channel.close();
+            index.clear();
+        }
+    }
+
+    private void assertOpen() {
+        assertState(!closed, () -> "The value cache has been closed");
+    }
+
+    private void put(K key, @Nullable V value) throws IOException {
+        assertOpen();
+        byte[] keyBytes = keyCodec.encode(key);
+        byte[] valueBytes = value == null ? null : valueCodec.encode(value);
+        int recordSize = RECORD_HEADER + bodySize(PUT, keyBytes, valueBytes);
+        int offset = append(PUT, keyBytes, valueBytes);
+        Integer previous = index.put(key, offset);
+        if (previous != null) {
+            int previousSize = recordSize(previous);
+            liveBytes -= previousSize;
+            garbageBytes += previousSize;
+        }
+        liveBytes += recordSize;
+    }
+
+    private static int bodySize(byte kind, byte[] keyBytes, byte @Nullable [] valueBytes) {
+        // the kind, the key length and the key, and then for a put whether there is a value and the value
+        int bodySize = 1 + 4 + keyBytes.length;
+        if (kind == PUT) {
+            bodySize += 1 + (valueBytes == null ? 0 : valueBytes.length);
+        }
+        return bodySize;
+    }
+
+    /**
+     * Appends a record at the write position, making room for it first, and returns the offset it was written at
+     */
+    private int append(byte kind, byte[] keyBytes, byte @Nullable [] valueBytes) throws IOException {
+        int bodySize = bodySize(kind, keyBytes, valueBytes);
+        ensureRoom(RECORD_HEADER + bodySize);
+        int offset = writePosition;
+        int bodyStart = offset + RECORD_HEADER;
+        // the terminator goes down first and the length last, so a half written record is never read back as complete
+        buffer.putInt(bodyStart + bodySize, 0);
+        ByteBuffer body = buffer.duplicate();
+        body.position(bodyStart);
+        body.put(kind);
+        body.putInt(keyBytes.length);
+        body.put(keyBytes);
+        if (kind == PUT) {
+            body.put((byte) (valueBytes == null ? 0 : 1));
+            if (valueBytes != null) {
+                body.put(valueBytes);
+            }
+        }
+        buffer.putInt(offset + 4, checksum(buffer, bodyStart, bodySize));
+        buffer.putInt(offset, bodySize);
+        writePosition = bodyStart + bodySize;
+        return offset;
+    }
+
+    private void ensureRoom(int recordSize) throws IOException {
+        long needed = (long) writePosition + recordSize + TERMINATOR;
+        if (needed <= buffer.capacity()) {
+            return;
+        }
+        if (garbageBytes >= liveBytes && garbageBytes > 0) {
+            compactLog();
+            needed = (long) writePosition + recordSize + TERMINATOR;
+            if (needed <= buffer.capacity()) {
+                return;
+            }
+        }
+        if (needed > MAX_FILE_SIZE) {
+            throw new IOException("The value cache file cannot grow beyond " + MAX_FILE_SIZE + " bytes : " + file);
+        }
+        long newSize = Math.min(Math.max(needed, 2L * buffer.capacity()), MAX_FILE_SIZE);
+        // mapping past the end of the file grows it
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, newSize);
+    }
+
+    private void compactIfMostlyGarbage() throws IOException {
+        if (garbageBytes > MIN_GARBAGE_TO_COMPACT && garbageBytes > liveBytes) {
+            compactLog();
+        }
+    }
+
+    private void compactLog() throws IOException {
+        Path compacted = file.resolveSibling(file.getFileName() + ".compacting");
+        long newSize = Math.min(Math.max(initialSize, 2 * (FILE_HEADER + liveBytes + TERMINATOR)), MAX_FILE_SIZE);
+        FileChannel newChannel = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer newBuffer = newChannel.map(FileChannel.MapMode.READ_WRITE, 0, newSize);
+            writeHeader(newBuffer);
+            Map<K, Integer> newIndex = new HashMap<>(index.size() * 2);
+            int position = FILE_HEADER;
+            ByteBuffer target = newBuffer.duplicate();
+            target.position(position);
+            for (Map.Entry<K, Integer> entry : index.entrySet()) {
+                int offset = entry.getValue();
+                int recordSize = recordSize(offset);
+                // a record carries its own checksum, so it can be copied as is
+                target.put(view(offset, offset + recordSize));
+                newIndex.put(entry.getKey(), position);
+                position += recordSize;
+            }
+            newBuffer.putInt(position, 0);
+            newBuffer.force();
+            Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            channel.close();
+            channel = newChannel;
+            buffer = newBuffer;
+            index.clear();
+            index.putAll(newIndex);
+            writePosition = position;
+            garbageBytes = 0;
+        } catch (IOException | RuntimeException e) {
+            newChannel.close();
+            Files.deleteIfExists(compacted);
+            throw e;
+        }
+    }
+
+    private void replay() throws IOException {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("The file is not a value cache file : " + file);
+        }
+        int position = FILE_HEADER;
+        while (position + RECORD_HEADER <= buffer.capacity() - TERMINATOR) {
+            int bodySize = buffer.getInt(position);
+            int bodyStart = position + RECORD_HEADER;
+            if (bodySize <= 0 || bodySize > buffer.capacity() - TERMINATOR - bodyStart) {
+                break;
+            }
+            if (buffer.getInt(position + 4) != checksum(buffer, bodyStart, bodySize)) {
+                break;
+            }
+            byte kind = buffer.get(bodyStart);
+            int keySize = buffer.getInt(bodyStart + 1);
+            K key = keyCodec.decode(view(bodyStart + 5, bodyStart + 5 + keySize));
+            int recordSize = RECORD_HEADER + bodySize;
+            Integer previous = kind == PUT ? index.put(key, position) : index.remove(key);
+            if (previous != null) {
+                int previousSize = recordSize(previous);
+                liveBytes -= previousSize;
+                garbageBytes += previousSize;
+            }
+            if (kind == PUT) {
+                liveBytes += recordSize;
+            } else {
+                garbageBytes += recordSize;
+            }
+            position += recordSize;
+        }
+        writePosition = position;
+        buffer.putInt(writePosition, 0);
+    }
+
+    private @Nullable V readValue(int offset) {
+        int bodySize = buffer.getInt(offset);
+        int bodyStart = offset + RECORD_HEADER;
+        int keySize = buffer.getInt(bodyStart + 1);
+        int valueFlag = bodyStart + 5 + keySize;
+        if (buffer.get(valueFlag) == 0) {
+            return null;
+        }
+        return valueCodec.decode(view(valueFlag + 1, bodyStart + bodySize));
+    }
+
+    private int recordSize(int offset) {
+        return RECORD_HEADER + buffer.getInt(offset);
+    }
+
+    private ByteBuffer view(int start, int end) {
+        ByteBuffer view = buffer.asReadOnlyBuffer();
+        view.position(start);
+        view.limit(end);
+        return view.slice();
+    }
+
+    private static void writeHeader(ByteBuffer buffer) {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+    }
+
+    private static int checksum(ByteBuffer buffer, int start, int size) {
+        ByteBuffer body = buffer.duplicate();
+        body.position(start);
+        body.limit(start + size);
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return (int) crc.getValue();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "MappedFileValueCache{" +
+                "file=" + file +
+                ", size=" + index.size() +
+                ", liveBytes=" + liveBytes +
+                ", garbageBytes=" + garbageBytes +
+                '}';
+    }
+
+    /**
+     * A builder of {@link MappedFileValueCache}s
+     *
+     * @param <K> the type of cache keys
+     * @param <V> the type of cache values
+     */
+    public static class Builder<K, V> {
+        private final Path file;
+        private final ValueCacheCodec<K> keyCodec;
+        private final ValueCacheCodec<V> valueCodec;
+        private int initialSize = 1024 * 1024;
+
+        Builder(Path file, ValueCacheCodec<K> keyCodec, ValueCacheCodec<V> valueCodec) {
+            this.file = nonNull(file);
+            this.keyCodec = nonNull(keyCodec);
+            this.valueCodec = nonNull(valueCodec);
+        }
+
+        /**
+         * Sets the size the file starts out at, which then doubles whenever the log outgrows it.  The default is 1MB.
+         *
+         * @param initialSize the initial size of the file in bytes
+         *
+         * @return this builder for fluent coding
+         */
+        public Builder<K, V> initialSize(int initialSize) {
+            this.initialSize = initialSize;
+            return this;
+        }
+
+        /**
+         * Opens the file, replaying any log that is already in it
+         *
+         * @return the value cache
+         *
+         * @throws UncheckedIOException if the file cannot be opened or is not a value cache file
+         */
+        public MappedFileValueCache<K, V> build() {
+            assertState(initialSize >= FILE_HEADER + TERMINATOR, () -> "The initialSize MUST be at least " + (FILE_HEADER + TERMINATOR) + " bytes");
+            try {
+                return new MappedFileValueCache<>(this);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,434 @@
+package org.dataloader;
+
+import org.dataloader.annotations.PublicApi;
+import org.dataloader.impl.CompletableFutureKit;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+
+import static org.dataloader.impl.Assertions.assertState;
+import static org.dataloader.impl.Assertions.nonNull;
+
+/**
+ * A {@link ValueCache} that keeps its values serialized outside the Java heap, in slabs of memory allocated with
+ * {@link ByteBuffer#allocateDirect(int)}, so that caching millions of large values does not weigh on the garbage
+ * collector.  Only the keys and a small entry per key stay on the heap.
+ * <p>
+ * Each slab is cut into chunks of one power of two size, and a value is stored in the smallest chunk it fits in, so up
+ * to half of a chunk can go unused.  Values larger than a slab are not cached at all.  Slabs are allocated as they are
+ * needed up to {@link Builder#maximumBytes(long)}, and after that the least recently used value of the same chunk size
+ * is evicted to make room for a new one.  When no value of that chunk size is cached, the values of the slab that holds
+ * the fewest of them are evicted, and the emptied slab is cut up again for the new chunk size.
+ * <p>
+ * Values are turned into bytes and back by a {@link ValueCacheCodec}, and a codec that can decode straight out of a
+ * {@link ByteBuffer} reads the value from off heap memory without first copying its bytes onto the heap.
+ * <p>
+ * Every method does its work straight away under a lock and returns an already completed future, and
+ * {@link #getCachedValues(List)} looks up a whole batch of keys at once.
+ *
+ * @param <K> the type of cache keys
+ * @param <V> the type of cache values
+ */
+@PublicApi
+@NullMarked
+public class OffHeapValueCache<K, V> implements ValueCache<K, V> {
+
+    private static final int MIN_CHUNK_SHIFT = 6;
+
+    private static final NoSuchElementException MISSING = new NoSuchElementException("The key is not in the value cache") {
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    };
+
+    private static class Slab {
+        final ByteBuffer memory;
+        int chunkShift;
+        int[] freeChunks = new int[0];
+        int freeCount;
+
+        Slab(ByteBuffer memory) {
+            this.memory = memory;
+        }
+
+        void cutInto(int chunkShift) {
+            this.chunkShift = chunkShift;
+            int chunkCount = memory.capacity() >>> chunkShift;
+            if (freeChunks.length < chunkCount) {
+                freeChunks = new int[chunkCount];
+            }
+            // hand out the chunks from the start of the slab first
+            for (int i = 0; i < chunkCount; i++) {
+                freeChunks[i] = chunkCount - 1 - i;
+            }
+            freeCount = chunkCount;
+        }
+
+        int chunkCount() {
+            return memory.capacity() >>> chunkShift;
+        }
+    }
+
+    private static class Entry {
+        final @Nullable Slab slab;
+        final int chunk;
+        final int length;
+
+        Entry(@Nullable Slab slab, int chunk, int length) {
+            this.slab = slab;
+            this.chunk = chunk;
+            this.length = length;
+        }
+    }
+
+    private final ValueCacheCodec<V> valueCodec;
+    private final int slabShift;
+    private final int maximumSlabs;
+    // in access order, so the least recently used entry comes first
+    private final LinkedHashMap<K, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final List<Slab> slabs = new ArrayList<>();
+    private final ArrayDeque<Slab> emptySlabs = new ArrayDeque<>();
+    // the slabs of each chunk size that have free chunks, by chunk shift
+    private final ArrayDeque<Slab>[] slabsWithFreeChunks;
+    private long usedBytes;
+    private long evictionCount;
+
+    @SuppressWarnings("unchecked")
+    private OffHeapValueCache(Builder<K, V> builder) {
+        this.valueCodec = builder.valueCodec;
+        // the slab size rounded up to a power of two
+        this.slabShift = 32 - Integer.numberOfLeadingZeros(builder.slabSize - 1);
+        this.maximumSlabs = (int) Math.max(1, Math.min(Integer.MAX_VALUE, builder.maximumBytes >>> slabShift));
+        this.slabsWithFreeChunks = (ArrayDeque<Slab>[]) new ArrayDeque<?>[slabShift + 1];
+        for (int i = MIN_CHUNK_SHIFT; i <= slabShift; i++) {
+            slabsWithFreeChunks[i] = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * @param valueCodec the codec of the values
+     * @param <K>        the type of cache keys
+     * @param <V>        the type of cache values
+     *
+     * @return a builder of off heap value caches
+     */
+    public static <K, V> Builder<K, V> newOffHeapValueCache(ValueCacheCodec<V> valueCodec) {
+        return new Builder<>(valueCodec);
+    }
+
+    @Override
+    public synchronized CompletableFuture<V> get(K key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return CompletableFutureKit.failedFuture(MISSING);
+        }
+        return CompletableFuture.completedFuture(read(entry));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized CompletableFuture<List<Try<V>>> getValues(List<K> keys) throws ValueCachingNotSupported {
+        Object[] tries = new Object[keys.size()];
+        for (int i = 0; i < tries.length; i++) {
+            Entry entry = entries.get(keys.get(i));
+            tries[i] = entry == null ? Try.failed(MISSING) : Try.succeeded(read(entry));
+        }
+        return CompletableFuture.completedFuture((List<Try<V>>) (List<?>) Arrays.asList(tries));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized CompletableFuture<CachedValues<V>> getCachedValues(List<K> keys) throws ValueCachingNotSupported {
+        if (entries.isEmpty()) {
+            throw new ValueCachingNotSupported();
+        }
+        int size = keys.size();
+        Object[] values = new Object[size];
+        BitSet hits = new BitSet(size);
+        for (int i = 0; i < size; i++) {
+            Entry entry = entries.get(keys.get(i));
+            if (entry != null) {
+                values[i] = read(entry);
+                hits.set(i);
+            }
+        }
+        return CompletableFuture.completedFuture(CachedValues.of((List<V>) Arrays.asList(values), hits));
+    }
+
+    @Override
+    public synchronized CompletableFuture<V> set(K key, V value) {
+        try {
+            store(key, value);
+            return CompletableFuture.completedFuture(value);
+        } catch (RuntimeException e) {
+            return CompletableFutureKit.failedFuture(e);
+        }
+    }
+
+    /**
+     * Stores the values of a batch.  The batch loader may have failed individual keys by returning a {@link Throwable}
+     * or a failed {@link Try} for them, and those are not cached, while a successful {@link Try} is cached as its value.
+     *
+     * @param keys   the keys to store
+     * @param values the values to store
+     *
+     * @return a future containing the values as they were given
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized CompletableFuture<List<V>> setValues(List<K> keys, List<V> values) throws ValueCachingNotSupported {
+        try {
+            for (int i = 0; i < keys.size(); i++) {
+                Object value = values.get(i);
+                if (value instanceof Try) {
+                    Try<V> tryValue = (Try<V>) value;
+                    if (tryValue.isSuccess()) {
+                        store(keys.get(i), tryValue.get());
+                    }
+                } else if (!(value instanceof Throwable)) {
+                    store(keys.get(i), (V) value);
+                }
+            }
+            return CompletableFuture.completedFuture(values);
+        } catch (RuntimeException e) {
+            return CompletableFutureKit.failedFuture(e);
+        }
+    }
+
+    @Override
+    public synchronized CompletableFuture<Void> delete(K key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            release(entry);
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public synchronized CompletableFuture<Void> clear() {
+        entries.clear();
+        for (int i = MIN_CHUNK_SHIFT; i <= slabShift; i++) {
+            slabsWithFreeChunks[i].clear();
+        }
+        // the slabs are kept to be cut up again rather than left for the garbage collector to free
+        emptySlabs.clear();
+        emptySlabs.addAll(slabs);
+        usedBytes = 0;
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * @return the number of values in the cache
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the number of bytes of the chunks that hold values
+     */
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * @return the number of bytes of off heap memory that have been allocated for slabs
+     */
+    public synchronized long getAllocatedBytes() {
+        return (long) slabs.size() << slabShift;
+    }
+
+    /**
+     * @return the number of values that have been evicted to make room for others
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    private @Nullable V read(Entry entry) {
+        Slab slab = entry.slab;
+        if (slab == null) {
+            return null;
+        }
+        ByteBuffer view = slab.memory.asReadOnlyBuffer();
+        int start = entry.chunk << slab.chunkShift;
+        view.position(start);
+        view.limit(start + entry.length);
+        return valueCodec.decode(view.slice());
+    }
+
+    private void store(K key, @Nullable V value) {
+        Entry previous = entries.remove(key);
+        if (previous != null) {
+            release(previous);
+        }
+        if (value == null) {
+            entries.put(key, new Entry(null, 0, 0));
+            return;
+        }
+        byte[] bytes = valueCodec.encode(value);
+        int chunkShift = Math.max(MIN_CHUNK_SHIFT, 32 - Integer.numberOfLeadingZeros(Math.max(bytes.length, 1) - 1));
+        if (chunkShift > slabShift) {
+            // too big to ever fit, so it is simply not cached
+            return;
+        }
+        Slab slab = slabWithFreeChunk(chunkShift);
+        int chunk = slab.freeChunks[--slab.freeCount];
+        if (slab.freeCount == 0) {
+            slabsWithFreeChunks[chunkShift].pollFirst();
+        }
+        ByteBuffer memory = slab.memory.duplicate();
+        memory.position(chunk << chunkShift);
+        memory.put(bytes);
+        entries.put(key, new Entry(slab, chunk, bytes.length));
+        usedBytes += 1L << chunkShift;
+    }
+
+    private Slab slabWithFreeChunk(int chunkShift) {
+        ArrayDeque<Slab> candidates = slabsWithFreeChunks[chunkShift];
+        if (candidates.isEmpty()) {
+            Slab slab = emptySlabs.pollFirst();
+            if (slab == null && slabs.size() < maximumSlabs) {
+                slab = new Slab(ByteBuffer.allocateDirect(1 << slabShift));
+                slabs.add(slab);
+            }
+            if (slab == null) {
+                evictToFreeChunk(chunkShift);
+                // unless the eviction emptied a whole slab, the freed chunk is now one of the candidates
+                slab = emptySlabs.pollFirst();
+            }
+            if (slab != null) {
+                slab.cutInto(chunkShift);
+                candidates.addFirst(slab);
+            }
+        }
+        return candidates.peekFirst();
+    }
+
+    /**
+     * Evicts the least recently used value of the chunk size, which frees a chunk of that size.  When no value of that
+     * size is cached, every value of the slab that holds the fewest values is evicted instead, rather than least recently
+     * used values of any size until some slab happens to empty.
+     */
+    private void evictToFreeChunk(int chunkShift) {
+        Iterator<Map.Entry<K, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next().getValue();
+            if (entry.slab != null && entry.slab.chunkShift == chunkShift) {
+                iterator.remove();
+                release(entry);
+                evictionCount++;
+                return;
+            }
+        }
+        Slab victim = null;
+        for (Slab slab : slabs) {
+            if (victim == null || usedChunks(slab) < usedChunks(victim)) {
+                victim = slab;
+            }
+        }
+        // with no empty slabs left every slab holds at least one value
+        assertState(victim != null, () -> "There are no values to evict and no empty slabs");
+        iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next().getValue();
+            if (entry.slab == victim) {
+                iterator.remove();
+                release(entry);
+                evictionCount++;
+            }
+        }
+    }
+
+    private static int usedChunks(Slab slab) {
+        return slab.chunkCount() - slab.freeCount;
+    }
+
+    private void release(Entry entry) {
+        Slab slab = entry.slab;
+        if (slab == null) {
+            return;
+        }
+        int chunkShift = slab.chunkShift;
+        slab.freeChunks[slab.freeCount++] = entry.chunk;
+        usedBytes -= 1L << chunkShift;
+        if (slab.freeCount == slab.chunkCount()) {
+            // a slab with nothing in it can be cut up again for whichever chunk size needs it
+            if (slab.freeCount > 1) {
+                slabsWithFreeChunks[chunkShift].remove(slab);
+            }
+            emptySlabs.addLast(slab);
+        } else if (slab.freeCount == 1) {
+            slabsWithFreeChunks[chunkShift].addLast(slab);
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "OffHeapValueCache{" +
+                "size=" + entries.size() +
+                ", usedBytes=" + usedBytes +
+                ", allocatedBytes=" + getAllocatedBytes() +
+                ", evictionCount=" + evictionCount +
+                '}';
+    }
+
+    /**
+     * A builder of {@link OffHeapValueCache}s.  The {@link #maximumBytes(long)} must be set.
+     *
+     * @param <K> the type of cache keys
+     * @param <V> the type of cache values
+     */
+    public static class Builder<K, V> {
+        private final ValueCacheCodec<V> valueCodec;
+        private long maximumBytes = -1;
+        private int slabSize = 1024 * 1024;
+
+        Builder(ValueCacheCodec<V> valueCodec) {
+            this.valueCodec = nonNull(valueCodec);
+        }
+
+        /**
+         * Sets the most off heap memory that may be allocated for slabs, which is rounded down to a whole number of slabs
+         *
+         * @param maximumBytes the maximum number of bytes
+         *
+         * @return this builder for fluent coding
+         */
+        public Builder<K, V> maximumBytes(long maximumBytes) {
+            this.maximumBytes = maximumBytes;
+            return this;
+        }
+
+        /**
+         * Sets the size of each slab, which is also the size of the largest value that can be cached.  It is rounded up
+         * to a power of two and the default is 1MB.
+         *
+         * @param slabSize the size of a slab in bytes
+         *
+         * @return this builder for fluent coding
+         */
+        public Builder<K, V> slabSize(int slabSize) {
+            this.slabSize = slabSize;
+            return this;
+        }
+
+        public OffHeapValueCache<K, V> build() {
+            assertState(maximumBytes > 0, () -> "The maximumBytes MUST be greater than zero");
+            assertState(slabSize >= (1 << MIN_CHUNK_SHIFT) && slabSize <= (1 << 30), () -> "The slabSize MUST be between 64 bytes and 1GB");
+            return new OffHeapValueCache<>(this);
+        }
+    }
+}
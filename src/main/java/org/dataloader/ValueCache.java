@@ -96,6 +96,25 @@ public interface ValueCache<K, V extends @Nullable Object> {
         return CompletableFutureKit.allOf(cacheLookups);
     }
 
+    /**
+     * Gets the specified keys from the value cache, in a batch call, as a list of values plus a {@link java.util.BitSet} of which
+     * keys were found.  This is the method that {@link DataLoader} calls, and it avoids the {@link Try} object per key of
+     * {@link #getValues(List)}, so a cache that can do batch retrieval should implement this method rather than that one.
+     * <p>
+     * By default, this delegates to {@link #getValues(List)} and treats each successful {@link Try} as a cache hit.
+     * <p>
+     * The values MUST be the same size as the keys passed in.  The code will assert if they are not.
+     *
+     * @param keys the list of keys to get cached values for.
+     *
+     * @return a future containing the cached values for each key passed in.
+     *
+     * @throws ValueCachingNotSupported if this cache wants to short-circuit this method completely
+     */
+    default CompletableFuture<CachedValues<V>> getCachedValues(List<K> keys) throws ValueCachingNotSupported {
+        return getValues(keys).thenApply(CachedValues::fromTries);
+    }
+
     /**
      * Stores the value with the specified key, or updates it if the key already exists.
      *
@@ -0,0 +1,93 @@
+package org.dataloader;
+
+import org.dataloader.annotations.PublicSpi;
+import org.jspecify.annotations.NullMarked;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Turns the keys or values of a {@link ValueCache} that stores bytes rather than objects, such as the
+ * {@link MappedFileValueCache}, into bytes and back again.
+ * <p>
+ * Null values never reach a codec, the cache records them itself.
+ *
+ * @param <T> the type of the keys or values
+ */
+@PublicSpi
+@NullMarked
+public interface ValueCacheCodec<T> {
+
+    /**
+     * @param value the key or value to encode
+     *
+     * @return the bytes of the key or value
+     */
+    byte[] encode(T value);
+
+    /**
+     * Decodes a key or value from the bytes between the position and the limit of the buffer.
+     * <p>
+     * The buffer is read only and is a view onto the cache's own storage, so a codec can decode straight out of it
+     * without copying the bytes first.  It is only valid for the duration of the call though, so a codec MUST NOT
+     * hold on to it.
+     *
+     * @param bytes the bytes to decode
+     *
+     * @return the decoded key or value
+     */
+    T decode(ByteBuffer bytes);
+
+    /**
+     * @return a codec of {@link String}s as UTF-8 bytes
+     */
+    static ValueCacheCodec<String> utf8String() {
+        return new ValueCacheCodec<>() {
+            @Override
+            public byte[] encode(String value) {
+                return value.getBytes(StandardCharsets.UTF_8);
+            }
+
+            @Override
+            public String decode(ByteBuffer bytes) {
+                return StandardCharsets.UTF_8.decode(bytes).toString();
+            }
+        };
+    }
+
+    /**
+     * @return a codec of {@link Long}s as eight big endian bytes
+     */
+    static ValueCacheCodec<Long> longs() {
+        return new ValueCacheCodec<>() {
+            @Override
+            public byte[] encode(Long value) {
+                return ByteBuffer.allocate(Long.BYTES).putLong(value).array();
+            }
+
+            @Override
+            public Long decode(ByteBuffer bytes) {
+                return bytes.getLong(bytes.position());
+            }
+        };
+    }
+
+    /**
+     * @return a codec of byte arrays as themselves
+     */
+    static ValueCacheCodec<byte[]> bytes() {
+        return new ValueCacheCodec<>() {
+            @Override
+            public byte[] encode(byte[] value) {
+                return value;
+            }
+
+            @Override
+            public byte[] decode(ByteBuffer bytes) {
+                byte[] value = new byte[bytes.remaining()];
+                bytes.get(value);
+                return value;
+            }
+        };
+    }
+}
@@ -0,0 +1,178 @@
+package org.dataloader.batching;
+
+import org.dataloader.annotations.GuardedBy;
+import org.dataloader.annotations.PublicApi;
+import org.jspecify.annotations.NullMarked;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.dataloader.impl.Assertions.assertState;
+import static org.dataloader.impl.Assertions.nonNull;
+
+/**
+ * A {@link BatchSizeController} that uses additive increase / multiplicative decrease (AIMD) to find the largest batch size
+ * that stays within a latency target.
+ * <p>
+ * Each full sized batch that completes within the latency target grows the batch size by a fixed amount.  A batch that
+ * takes longer than the target, or that fails, shrinks the batch size by a factor.  This means the batch size climbs slowly
+ * towards what the backend can handle and backs off quickly when it starts to struggle.
+ * <p>
+ * The batch size shrinks at most once per window of batches: the batches that were already in flight when it shrank
+ * were sized before it did, so when they turn out slow too they do not shrink it again.
+ * <p>
+ * Batches that were smaller than the current batch size do not grow it, since they did not test whether the current batch
+ * size is too big or not.
+ */
+@PublicApi
+@NullMarked
+public class AimdBatchSizeController implements BatchSizeController {
+
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private final Duration latencyTarget;
+    private final int increaseBy;
+    private final double decreaseFactor;
+    private final Clock clock;
+    private final AtomicInteger batchSize;
+    private final Object lock = new Object();
+    @GuardedBy("lock")
+    private long lastDecreasedAt = Long.MIN_VALUE;
+
+    private AimdBatchSizeController(Builder builder) {
+        this.minBatchSize = builder.minBatchSize;
+        this.maxBatchSize = builder.maxBatchSize;
+        this.latencyTarget = builder.latencyTarget;
+        this.increaseBy = builder.increaseBy;
+        this.decreaseFactor = builder.decreaseFactor;
+        this.clock = builder.clock;
+        this.batchSize = new AtomicInteger(Math.max(minBatchSize, Math.min(maxBatchSize, builder.initialBatchSize)));
+    }
+
+    /**
+     * @param latencyTarget the batch loader latency to stay within
+     *
+     * @return a new builder of {@link AimdBatchSizeController}s
+     */
+    public static Builder newController(Duration latencyTarget) {
+        return new Builder(latencyTarget);
+    }
+
+    @Override
+    public int getBatchSize() {
+        return batchSize.get();
+    }
+
+    @Override
+    public void onBatchCompleted(int completedBatchSize, Duration latency, boolean successful) {
+        if (!successful || latency.compareTo(latencyTarget) > 0) {
+            long now = clock.millis();
+            synchronized (lock) {
+                if (now - latency.toMillis() < lastDecreasedAt) {
+                    // it started before the last decrease and so belongs to a window that has already shrunk the batch size
+                    return;
+                }
+                lastDecreasedAt = now;
+                batchSize.updateAndGet(current -> Math.max(minBatchSize, (int) (current * decreaseFactor)));
+            }
+        } else {
+            batchSize.updateAndGet(current -> completedBatchSize < current ? current : Math.min(maxBatchSize, current + increaseBy));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "AimdBatchSizeController{" +
+                "batchSize=" + batchSize.get() +
+                ", minBatchSize=" + minBatchSize +
+                ", maxBatchSize=" + maxBatchSize +
+                ", latencyTarget=" + latencyTarget +
+                '}';
+    }
+
+    public static class Builder {
+        private final Duration latencyTarget;
+        private int minBatchSize = 1;
+        private int maxBatchSize = 1000;
+        private int initialBatchSize = 100;
+        private int increaseBy = 10;
+        private double decreaseFactor = 0.5d;
+        private Clock clock = Clock.systemUTC();
+
+        Builder(Duration latencyTarget) {
+            this.latencyTarget = nonNull(latencyTarget);
+        }
+
+        /**
+         * @param minBatchSize the smallest the batch size will ever shrink to, which defaults to 1
+         *
+         * @return this builder for fluent coding
+         */
+        public Builder minBatchSize(int minBatchSize) {
+            this.minBatchSize = minBatchSize;
+            return this;
+        }
+
+        /**
+         * @param maxBatchSize the largest the batch size will ever grow to, which defaults to 1000
+         *
+         * @return this builder for fluent coding
+         */
+        public Builder maxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * @param initialBatchSize the batch size to start with, which defaults to 100
+         *
+         * @return this builder for fluent coding
+         */
+        public Builder initialBatchSize(int initialBatchSize) {
+            this.initialBatchSize = initialBatchSize;
+            return this;
+        }
+
+        /**
+         * @param increaseBy how many keys a full batch within the latency target adds to the batch size, which defaults to 10
+         *
+         * @return this builder for fluent coding
+         */
+        public Builder increaseBy(int increaseBy) {
+            this.increaseBy = increaseBy;
+            return this;
+        }
+
+        /**
+         * @param decreaseFactor what the batch size is multiplied by when a batch is too slow or fails, which defaults to 0.5
+         *
+         * @return this builder for fluent coding
+         */
+        public Builder decreaseFactor(double decreaseFactor) {
+            this.decreaseFactor = decreaseFactor;
+            return this;
+        }
+
+        /**
+         * Sets the clock used to work out which batches were in flight when the batch size last shrank, which is mostly
+         * useful in tests
+         *
+         * @param clock the clock to use
+         *
+         * @return this builder for fluent coding
+         */
+        public Builder clock(Clock clock) {
+            this.clock = nonNull(clock);
+            return this;
+        }
+
+        public AimdBatchSizeController build() {
+            assertState(minBatchSize > 0, () -> "The minBatchSize MUST be greater than zero");
+            assertState(maxBatchSize >= minBatchSize, () -> "The maxBatchSize MUST be greater than or equal to the minBatchSize");
+            assertState(increaseBy > 0, () -> "The increaseBy MUST be greater than zero");
+            assertState(decreaseFactor > 0 && decreaseFactor < 1, () -> "The decreaseFactor MUST be between 0 and 1");
+            return new AimdBatchSizeController(this);
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package org.dataloader.batching;
+
+import org.dataloader.BatchLoader;
+import org.dataloader.DataLoader;
+import org.dataloader.annotations.PublicApi;
+import org.dataloader.impl.CompletableFutureKit;
+import org.dataloader.impl.DataLoaderAssertionException;
+import org.dataloader.impl.SharedTimer;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.dataloader.impl.Assertions.assertState;
+import static org.dataloader.impl.Assertions.nonNull;
+
+/**
+ * A {@link BatchLoader} that many {@link DataLoader}s, say one per request, can share so that their small batches are
+ * merged into fewer, larger calls to the real batch loader.
+ * <p>
+ * Each batch that a data loader dispatches to the aggregator is held back for a short window, and every other batch
+ * that arrives during that window joins it.  When the window closes, or sooner if the held keys reach the maximum batch
+ * size, the keys of all the held batches are merged, with repeated keys sent only once, and the real batch loader is
+ * called with them.  Its values are then routed back to each data loader in the order of that data loader's own keys.
+ * <p>
+ * If the real batch loader fails, every batch that was merged into that call fails with it.
+ * <p>
+ * Windows are closed on the thread of the {@link Builder#scheduler(ScheduledExecutorService)}, which by default is a timer
+ * thread shared by all data loaders, and the held batches are then handed to the {@link Builder#sendExecutor(Executor)},
+ * which by default is the {@link ForkJoinPool#commonPool()}, so that a real batch loader that blocks does not hold up the
+ * timer.  When the maximum batch size is reached the real batch loader is called on the thread of the data loader that
+ * filled the batch.
+ *
+ * @param <K> type parameter indicating the type of keys
+ * @param <V> type parameter indicating the type of values
+ */
+@PublicApi
+@NullMarked
+public class BatchAggregator<K, V> implements BatchLoader<K, V> {
+
+    private static class HeldBatch<K, V> {
+        final List<K> keys;
+        final CompletableFuture<List<V>> values = new CompletableFuture<>();
+
+        HeldBatch(List<K> keys) {
+            this.keys = keys;
+        }
+    }
+
+    private final BatchLoader<K, V> batchLoader;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final ScheduledExecutorService scheduler;
+    private final Executor sendExecutor;
+    private final Object lock = new Object();
+    private List<HeldBatch<K, V>> heldBatches = new ArrayList<>();
+    private int heldKeyCount;
+    private @Nullable ScheduledFuture<?> windowTimer;
+    // counts the windows, so that a timer that fired just as its window was closed some other way does not close the next one
+    private long window;
+    private final LongAdder aggregatedBatchCount = new LongAdder();
+    private final LongAdder batchLoaderCallCount = new LongAdder();
+
+    private BatchAggregator(Builder<K, V> builder) {
+        this.batchLoader = builder.batchLoader;
+        this.windowNanos = builder.window.toNanos();
+        this.maxBatchSize = builder.maxBatchSize;
+        this.scheduler = builder.scheduler != null ? builder.scheduler : SharedTimer.get();
+        this.sendExecutor = builder.sendExecutor != null ? builder.sendExecutor : ForkJoinPool.commonPool();
+    }
+
+    /**
+     * @param batchLoader the real batch loader that the merged batches are sent to
+     * @param <K>         type parameter indicating the type of keys
+     * @param <V>         type parameter indicating the type of values
+     *
+     * @return a builder of batch aggregators
+     */
+    public static <K, V> Builder<K, V> newBatchAggregator(BatchLoader<K, V> batchLoader) {
+        return new Builder<>(batchLoader);
+    }
+
+    /**
+     * Holds the batch of keys until the current window closes or the maximum batch size is reached.  The list of keys
+     * is kept until then and so MUST NOT be changed by the caller.
+     *
+     * @param keys the collection of keys to load
+     *
+     * @return a promise of the values of the keys, in the order of the keys
+     */
+    @Override
+    public CompletionStage<List<V>> load(List<K> keys) {
+        aggregatedBatchCount.increment();
+        HeldBatch<K, V> heldBatch = new HeldBatch<>(keys);
+        List<HeldBatch<K, V>> batchesToSend = null;
+        synchronized (lock) {
+            heldBatches.add(heldBatch);
+            heldKeyCount += keys.size();
+            if (maxBatchSize > 0 && heldKeyCount >= maxBatchSize) {
+                batchesToSend = takeHeldBatches();
+            } else if (windowTimer == null) {
+                long timedWindow = window;
+                windowTimer = scheduler.schedule(() -> windowClosed(timedWindow), windowNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        if (batchesToSend != null) {
+            send(batchesToSend);
+        }
+        return heldBatch.values;
+    }
+
+    /**
+     * Sends the batches that are held right now to the real batch loader without waiting for the window to close
+     */
+    public void flush() {
+        List<HeldBatch<K, V>> batchesToSend;
+        synchronized (lock) {
+            if (heldBatches.isEmpty()) {
+                return;
+            }
+            batchesToSend = takeHeldBatches();
+        }
+        send(batchesToSend);
+    }
+
+    private void windowClosed(long timedWindow) {
+        List<HeldBatch<K, V>> batchesToSend;
+        synchronized (lock) {
+            if (timedWindow != window || heldBatches.isEmpty()) {
+                return;
+            }
+            batchesToSend = takeHeldBatches();
+        }
+        try {
+            sendExecutor.execute(() -> send(batchesToSend));
+        } catch (RuntimeException e) {
+            for (HeldBatch<K, V> batch : batchesToSend) {
+                batch.values.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * @return the number of batches that data loaders have dispatched to this aggregator
+     */
+    public long getAggregatedBatchCount() {
+        return aggregatedBatchCount.sum();
+    }
+
+    /**
+     * @return the number of times the real batch loader has been called
+     */
+    public long getBatchLoaderCallCount() {
+        return batchLoaderCallCount.sum();
+    }
+
+    private List<HeldBatch<K, V>> takeHeldBatches() {
+        List<HeldBatch<K, V>> batches = heldBatches;
+        heldBatches = new ArrayList<>();
+        heldKeyCount = 0;
+        window++;
+        if (windowTimer != null) {
+            windowTimer.cancel(false);
+            windowTimer = null;
+        }
+        return batches;
+    }
+
+    private void send(List<HeldBatch<K, V>> batches) {
+        // each held batch gets the positions of its keys in the merged keys
+        List<K> mergedKeys = new ArrayList<>();
+        Map<K, Integer> mergedIndexes = new HashMap<>();
+        int[][] positions = new int[batches.size()][];
+        for (int b = 0; b < batches.size(); b++) {
+            List<K> keys = batches.get(b).keys;
+            int[] batchPositions = new int[keys.size()];
+            for (int i = 0; i < batchPositions.length; i++) {
+                K key = keys.get(i);
+                Integer mergedIndex = mergedIndexes.putIfAbsent(key, mergedKeys.size());
+                if (mergedIndex == null) {
+                    mergedIndex = mergedKeys.size();
+                    mergedKeys.add(key);
+                }
+                batchPositions[i] = mergedIndex;
+            }
+            positions[b] = batchPositions;
+        }
+
+        loadMergedKeys(mergedKeys).whenComplete((values, throwable) -> {
+            if (throwable instanceof CompletionException && throwable.getCause() != null) {
+                throwable = throwable.getCause();
+            }
+            if (throwable == null && values.size() != mergedKeys.size()) {
+                throwable = new DataLoaderAssertionException("The size of the promised values MUST be the same size as the key list");
+            }
+            for (int b = 0; b < batches.size(); b++) {
+                HeldBatch<K, V> batch = batches.get(b);
+                if (throwable != null) {
+                    batch.values.completeExceptionally(throwable);
+                    continue;
+                }
+                List<V> batchValues = new ArrayList<>(positions[b].length);
+                for (int position : positions[b]) {
+                    batchValues.add(values.get(position));
+                }
+                batch.values.complete(batchValues);
+            }
+        });
+    }
+
+    private CompletableFuture<List<V>> loadMergedKeys(List<K> mergedKeys) {
+        if (maxBatchSize <= 0 || mergedKeys.size() <= maxBatchSize) {
+            return callBatchLoader(mergedKeys);
+        }
+        // a single data loader's batch can be larger than the maximum on its own
+        List<CompletableFuture<List<V>>> slices = new ArrayList<>();
+        for (int fromIndex = 0; fromIndex < mergedKeys.size(); fromIndex += maxBatchSize) {
+            int toIndex = Math.min(fromIndex + maxBatchSize, mergedKeys.size());
+            slices.add(callBatchLoader(mergedKeys.subList(fromIndex, toIndex)));
+        }
+        return CompletableFutureKit.allOf(slices).thenApply(sliceValues -> {
+            List<V> values = new ArrayList<>(mergedKeys.size());
+            for (List<V> slice : sliceValues) {
+                values.addAll(slice);
+            }
+            return values;
+        });
+    }
+
+    private CompletableFuture<List<V>> callBatchLoader(List<K> keys) {
+        batchLoaderCallCount.increment();
+        try {
+            return nonNull(batchLoader.load(keys), () -> "Your batch loader function MUST return a non null CompletionStage").toCompletableFuture();
+        } catch (Exception e) {
+            return CompletableFutureKit.failedFuture(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BatchAggregator{" +
+                "aggregatedBatchCount=" + aggregatedBatchCount.sum() +
+                ", batchLoaderCallCount=" + batchLoaderCallCount.sum() +
+                '}';
+    }
+
+    /**
+     * A builder of {@link BatchAggregator}s
+     *
+     * @param <K> type parameter indicating the type of keys
+     * @param <V> type parameter indicating the type of values
+     */
+    public static class Builder<K, V> {
+        private final BatchLoader<K, V> batchLoader;
+        private Duration window = Duration.ofMillis(5);
+        private int maxBatchSize = -1;
+        private @Nullable ScheduledExecutorService scheduler;
+        private @Nullable Executor sendExecutor;
+
+        Builder(BatchLoader<K, V> batchLoader) {
+            this.batchLoader = nonNull(batchLoader);
+        }
+
+        /**
+         * Sets how long the first batch to arrive is held for other batches to join it.  The default is 5ms.
+         *
+         * @param window how long batches are held
+         *
+         * @return this builder for fluent coding
+         */
+        public Builder<K, V> window(Duration window) {
+            this.window = nonNull(window);
+            return this;
+        }
+
+        /**
+         * Sets how many keys may be held before they are sent straight away without waiting for the window to close,
+         * which is also the most keys the real batch loader is called with at once.  By default there is no maximum.
+         *
+         * @param maxBatchSize the maximum batch size, or -1 for no maximum
+         *
+         * @return this builder for fluent coding
+         */
+        public Builder<K, V> maxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * Sets the scheduler that closes the windows.  Closing a window only hands its batches to the
+         * {@link #sendExecutor(Executor)}, so the scheduler's tasks stay quick.
+         *
+         * @param scheduler the scheduler to use
+         *
+         * @return this builder for fluent coding
+         */
+        public Builder<K, V> scheduler(ScheduledExecutorService scheduler) {
+            this.scheduler = nonNull(scheduler);
+            return this;
+        }
+
+        /**
+         * Sets the executor that the held batches are sent to the real batch loader on when a window closes.  The
+         * default is the {@link ForkJoinPool#commonPool()}.
+         *
+         * @param sendExecutor the executor to use
+         *
+         * @return this builder for fluent coding
+         */
+        public Builder<K, V> sendExecutor(Executor sendExecutor) {
+            this.sendExecutor = nonNull(sendExecutor);
+            return this;
+        }
+
+        public BatchAggregator<K, V> build() {
+            assertState(!window.isNegative() && !window.isZero(), () -> "The window MUST be greater than zero");
+            return new BatchAggregator<>(this);
+        }
+    }
+}
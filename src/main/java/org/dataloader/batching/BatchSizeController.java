@@ -0,0 +1,41 @@
+package org.dataloader.batching;
+
+import org.dataloader.BatchLoader;
+import org.dataloader.DataLoader;
+import org.dataloader.DataLoaderOptions;
+import org.dataloader.annotations.PublicSpi;
+import org.jspecify.annotations.NullMarked;
+
+import java.time.Duration;
+
+/**
+ * A {@link BatchSizeController} decides how many keys a {@link DataLoader} will present to its {@link BatchLoader} function
+ * in a single call.  It gives a batch size that can change over time, for example as the latency of the batch loader function
+ * changes, while a fixed {@link DataLoaderOptions#maxBatchSize()}, if one is set, stays a hard limit above it.
+ * <p>
+ * After each batch loader call completes, the controller is told how many keys were in that batch and how long it took, and
+ * it can then grow or shrink the batch size that it hands out for subsequent dispatches.
+ * <p>
+ * A controller may be shared by many {@link DataLoader}s (say one per request) calling the same backend, in which case it
+ * learns from all of them, and hence implementations MUST be thread safe.
+ *
+ * @see AimdBatchSizeController
+ */
+@PublicSpi
+@NullMarked
+public interface BatchSizeController {
+
+    /**
+     * @return the maximum number of keys to present to the batch loader function in one call, which must be greater than zero
+     */
+    int getBatchSize();
+
+    /**
+     * Called when a call to the batch loader function has completed
+     *
+     * @param batchSize  the number of keys that were presented to the batch loader function
+     * @param latency    how long the batch loader function took to complete
+     * @param successful true if the batch loader function returned values, false if it failed as a whole
+     */
+    void onBatchCompleted(int batchSize, Duration latency, boolean successful);
+}
@@ -79,6 +79,14 @@ public class DefaultCacheMap<K, V> implements CacheMap<K, V> {
         return cache.putIfAbsent(key, value);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean replaceAtomically(K key, CompletableFuture<V> expectedValue, CompletableFuture<V> value) {
+        return cache.replace(key, expectedValue, value);
+    }
+
     /**
      * {@inheritDoc}
      */
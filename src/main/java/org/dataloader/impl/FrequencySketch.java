@@ -0,0 +1,130 @@
+/*
+ * Copyright 2015 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.dataloader.impl;
+
+import org.dataloader.annotations.Internal;
+
+/**
+ * A count-min sketch that estimates how often keys have been seen recently, as used by TinyLFU style cache admission.
+ * <p>
+ * Each key is counted in four 4-bit counters that are spread over a table of longs, so a counter saturates at 15.
+ * Once the number of increments reaches ten times the table size every counter is halved, so that the estimates
+ * follow what is popular now rather than what was popular once.
+ * <p>
+ * The sketch is not thread safe and callers are expected to guard it.
+ * <p>
+ * The seeds, the reset mask and the way a key is spread and indexed into the table are taken from the
+ * {@code FrequencySketch} of the <a href="https://github.com/ben-manes/caffeine">Caffeine</a> cache by Ben Manes,
+ * which is available under the Apache License, Version 2.0 as per the notice above.
+ */
+@Internal
+public class FrequencySketch {
+
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int MAX_TABLE_SIZE = 1 << 24;
+
+    private long[] table = new long[0];
+    private int tableMask;
+    private int sampleSize;
+    private int size;
+
+    /**
+     * Grows the sketch so that it can tell apart the frequencies of roughly this many keys
+     *
+     * @param maximumSize the number of keys the sketch should cope with
+     */
+    public void ensureCapacity(long maximumSize) {
+        int maximum = (int) Math.min(Math.max(maximumSize, 8), MAX_TABLE_SIZE);
+        if (table.length >= maximum) {
+            return;
+        }
+        table = new long[Integer.highestOneBit(maximum - 1) << 1];
+        tableMask = table.length - 1;
+        sampleSize = 10 * table.length;
+        size = 0;
+    }
+
+    /**
+     * @param hashCode the hash code of the key
+     *
+     * @return the estimated number of times the key has been seen, up to 15
+     */
+    public int frequency(int hashCode) {
+        if (table.length == 0) {
+            return 0;
+        }
+        int hash = spread(hashCode);
+        int start = (hash & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * Records one more sighting of a key
+     *
+     * @param hashCode the hash code of the key
+     */
+    public void increment(int hashCode) {
+        if (table.length == 0) {
+            return;
+        }
+        int hash = spread(hashCode);
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+        if (added && ++size == sampleSize) {
+            reset();
+        }
+    }
+
+    private boolean incrementAt(int index, int counter) {
+        int offset = counter << 2;
+        long mask = 0xfL << offset;
+        if ((table[index] & mask) != mask) {
+            table[index] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size /= 2;
+    }
+
+    private int indexOf(int hash, int depth) {
+        long h = (hash + SEEDS[depth]) * SEEDS[depth];
+        h += h >>> 32;
+        return ((int) h) & tableMask;
+    }
+
+    private static int spread(int hashCode) {
+        int h = ((hashCode >>> 16) ^ hashCode) * 0x45d9f3b;
+        h = ((h >>> 16) ^ h) * 0x45d9f3b;
+        return (h >>> 16) ^ h;
+    }
+}
@@ -0,0 +1,208 @@
+package org.dataloader.impl;
+
+import org.dataloader.CacheMap;
+import org.dataloader.annotations.GuardedBy;
+import org.dataloader.annotations.Internal;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A {@link CacheMap} of futures keyed by primitive {@code long} keys.
+ * <p>
+ * The keys and futures are held in two parallel arrays that are probed linearly from the hash of the key, so a
+ * cached key costs a {@code long} slot rather than a boxed {@link Long} and a hash map entry.  Lookups, which is what
+ * every cache hit does, take no lock: a slot's key is written before its future is published and a removed future
+ * is replaced by a marker rather than shifting its neighbours, so a reader never sees a half moved entry.  Adding,
+ * removing and clearing, which happen at most once per distinct key, hold the monitor of the cache, and the marked
+ * slots are only reclaimed when the table is rebuilt.  The boxed {@link CacheMap} methods are there so the cache
+ * can be handed out via {@link org.dataloader.DataLoader#getCacheMap()} and they expect {@link Long} keys.
+ *
+ * @param <V> type parameter indicating the type of the data that is cached
+ */
+@Internal
+@NullMarked
+public class LongFutureCache<V extends @Nullable Object> implements CacheMap<Object, V> {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final Object REMOVED = new Object();
+    private static final VarHandle FUTURES = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    private static class Table {
+        final long[] keys;
+        // a null future marks a slot that has never been used
+        final @Nullable Object[] futures;
+
+        Table(int capacity) {
+            this.keys = new long[capacity];
+            this.futures = new Object[capacity];
+        }
+
+        int mask() {
+            return keys.length - 1;
+        }
+    }
+
+    private volatile Table table = new Table(INITIAL_CAPACITY);
+    private volatile int size;
+    // live and removed slots, which together must leave the table at least half empty
+    @GuardedBy("this")
+    private int usedSlots;
+
+    /**
+     * Gets the future cached for the key
+     *
+     * @param key the key to look up
+     *
+     * @return the cached future or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public @Nullable CompletableFuture<V> get(long key) {
+        Table table = this.table;
+        int mask = table.mask();
+        int slot = hash(key) & mask;
+        Object future;
+        while ((future = FUTURES.getAcquire(table.futures, slot)) != null) {
+            if (future != REMOVED && table.keys[slot] == key) {
+                return (CompletableFuture<V>) future;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Caches the future for the key unless there is already a future cached for it
+     *
+     * @param key    the key to cache
+     * @param future the future to cache
+     *
+     * @return the future that was already cached or null if the given future was cached
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized @Nullable CompletableFuture<V> putIfAbsent(long key, CompletableFuture<V> future) {
+        Table table = this.table;
+        int mask = table.mask();
+        int slot = hash(key) & mask;
+        Object cached;
+        while ((cached = table.futures[slot]) != null) {
+            if (cached != REMOVED && table.keys[slot] == key) {
+                return (CompletableFuture<V>) cached;
+            }
+            slot = (slot + 1) & mask;
+        }
+        table.keys[slot] = key;
+        FUTURES.setRelease(table.futures, slot, future);
+        size++;
+        if (++usedSlots > table.keys.length / 2) {
+            rebuild(table);
+        }
+        return null;
+    }
+
+    /**
+     * Removes the future cached for the key, if any
+     *
+     * @param key the key to remove
+     */
+    public synchronized void delete(long key) {
+        Table table = this.table;
+        int mask = table.mask();
+        int slot = hash(key) & mask;
+        Object cached;
+        while ((cached = table.futures[slot]) != null) {
+            if (cached != REMOVED && table.keys[slot] == key) {
+                FUTURES.setRelease(table.futures, slot, REMOVED);
+                size--;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    @GuardedBy("this")
+    private void rebuild(Table table) {
+        // the table only grows when it is mostly live entries, otherwise it is just cleared of removed slots
+        int capacity = size > table.keys.length / 4 ? table.keys.length * 2 : table.keys.length;
+        Table rebuilt = new Table(capacity);
+        int mask = rebuilt.mask();
+        for (int i = 0; i < table.keys.length; i++) {
+            Object future = table.futures[i];
+            if (future != null && future != REMOVED) {
+                int slot = hash(table.keys[i]) & mask;
+                while (rebuilt.futures[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                rebuilt.keys[slot] = table.keys[i];
+                rebuilt.futures[slot] = future;
+            }
+        }
+        usedSlots = size;
+        // the volatile write publishes the rebuilt table to the lock free readers
+        this.table = rebuilt;
+    }
+
+    private static int hash(long key) {
+        // sequential database ids would otherwise pile up in neighbouring slots
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(toLong(key)) != null;
+    }
+
+    @Override
+    public @Nullable CompletableFuture<V> get(Object key) {
+        return get(toLong(key));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Collection<CompletableFuture<V>> getAll() {
+        Table table = this.table;
+        List<CompletableFuture<V>> all = new ArrayList<>(size);
+        for (int i = 0; i < table.futures.length; i++) {
+            Object future = FUTURES.getAcquire(table.futures, i);
+            if (future != null && future != REMOVED) {
+                all.add((CompletableFuture<V>) future);
+            }
+        }
+        return all;
+    }
+
+    @Override
+    public @Nullable CompletableFuture<V> putIfAbsentAtomically(Object key, CompletableFuture<V> value) {
+        return putIfAbsent(toLong(key), value);
+    }
+
+    @Override
+    public CacheMap<Object, V> delete(Object key) {
+        delete(toLong(key));
+        return this;
+    }
+
+    @Override
+    public synchronized CacheMap<Object, V> clear() {
+        table = new Table(INITIAL_CAPACITY);
+        size = 0;
+        usedSlots = 0;
+        return this;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private static long toLong(Object key) {
+        return (Long) key;
+    }
+}
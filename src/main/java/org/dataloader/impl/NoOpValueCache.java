@@ -1,6 +1,7 @@
 package org.dataloader.impl;
 
 
+import org.dataloader.CachedValues;
 import org.dataloader.Try;
 import org.dataloader.ValueCache;
 import org.dataloader.annotations.Internal;
@@ -45,6 +46,11 @@ public class NoOpValueCache<K, V> implements ValueCache<K, V> {
         throw NOT_SUPPORTED;
     }
 
+    @Override
+    public CompletableFuture<CachedValues<V>> getCachedValues(List<K> keys) throws ValueCachingNotSupported {
+        throw NOT_SUPPORTED;
+    }
+
     /**
      * {@inheritDoc}
      */
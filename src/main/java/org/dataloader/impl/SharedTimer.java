@@ -0,0 +1,38 @@
+package org.dataloader.impl;
+
+import org.dataloader.annotations.Internal;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+/**
+ * A lazily created, process wide {@link ScheduledExecutorService} that data loaders can share for their short-lived
+ * timed tasks, so that many data loaders do not each need their own thread.
+ * <p>
+ * It runs on a single daemon thread, which means its tasks MUST be quick and MUST NOT block.
+ */
+@Internal
+public class SharedTimer {
+
+    private static class Holder {
+        static final ScheduledExecutorService TIMER = createTimer();
+    }
+
+    private static ScheduledExecutorService createTimer() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "dataloader-shared-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // we don't want cancelled tasks to hang around until their delay is up
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    /**
+     * @return the shared timer
+     */
+    public static ScheduledExecutorService get() {
+        return Holder.TIMER;
+    }
+}
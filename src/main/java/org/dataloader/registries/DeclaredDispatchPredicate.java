@@ -0,0 +1,30 @@
+package org.dataloader.registries;
+
+import org.dataloader.DataLoader;
+import org.dataloader.annotations.Internal;
+
+/**
+ * A {@link DispatchPredicate} that declares whether it is time based, which the {@link DispatchPredicate} factory
+ * and composition methods return
+ */
+@Internal
+final class DeclaredDispatchPredicate implements DispatchPredicate {
+
+    private final DispatchPredicate predicate;
+    private final boolean timeBased;
+
+    DeclaredDispatchPredicate(DispatchPredicate predicate, boolean timeBased) {
+        this.predicate = predicate;
+        this.timeBased = timeBased;
+    }
+
+    @Override
+    public boolean test(String dataLoaderKey, DataLoader<?, ?> dataLoader) {
+        return predicate.test(dataLoaderKey, dataLoader);
+    }
+
+    @Override
+    public boolean isTimeBased() {
+        return timeBased;
+    }
+}
@@ -7,6 +7,10 @@ import java.util.Objects;
 
 /**
  * A predicate class used by {@link ScheduledDataLoaderRegistry} to decide whether to dispatch or not
+ * <p>
+ * A predicate is time based unless it declares otherwise via {@link #isTimeBased()}.  The predicates made by
+ * {@link #dispatchIfDepthGreaterThan(int)} and {@link #loadTriggered(DispatchPredicate)} only change their answer when
+ * loads are queued, which lets a registry in event driven mode test them as loads arrive rather than polling them.
  */
 @FunctionalInterface
 public interface DispatchPredicate {
@@ -14,11 +18,11 @@ public interface DispatchPredicate {
     /**
      * A predicate that always returns true
      */
-    DispatchPredicate DISPATCH_ALWAYS = (dataLoaderKey, dataLoader) -> true;
+    DispatchPredicate DISPATCH_ALWAYS = new DeclaredDispatchPredicate((dataLoaderKey, dataLoader) -> true, false);
     /**
      * A predicate that always returns false
      */
-    DispatchPredicate DISPATCH_NEVER = (dataLoaderKey, dataLoader) -> false;
+    DispatchPredicate DISPATCH_NEVER = new DeclaredDispatchPredicate((dataLoaderKey, dataLoader) -> false, false);
 
     /**
      * This predicate tests whether the data loader should be dispatched or not.
@@ -30,6 +34,19 @@ public interface DispatchPredicate {
      */
     boolean test(String dataLoaderKey, DataLoader<?, ?> dataLoader);
 
+    /**
+     * A time based predicate can change its answer just because time passes, and so a {@link ScheduledDataLoaderRegistry}
+     * has to keep testing it on its schedule.  A predicate that is not time based only changes its answer when loads are
+     * queued in the data loader, and so a registry in event driven mode tests it as each load is queued instead.
+     * <p>
+     * Unless a predicate declares otherwise it is assumed to be time based.
+     *
+     * @return true if the predicate can change its answer as time passes
+     */
+    default boolean isTimeBased() {
+        return true;
+    }
+
 
     /**
      * Returns a composed predicate that represents a short-circuiting logical
@@ -43,7 +60,7 @@ public interface DispatchPredicate {
      */
     default DispatchPredicate and(DispatchPredicate other) {
         Objects.requireNonNull(other);
-        return (k, dl) -> test(k, dl) && other.test(k, dl);
+        return new DeclaredDispatchPredicate((k, dl) -> test(k, dl) && other.test(k, dl), isTimeBased() || other.isTimeBased());
     }
 
     /**
@@ -54,7 +71,7 @@ public interface DispatchPredicate {
      * predicate
      */
     default DispatchPredicate negate() {
-        return (k, dl) -> !test(k, dl);
+        return new DeclaredDispatchPredicate((k, dl) -> !test(k, dl), isTimeBased());
     }
 
     /**
@@ -69,7 +86,7 @@ public interface DispatchPredicate {
      */
     default DispatchPredicate or(DispatchPredicate other) {
         Objects.requireNonNull(other);
-        return (k, dl) -> test(k, dl) || other.test(k, dl);
+        return new DeclaredDispatchPredicate((k, dl) -> test(k, dl) || other.test(k, dl), isTimeBased() || other.isTimeBased());
     }
 
     /**
@@ -97,6 +114,19 @@ public interface DispatchPredicate {
      * @return true if the {@link DataLoader#dispatchDepth()} is greater than the specified depth.
      */
     static DispatchPredicate dispatchIfDepthGreaterThan(int depth) {
-        return (dataLoaderKey, dataLoader) -> dataLoader.dispatchDepth() > depth;
+        return new DeclaredDispatchPredicate((dataLoaderKey, dataLoader) -> dataLoader.dispatchDepth() > depth, false);
+    }
+
+    /**
+     * This declares that the predicate only changes its answer when loads are queued in the {@link DataLoader}, for
+     * example because it only looks at the {@link DataLoader#dispatchDepth()}, and so is not {@link #isTimeBased()}.
+     *
+     * @param predicate the predicate to declare as load triggered
+     *
+     * @return a predicate that tests the same as the given one but is not time based
+     */
+    static DispatchPredicate loadTriggered(DispatchPredicate predicate) {
+        Objects.requireNonNull(predicate);
+        return new DeclaredDispatchPredicate(predicate, false);
     }
 }
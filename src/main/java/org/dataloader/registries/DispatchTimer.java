@@ -0,0 +1,59 @@
+package org.dataloader.registries;
+
+import org.dataloader.annotations.PublicSpi;
+import org.jspecify.annotations.NullMarked;
+
+import java.time.Duration;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.dataloader.impl.Assertions.nonNull;
+
+/**
+ * The timer that a {@link ScheduledDataLoaderRegistry} schedules its dispatch checks on.
+ * <p>
+ * By default a registry uses its {@link ScheduledExecutorService} via {@link #fromExecutor(ScheduledExecutorService)}, but
+ * when there are many registries, say one per request, a {@link HashedWheelTimer} shared between them can schedule and
+ * cancel their tasks far more cheaply.
+ */
+@PublicSpi
+@NullMarked
+public interface DispatchTimer {
+
+    /**
+     * A task that has been scheduled on a {@link DispatchTimer}
+     */
+    interface Timeout {
+        /**
+         * Cancels the task so that it will not run if it has not already
+         *
+         * @return true if the task was cancelled before it ran
+         */
+        boolean cancel();
+    }
+
+    /**
+     * Schedules a task to run once after the delay.  The task MUST be quick, since timers typically run their tasks
+     * on a single thread.
+     *
+     * @param task  the task to run
+     * @param delay how long to wait before running the task
+     *
+     * @return a timeout that can cancel the task
+     */
+    Timeout schedule(Runnable task, Duration delay);
+
+    /**
+     * @param executorService the executor service to schedule tasks on
+     *
+     * @return a timer that schedules its tasks on the executor service
+     */
+    static DispatchTimer fromExecutor(ScheduledExecutorService executorService) {
+        nonNull(executorService);
+        return (task, delay) -> {
+            ScheduledFuture<?> future = executorService.schedule(task, delay.toNanos(), TimeUnit.NANOSECONDS);
+            return () -> future.cancel(false);
+        };
+    }
+}
@@ -0,0 +1,251 @@
+package org.dataloader.registries;
+
+import org.dataloader.annotations.GuardedBy;
+import org.dataloader.annotations.PublicApi;
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.dataloader.impl.Assertions.assertState;
+import static org.dataloader.impl.Assertions.nonNull;
+
+/**
+ * A {@link DispatchTimer} that keeps its tasks in a wheel of buckets, one bucket per tick, rather than in a priority
+ * queue.  Scheduling a task links it into the bucket of the tick it is due in, and cancelling it unlinks it straight away,
+ * both in constant time, so cancelled tasks never wait around in the timer until they would have run.
+ * <p>
+ * The price is resolution: tasks run on the first tick at or after their delay, so they can run up to one tick late.
+ * That suits the dispatch checks of {@link ScheduledDataLoaderRegistry}s, which are typically scheduled every few milliseconds,
+ * and one timer can be shared by all the registries in the process.
+ * <p>
+ * Tasks run on a single daemon thread that is started with the first task, so they MUST be quick and MUST NOT block.
+ * Once closed the timer drops its tasks and schedules no more.
+ */
+@PublicApi
+@NullMarked
+public class HashedWheelTimer implements DispatchTimer, AutoCloseable {
+
+    private static class Entry implements Timeout {
+        final HashedWheelTimer timer;
+        final Runnable task;
+        final long deadlineTick;
+        @Nullable Entry previous;
+        @Nullable Entry next;
+        int bucket = -1;
+
+        Entry(HashedWheelTimer timer, Runnable task, long deadlineTick) {
+            this.timer = timer;
+            this.task = task;
+            this.deadlineTick = deadlineTick;
+        }
+
+        @Override
+        public boolean cancel() {
+            synchronized (timer.lock) {
+                if (bucket < 0 || timer.closed) {
+                    return false;
+                }
+                timer.unlink(this);
+                return true;
+            }
+        }
+    }
+
+    private final long tickNanos;
+    private final int mask;
+    private final Object lock = new Object();
+    @GuardedBy("lock")
+    private final @Nullable Entry[] buckets;
+    @GuardedBy("lock")
+    private long currentTick;
+    @GuardedBy("lock")
+    private int pendingCount;
+    @GuardedBy("lock")
+    private @Nullable Thread worker;
+    private volatile long startNanos;
+    private volatile boolean closed;
+
+    private HashedWheelTimer(Builder builder) {
+        this.tickNanos = builder.tickDuration.toNanos();
+        int ticksPerWheel = 1 << (32 - Integer.numberOfLeadingZeros(builder.ticksPerWheel - 1));
+        this.mask = ticksPerWheel - 1;
+        this.buckets = new Entry[ticksPerWheel];
+    }
+
+    /**
+     * By default, the timer ticks every 10 milliseconds with 512 ticks per wheel.
+     *
+     * @return a builder of hashed wheel timers
+     */
+    public static Builder newHashedWheelTimer() {
+        return new Builder();
+    }
+
+    @Override
+    public Timeout schedule(Runnable task, Duration delay) {
+        nonNull(task);
+        synchronized (lock) {
+            assertState(!closed, () -> "The timer has been closed");
+            if (worker == null) {
+                startNanos = System.nanoTime();
+                worker = new Thread(this::run, "dataloader-wheel-timer");
+                worker.setDaemon(true);
+                worker.start();
+            }
+            long dueNanos = System.nanoTime() - startNanos + Math.max(0, delay.toNanos());
+            // a task due in a tick that has already gone by runs on the next one
+            long deadlineTick = Math.max(currentTick + 1, (dueNanos + tickNanos - 1) / tickNanos);
+            Entry entry = new Entry(this, task, deadlineTick);
+            link(entry);
+            return entry;
+        }
+    }
+
+    /**
+     * @return the number of tasks that are waiting to run
+     */
+    public int getPendingCount() {
+        synchronized (lock) {
+            return pendingCount;
+        }
+    }
+
+    /**
+     * Stops the timer and drops the tasks that have not run yet
+     */
+    @Override
+    public void close() {
+        Thread stopping;
+        synchronized (lock) {
+            closed = true;
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = null;
+            }
+            pendingCount = 0;
+            stopping = worker;
+        }
+        if (stopping != null) {
+            LockSupport.unpark(stopping);
+        }
+    }
+
+    private void run() {
+        long tick = 0;
+        while (!closed) {
+            tick++;
+            long tickAt = startNanos + tick * tickNanos;
+            long sleepNanos;
+            while ((sleepNanos = tickAt - System.nanoTime()) > 0 && !closed) {
+                LockSupport.parkNanos(this, sleepNanos);
+            }
+            for (Entry expired : expire(tick)) {
+                try {
+                    expired.task.run();
+                } catch (Throwable ignored) {
+                    // one failing task must not stop the timer
+                }
+            }
+        }
+    }
+
+    private List<Entry> expire(long tick) {
+        List<Entry> expired = new ArrayList<>();
+        synchronized (lock) {
+            currentTick = tick;
+            Entry entry = buckets[(int) (tick & mask)];
+            while (entry != null) {
+                Entry next = entry.next;
+                if (entry.deadlineTick <= tick) {
+                    unlink(entry);
+                    expired.add(entry);
+                }
+                entry = next;
+            }
+        }
+        return expired;
+    }
+
+    @GuardedBy("lock")
+    private void link(Entry entry) {
+        int bucket = (int) (entry.deadlineTick & mask);
+        Entry head = buckets[bucket];
+        entry.next = head;
+        if (head != null) {
+            head.previous = entry;
+        }
+        buckets[bucket] = entry;
+        entry.bucket = bucket;
+        pendingCount++;
+    }
+
+    @GuardedBy("lock")
+    private void unlink(Entry entry) {
+        if (entry.previous != null) {
+            entry.previous.next = entry.next;
+        } else if (buckets[entry.bucket] == entry) {
+            buckets[entry.bucket] = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.previous = entry.previous;
+        }
+        entry.previous = null;
+        entry.next = null;
+        entry.bucket = -1;
+        pendingCount--;
+    }
+
+    @Override
+    public String toString() {
+        return "HashedWheelTimer{" +
+                "tickNanos=" + tickNanos +
+                ", ticksPerWheel=" + buckets.length +
+                ", pendingCount=" + getPendingCount() +
+                '}';
+    }
+
+    /**
+     * A builder of {@link HashedWheelTimer}s
+     */
+    public static class Builder {
+        private Duration tickDuration = Duration.ofMillis(10);
+        private int ticksPerWheel = 512;
+
+        /**
+         * Sets how often the timer ticks, which is how late a task can run
+         *
+         * @param tickDuration the time between ticks
+         *
+         * @return this builder for a fluent pattern
+         */
+        public Builder tickDuration(Duration tickDuration) {
+            this.tickDuration = nonNull(tickDuration);
+            return this;
+        }
+
+        /**
+         * Sets how many ticks one turn of the wheel has, which is rounded up to a power of two.  Tasks due further away
+         * than one turn stay in their bucket for more turns, so this should cover the usual delays.
+         *
+         * @param ticksPerWheel the number of ticks per wheel
+         *
+         * @return this builder for a fluent pattern
+         */
+        public Builder ticksPerWheel(int ticksPerWheel) {
+            this.ticksPerWheel = ticksPerWheel;
+            return this;
+        }
+
+        /**
+         * @return the newly built {@link HashedWheelTimer}
+         */
+        public HashedWheelTimer build() {
+            assertState(!tickDuration.isNegative() && !tickDuration.isZero(), () -> "The tick duration MUST be greater than zero");
+            assertState(ticksPerWheel > 0 && ticksPerWheel <= 1 << 30, () -> "The ticks per wheel MUST be between 1 and 2^30");
+            return new HashedWheelTimer(this);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package org.dataloader.registries;
 
 import org.dataloader.DataLoader;
 import org.dataloader.DataLoaderRegistry;
+import org.dataloader.DispatchResult;
 import org.dataloader.annotations.ExperimentalApi;
 import org.dataloader.impl.Assertions;
 import org.dataloader.instrumentation.DataLoaderInstrumentation;
@@ -9,13 +10,16 @@ import org.jspecify.annotations.NullMarked;
 import org.jspecify.annotations.Nullable;
 
 import java.time.Duration;
+import java.util.LinkedHashSet;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 
+import static java.util.Collections.emptyList;
+import static java.util.concurrent.CompletableFuture.completedFuture;
 import static org.dataloader.impl.Assertions.nonNull;
 
 /**
@@ -50,9 +54,22 @@ import static org.dataloader.impl.Assertions.nonNull;
  * If you wanted to create a ScheduledDataLoaderRegistry that started a rescheduling immediately, just create one and
  * call {@link #rescheduleNow()}.
  * <p>
- * By default, it uses a {@link Executors#newSingleThreadScheduledExecutor()}} to schedule the tasks.  However, if you
+ * When {@link #eventDrivenMode} is true, a data loader whose predicate is not {@link DispatchPredicate#isTimeBased()}, say
+ * {@link DispatchPredicate#dispatchIfDepthGreaterThan(int)}, is not rescheduled when its predicate returns false.  Instead,
+ * the predicate is tested again each time a load is queued in that data loader, and the data loader is dispatched as soon
+ * as it returns true.  Only data loaders with time based predicates are rescheduled, which saves a timer task per data loader
+ * per schedule when there are many registries.  The registry notices queued loads via a listener that it sets on its data loaders,
+ * which leaves their load path as cheap as it is without a {@link DataLoaderInstrumentation}.
+ * <p>
+ * By default, it uses a single threaded {@link ScheduledThreadPoolExecutor} to schedule the tasks.  However, if you
  * are creating a {@link ScheduledDataLoaderRegistry} per request you will want to look at sharing this {@link ScheduledExecutorService}
- * to avoid creating a new thread per registry created.
+ * to avoid creating a new thread per registry created.  Better still, give the registries a shared {@link DispatchTimer}
+ * such as a {@link HashedWheelTimer}, which schedules and cancels tasks in constant time.  Either way, closing the registry
+ * cancels the tasks it has scheduled.
+ * <p>
+ * Dependencies declared with {@link #dependsOn(String, String)} are followed as in a {@link DataLoaderRegistry}, with the
+ * predicate of each data loader tested before it is dispatched, and when a rescheduled check dispatches an upstream data
+ * loader its downstream data loaders are checked again once that batch completes.
  * <p>
  * This code is currently marked as {@link ExperimentalApi}
  */
@@ -62,41 +79,71 @@ public class ScheduledDataLoaderRegistry extends DataLoaderRegistry implements A
 
     private final Map<DataLoader<?, ?>, DispatchPredicate> dataLoaderPredicates = new ConcurrentHashMap<>();
     private final DispatchPredicate dispatchPredicate;
-    private final ScheduledExecutorService scheduledExecutorService;
+    private final @Nullable ScheduledExecutorService scheduledExecutorService;
     private final boolean defaultExecutorUsed;
+    private final DispatchTimer dispatchTimer;
+    private final Set<ScheduledDispatch> scheduledDispatches = ConcurrentHashMap.newKeySet();
     private final Duration schedule;
     private final boolean tickerMode;
+    private final boolean eventDrivenMode;
+    private final Set<String> awaitingLoads = ConcurrentHashMap.newKeySet();
     private volatile boolean closed;
 
+    private static final DispatchResult<?> NOT_DISPATCHED = new DispatchResult<>(completedFuture(emptyList()), 0);
+
     private ScheduledDataLoaderRegistry(Builder builder) {
         super(builder.dataLoaders, builder.instrumentation);
-        this.scheduledExecutorService = Assertions.nonNull(builder.scheduledExecutorService);
+        this.scheduledExecutorService = builder.scheduledExecutorService;
         this.defaultExecutorUsed = builder.defaultExecutorUsed;
+        this.dispatchTimer = Assertions.nonNull(builder.dispatchTimer);
         this.schedule = builder.schedule;
         this.tickerMode = builder.tickerMode;
+        this.eventDrivenMode = builder.eventDrivenMode;
         this.closed = false;
         this.dispatchPredicate = builder.dispatchPredicate;
-        this.dataLoaderPredicates.putAll(builder.dataLoaderPredicates);
+        builder.downstreamKeys.forEach((upstreamKey, keys) -> keys.forEach(key -> dependsOn(key, upstreamKey)));
+        // the registered data loaders can be new instrumented instances, so the predicates are moved over to them
+        builder.dataLoaders.forEach((key, dataLoader) -> {
+            DispatchPredicate predicate = builder.dataLoaderPredicates.get(dataLoader);
+            if (predicate != null) {
+                this.dataLoaderPredicates.put(dataLoaders.get(key), predicate);
+            }
+        });
+        if (eventDrivenMode) {
+            listenForQueuedLoads();
+        }
     }
 
     /**
-     * Once closed this registry will never again reschedule checks
+     * Once closed this registry will never again reschedule checks, and the checks it has scheduled are cancelled
      */
     @Override
     public void close() {
         closed = true;
-        if (defaultExecutorUsed) {
+        awaitingLoads.clear();
+        for (ScheduledDispatch scheduledDispatch : scheduledDispatches) {
+            scheduledDispatch.cancel();
+        }
+        scheduledDispatches.clear();
+        if (defaultExecutorUsed && scheduledExecutorService != null) {
             scheduledExecutorService.shutdown();
         }
     }
 
     /**
-     * @return executor being used by this registry
+     * @return executor being used by this registry, or null if it was given a {@link DispatchTimer} and no executor
      */
-    public ScheduledExecutorService getScheduledExecutorService() {
+    public @Nullable ScheduledExecutorService getScheduledExecutorService() {
         return scheduledExecutorService;
     }
 
+    /**
+     * @return the timer that this registry schedules its checks on
+     */
+    public DispatchTimer getDispatchTimer() {
+        return dispatchTimer;
+    }
+
     /**
      * @return how long the {@link ScheduledExecutorService} task will wait before checking the predicate again
      */
@@ -111,6 +158,13 @@ public class ScheduledDataLoaderRegistry extends DataLoaderRegistry implements A
         return tickerMode;
     }
 
+    /**
+     * @return true of the registry is in event driven mode or false otherwise
+     */
+    public boolean isEventDrivenMode() {
+        return eventDrivenMode;
+    }
+
     /**
      * This will combine all the current data loaders in this registry and all the data loaders from the specified registry
      * and return a new combined registry
@@ -138,6 +192,7 @@ public class ScheduledDataLoaderRegistry extends DataLoaderRegistry implements A
         if (dataLoader != null) {
             dataLoaderPredicates.remove(dataLoader);
         }
+        awaitingLoads.remove(key);
         return this;
     }
 
@@ -166,7 +221,12 @@ public class ScheduledDataLoaderRegistry extends DataLoaderRegistry implements A
      * @return this registry
      */
     public ScheduledDataLoaderRegistry register(String key, DataLoader<?, ?> dataLoader, DispatchPredicate dispatchPredicate) {
-        dataLoaders.put(key, dataLoader);
+        if (eventDrivenMode) {
+            // the data loader is named and listened to like the other registered data loaders so it can tell the registry about its loads
+            dataLoader = registerAndGet(key, dataLoader);
+        } else {
+            dataLoaders.put(key, dataLoader);
+        }
         dataLoaderPredicates.put(dataLoader, dispatchPredicate);
         return this;
     }
@@ -178,6 +238,10 @@ public class ScheduledDataLoaderRegistry extends DataLoaderRegistry implements A
 
     @Override
     public int dispatchAllWithCount() {
+        if (!downstreamKeys.isEmpty()) {
+            // the dispatch levels are followed as in any registry, with each dispatch going through the predicates
+            return super.dispatchAllWithCount();
+        }
         int sum = 0;
         for (Map.Entry<String, DataLoader<?, ?>> entry : dataLoaders.entrySet()) {
             DataLoader<?, ?> dataLoader = entry.getValue();
@@ -187,6 +251,18 @@ public class ScheduledDataLoaderRegistry extends DataLoaderRegistry implements A
         return sum;
     }
 
+    /**
+     * The dispatch predicates are tested for each data loader, as in {@link #dispatchAllWithCount()}
+     */
+    @Override
+    protected DispatchResult<?> dispatchWithCounts(String key, DataLoader<?, ?> dataLoader) {
+        boolean shouldDispatch = shouldDispatch(key, dataLoader);
+        DispatchResult<?> dispatchResult = shouldDispatch ? dataLoader.dispatchWithCounts() : NOT_DISPATCHED;
+        if (tickerMode || !shouldDispatch) {
+            awaitLoadsOrReschedule(key, dataLoader);
+        }
+        return dispatchResult;
+    }
 
     /**
      * This will immediately dispatch the {@link DataLoader}s in the registry
@@ -214,7 +290,7 @@ public class ScheduledDataLoaderRegistry extends DataLoaderRegistry implements A
      * a pre-check of the predicate like {@link #dispatchAll()} would
      */
     public void rescheduleNow() {
-        dataLoaders.forEach(this::reschedule);
+        dataLoaders.forEach(this::awaitLoadsOrReschedule);
     }
 
     /**
@@ -226,34 +302,64 @@ public class ScheduledDataLoaderRegistry extends DataLoaderRegistry implements A
      * @return true if it should dispatch
      */
     private boolean shouldDispatch(String dataLoaderKey, DataLoader<?, ?> dataLoader) {
+        return predicateOf(dataLoader).test(dataLoaderKey, dataLoader);
+    }
+
+    private DispatchPredicate predicateOf(DataLoader<?, ?> dataLoader) {
         DispatchPredicate dispatchPredicate = dataLoaderPredicates.get(dataLoader);
-        if (dispatchPredicate != null) {
-            return dispatchPredicate.test(dataLoaderKey, dataLoader);
+        return dispatchPredicate != null ? dispatchPredicate : this.dispatchPredicate;
+    }
+
+    private void awaitLoadsOrReschedule(String key, DataLoader<?, ?> dataLoader) {
+        if (eventDrivenMode && !predicateOf(dataLoader).isTimeBased()) {
+            if (!closed) {
+                awaitingLoads.add(key);
+                // a load queued after the predicate was tested but before the key was added saw no awaiting key and
+                // so did not dispatch, which is why the predicate is tested again now that the key is visible
+                if (dataLoader.dispatchDepth() > 0 && shouldDispatch(key, dataLoader) && awaitingLoads.remove(key)) {
+                    dispatchOrReschedule(key, dataLoader);
+                }
+            }
+        } else {
+            reschedule(key, dataLoader);
+        }
+    }
+
+    @Override
+    protected void loadQueued(DataLoader<?, ?> dataLoader) {
+        // the data loaders are not necessarily named after their keys, so the key is found among the few awaiting loads
+        for (String key : awaitingLoads) {
+            if (dataLoaders.get(key) == dataLoader) {
+                if (!shouldDispatch(key, dataLoader)) {
+                    return;
+                }
+                // only one of the threads that see the predicate become true gets to dispatch
+                if (awaitingLoads.remove(key)) {
+                    dispatchOrReschedule(key, dataLoader);
+                }
+                return;
+            }
         }
-        return this.dispatchPredicate.test(dataLoaderKey, dataLoader);
     }
 
     private void reschedule(String key, DataLoader<?, ?> dataLoader) {
         if (!closed) {
-            Runnable runThis = () -> dispatchOrReschedule(key, dataLoader);
-            scheduledExecutorService.schedule(runThis, schedule.toMillis(), TimeUnit.MILLISECONDS);
+            ScheduledDispatch scheduledDispatch = new ScheduledDispatch(key, dataLoader);
+            scheduledDispatches.add(scheduledDispatch);
+            scheduledDispatch.timeout = dispatchTimer.schedule(scheduledDispatch, schedule);
+            if (closed) {
+                // the registry was closed while this was being scheduled
+                scheduledDispatch.cancel();
+            }
         }
     }
 
     private int dispatchOrReschedule(String key, DataLoader<?, ?> dataLoader) {
-        int sum = 0;
-        boolean shouldDispatch = shouldDispatch(key, dataLoader);
-        if (shouldDispatch) {
-            sum = dataLoader.dispatchWithCounts().getKeysCount();
-        }
-        if (tickerMode || !shouldDispatch) {
-            reschedule(key, dataLoader);
-        }
-        return sum;
+        return dispatchWithCounts(key, dataLoader).getKeysCount();
     }
 
     /**
-     * By default, this will create use a {@link Executors#newSingleThreadScheduledExecutor()}
+     * By default, this will create and use a single threaded {@link ScheduledThreadPoolExecutor}
      * and a schedule duration of 10 milliseconds.
      *
      * @return A builder of {@link ScheduledDataLoaderRegistry}s
@@ -262,15 +368,50 @@ public class ScheduledDataLoaderRegistry extends DataLoaderRegistry implements A
         return new Builder();
     }
 
+    /**
+     * A dispatch check that has been scheduled, which the registry keeps until it runs so that it can be cancelled
+     */
+    private class ScheduledDispatch implements Runnable {
+        private final String key;
+        private final DataLoader<?, ?> dataLoader;
+        private volatile DispatchTimer.@Nullable Timeout timeout;
+
+        ScheduledDispatch(String key, DataLoader<?, ?> dataLoader) {
+            this.key = key;
+            this.dataLoader = dataLoader;
+        }
+
+        @Override
+        public void run() {
+            scheduledDispatches.remove(this);
+            if (downstreamKeys.isEmpty()) {
+                dispatchOrReschedule(key, dataLoader);
+            } else {
+                dispatchAndFollow(key);
+            }
+        }
+
+        void cancel() {
+            scheduledDispatches.remove(this);
+            DispatchTimer.Timeout timeout = this.timeout;
+            if (timeout != null) {
+                timeout.cancel();
+            }
+        }
+    }
+
     public static class Builder {
 
         private final Map<String, DataLoader<?, ?>> dataLoaders = new LinkedHashMap<>();
         private final Map<DataLoader<?, ?>, DispatchPredicate> dataLoaderPredicates = new LinkedHashMap<>();
+        private final Map<String, Set<String>> downstreamKeys = new LinkedHashMap<>();
         private DispatchPredicate dispatchPredicate = DispatchPredicate.DISPATCH_ALWAYS;
         private @Nullable ScheduledExecutorService scheduledExecutorService;
         private boolean defaultExecutorUsed = false;
+        private @Nullable DispatchTimer dispatchTimer;
         private Duration schedule = Duration.ofMillis(10);
         private boolean tickerMode = false;
+        private boolean eventDrivenMode = false;
         private @Nullable DataLoaderInstrumentation instrumentation;
 
 
@@ -286,6 +427,19 @@ public class ScheduledDataLoaderRegistry extends DataLoaderRegistry implements A
             return this;
         }
 
+        /**
+         * This sets the timer that the registry schedules its checks on instead of its {@link ScheduledExecutorService}.
+         * A timer such as a {@link HashedWheelTimer} can be shared by many registries, and like a provided
+         * {@link ScheduledExecutorService} it will NOT be closed when {@link ScheduledDataLoaderRegistry#close()} is called.
+         *
+         * @param dispatchTimer the timer to schedule checks on
+         * @return this builder for a fluent pattern
+         */
+        public Builder dispatchTimer(DispatchTimer dispatchTimer) {
+            this.dispatchTimer = nonNull(dispatchTimer);
+            return this;
+        }
+
         public Builder schedule(Duration schedule) {
             this.schedule = schedule;
             return this;
@@ -327,6 +481,7 @@ public class ScheduledDataLoaderRegistry extends DataLoaderRegistry implements A
          */
         public Builder registerAll(DataLoaderRegistry otherRegistry) {
             dataLoaders.putAll(otherRegistry.getDataLoadersMap());
+            downstreamKeysOf(otherRegistry).forEach((upstreamKey, keys) -> keys.forEach(key -> dependsOn(key, upstreamKey)));
             if (otherRegistry instanceof ScheduledDataLoaderRegistry) {
                 ScheduledDataLoaderRegistry other = (ScheduledDataLoaderRegistry) otherRegistry;
                 dataLoaderPredicates.putAll(other.dataLoaderPredicates);
@@ -334,6 +489,20 @@ public class ScheduledDataLoaderRegistry extends DataLoaderRegistry implements A
             return this;
         }
 
+        /**
+         * This declares that the keys of the data loader registered under {@code key} come from the values of the data
+         * loader registered under {@code upstreamKey}
+         *
+         * @param key         the key of the downstream data loader
+         * @param upstreamKey the key of the data loader whose values the downstream keys come from
+         * @return this builder for a fluent pattern
+         * @see DataLoaderRegistry#dependsOn(String, String)
+         */
+        public Builder dependsOn(String key, String upstreamKey) {
+            downstreamKeys.computeIfAbsent(upstreamKey, k -> new LinkedHashSet<>()).add(key);
+            return this;
+        }
+
         /**
          * This sets a default predicate on the {@link DataLoaderRegistry} that will control
          * whether all {@link DataLoader}s in the {@link DataLoaderRegistry }should be dispatched.
@@ -359,6 +528,19 @@ public class ScheduledDataLoaderRegistry extends DataLoaderRegistry implements A
             return this;
         }
 
+        /**
+         * This sets event driven mode on the registry.  When event driven mode is true, data loaders whose predicates
+         * are not {@link DispatchPredicate#isTimeBased()} are dispatched as soon as a queued load makes their predicate
+         * true rather than being rescheduled.
+         *
+         * @param eventDrivenMode true or false
+         * @return this builder for a fluent pattern
+         */
+        public Builder eventDrivenMode(boolean eventDrivenMode) {
+            this.eventDrivenMode = eventDrivenMode;
+            return this;
+        }
+
         public Builder instrumentation(DataLoaderInstrumentation instrumentation) {
             this.instrumentation = instrumentation;
             return this;
@@ -368,10 +550,16 @@ public class ScheduledDataLoaderRegistry extends DataLoaderRegistry implements A
          * @return the newly built {@link ScheduledDataLoaderRegistry}
          */
         public ScheduledDataLoaderRegistry build() {
-            if (scheduledExecutorService == null) {
-                scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+            // with a dispatch timer the executor is not used for scheduling, so there is no need for a thread of our own
+            if (scheduledExecutorService == null && dispatchTimer == null) {
+                ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+                executor.setRemoveOnCancelPolicy(true);
+                scheduledExecutorService = executor;
                 defaultExecutorUsed = true;
             }
+            if (dispatchTimer == null) {
+                dispatchTimer = DispatchTimer.fromExecutor(nonNull(scheduledExecutorService));
+            }
             return new ScheduledDataLoaderRegistry(this);
         }
     }
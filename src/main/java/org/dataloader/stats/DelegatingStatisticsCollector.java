@@ -3,8 +3,11 @@ package org.dataloader.stats;
 import org.dataloader.stats.context.IncrementBatchLoadCountByStatisticsContext;
 import org.dataloader.stats.context.IncrementBatchLoadExceptionCountStatisticsContext;
 import org.dataloader.stats.context.IncrementCacheHitCountStatisticsContext;
+import org.dataloader.stats.context.IncrementCoalescedCountStatisticsContext;
 import org.dataloader.stats.context.IncrementLoadCountStatisticsContext;
 import org.dataloader.stats.context.IncrementLoadErrorCountStatisticsContext;
+import org.dataloader.stats.context.IncrementValueCacheHitCountStatisticsContext;
+import org.dataloader.stats.context.RecordBatchSizeStatisticsContext;
 
 import static org.dataloader.impl.Assertions.nonNull;
 
@@ -85,6 +88,24 @@ public class DelegatingStatisticsCollector implements StatisticsCollector {
         incrementCacheHitCount(null);
     }
 
+    @Override
+    public <K> void incrementValueCacheHitCountBy(long delta, IncrementValueCacheHitCountStatisticsContext<K> context) {
+        delegateCollector.incrementValueCacheHitCountBy(delta, context);
+        collector.incrementValueCacheHitCountBy(delta, context);
+    }
+
+    @Override
+    public <K> void incrementCoalescedCountBy(long delta, IncrementCoalescedCountStatisticsContext<K> context) {
+        delegateCollector.incrementCoalescedCountBy(delta, context);
+        collector.incrementCoalescedCountBy(delta, context);
+    }
+
+    @Override
+    public <K> void recordBatchSize(RecordBatchSizeStatisticsContext<K> context) {
+        delegateCollector.recordBatchSize(context);
+        collector.recordBatchSize(context);
+    }
+
     /**
      * @return the statistics of the collector (and not its delegate)
      */
@@ -3,9 +3,13 @@ package org.dataloader.stats;
 import org.dataloader.stats.context.IncrementBatchLoadCountByStatisticsContext;
 import org.dataloader.stats.context.IncrementBatchLoadExceptionCountStatisticsContext;
 import org.dataloader.stats.context.IncrementCacheHitCountStatisticsContext;
+import org.dataloader.stats.context.IncrementCoalescedCountStatisticsContext;
 import org.dataloader.stats.context.IncrementLoadCountStatisticsContext;
 import org.dataloader.stats.context.IncrementLoadErrorCountStatisticsContext;
+import org.dataloader.stats.context.IncrementValueCacheHitCountStatisticsContext;
+import org.dataloader.stats.context.RecordBatchSizeStatisticsContext;
 
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.LongAdder;
 
 /**
@@ -22,6 +26,9 @@ public class SimpleStatisticsCollector implements StatisticsCollector {
     private final LongAdder cacheHitCount = new LongAdder();
     private final LongAdder batchLoadExceptionCount = new LongAdder();
     private final LongAdder loadErrorCount = new LongAdder();
+    private final LongAdder valueCacheHitCount = new LongAdder();
+    private final LongAdder coalescedCount = new LongAdder();
+    private final AtomicLong batchSize = new AtomicLong();
 
     @Override
     public <K> void incrementLoadCount(IncrementLoadCountStatisticsContext<K> context) {
@@ -79,9 +86,34 @@ public class SimpleStatisticsCollector implements StatisticsCollector {
         incrementCacheHitCount(null);
     }
 
+    @Override
+    public <K> void incrementValueCacheHitCountBy(long delta, IncrementValueCacheHitCountStatisticsContext<K> context) {
+        valueCacheHitCount.add(delta);
+    }
+
+    @Override
+    public <K> void incrementCoalescedCountBy(long delta, IncrementCoalescedCountStatisticsContext<K> context) {
+        coalescedCount.add(delta);
+    }
+
+    @Override
+    public <K> void recordBatchSize(RecordBatchSizeStatisticsContext<K> context) {
+        batchSize.set(context.getBatchSize());
+    }
+
     @Override
     public Statistics getStatistics() {
-        return new Statistics(loadCount.sum(), loadErrorCount.sum(), batchInvokeCount.sum(), batchLoadCount.sum(), batchLoadExceptionCount.sum(), cacheHitCount.sum());
+        return Statistics.newStatistics()
+                .loadCount(loadCount.sum())
+                .loadErrorCount(loadErrorCount.sum())
+                .batchInvokeCount(batchInvokeCount.sum())
+                .batchLoadCount(batchLoadCount.sum())
+                .batchLoadExceptionCount(batchLoadExceptionCount.sum())
+                .cacheHitCount(cacheHitCount.sum())
+                .batchSize(batchSize.get())
+                .valueCacheHitCount(valueCacheHitCount.sum())
+                .coalescedCount(coalescedCount.sum())
+                .build();
     }
 
     @Override
@@ -17,6 +17,9 @@ public class Statistics {
     private final long batchLoadCount;
     private final long batchLoadExceptionCount;
     private final long cacheHitCount;
+    private final long batchSize;
+    private final long valueCacheHitCount;
+    private final long coalescedCount;
 
     /**
      * Zero statistics
@@ -26,12 +29,32 @@ public class Statistics {
     }
 
     public Statistics(long loadCount, long loadErrorCount, long batchInvokeCount, long batchLoadCount, long batchLoadExceptionCount, long cacheHitCount) {
-        this.loadCount = loadCount;
-        this.batchInvokeCount = batchInvokeCount;
-        this.batchLoadCount = batchLoadCount;
-        this.cacheHitCount = cacheHitCount;
-        this.batchLoadExceptionCount = batchLoadExceptionCount;
-        this.loadErrorCount = loadErrorCount;
+        this(newStatistics()
+                .loadCount(loadCount)
+                .loadErrorCount(loadErrorCount)
+                .batchInvokeCount(batchInvokeCount)
+                .batchLoadCount(batchLoadCount)
+                .batchLoadExceptionCount(batchLoadExceptionCount)
+                .cacheHitCount(cacheHitCount));
+    }
+
+    private Statistics(Builder builder) {
+        this.loadCount = builder.loadCount;
+        this.loadErrorCount = builder.loadErrorCount;
+        this.batchInvokeCount = builder.batchInvokeCount;
+        this.batchLoadCount = builder.batchLoadCount;
+        this.batchLoadExceptionCount = builder.batchLoadExceptionCount;
+        this.cacheHitCount = builder.cacheHitCount;
+        this.batchSize = builder.batchSize;
+        this.valueCacheHitCount = builder.valueCacheHitCount;
+        this.coalescedCount = builder.coalescedCount;
+    }
+
+    /**
+     * @return a builder of statistics, with every count starting at zero
+     */
+    public static Builder newStatistics() {
+        return new Builder();
     }
 
     /**
@@ -123,23 +146,64 @@ public class Statistics {
         return ratio(cacheHitCount, loadCount);
     }
 
+    /**
+     * @return the number of keys that missed the {@link org.dataloader.CacheMap} but were then found in the {@link org.dataloader.ValueCache}
+     */
+    public long getValueCacheHitCount() {
+        return valueCacheHitCount;
+    }
+
+    /**
+     * The {@link #getCacheHitRatio()} is the hit ratio of the first level {@link org.dataloader.CacheMap} of futures, and this
+     * is the hit ratio of the second level {@link org.dataloader.ValueCache} for the loads that missed the first level
+     *
+     * @return valueCacheHits / cacheMisses
+     */
+    public double getValueCacheHitRatio() {
+        return ratio(valueCacheHitCount, getCacheMissCount());
+    }
+
+    /**
+     * @return the number of keys that were not sent to the batch loader because another data loader sharing the same
+     * {@link org.dataloader.InFlightRegistry} was already loading them
+     */
+    public long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    /**
+     * @return coalescedCount / batchLoadCount
+     */
+    public double getCoalescedRatio() {
+        return ratio(coalescedCount, batchLoadCount);
+    }
+
+    /**
+     * @return the batch size most recently chosen by a {@link org.dataloader.batching.BatchSizeController}, or zero if there is none
+     */
+    public long getBatchSize() {
+        return batchSize;
+    }
 
     /**
      * This will combine this set of statistics with another set of statistics so that they become the combined count of each
      *
      * @param other the other statistics to combine
      *
-     * @return a new statistics object of the combined counts
+     * @return a new statistics object of the combined counts, with the larger of the two batch sizes
      */
     public Statistics combine(Statistics other) {
-        return new Statistics(
-                this.loadCount + other.getLoadCount(),
-                this.loadErrorCount + other.getLoadErrorCount(),
-                this.batchInvokeCount + other.getBatchInvokeCount(),
-                this.batchLoadCount + other.getBatchLoadCount(),
-                this.batchLoadExceptionCount + other.getBatchLoadExceptionCount(),
-                this.cacheHitCount + other.getCacheHitCount()
-        );
+        return newStatistics()
+                .loadCount(this.loadCount + other.getLoadCount())
+                .loadErrorCount(this.loadErrorCount + other.getLoadErrorCount())
+                .batchInvokeCount(this.batchInvokeCount + other.getBatchInvokeCount())
+                .batchLoadCount(this.batchLoadCount + other.getBatchLoadCount())
+                .batchLoadExceptionCount(this.batchLoadExceptionCount + other.getBatchLoadExceptionCount())
+                .cacheHitCount(this.cacheHitCount + other.getCacheHitCount())
+                .batchSize(Math.max(this.batchSize, other.getBatchSize()))
+                .valueCacheHitCount(this.valueCacheHitCount + other.getValueCacheHitCount())
+                .coalescedCount(this.coalescedCount + other.getCoalescedCount())
+                .build();
     }
 
     /**
@@ -159,6 +223,13 @@ public class Statistics {
 
         stats.put("cacheHitCount", getCacheHitCount());
         stats.put("cacheHitRatio", getCacheHitRatio());
+        stats.put("valueCacheHitCount", getValueCacheHitCount());
+        stats.put("valueCacheHitRatio", getValueCacheHitRatio());
+
+        stats.put("coalescedCount", getCoalescedCount());
+        stats.put("coalescedRatio", getCoalescedRatio());
+
+        stats.put("batchSize", getBatchSize());
         return stats;
     }
 
@@ -170,6 +241,125 @@ public class Statistics {
                 ", batchLoadCount=" + batchLoadCount +
                 ", batchLoadExceptionCount=" + batchLoadExceptionCount +
                 ", cacheHitCount=" + cacheHitCount +
+                ", valueCacheHitCount=" + valueCacheHitCount +
+                ", coalescedCount=" + coalescedCount +
+                ", batchSize=" + batchSize +
                 '}';
     }
+
+    /**
+     * A builder of {@link Statistics}, so that each count is set by name
+     */
+    public static class Builder {
+        private long loadCount;
+        private long loadErrorCount;
+        private long batchInvokeCount;
+        private long batchLoadCount;
+        private long batchLoadExceptionCount;
+        private long cacheHitCount;
+        private long batchSize;
+        private long valueCacheHitCount;
+        private long coalescedCount;
+
+        Builder() {
+        }
+
+        /**
+         * @param loadCount the number of objects {@link org.dataloader.DataLoader#load(Object)} has been asked to load
+         *
+         * @return this builder for fluent coding
+         */
+        public Builder loadCount(long loadCount) {
+            this.loadCount = loadCount;
+            return this;
+        }
+
+        /**
+         * @param loadErrorCount the number of objects the batch loader function returned in error
+         *
+         * @return this builder for fluent coding
+         */
+        public Builder loadErrorCount(long loadErrorCount) {
+            this.loadErrorCount = loadErrorCount;
+            return this;
+        }
+
+        /**
+         * @param batchInvokeCount the number of times the batch loader function has been called
+         *
+         * @return this builder for fluent coding
+         */
+        public Builder batchInvokeCount(long batchInvokeCount) {
+            this.batchInvokeCount = batchInvokeCount;
+            return this;
+        }
+
+        /**
+         * @param batchLoadCount the number of objects the batch loader function has been asked to load
+         *
+         * @return this builder for fluent coding
+         */
+        public Builder batchLoadCount(long batchLoadCount) {
+            this.batchLoadCount = batchLoadCount;
+            return this;
+        }
+
+        /**
+         * @param batchLoadExceptionCount the number of times the batch loader function threw an exception
+         *
+         * @return this builder for fluent coding
+         */
+        public Builder batchLoadExceptionCount(long batchLoadExceptionCount) {
+            this.batchLoadExceptionCount = batchLoadExceptionCount;
+            return this;
+        }
+
+        /**
+         * @param cacheHitCount the number of loads that were a cache hit
+         *
+         * @return this builder for fluent coding
+         */
+        public Builder cacheHitCount(long cacheHitCount) {
+            this.cacheHitCount = cacheHitCount;
+            return this;
+        }
+
+        /**
+         * @param batchSize the batch size most recently chosen by a {@link org.dataloader.batching.BatchSizeController}
+         *
+         * @return this builder for fluent coding
+         */
+        public Builder batchSize(long batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * @param valueCacheHitCount the number of keys that were found in the {@link org.dataloader.ValueCache}
+         *
+         * @return this builder for fluent coding
+         */
+        public Builder valueCacheHitCount(long valueCacheHitCount) {
+            this.valueCacheHitCount = valueCacheHitCount;
+            return this;
+        }
+
+        /**
+         * @param coalescedCount the number of keys that were loaded by another data loader sharing the same
+         *                       {@link org.dataloader.InFlightRegistry}
+         *
+         * @return this builder for fluent coding
+         */
+        public Builder coalescedCount(long coalescedCount) {
+            this.coalescedCount = coalescedCount;
+            return this;
+        }
+
+        /**
+         * @return the newly built {@link Statistics}
+         */
+        public Statistics build() {
+            return new Statistics(this);
+        }
+    }
 }
@@ -4,8 +4,11 @@ import org.dataloader.annotations.PublicSpi;
 import org.dataloader.stats.context.IncrementBatchLoadCountByStatisticsContext;
 import org.dataloader.stats.context.IncrementBatchLoadExceptionCountStatisticsContext;
 import org.dataloader.stats.context.IncrementCacheHitCountStatisticsContext;
+import org.dataloader.stats.context.IncrementCoalescedCountStatisticsContext;
 import org.dataloader.stats.context.IncrementLoadCountStatisticsContext;
 import org.dataloader.stats.context.IncrementLoadErrorCountStatisticsContext;
+import org.dataloader.stats.context.IncrementValueCacheHitCountStatisticsContext;
+import org.dataloader.stats.context.RecordBatchSizeStatisticsContext;
 
 /**
  * This allows statistics to be collected for {@link org.dataloader.DataLoader} operations
@@ -107,6 +110,38 @@ public interface StatisticsCollector {
     @Deprecated
     void incrementCacheHitCount();
 
+    /**
+     * Called to increment the number of keys that missed the {@link org.dataloader.CacheMap} but were found in the
+     * {@link org.dataloader.ValueCache}
+     *
+     * @param <K> the class of the key in the data loader
+     * @param delta how much to add to the count
+     * @param context the context containing metadata of the data loader invocation
+     */
+    default <K> void incrementValueCacheHitCountBy(long delta, IncrementValueCacheHitCountStatisticsContext<K> context) {
+    }
+
+    /**
+     * Called to increment the number of keys that were left out of a batch because another data loader sharing the
+     * same {@link org.dataloader.InFlightRegistry} was already loading them
+     *
+     * @param <K> the class of the key in the data loader
+     * @param delta how much to add to the count
+     * @param context the context containing metadata of the data loader invocation
+     */
+    default <K> void incrementCoalescedCountBy(long delta, IncrementCoalescedCountStatisticsContext<K> context) {
+    }
+
+    /**
+     * Called to record the batch size that a {@link org.dataloader.batching.BatchSizeController} has chosen
+     * after a batch loader call completed
+     *
+     * @param <K> the class of the key in the data loader
+     * @param context the context containing the batch size and the latency of the batch that led to it
+     */
+    default <K> void recordBatchSize(RecordBatchSizeStatisticsContext<K> context) {
+    }
+
     /**
      * @return the statistics that have been gathered to this point in time
      */
@@ -3,8 +3,11 @@ package org.dataloader.stats;
 import org.dataloader.stats.context.IncrementBatchLoadCountByStatisticsContext;
 import org.dataloader.stats.context.IncrementBatchLoadExceptionCountStatisticsContext;
 import org.dataloader.stats.context.IncrementCacheHitCountStatisticsContext;
+import org.dataloader.stats.context.IncrementCoalescedCountStatisticsContext;
 import org.dataloader.stats.context.IncrementLoadCountStatisticsContext;
 import org.dataloader.stats.context.IncrementLoadErrorCountStatisticsContext;
+import org.dataloader.stats.context.IncrementValueCacheHitCountStatisticsContext;
+import org.dataloader.stats.context.RecordBatchSizeStatisticsContext;
 
 /**
  * This can collect statistics per thread as well as in an overall sense.  This allows you to snapshot stats for a web request say
@@ -94,6 +97,24 @@ public class ThreadLocalStatisticsCollector implements StatisticsCollector {
         incrementCacheHitCount(null);
     }
 
+    @Override
+    public <K> void incrementValueCacheHitCountBy(long delta, IncrementValueCacheHitCountStatisticsContext<K> context) {
+        overallCollector.incrementValueCacheHitCountBy(delta, context);
+        collector.get().incrementValueCacheHitCountBy(delta, context);
+    }
+
+    @Override
+    public <K> void incrementCoalescedCountBy(long delta, IncrementCoalescedCountStatisticsContext<K> context) {
+        overallCollector.incrementCoalescedCountBy(delta, context);
+        collector.get().incrementCoalescedCountBy(delta, context);
+    }
+
+    @Override
+    public <K> void recordBatchSize(RecordBatchSizeStatisticsContext<K> context) {
+        overallCollector.recordBatchSize(context);
+        collector.get().recordBatchSize(context);
+    }
+
     /**
      * This returns the statistics for this thread.
      *
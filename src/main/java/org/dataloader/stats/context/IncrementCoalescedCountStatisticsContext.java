@@ -0,0 +1,25 @@
+package org.dataloader.stats.context;
+
+import java.util.List;
+
+public class IncrementCoalescedCountStatisticsContext<K> {
+
+    private final List<K> keys;
+    private final List<Object> callContexts;
+
+    public IncrementCoalescedCountStatisticsContext(List<K> keys, List<Object> callContexts) {
+        this.keys = keys;
+        this.callContexts = callContexts;
+    }
+
+    /**
+     * @return the keys that were already in flight in another data loader's batch
+     */
+    public List<K> getKeys() {
+        return keys;
+    }
+
+    public List<Object> getCallContexts() {
+        return callContexts;
+    }
+}
@@ -0,0 +1,25 @@
+package org.dataloader.stats.context;
+
+import java.util.List;
+
+public class IncrementValueCacheHitCountStatisticsContext<K> {
+
+    private final List<K> keys;
+    private final List<Object> callContexts;
+
+    public IncrementValueCacheHitCountStatisticsContext(List<K> keys, List<Object> callContexts) {
+        this.keys = keys;
+        this.callContexts = callContexts;
+    }
+
+    /**
+     * @return the keys that were looked up in the {@link org.dataloader.ValueCache}, some of which were hits
+     */
+    public List<K> getKeys() {
+        return keys;
+    }
+
+    public List<Object> getCallContexts() {
+        return callContexts;
+    }
+}
@@ -0,0 +1,32 @@
+package org.dataloader.stats.context;
+
+import java.time.Duration;
+import java.util.List;
+
+public class RecordBatchSizeStatisticsContext<K> {
+
+    private final List<K> keys;
+    private final int batchSize;
+    private final Duration latency;
+
+    public RecordBatchSizeStatisticsContext(List<K> keys, int batchSize, Duration latency) {
+        this.keys = keys;
+        this.batchSize = batchSize;
+        this.latency = latency;
+    }
+
+    public List<K> getKeys() {
+        return keys;
+    }
+
+    /**
+     * @return the batch size that the {@link org.dataloader.batching.BatchSizeController} chose after this batch completed
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public Duration getLatency() {
+        return latency;
+    }
+}
@@ -0,0 +1,164 @@
+package org.dataloader;
+
+import org.dataloader.impl.DataLoaderAssertionException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.dataloader.DataLoaderOptions.newOptions;
+import static org.dataloader.fixtures.TestKit.idLoader;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class BoundedCacheMapTest {
+
+    @Test
+    void evicts_down_to_the_maximum_size() {
+        BoundedCacheMap<Integer, Integer> cacheMap = BoundedCacheMap.<Integer, Integer>newBoundedCacheMap().maximumSize(5).build();
+        for (int i = 0; i < 20; i++) {
+            cacheMap.putIfAbsentAtomically(i, completedFuture(i));
+        }
+
+        assertThat(cacheMap.size(), equalTo(5));
+        assertThat(cacheMap.getWeightedSize(), equalTo(5L));
+        assertThat(cacheMap.getEvictionCount(), equalTo(15L));
+        assertThat(cacheMap.getEvictionWeight(), equalTo(15L));
+    }
+
+    @Test
+    void keeps_the_first_future_for_a_key() {
+        BoundedCacheMap<String, String> cacheMap = BoundedCacheMap.<String, String>newBoundedCacheMap().maximumSize(5).build();
+        CompletableFuture<String> first = completedFuture("a");
+
+        assertThat(cacheMap.putIfAbsentAtomically("a", first), nullValue());
+        assertThat(cacheMap.putIfAbsentAtomically("a", completedFuture("b")), sameInstance(first));
+        assertThat(cacheMap.get("a"), sameInstance(first));
+    }
+
+    @Test
+    void frequently_loaded_keys_survive_a_scan_of_new_keys() {
+        BoundedCacheMap<String, String> cacheMap = BoundedCacheMap.<String, String>newBoundedCacheMap().maximumSize(10).build();
+        List<String> hotKeys = new ArrayList<>();
+        for (int i = 0; i < 9; i++) {
+            String key = "hot" + i;
+            hotKeys.add(key);
+            cacheMap.putIfAbsentAtomically(key, completedFuture(key));
+        }
+        for (int round = 0; round < 5; round++) {
+            for (String key : hotKeys) {
+                cacheMap.get(key);
+            }
+        }
+
+        for (int i = 0; i < 50; i++) {
+            cacheMap.putIfAbsentAtomically("cold" + i, completedFuture("cold"));
+        }
+
+        for (String key : hotKeys) {
+            assertThat(key, cacheMap.containsKey(key), equalTo(true));
+        }
+        assertThat(cacheMap.size(), equalTo(10));
+    }
+
+    @Test
+    void never_evicts_futures_that_are_in_flight() {
+        BoundedCacheMap<Integer, Integer> cacheMap = BoundedCacheMap.<Integer, Integer>newBoundedCacheMap().maximumSize(2).build();
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            CompletableFuture<Integer> future = new CompletableFuture<>();
+            futures.add(future);
+            cacheMap.putIfAbsentAtomically(i, future);
+        }
+        assertThat(cacheMap.size(), equalTo(4));
+        assertThat(cacheMap.getEvictionCount(), equalTo(0L));
+
+        for (int i = 0; i < futures.size(); i++) {
+            futures.get(i).complete(i);
+        }
+        assertThat(cacheMap.size(), equalTo(2));
+        assertThat(cacheMap.getEvictionCount(), equalTo(2L));
+    }
+
+    @Test
+    void evicts_down_to_the_maximum_weight() {
+        BoundedCacheMap<Integer, String> cacheMap = BoundedCacheMap.<Integer, String>newBoundedCacheMap()
+                .maximumWeight(10, (key, value) -> value.length())
+                .build();
+        cacheMap.putIfAbsentAtomically(1, completedFuture("aaaaa"));
+        cacheMap.putIfAbsentAtomically(2, completedFuture("bbbbb"));
+        assertThat(cacheMap.getWeightedSize(), equalTo(10L));
+        assertThat(cacheMap.getEvictionCount(), equalTo(0L));
+
+        cacheMap.putIfAbsentAtomically(3, completedFuture("cc"));
+        assertThat(cacheMap.getWeightedSize(), lessThanOrEqualTo(10L));
+        assertThat(cacheMap.getEvictionCount(), equalTo(1L));
+        // the new key has been seen no more often than the ones already cached, so it is the one turned away
+        assertThat(cacheMap.containsKey(3), equalTo(false));
+        assertThat(cacheMap.getEvictionWeight(), equalTo(2L));
+    }
+
+    @Test
+    void replaces_only_the_expected_future_and_reweighs_it() {
+        BoundedCacheMap<Integer, String> cacheMap = BoundedCacheMap.<Integer, String>newBoundedCacheMap()
+                .maximumWeight(10, (key, value) -> value.length())
+                .build();
+        CompletableFuture<String> stale = completedFuture("aa");
+        CompletableFuture<String> fresh = completedFuture("aaaa");
+        cacheMap.putIfAbsentAtomically(1, stale);
+
+        assertThat(cacheMap.replaceAtomically(1, completedFuture("aa"), fresh), equalTo(false));
+        assertThat(cacheMap.replaceAtomically(2, stale, fresh), equalTo(false));
+        assertThat(cacheMap.get(1), sameInstance(stale));
+
+        assertThat(cacheMap.replaceAtomically(1, stale, fresh), equalTo(true));
+        assertThat(cacheMap.get(1), sameInstance(fresh));
+        assertThat(cacheMap.getWeightedSize(), equalTo(4L));
+    }
+
+    @Test
+    void delete_and_clear_release_their_weight() {
+        BoundedCacheMap<Integer, Integer> cacheMap = BoundedCacheMap.<Integer, Integer>newBoundedCacheMap().maximumSize(5).build();
+        cacheMap.putIfAbsentAtomically(1, completedFuture(1));
+        cacheMap.putIfAbsentAtomically(2, completedFuture(2));
+
+        cacheMap.delete(1);
+        assertThat(cacheMap.containsKey(1), equalTo(false));
+        assertThat(cacheMap.getWeightedSize(), equalTo(1L));
+
+        cacheMap.clear();
+        assertThat(cacheMap.size(), equalTo(0));
+        assertThat(cacheMap.getWeightedSize(), equalTo(0L));
+        assertThat(cacheMap.getEvictionCount(), equalTo(0L));
+    }
+
+    @Test
+    void exactly_one_bound_must_be_set() {
+        assertThrows(DataLoaderAssertionException.class, () -> BoundedCacheMap.newBoundedCacheMap().build());
+        assertThrows(DataLoaderAssertionException.class, () -> BoundedCacheMap.<String, String>newBoundedCacheMap()
+                .maximumSize(10)
+                .maximumWeight(10, (key, value) -> 1)
+                .build());
+    }
+
+    @Test
+    void bounds_the_futures_cached_by_a_data_loader() {
+        BoundedCacheMap<Object, Object> cacheMap = BoundedCacheMap.newBoundedCacheMap().maximumSize(2).build();
+        List<List<Integer>> loadCalls = new ArrayList<>();
+        DataLoader<Integer, Integer> identityLoader = idLoader(newOptions().setCacheMap(cacheMap).build(), loadCalls);
+
+        CompletableFuture<List<Integer>> values = identityLoader.loadMany(List.of(1, 2, 3));
+        assertThat(cacheMap.size(), equalTo(3));
+        identityLoader.dispatch();
+
+        assertThat(values.join(), equalTo(List.of(1, 2, 3)));
+        assertThat(cacheMap.size(), equalTo(2));
+        assertThat(cacheMap.getEvictionCount(), equalTo(1L));
+    }
+}
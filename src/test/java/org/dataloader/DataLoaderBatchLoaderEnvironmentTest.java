@@ -216,4 +216,33 @@ public class DataLoaderBatchLoaderEnvironmentTest {
         assertThat(results, equalTo(asList("A-ctx-m:overridesCtx-l:aCtx", "B-ctx-m:bCtx-l:bCtx", "A-ctx-m:overridesCtx-l:overridesCtx")));
     }
 
+    @Test
+    public void key_contexts_are_padded_out_to_the_keys() {
+        BatchLoaderEnvironment environment = BatchLoaderEnvironment.newBatchLoaderEnvironment()
+                .keyContexts(asList("A", "B", "C"), singletonList("aCtx"))
+                .build();
+
+        assertThat(environment.getKeyContextsList(), equalTo(asList("aCtx", null, null)));
+        assertThat(environment.getKeyContexts(), equalTo(Collections.singletonMap("A", "aCtx")));
+        // the views are made once and then reused
+        assertThat(environment.getKeyContextsList() == environment.getKeyContextsList(), equalTo(true));
+        assertThat(environment.getKeyContexts() == environment.getKeyContexts(), equalTo(true));
+    }
+
+    @Test
+    public void context_provider_is_not_called_for_batch_loaders_without_context() {
+        AtomicInteger contextCalls = new AtomicInteger();
+        BatchLoader<String, String> batchLoader = CompletableFuture::completedFuture;
+        DataLoaderOptions options = DataLoaderOptions.newOptions()
+                .setBatchLoaderContextProvider(() -> "ctx" + contextCalls.incrementAndGet()).build();
+        DataLoader<String, String> loader = newDataLoader(batchLoader, options);
+
+        loader.load("A", "aCtx");
+        loader.load("B");
+
+        List<String> results = loader.dispatchAndJoin();
+
+        assertThat(results, equalTo(asList("A", "B")));
+        assertThat(contextCalls.get(), equalTo(0));
+    }
 }
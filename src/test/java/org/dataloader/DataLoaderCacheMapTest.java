@@ -1,5 +1,8 @@
 package org.dataloader;
 
+import org.dataloader.instrumentation.DataLoaderInstrumentation;
+import org.dataloader.instrumentation.DataLoaderInstrumentationContext;
+import org.dataloader.instrumentation.DataLoaderInstrumentationHelper;
 import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
@@ -8,6 +11,7 @@ import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 import static org.dataloader.DataLoaderFactory.newDataLoader;
+import static org.dataloader.DataLoaderOptions.newOptions;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 
@@ -64,6 +68,29 @@ public class DataLoaderCacheMapTest {
 
         Collection<CompletableFuture<Integer>> futures = dataLoader.getCacheMap().getAll();
 
+        List<CompletableFuture<Integer>> futuresList = new ArrayList<>(futures);
+        // the default instrumentation does nothing, so it adds no dependents of its own
+        assertThat(futuresList.get(0).getNumberOfDependents(), equalTo(2));
+        assertThat(futuresList.get(1).getNumberOfDependents(), equalTo(1));
+    }
+
+    @Test
+    public void should_access_to_future_dependants_of_instrumentation() {
+        DataLoaderInstrumentation instrumentation = new DataLoaderInstrumentation() {
+            @Override
+            public DataLoaderInstrumentationContext<Object> beginLoad(DataLoader<?, ?> dataLoader, Object key, Object loadContext) {
+                return DataLoaderInstrumentationHelper.whenCompleted((result, throwable) -> {
+                });
+            }
+        };
+        DataLoader<Integer, Integer> dataLoader = newDataLoader(keysAsValues(), newOptions().setInstrumentation(instrumentation).build());
+
+        dataLoader.load(1).handle((v, t) -> t);
+        dataLoader.load(2).handle((v, t) -> t);
+        dataLoader.load(1).handle((v, t) -> t);
+
+        Collection<CompletableFuture<Integer>> futures = dataLoader.getCacheMap().getAll();
+
         List<CompletableFuture<Integer>> futuresList = new ArrayList<>(futures);
         assertThat(futuresList.get(0).getNumberOfDependents(), equalTo(4)); // instrumentation is depending on the CF completing
         assertThat(futuresList.get(1).getNumberOfDependents(), equalTo(2));
@@ -1,7 +1,10 @@
 package org.dataloader;
 
+import org.dataloader.batching.AimdBatchSizeController;
+import org.dataloader.batching.BatchSizeController;
 import org.dataloader.impl.DefaultCacheMap;
 import org.dataloader.impl.NoOpValueCache;
+import org.dataloader.impl.SharedTimer;
 import org.dataloader.instrumentation.DataLoaderInstrumentation;
 import org.dataloader.scheduler.BatchLoaderScheduler;
 import org.dataloader.stats.NoOpStatisticsCollector;
@@ -9,9 +12,11 @@ import org.dataloader.stats.StatisticsCollector;
 import org.hamcrest.CoreMatchers;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Supplier;
 
 import static org.hamcrest.CoreMatchers.equalTo;
@@ -28,7 +33,18 @@ class DataLoaderOptionsTest {
         assertThat(optionsDefault.batchingEnabled(), equalTo(true));
         assertThat(optionsDefault.cachingEnabled(), equalTo(true));
         assertThat(optionsDefault.cachingExceptionsEnabled(), equalTo(true));
+        assertThat(optionsDefault.batchKeyDeduplicationEnabled(), equalTo(false));
         assertThat(optionsDefault.maxBatchSize(), equalTo(-1));
+        assertThat(optionsDefault.batchSizeController().isPresent(), equalTo(false));
+        assertThat(optionsDefault.maxConcurrentBatches(), equalTo(-1));
+        assertThat(optionsDefault.loaderQueueStripes(), equalTo(1));
+        assertThat(optionsDefault.autoDispatchBatchSize(), equalTo(-1));
+        assertThat(optionsDefault.lingerTime().isPresent(), equalTo(false));
+        assertThat(optionsDefault.getLingerScheduler(), equalTo(SharedTimer.get()));
+        assertThat(optionsDefault.getLingerDispatchExecutor(), equalTo(ForkJoinPool.commonPool()));
+        assertThat(optionsDefault.expireAfterWrite().isPresent(), equalTo(false));
+        assertThat(optionsDefault.refreshAfterWrite().isPresent(), equalTo(false));
+        assertThat(optionsDefault.inFlightRegistry().isPresent(), equalTo(false));
         assertThat(optionsDefault.getBatchLoaderScheduler(), equalTo(null));
 
         DataLoaderOptions builtOptions = DataLoaderOptions.newDefaultOptions();
@@ -95,6 +111,8 @@ class DataLoaderOptionsTest {
                 equalTo(testCacheMap));
         assertThat(optionsDefault.transform(b -> b.setCachingEnabled(false)).cachingEnabled(),
                 equalTo(false));
+        assertThat(optionsDefault.transform(b -> b.setBatchKeyDeduplicationEnabled(true)).batchKeyDeduplicationEnabled(),
+                equalTo(true));
         assertThat(optionsDefault.transform(b -> b.setValueCacheOptions(testValueCacheOptions)).getValueCacheOptions(),
                 equalTo(testValueCacheOptions));
         assertThat(optionsDefault.transform(b -> b.setCacheKeyFunction(testCacheKey)).cacheKeyFunction().get(),
@@ -103,6 +121,24 @@ class DataLoaderOptionsTest {
                 equalTo(testValueCache));
         assertThat(optionsDefault.transform(b -> b.setMaxBatchSize(10)).maxBatchSize(),
                 equalTo(10));
+        BatchSizeController testBatchSizeController = AimdBatchSizeController.newController(Duration.ofMillis(50)).build();
+        assertThat(optionsDefault.transform(b -> b.setBatchSizeController(testBatchSizeController)).batchSizeController().get(),
+                equalTo(testBatchSizeController));
+        assertThat(optionsDefault.transform(b -> b.setMaxConcurrentBatches(3)).maxConcurrentBatches(),
+                equalTo(3));
+        assertThat(optionsDefault.transform(b -> b.setLoaderQueueStripes(8)).loaderQueueStripes(),
+                equalTo(8));
+        assertThat(optionsDefault.transform(b -> b.setAutoDispatchBatchSize(10)).autoDispatchBatchSize(),
+                equalTo(10));
+        assertThat(optionsDefault.transform(b -> b.setLingerTime(Duration.ofMillis(5))).lingerTime().get(),
+                equalTo(Duration.ofMillis(5)));
+        assertThat(optionsDefault.transform(b -> b.setExpireAfterWrite(Duration.ofMinutes(10))).expireAfterWrite().get(),
+                equalTo(Duration.ofMinutes(10)));
+        assertThat(optionsDefault.transform(b -> b.setRefreshAfterWrite(Duration.ofMinutes(1))).refreshAfterWrite().get(),
+                equalTo(Duration.ofMinutes(1)));
+        InFlightRegistry inFlightRegistry = InFlightRegistry.newInFlightRegistry();
+        assertThat(optionsDefault.transform(b -> b.setInFlightRegistry(inFlightRegistry)).inFlightRegistry().get(),
+                equalTo(inFlightRegistry));
         assertThat(optionsDefault.transform(b -> b.setStatisticsCollector(testStatisticsCollectorSupplier)).getStatisticsCollector(),
                 equalTo(testStatisticsCollectorSupplier.get()));
 
@@ -1,19 +1,28 @@
 package org.dataloader;
 
+import org.dataloader.impl.DataLoaderAssertionException;
 import org.dataloader.stats.SimpleStatisticsCollector;
 import org.dataloader.stats.Statistics;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static java.util.Arrays.asList;
+import static java.util.Collections.singleton;
+import static java.util.Collections.singletonList;
 import static org.dataloader.DataLoaderFactory.newDataLoader;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasItems;
 import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class DataLoaderRegistryTest {
     final BatchLoader<Object, Object> identityBatchLoader = CompletableFuture::completedFuture;
@@ -219,4 +228,148 @@ public class DataLoaderRegistryTest {
         assertThat(registry.getDataLoader("c"), equalTo(dlC));
 
     }
+
+    @Test
+    public void dependencies_dispatch_in_levels() {
+        DataLoaderRegistry registry = DataLoaderRegistry.newRegistry()
+                .register("c", newDataLoader(identityBatchLoader))
+                .register("b", newDataLoader(identityBatchLoader))
+                .register("a", newDataLoader(identityBatchLoader))
+                .dependsOn("c", "b")
+                .dependsOn("b", "a")
+                .build();
+
+        assertThat(registry.getDispatchLevels(), equalTo(asList(singletonList("a"), singletonList("b"), singletonList("c"))));
+        assertThat(registry.getDownstreamKeys("a"), equalTo(singleton("b")));
+
+        assertThrows(DataLoaderAssertionException.class, () -> registry.dependsOn("a", "c"));
+        assertThrows(DataLoaderAssertionException.class, () -> registry.dependsOn("a", "a"));
+    }
+
+    @Test
+    public void downstream_data_loaders_are_dispatched_when_upstream_batches_complete() {
+        CompletableFuture<List<Object>> upstreamBatch = new CompletableFuture<>();
+        List<List<Object>> downstreamCalls = new ArrayList<>();
+        BatchLoader<Object, Object> upstreamBatchLoader = keys -> upstreamBatch;
+        BatchLoader<Object, Object> downstreamBatchLoader = keys -> {
+            downstreamCalls.add(new ArrayList<>(keys));
+            return CompletableFuture.completedFuture(keys);
+        };
+        DataLoader<Object, Object> dlA = newDataLoader(upstreamBatchLoader);
+        DataLoader<Object, Object> dlB = newDataLoader(downstreamBatchLoader);
+
+        DataLoaderRegistry registry = new DataLoaderRegistry().register("a", dlA).register("b", dlB).dependsOn("b", "a");
+        DataLoader<Object, Object> a = registry.getDataLoader("a");
+        DataLoader<Object, Object> b = registry.getDataLoader("b");
+
+        CompletableFuture<Object> chained = a.load("user1").thenCompose(b::load);
+        assertThat(registry.dispatchAllWithCount(), equalTo(1));
+        assertThat(downstreamCalls.size(), equalTo(0));
+
+        upstreamBatch.complete(singletonList("friend1"));
+
+        assertThat(downstreamCalls, equalTo(singletonList(singletonList("friend1"))));
+        assertThat(chained.join(), equalTo("friend1"));
+    }
+
+    @Test
+    public void dispatching_until_quiescent_follows_chained_loads() {
+        CompletableFuture<List<Object>> upstreamBatch = new CompletableFuture<>();
+        BatchLoader<Object, Object> upstreamBatchLoader = keys -> upstreamBatch;
+        DataLoaderRegistry registry = new DataLoaderRegistry()
+                .register("a", newDataLoader(upstreamBatchLoader))
+                .register("b", newDataLoader(identityBatchLoader))
+                .register("c", newDataLoader(identityBatchLoader));
+        DataLoader<Object, Object> a = registry.getDataLoader("a");
+        DataLoader<Object, Object> b = registry.getDataLoader("b");
+        DataLoader<Object, Object> c = registry.getDataLoader("c");
+
+        CompletableFuture<Object> chained = a.load("a1")
+                .thenCompose(b::load)
+                .thenCompose(value -> c.loadMany(asList(value, "c2")))
+                .thenApply(values -> values.get(1));
+
+        CompletableFuture<Integer> quiescent = registry.dispatchAllUntilQuiescent();
+        assertThat(quiescent.isDone(), equalTo(false));
+
+        upstreamBatch.complete(singletonList("b1"));
+
+        assertThat(quiescent.join(), equalTo(4));
+        assertThat(chained.join(), equalTo("c2"));
+        assertThat(registry.dispatchDepth(), equalTo(0));
+    }
+
+    @Test
+    public void dispatching_until_quiescent_fails_when_a_later_round_throws() {
+        CompletableFuture<List<Object>> upstreamBatch = new CompletableFuture<>();
+        BatchLoader<Object, Object> upstreamBatchLoader = keys -> upstreamBatch;
+        DataLoader<Object, Object> failingDispatcher = new DelegatingDataLoader<Object, Object>(newDataLoader("b", identityBatchLoader)) {
+            @Override
+            public DispatchResult<Object> dispatchWithCounts() {
+                if (dispatchDepth() > 0) {
+                    throw new IllegalStateException("dispatch blew up");
+                }
+                return super.dispatchWithCounts();
+            }
+        };
+        DataLoaderRegistry registry = new DataLoaderRegistry()
+                .register("a", newDataLoader(upstreamBatchLoader))
+                .register("b", failingDispatcher);
+        DataLoader<Object, Object> a = registry.getDataLoader("a");
+        a.load("a1").thenCompose(failingDispatcher::load);
+
+        CompletableFuture<Integer> quiescent = registry.dispatchAllUntilQuiescent();
+        assertThat(quiescent.isDone(), equalTo(false));
+
+        upstreamBatch.complete(singletonList("b1"));
+
+        assertThat(quiescent.isCompletedExceptionally(), equalTo(true));
+        CompletionException completionException = assertThrows(CompletionException.class, quiescent::join);
+        assertThat(completionException.getCause().getMessage(), equalTo("dispatch blew up"));
+    }
+
+    @Test
+    public void dispatching_until_quiescent_with_nothing_queued_completes_straight_away() {
+        DataLoaderRegistry registry = new DataLoaderRegistry().register("a", newDataLoader(identityBatchLoader));
+
+        assertThat(registry.dispatchAllUntilQuiescent().join(), equalTo(0));
+    }
+
+    @Test
+    public void dispatching_in_parallel_counts_the_keys_of_every_data_loader() {
+        DataLoaderRegistry registry = new DataLoaderRegistry()
+                .register("a", newDataLoader(identityBatchLoader))
+                .register("b", newDataLoader(identityBatchLoader))
+                .register("c", newDataLoader(identityBatchLoader));
+        CompletableFuture<List<Object>> a = registry.getDataLoader("a").loadMany(asList("a1", "a2"));
+        CompletableFuture<Object> b = registry.getDataLoader("b").load("b1");
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            assertThat(registry.dispatchAllInParallel(executor).join(), equalTo(3));
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(a.join(), equalTo(asList("a1", "a2")));
+        assertThat(b.join(), equalTo("b1"));
+        assertThat(registry.dispatchAllInParallel().join(), equalTo(0));
+    }
+
+    @Test
+    public void dispatching_in_parallel_keeps_the_declared_order() {
+        List<String> batchLoaderCalls = Collections.synchronizedList(new ArrayList<>());
+        DataLoaderRegistry registry = new DataLoaderRegistry();
+        for (String key : asList("a", "b", "c")) {
+            BatchLoader<Object, Object> batchLoader = keys -> {
+                batchLoaderCalls.add(key);
+                return CompletableFuture.completedFuture(keys);
+            };
+            registry.register(key, newDataLoader(batchLoader));
+            registry.getDataLoader(key).load(key + "1");
+        }
+        registry.dependsOn("b", "a").dependsOn("c", "b");
+
+        assertThat(registry.dispatchAllInParallel().join(), equalTo(3));
+        assertThat(batchLoaderCalls, equalTo(asList("a", "b", "c")));
+    }
 }
@@ -1,6 +1,7 @@
 package org.dataloader;
 
 import org.dataloader.impl.CompletableFutureKit;
+import org.dataloader.stats.NoOpStatisticsCollector;
 import org.dataloader.stats.SimpleStatisticsCollector;
 import org.dataloader.stats.Statistics;
 import org.dataloader.stats.StatisticsCollector;
@@ -67,6 +68,27 @@ public class DataLoaderStatsTest {
     }
 
 
+    @Test
+    public void sub_classes_of_the_no_op_collector_are_still_called() {
+        List<Object> loadedKeys = new ArrayList<>();
+        StatisticsCollector collector = new NoOpStatisticsCollector() {
+            @Override
+            public <K> void incrementLoadCount(IncrementLoadCountStatisticsContext<K> context) {
+                loadedKeys.add(context.getKey());
+            }
+        };
+
+        BatchLoader<String, String> batchLoader = CompletableFuture::completedFuture;
+        DataLoader<String, String> loader = newDataLoader(batchLoader,
+                DataLoaderOptions.newOptions().setStatisticsCollector(() -> collector).build()
+        );
+
+        loader.load("A");
+        loader.load("B");
+
+        assertThat(loadedKeys, equalTo(asList("A", "B")));
+    }
+
     @Test
     public void stats_are_collected_with_specified_collector() {
         // let's prime it with some numbers, so we know it's ours
@@ -17,6 +17,7 @@
 package org.dataloader;
 
 import org.awaitility.Duration;
+import org.dataloader.batching.BatchSizeController;
 import org.dataloader.fixtures.CustomCacheMap;
 import org.dataloader.fixtures.CustomValueCache;
 import org.dataloader.fixtures.JsonObject;
@@ -30,6 +31,7 @@ import org.dataloader.fixtures.parameterized.TestDataLoaderFactory;
 import org.dataloader.fixtures.parameterized.TestReactiveDataLoaderFactory;
 import org.dataloader.impl.CompletableFutureKit;
 import org.dataloader.impl.DataLoaderAssertionException;
+import org.dataloader.stats.SimpleStatisticsCollector;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -44,6 +46,8 @@ import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
@@ -1136,6 +1140,375 @@ public class DataLoaderTest {
 
     }
 
+    @Test
+    public void limits_the_number_of_concurrent_batches() {
+        List<List<Integer>> loadCalls = new ArrayList<>();
+        List<CompletableFuture<List<Integer>>> inFlight = new ArrayList<>();
+        BatchLoader<Integer, Integer> batchLoader = keys -> {
+            loadCalls.add(new ArrayList<>(keys));
+            CompletableFuture<List<Integer>> batch = new CompletableFuture<>();
+            inFlight.add(batch);
+            return batch;
+        };
+        DataLoader<Integer, Integer> identityLoader = newDataLoader(batchLoader, newOptions()
+                .setMaxBatchSize(2).setMaxConcurrentBatches(2).build());
+
+        for (int i = 0; i < 5; i++) {
+            identityLoader.load(i);
+        }
+        CompletableFuture<List<Integer>> result = identityLoader.dispatch();
+
+        assertThat(loadCalls, equalTo(asList(asList(0, 1), asList(2, 3))));
+
+        inFlight.get(1).complete(asList(2, 3));
+        assertThat(loadCalls, equalTo(asList(asList(0, 1), asList(2, 3), singletonList(4))));
+
+        inFlight.get(2).complete(singletonList(4));
+        assertThat(result.isDone(), equalTo(false));
+
+        inFlight.get(0).complete(asList(0, 1));
+        assertThat(result.join(), equalTo(listFrom(0, 5)));
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.dataloader.fixtures.parameterized.TestDataLoaderFactories#get")
+    public void uses_the_batch_size_chosen_by_the_batch_size_controller(TestDataLoaderFactory factory) {
+        List<Collection<Integer>> loadCalls = new ArrayList<>();
+        List<Integer> completedBatchSizes = new ArrayList<>();
+        BatchSizeController batchSizeController = new BatchSizeController() {
+            @Override
+            public int getBatchSize() {
+                return completedBatchSizes.isEmpty() ? 2 : 3;
+            }
+
+            @Override
+            public void onBatchCompleted(int batchSize, java.time.Duration latency, boolean successful) {
+                completedBatchSizes.add(batchSize);
+            }
+        };
+        SimpleStatisticsCollector statisticsCollector = new SimpleStatisticsCollector();
+        DataLoader<Integer, Integer> identityLoader = factory.idLoader(newOptions()
+                .setBatchSizeController(batchSizeController)
+                .setStatisticsCollector(() -> statisticsCollector).build(), loadCalls);
+
+        identityLoader.loadMany(asList(1, 2, 3));
+        identityLoader.dispatch().join();
+        identityLoader.loadMany(asList(4, 5, 6));
+        identityLoader.dispatch().join();
+
+        assertThat(loadCalls, equalTo(asList(asList(1, 2), singletonList(3), asList(4, 5, 6))));
+        assertThat(completedBatchSizes, equalTo(asList(2, 1, 3)));
+        assertThat(statisticsCollector.getStatistics().getBatchSize(), equalTo(3L));
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.dataloader.fixtures.parameterized.TestDataLoaderFactories#get")
+    public void the_max_batch_size_caps_the_batch_size_chosen_by_the_batch_size_controller(TestDataLoaderFactory factory) {
+        List<Collection<Integer>> loadCalls = new ArrayList<>();
+        BatchSizeController batchSizeController = new BatchSizeController() {
+            @Override
+            public int getBatchSize() {
+                return 10;
+            }
+
+            @Override
+            public void onBatchCompleted(int batchSize, java.time.Duration latency, boolean successful) {
+            }
+        };
+        DataLoader<Integer, Integer> identityLoader = factory.idLoader(newOptions()
+                .setBatchSizeController(batchSizeController)
+                .setMaxBatchSize(2).build(), loadCalls);
+
+        identityLoader.loadMany(asList(1, 2, 3));
+        identityLoader.dispatch().join();
+
+        assertThat(loadCalls, equalTo(asList(asList(1, 2), singletonList(3))));
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.dataloader.fixtures.parameterized.TestDataLoaderFactories#get")
+    public void deduplicates_batch_keys_when_caching_is_disabled(TestDataLoaderFactory factory) {
+        List<Collection<Integer>> loadCalls = new ArrayList<>();
+        DataLoader<Integer, Integer> identityLoader = factory.idLoader(newOptions()
+                .setCachingEnabled(false).setBatchKeyDeduplicationEnabled(true).build(), loadCalls);
+
+        CompletableFuture<Integer> f1 = identityLoader.load(1);
+        CompletableFuture<Integer> f2 = identityLoader.load(2);
+        CompletableFuture<Integer> f1Again = identityLoader.load(1);
+        CompletableFuture<Integer> f1AndAgain = identityLoader.load(1);
+        assertThat(f1, not(sameInstance(f1Again)));
+
+        List<Integer> results = identityLoader.dispatchAndJoin();
+
+        assertThat(results, equalTo(asList(1, 2, 1, 1)));
+        assertThat(f1.join(), equalTo(1));
+        assertThat(f2.join(), equalTo(2));
+        assertThat(f1Again.join(), equalTo(1));
+        assertThat(f1AndAgain.join(), equalTo(1));
+        assertThat(loadCalls, equalTo(singletonList(asList(1, 2))));
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.dataloader.fixtures.parameterized.TestDataLoaderFactories#get")
+    public void deduplicated_batch_keys_all_fail_together(TestDataLoaderFactory factory) {
+        List<Collection<Integer>> loadCalls = new ArrayList<>();
+        DataLoader<Integer, Integer> errorLoader = factory.idLoaderBlowsUps(newOptions()
+                .setCachingEnabled(false).setBatchKeyDeduplicationEnabled(true).build(), loadCalls);
+
+        CompletableFuture<Integer> f1 = errorLoader.load(1);
+        CompletableFuture<Integer> f1Again = errorLoader.load(1);
+        errorLoader.dispatch();
+
+        await().until(() -> f1.isDone() && f1Again.isDone());
+        assertThat(f1.isCompletedExceptionally(), is(true));
+        assertThat(f1Again.isCompletedExceptionally(), is(true));
+        assertThat(cause(f1Again), instanceOf(IllegalStateException.class));
+        assertThat(loadCalls, equalTo(singletonList(singletonList(1))));
+    }
+
+    @Test
+    public void cancelling_one_load_of_a_deduplicated_key_does_not_fail_the_others() {
+        CompletableFuture<Void> batchLoaderGate = new CompletableFuture<>();
+        DataLoader<Integer, Integer> identityLoader = newDataLoader(
+                (List<Integer> keys) -> batchLoaderGate.thenApply(ignored -> keys),
+                newOptions().setCachingEnabled(false).setBatchKeyDeduplicationEnabled(true).build());
+
+        CompletableFuture<Integer> f1 = identityLoader.load(1);
+        CompletableFuture<Integer> f1Again = identityLoader.load(1);
+        identityLoader.dispatch();
+
+        f1.cancel(true);
+        batchLoaderGate.complete(null);
+
+        assertThat(f1.isCancelled(), is(true));
+        assertThat(f1Again.join(), equalTo(1));
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.dataloader.fixtures.parameterized.TestDataLoaderFactories#get")
+    public void auto_dispatches_when_the_queue_reaches_the_auto_dispatch_batch_size(TestDataLoaderFactory factory) {
+        List<Collection<Integer>> loadCalls = new ArrayList<>();
+        DataLoader<Integer, Integer> identityLoader = factory.idLoader(newOptions()
+                .setMaxBatchSize(3).setAutoDispatchBatchSize(3).build(), loadCalls);
+
+        CompletableFuture<Integer> f1 = identityLoader.load(1);
+        CompletableFuture<Integer> f2 = identityLoader.load(2);
+        assertThat(identityLoader.dispatchDepth(), equalTo(2));
+        assertThat(loadCalls, equalTo(emptyList()));
+
+        CompletableFuture<Integer> f3 = identityLoader.load(3);
+        assertThat(identityLoader.dispatchDepth(), equalTo(0));
+        assertThat(loadCalls, equalTo(singletonList(asList(1, 2, 3))));
+
+        CompletableFuture<Integer> f4 = identityLoader.load(4);
+        assertThat(identityLoader.dispatchDepth(), equalTo(1));
+
+        identityLoader.dispatch();
+        allOf(f1, f2, f3, f4).join();
+
+        assertThat(f1.join(), equalTo(1));
+        assertThat(f4.join(), equalTo(4));
+        assertThat(loadCalls, equalTo(asList(asList(1, 2, 3), singletonList(4))));
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.dataloader.fixtures.parameterized.TestDataLoaderFactories#get")
+    public void auto_dispatches_after_the_linger_time(TestDataLoaderFactory factory) {
+        List<Collection<Integer>> loadCalls = new ArrayList<>();
+        DataLoader<Integer, Integer> identityLoader = factory.idLoader(newOptions()
+                .setLingerTime(java.time.Duration.ofMillis(50)).build(), loadCalls);
+
+        CompletableFuture<Integer> f1 = identityLoader.load(1);
+        CompletableFuture<Integer> f2 = identityLoader.load(2);
+
+        await().until(() -> f1.isDone() && f2.isDone());
+        assertThat(f1.join(), equalTo(1));
+        assertThat(f2.join(), equalTo(2));
+        assertThat(loadCalls, equalTo(singletonList(asList(1, 2))));
+
+        // the timer is started again by the next load into the empty queue
+        CompletableFuture<Integer> f3 = identityLoader.load(3);
+        await().until(f3::isDone);
+        assertThat(loadCalls, equalTo(asList(asList(1, 2), singletonList(3))));
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.dataloader.fixtures.parameterized.TestDataLoaderFactories#get")
+    public void auto_dispatch_batch_size_beats_the_linger_time(TestDataLoaderFactory factory) {
+        List<Collection<Integer>> loadCalls = new ArrayList<>();
+        DataLoader<Integer, Integer> identityLoader = factory.idLoader(newOptions()
+                .setAutoDispatchBatchSize(2)
+                .setLingerTime(java.time.Duration.ofSeconds(60)).build(), loadCalls);
+
+        CompletableFuture<Integer> f1 = identityLoader.load(1);
+        CompletableFuture<Integer> f2 = identityLoader.load(2);
+
+        await().until(() -> f1.isDone() && f2.isDone());
+        assertThat(loadCalls, equalTo(singletonList(asList(1, 2))));
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.dataloader.fixtures.parameterized.TestDataLoaderFactories#get")
+    public void linger_dispatches_are_handed_off_to_the_linger_dispatch_executor(TestDataLoaderFactory factory) {
+        List<Collection<Integer>> loadCalls = new ArrayList<>();
+        AtomicInteger handedOff = new AtomicInteger();
+        DataLoader<Integer, Integer> identityLoader = factory.idLoader(newOptions()
+                .setLingerTime(java.time.Duration.ofMillis(10))
+                .setLingerDispatchExecutor(runnable -> {
+                    handedOff.incrementAndGet();
+                    runnable.run();
+                }).build(), loadCalls);
+
+        CompletableFuture<Integer> f1 = identityLoader.load(1);
+
+        await().until(f1::isDone);
+        assertThat(handedOff.get(), equalTo(1));
+        assertThat(loadCalls, equalTo(singletonList(singletonList(1))));
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.dataloader.fixtures.parameterized.TestDataLoaderFactories#get")
+    public void dispatching_cancels_the_armed_linger_timer(TestDataLoaderFactory factory) {
+        ScheduledThreadPoolExecutor lingerScheduler = new ScheduledThreadPoolExecutor(1);
+        lingerScheduler.setRemoveOnCancelPolicy(true);
+        try {
+            List<Collection<Integer>> loadCalls = new ArrayList<>();
+            DataLoader<Integer, Integer> identityLoader = factory.idLoader(newOptions()
+                    .setLingerTime(java.time.Duration.ofSeconds(60))
+                    .setLingerScheduler(lingerScheduler).build(), loadCalls);
+
+            identityLoader.load(1);
+            assertThat(lingerScheduler.getQueue().size(), equalTo(1));
+
+            identityLoader.dispatch();
+            assertThat(lingerScheduler.getQueue().size(), equalTo(0));
+
+            // the next load into the empty queue arms a new timer
+            identityLoader.load(2);
+            assertThat(lingerScheduler.getQueue().size(), equalTo(1));
+            assertThat(loadCalls, equalTo(singletonList(singletonList(1))));
+        } finally {
+            lingerScheduler.shutdownNow();
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.dataloader.fixtures.parameterized.TestDataLoaderFactories#get")
+    public void drops_loads_that_time_out_before_they_are_dispatched(TestDataLoaderFactory factory) {
+        List<Collection<Integer>> loadCalls = new ArrayList<>();
+        DataLoader<Integer, Integer> identityLoader = factory.idLoader(newOptions().build(), loadCalls);
+
+        CompletableFuture<Integer> f1 = identityLoader.load(1, null, java.time.Duration.ofMillis(20));
+        CompletableFuture<Integer> f2 = identityLoader.load(2, null, java.time.Duration.ofSeconds(60));
+
+        await().until(f1::isDone);
+        assertThat(f1.isCompletedExceptionally(), equalTo(true));
+        assertThat(cause(f1), instanceOf(TimeoutException.class));
+
+        identityLoader.dispatch();
+        await().until(f2::isDone);
+        assertThat(f2.join(), equalTo(2));
+        assertThat(loadCalls, equalTo(singletonList(singletonList(2))));
+
+        // the timed out load was not cached, so the key is loaded again
+        CompletableFuture<Integer> f1Again = identityLoader.load(1);
+        identityLoader.dispatch();
+        await().until(f1Again::isDone);
+        assertThat(f1Again.join(), equalTo(1));
+        assertThat(loadCalls, equalTo(asList(singletonList(2), singletonList(1))));
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.dataloader.fixtures.parameterized.TestDataLoaderFactories#get")
+    public void a_timed_out_load_does_not_fail_other_loads_of_the_same_key(TestDataLoaderFactory factory) {
+        List<Collection<Integer>> loadCalls = new ArrayList<>();
+        DataLoader<Integer, Integer> identityLoader = factory.idLoader(newOptions().build(), loadCalls);
+
+        CompletableFuture<Integer> timed = identityLoader.load(1, null, java.time.Duration.ofMillis(20));
+        CompletableFuture<Integer> untimed = identityLoader.load(1);
+
+        await().until(timed::isDone);
+        assertThat(cause(timed), instanceOf(TimeoutException.class));
+        assertThat(untimed.isDone(), equalTo(false));
+
+        // the untimed load is still waiting, so the key is not dropped from the batch
+        identityLoader.dispatch();
+        await().until(untimed::isDone);
+        assertThat(untimed.join(), equalTo(1));
+        assertThat(loadCalls, equalTo(singletonList(singletonList(1))));
+
+        // and the value was cached rather than thrown away
+        assertThat(identityLoader.load(1).join(), equalTo(1));
+        assertThat(identityLoader.dispatchDepth(), equalTo(0));
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.dataloader.fixtures.parameterized.TestDataLoaderFactories#get")
+    public void drops_cancelled_loads_from_the_batch(TestDataLoaderFactory factory) {
+        List<Collection<Integer>> loadCalls = new ArrayList<>();
+        DataLoader<Integer, Integer> identityLoader = factory.idLoader(newOptions().build(), loadCalls);
+
+        CompletableFuture<Integer> f1 = identityLoader.load(1);
+        CompletableFuture<Integer> f2 = identityLoader.load(2);
+        CompletableFuture<Integer> f3 = identityLoader.load(3);
+        f2.cancel(true);
+
+        DispatchResult<Integer> dispatchResult = identityLoader.dispatchWithCounts();
+        await().until(() -> f1.isDone() && f3.isDone());
+        assertThat(dispatchResult.getKeysCount(), equalTo(2));
+        assertThat(f1.join(), equalTo(1));
+        assertThat(f3.join(), equalTo(3));
+        assertThat(loadCalls, equalTo(singletonList(asList(1, 3))));
+
+        // the cancelled load was taken out of the cache, so the key is loaded again
+        CompletableFuture<Integer> f2Again = identityLoader.load(2);
+        assertThat(f2Again.isCancelled(), equalTo(false));
+        identityLoader.dispatch();
+        await().until(f2Again::isDone);
+        assertThat(f2Again.join(), equalTo(2));
+        assertThat(loadCalls, equalTo(asList(asList(1, 3), singletonList(2))));
+    }
+
+    @ParameterizedTest
+    @MethodSource("org.dataloader.fixtures.parameterized.TestDataLoaderFactories#get")
+    public void does_not_call_the_batch_loader_when_every_load_was_cancelled(TestDataLoaderFactory factory) {
+        List<Collection<Integer>> loadCalls = new ArrayList<>();
+        DataLoader<Integer, Integer> identityLoader = factory.idLoader(newOptions().build(), loadCalls);
+
+        identityLoader.load(1).cancel(true);
+        identityLoader.load(2).cancel(true);
+
+        DispatchResult<Integer> dispatchResult = identityLoader.dispatchWithCounts();
+        assertThat(dispatchResult.getKeysCount(), equalTo(0));
+        assertThat(dispatchResult.getPromisedResults().join(), equalTo(emptyList()));
+        assertThat(loadCalls, equalTo(emptyList()));
+        assertThat(identityLoader.dispatchDepth(), equalTo(0));
+    }
+
+    @Test
+    public void exposes_the_earliest_deadline_of_a_batch() {
+        List<BatchLoaderEnvironment> environments = new ArrayList<>();
+        BatchLoaderWithContext<Integer, Integer> batchLoader = (keys, environment) -> {
+            environments.add(environment);
+            return completedFuture(keys);
+        };
+        DataLoader<Integer, Integer> identityLoader = newDataLoader(batchLoader);
+
+        java.time.Instant before = java.time.Instant.now();
+        identityLoader.load(1, null, java.time.Duration.ofSeconds(60));
+        identityLoader.load(2, null, java.time.Duration.ofSeconds(30));
+        identityLoader.load(3);
+        identityLoader.dispatchAndJoin();
+
+        identityLoader.load(4);
+        identityLoader.dispatchAndJoin();
+
+        java.time.Instant earliestDeadline = environments.get(0).getEarliestDeadline().get();
+        assertThat(earliestDeadline.isBefore(before.plusSeconds(30)), equalTo(false));
+        assertThat(earliestDeadline.isBefore(java.time.Instant.now().plusSeconds(30)), equalTo(true));
+        assertThat(environments.get(1).getEarliestDeadline().isPresent(), equalTo(false));
+    }
+
     @ParameterizedTest
     @MethodSource("org.dataloader.fixtures.parameterized.TestDataLoaderFactories#get")
     public void should_Batch_loads_occurring_within_futures(TestDataLoaderFactory factory) {
@@ -3,11 +3,19 @@ package org.dataloader;
 import org.dataloader.fixtures.TestingClock;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.stream.Collectors.toList;
 
 import static org.dataloader.fixtures.TestKit.keysAsValues;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
 
 @SuppressWarnings("UnusedReturnValue")
 public class DataLoaderTimeTest {
@@ -41,5 +49,129 @@ public class DataLoaderTimeTest {
 
     }
 
+    private static BatchLoader<Integer, String> countingLoader(AtomicInteger calls, boolean failAfterFirstCall) {
+        return keys -> {
+            int call = calls.incrementAndGet();
+            if (failAfterFirstCall && call > 1) {
+                return CompletableFuture.failedFuture(new IllegalStateException("backend down"));
+            }
+            List<String> values = keys.stream().map(key -> key + "-" + call).collect(toList());
+            return CompletableFuture.completedFuture(values);
+        };
+    }
+
+    @Test
+    public void cached_values_expire_after_write() {
+        TestingClock clock = new TestingClock();
+        AtomicInteger calls = new AtomicInteger();
+        DataLoaderOptions options = DataLoaderOptions.newOptions().setExpireAfterWrite(Duration.ofSeconds(10)).build();
+        DataLoader<Integer, String> dataLoader = new ClockDataLoader<>(countingLoader(calls, false), options, clock);
+
+        CompletableFuture<String> first = dataLoader.load(1);
+        dataLoader.dispatch();
+        assertThat(first.join(), equalTo("1-1"));
+
+        clock.jump(9_000);
+        assertThat(dataLoader.load(1), sameInstance(first));
+
+        clock.jump(1_000);
+        CompletableFuture<String> second = dataLoader.load(1);
+        assertThat(second, not(sameInstance(first)));
+        assertThat(dataLoader.dispatchDepth(), equalTo(1));
+        dataLoader.dispatch();
+        assertThat(second.join(), equalTo("1-2"));
+        assertThat(calls.get(), equalTo(2));
+    }
+
+    @Test
+    public void expired_values_are_not_present() {
+        TestingClock clock = new TestingClock();
+        DataLoaderOptions options = DataLoaderOptions.newOptions().setExpireAfterWrite(Duration.ofSeconds(10)).build();
+        DataLoader<Integer, String> dataLoader = new ClockDataLoader<>(countingLoader(new AtomicInteger(), false), options, clock);
+
+        CompletableFuture<String> first = dataLoader.load(1);
+        dataLoader.dispatch();
+        assertThat(dataLoader.getIfPresent(1).get(), sameInstance(first));
+        assertThat(dataLoader.getIfCompleted(1).get(), sameInstance(first));
+
+        clock.jump(10_000);
+        assertThat(dataLoader.getIfPresent(1).isPresent(), equalTo(false));
+        assertThat(dataLoader.getIfCompleted(1).isPresent(), equalTo(false));
+        assertThat(dataLoader.getCacheMap().containsKey(1), equalTo(false));
+        assertThat(dataLoader.dispatchDepth(), equalTo(0));
+    }
+
+    @Test
+    public void futures_in_flight_never_expire() {
+        TestingClock clock = new TestingClock();
+        DataLoaderOptions options = DataLoaderOptions.newOptions().setExpireAfterWrite(Duration.ofSeconds(1)).build();
+        DataLoader<Integer, String> dataLoader = new ClockDataLoader<>(countingLoader(new AtomicInteger(), false), options, clock);
+
+        CompletableFuture<String> first = dataLoader.load(1);
+        clock.jump(5_000);
+
+        assertThat(dataLoader.load(1), sameInstance(first));
+        assertThat(dataLoader.dispatchDepth(), equalTo(1));
+    }
+
+    @Test
+    public void stale_values_are_served_while_one_refresh_is_queued() {
+        TestingClock clock = new TestingClock();
+        AtomicInteger calls = new AtomicInteger();
+        DataLoaderOptions options = DataLoaderOptions.newOptions().setRefreshAfterWrite(Duration.ofSeconds(1)).build();
+        DataLoader<Integer, String> dataLoader = new ClockDataLoader<>(countingLoader(calls, false), options, clock);
+
+        CompletableFuture<String> first = dataLoader.load(1);
+        dataLoader.dispatch();
+
+        clock.jump(1_500);
+        assertThat(dataLoader.load(1).join(), equalTo("1-1"));
+        assertThat(dataLoader.load(1).join(), equalTo("1-1"));
+        assertThat(dataLoader.dispatchDepth(), equalTo(1));
+
+        dataLoader.dispatch();
+        assertThat(calls.get(), equalTo(2));
+        assertThat(first.join(), equalTo("1-1"));
+        assertThat(dataLoader.load(1).join(), equalTo("1-2"));
+        assertThat(dataLoader.dispatchDepth(), equalTo(0));
+    }
+
+    @Test
+    public void a_refresh_does_not_replace_a_value_that_was_primed_meanwhile() {
+        TestingClock clock = new TestingClock();
+        AtomicInteger calls = new AtomicInteger();
+        DataLoaderOptions options = DataLoaderOptions.newOptions().setRefreshAfterWrite(Duration.ofSeconds(1)).build();
+        DataLoader<Integer, String> dataLoader = new ClockDataLoader<>(countingLoader(calls, false), options, clock);
+
+        dataLoader.load(1);
+        dataLoader.dispatch();
+        clock.jump(1_500);
+        assertThat(dataLoader.load(1).join(), equalTo("1-1"));
 
+        dataLoader.clear(1).prime(1, "primed");
+        dataLoader.dispatch();
+
+        assertThat(calls.get(), equalTo(2));
+        assertThat(dataLoader.load(1).join(), equalTo("primed"));
+    }
+
+    @Test
+    public void stale_values_are_kept_when_a_refresh_fails() {
+        TestingClock clock = new TestingClock();
+        AtomicInteger calls = new AtomicInteger();
+        DataLoaderOptions options = DataLoaderOptions.newOptions().setRefreshAfterWrite(Duration.ofSeconds(1)).build();
+        DataLoader<Integer, String> dataLoader = new ClockDataLoader<>(countingLoader(calls, true), options, clock);
+
+        dataLoader.load(1);
+        dataLoader.dispatch();
+
+        clock.jump(1_500);
+        assertThat(dataLoader.load(1).join(), equalTo("1-1"));
+        dataLoader.dispatch();
+        assertThat(calls.get(), equalTo(2));
+
+        // the failed refresh leaves the stale value in place and the next load tries again
+        assertThat(dataLoader.load(1).join(), equalTo("1-1"));
+        assertThat(dataLoader.dispatchDepth(), equalTo(1));
+    }
 }
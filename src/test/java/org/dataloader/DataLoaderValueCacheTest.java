@@ -10,6 +10,7 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
@@ -302,6 +303,48 @@ public class DataLoaderValueCacheTest {
         assertThat(values, equalTo(asList("missC", "missD")));
     }
 
+    @ParameterizedTest
+    @MethodSource("org.dataloader.fixtures.parameterized.TestDataLoaderFactories#get")
+    public void bulk_cached_values_with_hits_work_as_expected(TestDataLoaderFactory factory) {
+        CustomValueCache customValueCache = new CustomValueCache() {
+
+            @Override
+            public CompletableFuture<CachedValues<Object>> getCachedValues(List<String> keys) {
+                List<Object> values = new ArrayList<>();
+                BitSet hits = new BitSet();
+                for (int i = 0; i < keys.size(); i++) {
+                    String key = keys.get(i);
+                    if (key.startsWith("miss")) {
+                        values.add(null);
+                    } else {
+                        values.add(key);
+                        hits.set(i);
+                    }
+                }
+                return CompletableFuture.completedFuture(CachedValues.of(values, hits));
+            }
+        };
+
+        List<Collection<String>> loadCalls = new ArrayList<>();
+        DataLoaderOptions options = newOptions().setValueCache(customValueCache).build();
+        DataLoader<String, String> identityLoader = factory.idLoader(options, loadCalls);
+
+        CompletableFuture<String> fA = identityLoader.load("a");
+        CompletableFuture<String> fC = identityLoader.load("missC");
+        CompletableFuture<String> fB = identityLoader.load("b");
+        CompletableFuture<String> fD = identityLoader.load("missD");
+
+        await().until(identityLoader.dispatch()::isDone);
+
+        assertThat(fA.join(), equalTo("a"));
+        assertThat(fB.join(), equalTo("b"));
+        assertThat(fC.join(), equalTo("missC"));
+        assertThat(fD.join(), equalTo("missD"));
+
+        assertThat(loadCalls, equalTo(singletonList(asList("missC", "missD"))));
+        assertThat(new ArrayList<>(customValueCache.asMap().values()), equalTo(asList("missC", "missD")));
+    }
+
     @ParameterizedTest
     @MethodSource("org.dataloader.fixtures.parameterized.TestDataLoaderFactories#get")
     public void assertions_will_be_thrown_if_the_cache_does_not_follow_contract(TestDataLoaderFactory factory) {
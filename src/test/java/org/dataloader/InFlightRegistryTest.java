@@ -0,0 +1,144 @@
+package org.dataloader;
+
+import org.dataloader.stats.SimpleStatisticsCollector;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.dataloader.DataLoaderFactory.newDataLoader;
+import static org.dataloader.DataLoaderOptions.newOptions;
+import static org.dataloader.impl.CompletableFutureKit.cause;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+
+public class InFlightRegistryTest {
+
+    /**
+     * A batch loader whose batches only complete when the test says so
+     */
+    private static class PendingBatchLoader implements BatchLoader<Integer, Object> {
+        final List<List<Integer>> loadCalls = new ArrayList<>();
+        final List<CompletableFuture<List<Object>>> batches = new ArrayList<>();
+
+        @Override
+        public CompletableFuture<List<Object>> load(List<Integer> keys) {
+            loadCalls.add(new ArrayList<>(keys));
+            CompletableFuture<List<Object>> batch = new CompletableFuture<>();
+            batches.add(batch);
+            return batch;
+        }
+
+        void completeBatch(int batch, String prefix) {
+            List<Object> values = loadCalls.get(batch).stream().map(key -> prefix + key).collect(Collectors.toList());
+            batches.get(batch).complete(values);
+        }
+    }
+
+    private static DataLoader<Integer, Object> loader(PendingBatchLoader batchLoader, InFlightRegistry registry) {
+        return newDataLoader(batchLoader, newOptions()
+                .setInFlightRegistry(registry)
+                .setStatisticsCollector(SimpleStatisticsCollector::new)
+                .build());
+    }
+
+    @Test
+    void keys_in_flight_in_another_data_loader_are_not_loaded_again() {
+        InFlightRegistry registry = InFlightRegistry.newInFlightRegistry();
+        PendingBatchLoader firstBatchLoader = new PendingBatchLoader();
+        PendingBatchLoader secondBatchLoader = new PendingBatchLoader();
+        DataLoader<Integer, Object> firstLoader = loader(firstBatchLoader, registry);
+        DataLoader<Integer, Object> secondLoader = loader(secondBatchLoader, registry);
+
+        CompletableFuture<List<Object>> first = firstLoader.loadMany(asList(1, 2));
+        firstLoader.dispatch();
+        assertThat(registry.size(), equalTo(2));
+
+        CompletableFuture<List<Object>> second = secondLoader.loadMany(asList(2, 3));
+        secondLoader.dispatch();
+        assertThat(secondBatchLoader.loadCalls, equalTo(singletonList(singletonList(3))));
+
+        secondBatchLoader.completeBatch(0, "second-");
+        assertThat(second.isDone(), equalTo(false));
+
+        firstBatchLoader.completeBatch(0, "first-");
+        assertThat(first.join(), equalTo(asList("first-1", "first-2")));
+        assertThat(second.join(), equalTo(asList("first-2", "second-3")));
+        assertThat(registry.size(), equalTo(0));
+
+        assertThat(secondLoader.getStatistics().getCoalescedCount(), equalTo(1L));
+        assertThat(secondLoader.getStatistics().getCoalescedRatio(), equalTo(0.5d));
+        assertThat(firstLoader.getStatistics().getCoalescedCount(), equalTo(0L));
+    }
+
+    @Test
+    void a_key_repeated_within_a_batch_is_not_coalesced_with_itself() {
+        InFlightRegistry registry = InFlightRegistry.newInFlightRegistry();
+        PendingBatchLoader batchLoader = new PendingBatchLoader();
+        DataLoader<Integer, Object> loader = newDataLoader(batchLoader, newOptions()
+                .setInFlightRegistry(registry)
+                .setCachingEnabled(false)
+                .setStatisticsCollector(SimpleStatisticsCollector::new)
+                .build());
+
+        CompletableFuture<List<Object>> values = loader.loadMany(asList(1, 2, 1));
+        loader.dispatch();
+        assertThat(batchLoader.loadCalls, equalTo(singletonList(asList(1, 2, 1))));
+
+        batchLoader.completeBatch(0, "v");
+        assertThat(values.join(), equalTo(asList("v1", "v2", "v1")));
+        assertThat(registry.size(), equalTo(0));
+        assertThat(loader.getStatistics().getCoalescedCount(), equalTo(0L));
+    }
+
+    @Test
+    void a_batch_of_keys_that_are_all_in_flight_does_not_call_the_batch_loader() {
+        InFlightRegistry registry = InFlightRegistry.newInFlightRegistry();
+        PendingBatchLoader firstBatchLoader = new PendingBatchLoader();
+        PendingBatchLoader secondBatchLoader = new PendingBatchLoader();
+        DataLoader<Integer, Object> firstLoader = loader(firstBatchLoader, registry);
+        DataLoader<Integer, Object> secondLoader = loader(secondBatchLoader, registry);
+
+        firstLoader.load(1);
+        firstLoader.dispatch();
+        CompletableFuture<Object> second = secondLoader.load(1);
+        secondLoader.dispatch();
+
+        assertThat(secondBatchLoader.loadCalls.size(), equalTo(0));
+        firstBatchLoader.completeBatch(0, "first-");
+        assertThat(second.join(), equalTo("first-1"));
+
+        // once the value has arrived the key is no longer in flight and is loaded again
+        DataLoader<Integer, Object> thirdLoader = loader(secondBatchLoader, registry);
+        thirdLoader.load(1);
+        thirdLoader.dispatch();
+        assertThat(secondBatchLoader.loadCalls, equalTo(singletonList(singletonList(1))));
+    }
+
+    @Test
+    void failures_in_the_other_batch_fail_the_coalesced_loads() {
+        InFlightRegistry registry = InFlightRegistry.newInFlightRegistry();
+        PendingBatchLoader firstBatchLoader = new PendingBatchLoader();
+        PendingBatchLoader secondBatchLoader = new PendingBatchLoader();
+        DataLoader<Integer, Object> firstLoader = loader(firstBatchLoader, registry);
+        DataLoader<Integer, Object> secondLoader = loader(secondBatchLoader, registry);
+
+        firstLoader.loadMany(asList(1, 2));
+        firstLoader.dispatch();
+        CompletableFuture<Object> coalesced = secondLoader.load(1);
+        CompletableFuture<Object> loaded = secondLoader.load(3);
+        secondLoader.dispatch();
+
+        secondBatchLoader.completeBatch(0, "second-");
+        firstBatchLoader.batches.get(0).complete(asList(new IllegalStateException("no 1"), "first-2"));
+
+        assertThat(cause(coalesced), instanceOf(IllegalStateException.class));
+        assertThat(loaded.join(), equalTo("second-3"));
+        assertThat(registry.size(), equalTo(0));
+    }
+}
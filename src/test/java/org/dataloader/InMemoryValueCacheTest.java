@@ -0,0 +1,135 @@
+package org.dataloader;
+
+import org.dataloader.fixtures.TestingClock;
+import org.dataloader.impl.DataLoaderAssertionException;
+import org.dataloader.stats.SimpleStatisticsCollector;
+import org.dataloader.stats.Statistics;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.dataloader.DataLoaderOptions.newOptions;
+import static org.dataloader.fixtures.TestKit.idLoader;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class InMemoryValueCacheTest {
+
+    @Test
+    void values_are_set_and_got_with_completed_futures() {
+        InMemoryValueCache<String, String> valueCache = InMemoryValueCache.<String, String>newInMemoryValueCache().maximumSize(10).build();
+
+        CompletableFuture<String> set = valueCache.set("a", "A");
+        assertThat(set.isDone(), equalTo(true));
+
+        CompletableFuture<String> hit = valueCache.get("a");
+        assertThat(hit.isDone(), equalTo(true));
+        assertThat(hit.join(), equalTo("A"));
+        assertThat(valueCache.get("b").isCompletedExceptionally(), equalTo(true));
+
+        valueCache.set("a", "AA");
+        CompletableFuture<CachedValues<String>> cachedValues = valueCache.getCachedValues(asList("b", "a"));
+        assertThat(cachedValues.isDone(), equalTo(true));
+        assertThat(cachedValues.join().hitCount(), equalTo(1));
+        assertThat(cachedValues.join().isHit(0), equalTo(false));
+        assertThat(cachedValues.join().getValue(1), equalTo("AA"));
+
+        assertThat(valueCache.getHitCount(), equalTo(2L));
+        assertThat(valueCache.getMissCount(), equalTo(2L));
+        assertThat(valueCache.getHitRatio(), equalTo(0.5d));
+    }
+
+    @Test
+    void values_expire_after_they_are_written() {
+        TestingClock clock = new TestingClock();
+        InMemoryValueCache<String, String> valueCache = InMemoryValueCache.<String, String>newInMemoryValueCache()
+                .maximumSize(10)
+                .expireAfterWrite(Duration.ofMillis(100))
+                .clock(clock)
+                .build();
+
+        valueCache.setValues(asList("a", "b"), asList("A", "B"));
+        clock.jump(50);
+        valueCache.set("b", "B2");
+        clock.jump(50);
+
+        assertThat(valueCache.get("a").isCompletedExceptionally(), equalTo(true));
+        assertThat(valueCache.get("b").join(), equalTo("B2"));
+        assertThat(valueCache.size(), equalTo(1));
+    }
+
+    @Test
+    void holds_at_most_the_maximum_size() {
+        InMemoryValueCache<Integer, Integer> valueCache = InMemoryValueCache.<Integer, Integer>newInMemoryValueCache().maximumSize(5).build();
+        for (int i = 0; i < 20; i++) {
+            valueCache.set(i, i);
+        }
+
+        assertThat(valueCache.size(), equalTo(5));
+        assertThat(valueCache.getEvictionCount(), equalTo(15L));
+    }
+
+    @Test
+    void an_empty_cache_short_circuits_batch_lookups() {
+        InMemoryValueCache<String, String> valueCache = InMemoryValueCache.<String, String>newInMemoryValueCache().maximumSize(10).build();
+
+        assertThrows(ValueCache.ValueCachingNotSupported.class, () -> valueCache.getCachedValues(asList("a", "b")));
+        assertThat(valueCache.getMissCount(), equalTo(2L));
+    }
+
+    @Test
+    void is_a_second_level_cache_shared_by_data_loaders() {
+        InMemoryValueCache<String, String> valueCache = InMemoryValueCache.<String, String>newInMemoryValueCache().maximumSize(100).build();
+        DataLoaderOptions options = newOptions().setValueCache(valueCache).setStatisticsCollector(SimpleStatisticsCollector::new).build();
+
+        List<List<String>> firstLoadCalls = new ArrayList<>();
+        DataLoader<String, String> firstLoader = idLoader(options, firstLoadCalls);
+        CompletableFuture<List<String>> first = firstLoader.loadMany(asList("a", "b"));
+        firstLoader.dispatch();
+        assertThat(first.join(), equalTo(asList("a", "b")));
+
+        List<List<String>> secondLoadCalls = new ArrayList<>();
+        DataLoader<String, String> secondLoader = idLoader(options, secondLoadCalls);
+        CompletableFuture<List<String>> second = secondLoader.loadMany(asList("a", "c"));
+        secondLoader.dispatch();
+        assertThat(second.join(), equalTo(asList("a", "c")));
+        assertThat(secondLoadCalls, equalTo(singletonList(singletonList("c"))));
+
+        // this time it is the data loader's own cache of futures that has it
+        assertThat(secondLoader.load("a").join(), equalTo("a"));
+
+        Statistics statistics = secondLoader.getStatistics();
+        assertThat(statistics.getLoadCount(), equalTo(3L));
+        assertThat(statistics.getCacheHitCount(), equalTo(1L));
+        assertThat(statistics.getValueCacheHitCount(), equalTo(1L));
+        assertThat(statistics.getValueCacheHitRatio(), equalTo(0.5d));
+        // the key that the value cache had was still dispatched, it just never reached the batch loader
+        assertThat(statistics.getBatchLoadCount(), equalTo(2L));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void does_not_cache_the_failures_of_individual_keys() {
+        InMemoryValueCache<String, String> valueCache = InMemoryValueCache.<String, String>newInMemoryValueCache().maximumSize(100).build();
+        List<Object> batchValues = asList("a", new IllegalStateException("b failed"), Try.failed(new IllegalStateException("c failed")), Try.succeeded("d"));
+
+        valueCache.setValues(asList("a", "b", "c", "d"), (List<String>) (List<?>) batchValues).join();
+
+        assertThat(valueCache.get("a").join(), equalTo("a"));
+        assertThat(valueCache.get("b").isCompletedExceptionally(), equalTo(true));
+        assertThat(valueCache.get("c").isCompletedExceptionally(), equalTo(true));
+        assertThat(valueCache.get("d").join(), equalTo("d"));
+        assertThat(valueCache.size(), equalTo(2));
+    }
+
+    @Test
+    void a_maximum_size_must_be_set() {
+        assertThrows(DataLoaderAssertionException.class, () -> InMemoryValueCache.newInMemoryValueCache().build());
+    }
+}
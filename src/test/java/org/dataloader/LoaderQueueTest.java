@@ -0,0 +1,150 @@
+package org.dataloader;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.dataloader.DataLoaderOptions.newOptions;
+import static org.dataloader.fixtures.TestKit.idLoader;
+import static org.dataloader.fixtures.TestKit.listFrom;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class LoaderQueueTest {
+
+    @Test
+    void stripe_counts_are_rounded_up_to_a_power_of_two() {
+        assertThat(new LoaderQueue<String, String>(0).stripeCount(), equalTo(1));
+        assertThat(new LoaderQueue<String, String>(1).stripeCount(), equalTo(1));
+        assertThat(new LoaderQueue<String, String>(3).stripeCount(), equalTo(4));
+        assertThat(new LoaderQueue<String, String>(8).stripeCount(), equalTo(8));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 4})
+    void drains_in_load_order(int stripes) {
+        LoaderQueue<String, String> queue = new LoaderQueue<>(stripes);
+        assertThat(queue.drain(), nullValue());
+
+        CompletableFuture<String> fa = new CompletableFuture<>();
+        CompletableFuture<String> fb = new CompletableFuture<>();
+        queue.add("a", fa, "ctxA");
+        queue.add("b", fb, null);
+        queue.add("a", fa, "ctxA2");
+        assertThat(queue.size(), equalTo(3));
+
+        LoaderQueue.DrainedQueue<String, String> drained = queue.drain();
+        assertThat(drained.keys, equalTo(asList("a", "b", "a")));
+        assertThat(drained.queuedFutures, equalTo(asList(fa, fb, fa)));
+        assertThat(drained.callContexts, equalTo(asList("ctxA", null, "ctxA2")));
+
+        assertThat(queue.size(), equalTo(0));
+        assertThat(queue.drain(), nullValue());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 4})
+    void drains_across_many_segments(int stripes) {
+        LoaderQueue<Integer, Integer> queue = new LoaderQueue<>(stripes);
+        int count = LoaderQueue.MAX_SEGMENT_CAPACITY * 3 + 5;
+        for (int i = 0; i < count; i++) {
+            queue.add(i, new CompletableFuture<>(), i);
+        }
+        assertThat(queue.size(), equalTo(count));
+
+        List<Object> expectedContexts = new ArrayList<>(listFrom(0, count));
+        LoaderQueue.DrainedQueue<Integer, Integer> drained = queue.drain();
+        assertThat(drained.keys, equalTo(listFrom(0, count)));
+        assertThat(drained.callContexts, equalTo(expectedContexts));
+        assertThat(drained.keys.subList(7, 9), equalTo(asList(7, 8)));
+        assertThat(drained.keys.get(LoaderQueue.INITIAL_SEGMENT_CAPACITY), equalTo(LoaderQueue.INITIAL_SEGMENT_CAPACITY));
+        assertThat(queue.size(), equalTo(0));
+    }
+
+    @Test
+    void striped_queue_reconstructs_order_across_threads() throws Exception {
+        LoaderQueue<Integer, Integer> queue = new LoaderQueue<>(8);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            // each key is loaded on whatever thread is next, but strictly after the key before it
+            for (int i = 0; i < 100; i++) {
+                int key = i;
+                executor.submit(() -> queue.add(key, new CompletableFuture<>(), null)).get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(queue.size(), equalTo(100));
+        assertThat(queue.drain().keys, equalTo(listFrom(0, 100)));
+    }
+
+    @Test
+    void concurrent_loads_are_all_drained_exactly_once() throws Exception {
+        int threads = 8;
+        int loadsPerThread = 1000;
+        LoaderQueue<Integer, Integer> queue = new LoaderQueue<>(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Integer> drainedKeys = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                int base = t * loadsPerThread;
+                executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < loadsPerThread; i++) {
+                        queue.add(base + i, new CompletableFuture<>(), null);
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+            executor.shutdown();
+            while (!executor.awaitTermination(1, TimeUnit.MILLISECONDS)) {
+                LoaderQueue.DrainedQueue<Integer, Integer> drained = queue.drain();
+                if (drained != null) {
+                    drainedKeys.addAll(drained.keys);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        LoaderQueue.DrainedQueue<Integer, Integer> drained = queue.drain();
+        if (drained != null) {
+            drainedKeys.addAll(drained.keys);
+        }
+
+        Set<Integer> uniqueKeys = new HashSet<>(drainedKeys);
+        assertThat(drainedKeys.size(), equalTo(threads * loadsPerThread));
+        assertThat(uniqueKeys.size(), equalTo(threads * loadsPerThread));
+    }
+
+    @Test
+    void striped_data_loader_batches_keys_in_load_order() {
+        List<List<Integer>> loadCalls = new ArrayList<>();
+        DataLoader<Integer, Integer> identityLoader = idLoader(newOptions().setLoaderQueueStripes(4).build(), loadCalls);
+
+        CompletableFuture<Integer> f1 = identityLoader.load(1);
+        CompletableFuture<Integer> f2 = identityLoader.load(2);
+        assertThat(identityLoader.dispatchDepth(), equalTo(2));
+
+        identityLoader.dispatch();
+
+        assertThat(f1.join(), equalTo(1));
+        assertThat(f2.join(), equalTo(2));
+        assertThat(identityLoader.dispatchDepth(), equalTo(0));
+        assertThat(loadCalls, equalTo(singletonList(asList(1, 2))));
+    }
+}
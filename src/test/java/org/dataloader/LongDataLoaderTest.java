@@ -0,0 +1,257 @@
+package org.dataloader;
+
+import org.dataloader.impl.DataLoaderAssertionException;
+import org.dataloader.stats.SimpleStatisticsCollector;
+import org.dataloader.stats.Statistics;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.dataloader.DataLoaderFactory.newLongDataLoader;
+import static org.dataloader.DataLoaderOptions.newOptions;
+import static org.dataloader.impl.CompletableFutureKit.cause;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class LongDataLoaderTest {
+
+    private static LongBatchLoader<String> idLoader(List<long[]> loadCalls) {
+        return (keys, environment) -> {
+            loadCalls.add(keys);
+            List<String> values = new ArrayList<>(keys.length);
+            for (long key : keys) {
+                values.add("v" + key);
+            }
+            return CompletableFuture.completedFuture(values);
+        };
+    }
+
+    private static List<Long> listOf(long[] keys) {
+        List<Long> list = new ArrayList<>(keys.length);
+        for (long key : keys) {
+            list.add(key);
+        }
+        return list;
+    }
+
+    @Test
+    void batches_primitive_keys_and_caches_their_futures() {
+        List<long[]> loadCalls = new ArrayList<>();
+        LongDataLoader<String> loader = newLongDataLoader(idLoader(loadCalls));
+
+        CompletableFuture<String> f1 = loader.load(1L);
+        CompletableFuture<String> f2 = loader.load(2L);
+        CompletableFuture<String> f1Again = loader.load(1L);
+        assertThat(f1Again, sameInstance(f1));
+        assertThat(loader.dispatchDepth(), equalTo(2));
+
+        DispatchResult<String> dispatchResult = loader.dispatchWithCounts();
+
+        assertThat(dispatchResult.getKeysCount(), equalTo(2));
+        assertThat(dispatchResult.getPromisedResults().join(), equalTo(asList("v1", "v2")));
+        assertThat(f1.join(), equalTo("v1"));
+        assertThat(f2.join(), equalTo("v2"));
+        assertThat(loadCalls.size(), equalTo(1));
+        assertThat(listOf(loadCalls.get(0)), equalTo(asList(1L, 2L)));
+
+        // a cached key does not go to the batch loader again
+        assertThat(loader.load(2L).join(), equalTo("v2"));
+        assertThat(loader.dispatchDepth(), equalTo(0));
+    }
+
+    @Test
+    void boxed_loads_share_the_primitive_path() {
+        List<long[]> loadCalls = new ArrayList<>();
+        DataLoader<Long, String> loader = newLongDataLoader(idLoader(loadCalls));
+
+        CompletableFuture<String> boxed = loader.load(7L, "ctx");
+        CompletableFuture<List<String>> many = loader.loadMany(asList(7L, 8L));
+        loader.dispatch();
+
+        assertThat(boxed.join(), equalTo("v7"));
+        assertThat(many.join(), equalTo(asList("v7", "v8")));
+        assertThat(loadCalls.size(), equalTo(1));
+        assertThat(loader.getCacheMap().get(8L), sameInstance(loader.getIfPresent(8L).orElse(null)));
+    }
+
+    @Test
+    void slices_batches_larger_than_the_max_batch_size() {
+        List<long[]> loadCalls = new ArrayList<>();
+        LongDataLoader<String> loader = newLongDataLoader(idLoader(loadCalls), newOptions().setMaxBatchSize(2).build());
+
+        CompletableFuture<List<String>> values = loader.loadMany(1L, 2L, 3L, 4L, 5L);
+        loader.dispatch();
+
+        assertThat(values.join(), equalTo(asList("v1", "v2", "v3", "v4", "v5")));
+        assertThat(loadCalls.size(), equalTo(3));
+        assertThat(listOf(loadCalls.get(2)), equalTo(singletonList(5L)));
+    }
+
+    @Test
+    void completes_loads_with_per_key_failures() {
+        LongDataLoader<String> loader = newLongDataLoader((keys, environment) -> {
+            List<Object> values = new ArrayList<>();
+            values.add("ok");
+            values.add(new IllegalStateException("bad key"));
+            values.add(Try.failed(new IllegalArgumentException("bad try")));
+            @SuppressWarnings("unchecked")
+            List<String> results = (List<String>) (List<?>) values;
+            return CompletableFuture.completedFuture(results);
+        }, newOptions().setCachingExceptionsEnabled(false).build());
+
+        CompletableFuture<String> f1 = loader.load(1L);
+        CompletableFuture<String> f2 = loader.load(2L);
+        CompletableFuture<String> f3 = loader.load(3L);
+        loader.dispatch();
+
+        assertThat(f1.join(), equalTo("ok"));
+        assertThat(cause(f2), instanceOf(IllegalStateException.class));
+        assertThat(cause(f3), instanceOf(IllegalArgumentException.class));
+        // failures are not cached when caching exceptions is disabled
+        assertThat(loader.getIfPresent(1L).isPresent(), equalTo(true));
+        assertThat(loader.getIfPresent(2L).isPresent(), equalTo(false));
+        assertThat(loader.getIfPresent(3L).isPresent(), equalTo(false));
+    }
+
+    @Test
+    void failed_batches_fail_every_load_and_clear_the_cache() {
+        LongDataLoader<String> loader = newLongDataLoader((keys, environment) -> {
+            throw new IllegalStateException("backend down");
+        });
+
+        CompletableFuture<String> f1 = loader.load(1L);
+        loader.dispatch();
+
+        assertThat(cause(f1), instanceOf(IllegalStateException.class));
+        assertThat(loader.getIfPresent(1L).isPresent(), equalTo(false));
+    }
+
+    @Test
+    void calls_the_batch_loader_straight_away_when_batching_is_disabled() {
+        List<long[]> loadCalls = new ArrayList<>();
+        LongDataLoader<String> loader = newLongDataLoader(idLoader(loadCalls), newOptions().setBatchingEnabled(false).build());
+
+        assertThat(loader.load(3L).join(), equalTo("v3"));
+        assertThat(loader.load(3L).join(), equalTo("v3"));
+        assertThat(loader.dispatchDepth(), equalTo(0));
+        assertThat(loadCalls.size(), equalTo(1));
+    }
+
+    @Test
+    void clear_and_prime_work_on_primitive_keys() {
+        List<long[]> loadCalls = new ArrayList<>();
+        LongDataLoader<String> loader = newLongDataLoader(idLoader(loadCalls));
+
+        loader.prime(1L, "primed");
+        assertThat(loader.load(1L).join(), equalTo("primed"));
+
+        loader.clear(1L);
+        CompletableFuture<String> reloaded = loader.load(1L);
+        loader.dispatch();
+        assertThat(reloaded.join(), equalTo("v1"));
+        assertThat(loadCalls.size(), equalTo(1));
+    }
+
+    @Test
+    void records_statistics() {
+        LongDataLoader<String> loader = newLongDataLoader(idLoader(new ArrayList<>()),
+                newOptions().setStatisticsCollector(SimpleStatisticsCollector::new).build());
+
+        loader.load(1L);
+        loader.load(2L);
+        loader.load(1L);
+        loader.dispatch();
+
+        Statistics stats = loader.getStatistics();
+        assertThat(stats.getLoadCount(), equalTo(3L));
+        assertThat(stats.getCacheHitCount(), equalTo(1L));
+        assertThat(stats.getBatchInvokeCount(), equalTo(1L));
+        assertThat(stats.getBatchLoadCount(), equalTo(2L));
+    }
+
+    @Test
+    void loads_from_many_threads_are_all_dispatched() throws Exception {
+        List<long[]> loadCalls = Collections.synchronizedList(new ArrayList<>());
+        LongDataLoader<String> loader = newLongDataLoader(idLoader(loadCalls));
+        int threadCount = 8;
+        int loadsPerThread = 5_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<List<CompletableFuture<String>>>> results = new ArrayList<>();
+            for (int t = 0; t < threadCount; t++) {
+                long firstKey = (long) t * loadsPerThread;
+                results.add(executor.submit(() -> {
+                    List<CompletableFuture<String>> futures = new ArrayList<>(loadsPerThread);
+                    for (long key = firstKey; key < firstKey + loadsPerThread; key++) {
+                        futures.add(loader.load(key));
+                        // the same key from another thread is a cache hit on the lock free path
+                        futures.add(loader.load(key / 2));
+                        if (key % 1_000 == 0) {
+                            loader.dispatch();
+                        }
+                    }
+                    return futures;
+                }));
+            }
+            List<CompletableFuture<String>> futures = new ArrayList<>();
+            for (Future<List<CompletableFuture<String>>> result : results) {
+                futures.addAll(result.get());
+            }
+            loader.dispatch();
+
+            for (CompletableFuture<String> future : futures) {
+                assertThat(future.isDone(), equalTo(true));
+            }
+            int dispatchedKeys = 0;
+            for (long[] keys : loadCalls) {
+                dispatchedKeys += keys.length;
+            }
+            // every distinct key is dispatched exactly once
+            assertThat(dispatchedKeys, equalTo(threadCount * loadsPerThread));
+            assertThat(loader.getCacheMap().size(), equalTo(threadCount * loadsPerThread));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void options_for_the_general_purpose_loader_are_rejected() {
+        LongBatchLoader<String> batchLoader = idLoader(new ArrayList<>());
+
+        assertThrows(DataLoaderAssertionException.class, () -> newLongDataLoader(batchLoader, newOptions().setLingerTime(Duration.ofMillis(5)).build()));
+        assertThrows(DataLoaderAssertionException.class, () -> newLongDataLoader(batchLoader, newOptions().setMaxConcurrentBatches(2).build()));
+        assertThrows(DataLoaderAssertionException.class, () -> newLongDataLoader(batchLoader, newOptions().setBatchKeyDeduplicationEnabled(true).build()));
+        assertThrows(DataLoaderAssertionException.class, () -> newLongDataLoader(batchLoader, newOptions().setAutoDispatchBatchSize(10).build()));
+        assertThrows(DataLoaderAssertionException.class, () -> newLongDataLoader(batchLoader, newOptions().setInFlightRegistry(InFlightRegistry.newInFlightRegistry()).build()));
+    }
+
+    @Test
+    void stays_a_long_data_loader_when_registered() {
+        List<long[]> loadCalls = new ArrayList<>();
+        DataLoaderRegistry registry = DataLoaderRegistry.newRegistry()
+                .register("ids", newLongDataLoader(idLoader(loadCalls)))
+                .build();
+
+        DataLoader<Long, String> loader = registry.getDataLoader("ids");
+        assertThat(loader, instanceOf(LongDataLoader.class));
+
+        CompletableFuture<String> value = ((LongDataLoader<String>) loader).load(5L);
+        assertThat(registry.dispatchDepth(), equalTo(1));
+        registry.dispatchAll();
+
+        assertThat(value.join(), equalTo("v5"));
+        assertThat(loadCalls.size(), equalTo(1));
+    }
+}
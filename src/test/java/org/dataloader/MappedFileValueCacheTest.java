@@ -0,0 +1,176 @@
+package org.dataloader;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.dataloader.DataLoaderOptions.newOptions;
+import static org.dataloader.fixtures.TestKit.idLoader;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MappedFileValueCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private MappedFileValueCache<String, String> open(Path file) {
+        return MappedFileValueCache.newMappedFileValueCache(file, ValueCacheCodec.utf8String(), ValueCacheCodec.utf8String())
+                .initialSize(1024)
+                .build();
+    }
+
+    @Test
+    void values_survive_reopening_the_file() throws Exception {
+        Path file = tempDir.resolve("values.cache");
+        try (MappedFileValueCache<String, String> valueCache = open(file)) {
+            valueCache.setValues(asList("a", "b", "c"), asList("A", "B", null));
+            valueCache.set("a", "AA");
+            valueCache.delete("b");
+        }
+
+        try (MappedFileValueCache<String, String> valueCache = open(file)) {
+            assertThat(valueCache.size(), equalTo(2));
+            assertThat(valueCache.get("a").join(), equalTo("AA"));
+            assertThat(valueCache.get("b").isCompletedExceptionally(), equalTo(true));
+            assertThat(valueCache.get("c").join(), nullValue());
+
+            CachedValues<String> cachedValues = valueCache.getCachedValues(asList("b", "a", "c")).join();
+            assertThat(cachedValues.hitCount(), equalTo(2));
+            assertThat(cachedValues.isHit(0), equalTo(false));
+            assertThat(cachedValues.getValue(1), equalTo("AA"));
+            assertThat(cachedValues.isHit(2), equalTo(true));
+        }
+    }
+
+    @Test
+    void grows_the_file_and_compacts_overwritten_values_away() throws Exception {
+        Path file = tempDir.resolve("values.cache");
+        char[] chars = new char[1000];
+        try (MappedFileValueCache<String, String> valueCache = open(file)) {
+            for (int i = 0; i < 200; i++) {
+                Arrays.fill(chars, (char) ('a' + i % 26));
+                valueCache.set("key", new String(chars));
+                valueCache.set("key" + i % 10, "small" + i);
+            }
+            assertThat(valueCache.size(), equalTo(11));
+            assertThat(valueCache.getGarbageBytes(), lessThan(valueCache.getLiveBytes() + 64 * 1024));
+        }
+        assertThat(Files.size(file), lessThan(200L * 1000));
+
+        try (MappedFileValueCache<String, String> valueCache = open(file)) {
+            assertThat(valueCache.size(), equalTo(11));
+            assertThat(valueCache.get("key").join(), equalTo(new String(chars)));
+            assertThat(valueCache.get("key9").join(), equalTo("small199"));
+        }
+    }
+
+    @Test
+    void a_torn_record_and_anything_after_it_are_dropped_on_reopening() throws Exception {
+        Path file = tempDir.resolve("values.cache");
+        long endOfFirstRecord;
+        try (MappedFileValueCache<String, String> valueCache = open(file)) {
+            valueCache.set("a", "A");
+            endOfFirstRecord = 8 + valueCache.getLiveBytes();
+            valueCache.set("b", "B");
+            valueCache.set("c", "C");
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            // scribble over the body of the second record
+            channel.write(ByteBuffer.wrap("??".getBytes(StandardCharsets.UTF_8)), endOfFirstRecord + 10);
+        }
+
+        try (MappedFileValueCache<String, String> valueCache = open(file)) {
+            assertThat(valueCache.size(), equalTo(1));
+            assertThat(valueCache.get("a").join(), equalTo("A"));
+
+            // and the log carries on from there
+            valueCache.set("d", "D");
+        }
+        try (MappedFileValueCache<String, String> valueCache = open(file)) {
+            assertThat(valueCache.size(), equalTo(2));
+            assertThat(valueCache.get("d").join(), equalTo("D"));
+        }
+    }
+
+    @Test
+    void clear_starts_the_log_again() throws Exception {
+        Path file = tempDir.resolve("values.cache");
+        try (MappedFileValueCache<String, String> valueCache = open(file)) {
+            valueCache.setValues(asList("a", "b"), asList("A", "B"));
+            valueCache.clear();
+            assertThat(valueCache.size(), equalTo(0));
+            assertThat(valueCache.getLiveBytes(), equalTo(0L));
+            valueCache.set("c", "C");
+        }
+
+        try (MappedFileValueCache<String, String> valueCache = open(file)) {
+            assertThat(valueCache.size(), equalTo(1));
+            assertThat(valueCache.get("a").isCompletedExceptionally(), equalTo(true));
+            assertThat(valueCache.get("c").join(), equalTo("C"));
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void does_not_write_the_failures_of_individual_keys() throws Exception {
+        Path file = tempDir.resolve("values.cache");
+        List<Object> batchValues = asList(new IllegalStateException("a failed"), "b", Try.failed(new IllegalStateException("c failed")), Try.succeeded("d"));
+        try (MappedFileValueCache<String, String> valueCache = open(file)) {
+            valueCache.setValues(asList("a", "b", "c", "d"), (List<String>) (List<?>) batchValues).join();
+        }
+
+        try (MappedFileValueCache<String, String> valueCache = open(file)) {
+            assertThat(valueCache.size(), equalTo(2));
+            assertThat(valueCache.get("a").isCompletedExceptionally(), equalTo(true));
+            assertThat(valueCache.get("b").join(), equalTo("b"));
+            assertThat(valueCache.get("c").isCompletedExceptionally(), equalTo(true));
+            assertThat(valueCache.get("d").join(), equalTo("d"));
+        }
+    }
+
+    @Test
+    void a_restarted_data_loader_is_warm() throws Exception {
+        Path file = tempDir.resolve("values.cache");
+        try (MappedFileValueCache<String, String> valueCache = open(file)) {
+            DataLoader<String, String> loader = idLoader(newOptions().setValueCache(valueCache).build(), new ArrayList<>());
+            CompletableFuture<List<String>> values = loader.loadMany(asList("a", "b"));
+            loader.dispatch();
+            assertThat(values.join(), equalTo(asList("a", "b")));
+        }
+
+        try (MappedFileValueCache<String, String> valueCache = open(file)) {
+            List<List<String>> loadCalls = new ArrayList<>();
+            DataLoader<String, String> loader = idLoader(newOptions().setValueCache(valueCache).build(), loadCalls);
+            CompletableFuture<List<String>> values = loader.loadMany(asList("a", "b", "c"));
+            loader.dispatch();
+            assertThat(values.join(), equalTo(asList("a", "b", "c")));
+            assertThat(loadCalls, equalTo(singletonList(singletonList("c"))));
+        }
+    }
+
+    @Test
+    void files_that_are_not_value_caches_are_rejected() throws Exception {
+        Path file = tempDir.resolve("not.cache");
+        Files.write(file, "hello world, not a cache".getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(UncheckedIOException.class, () -> open(file));
+    }
+}
@@ -0,0 +1,200 @@
+package org.dataloader;
+
+import org.dataloader.impl.DataLoaderAssertionException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.dataloader.DataLoaderOptions.newOptions;
+import static org.dataloader.fixtures.TestKit.idLoader;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class OffHeapValueCacheTest {
+
+    private static OffHeapValueCache<Integer, String> smallCache() {
+        return OffHeapValueCache.<Integer, String>newOffHeapValueCache(ValueCacheCodec.utf8String())
+                .slabSize(1024)
+                .maximumBytes(2048)
+                .build();
+    }
+
+    private static String valueOfLength(int length) {
+        return "x".repeat(length);
+    }
+
+    @Test
+    void values_are_set_and_got_in_bulk() {
+        OffHeapValueCache<Integer, String> valueCache = smallCache();
+        valueCache.setValues(asList(1, 2, 3), asList("one", "two", null));
+
+        assertThat(valueCache.get(1).join(), equalTo("one"));
+        assertThat(valueCache.get(3).join(), nullValue());
+        assertThat(valueCache.get(4).isCompletedExceptionally(), equalTo(true));
+
+        CachedValues<String> cachedValues = valueCache.getCachedValues(asList(4, 2, 3)).join();
+        assertThat(cachedValues.hitCount(), equalTo(2));
+        assertThat(cachedValues.isHit(0), equalTo(false));
+        assertThat(cachedValues.getValue(1), equalTo("two"));
+
+        // each small value takes up the smallest chunk
+        assertThat(valueCache.getUsedBytes(), equalTo(128L));
+        valueCache.delete(1);
+        valueCache.set(2, "deux");
+        assertThat(valueCache.get(2).join(), equalTo("deux"));
+        assertThat(valueCache.getUsedBytes(), equalTo(64L));
+        assertThat(valueCache.getAllocatedBytes(), equalTo(1024L));
+    }
+
+    @Test
+    void evicts_the_least_recently_used_values_once_full() {
+        OffHeapValueCache<Integer, String> valueCache = smallCache();
+        // two slabs of eight 128 byte chunks
+        for (int i = 0; i < 16; i++) {
+            valueCache.set(i, valueOfLength(100));
+        }
+        valueCache.get(0);
+
+        valueCache.set(16, valueOfLength(100));
+
+        assertThat(valueCache.getEvictionCount(), equalTo(1L));
+        assertThat(valueCache.get(0).isCompletedExceptionally(), equalTo(false));
+        assertThat(valueCache.get(1).isCompletedExceptionally(), equalTo(true));
+        assertThat(valueCache.size(), equalTo(16));
+        assertThat(valueCache.getAllocatedBytes(), equalTo(2048L));
+    }
+
+    @Test
+    void an_emptied_slab_is_cut_up_again_for_larger_values() {
+        OffHeapValueCache<Integer, String> valueCache = smallCache();
+        for (int i = 0; i < 16; i++) {
+            valueCache.set(i, valueOfLength(100));
+        }
+
+        valueCache.set(100, valueOfLength(1000));
+
+        // the first slab has to be emptied of all eight of its values
+        assertThat(valueCache.getEvictionCount(), equalTo(8L));
+        assertThat(valueCache.get(100).join(), equalTo(valueOfLength(1000)));
+        assertThat(valueCache.get(8).join(), equalTo(valueOfLength(100)));
+        assertThat(valueCache.size(), equalTo(9));
+    }
+
+    @Test
+    void evicts_values_of_the_same_size_before_emptying_a_slab() {
+        OffHeapValueCache<Integer, String> valueCache = smallCache();
+        // one slab of sixteen 64 byte chunks, used least recently, and one slab of eight 128 byte chunks
+        for (int i = 0; i < 16; i++) {
+            valueCache.set(i, valueOfLength(50));
+        }
+        for (int i = 100; i < 108; i++) {
+            valueCache.set(i, valueOfLength(100));
+        }
+
+        valueCache.set(200, valueOfLength(100));
+
+        assertThat(valueCache.getEvictionCount(), equalTo(1L));
+        assertThat(valueCache.get(100).isCompletedExceptionally(), equalTo(true));
+        assertThat(valueCache.get(0).join(), equalTo(valueOfLength(50)));
+        assertThat(valueCache.get(200).join(), equalTo(valueOfLength(100)));
+        assertThat(valueCache.size(), equalTo(24));
+    }
+
+    @Test
+    void empties_the_slab_with_the_fewest_values_for_a_new_chunk_size() {
+        OffHeapValueCache<Integer, String> valueCache = smallCache();
+        for (int i = 0; i < 16; i++) {
+            valueCache.set(i, valueOfLength(50));
+        }
+        for (int i = 100; i < 108; i++) {
+            valueCache.set(i, valueOfLength(100));
+        }
+
+        valueCache.set(200, valueOfLength(1000));
+
+        // the slab of 128 byte chunks holds half as many values as the least recently used one
+        assertThat(valueCache.getEvictionCount(), equalTo(8L));
+        assertThat(valueCache.get(0).join(), equalTo(valueOfLength(50)));
+        assertThat(valueCache.get(100).isCompletedExceptionally(), equalTo(true));
+        assertThat(valueCache.get(200).join(), equalTo(valueOfLength(1000)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void does_not_cache_the_failures_of_individual_keys() {
+        OffHeapValueCache<Integer, String> valueCache = smallCache();
+        List<Object> batchValues = asList("a", new IllegalStateException("b failed"), Try.failed(new IllegalStateException("c failed")), Try.succeeded("d"));
+
+        valueCache.setValues(asList(1, 2, 3, 4), (List<String>) (List<?>) batchValues).join();
+
+        assertThat(valueCache.get(1).join(), equalTo("a"));
+        assertThat(valueCache.get(2).isCompletedExceptionally(), equalTo(true));
+        assertThat(valueCache.get(3).isCompletedExceptionally(), equalTo(true));
+        assertThat(valueCache.get(4).join(), equalTo("d"));
+        assertThat(valueCache.size(), equalTo(2));
+    }
+
+    @Test
+    void values_larger_than_a_slab_are_not_cached() {
+        OffHeapValueCache<Integer, String> valueCache = smallCache();
+        valueCache.set(1, "small");
+        valueCache.set(1, valueOfLength(2000));
+
+        assertThat(valueCache.get(1).isCompletedExceptionally(), equalTo(true));
+        assertThat(valueCache.getUsedBytes(), equalTo(0L));
+    }
+
+    @Test
+    void codecs_decode_straight_from_off_heap_memory() {
+        List<Boolean> direct = new ArrayList<>();
+        ValueCacheCodec<String> codec = new ValueCacheCodec<>() {
+            @Override
+            public byte[] encode(String value) {
+                return value.getBytes(StandardCharsets.UTF_8);
+            }
+
+            @Override
+            public String decode(ByteBuffer bytes) {
+                direct.add(bytes.isDirect() && bytes.isReadOnly());
+                return StandardCharsets.UTF_8.decode(bytes).toString();
+            }
+        };
+        OffHeapValueCache<String, String> valueCache = OffHeapValueCache.<String, String>newOffHeapValueCache(codec)
+                .maximumBytes(1024 * 1024)
+                .build();
+
+        valueCache.set("a", "A");
+        assertThat(valueCache.get("a").join(), equalTo("A"));
+        assertThat(direct, equalTo(singletonList(true)));
+    }
+
+    @Test
+    void serves_a_data_loader() {
+        OffHeapValueCache<String, String> valueCache = OffHeapValueCache.<String, String>newOffHeapValueCache(ValueCacheCodec.utf8String())
+                .maximumBytes(1024 * 1024)
+                .build();
+        valueCache.set("a", "cached a");
+
+        List<List<String>> loadCalls = new ArrayList<>();
+        DataLoader<String, String> loader = idLoader(newOptions().setValueCache(valueCache).build(), loadCalls);
+        CompletableFuture<List<String>> values = loader.loadMany(asList("a", "b"));
+        loader.dispatch();
+
+        assertThat(values.join(), equalTo(asList("cached a", "b")));
+        assertThat(loadCalls, equalTo(singletonList(singletonList("b"))));
+        assertThat(valueCache.get("b").join(), equalTo("b"));
+    }
+
+    @Test
+    void a_maximum_number_of_bytes_must_be_set() {
+        assertThrows(DataLoaderAssertionException.class, () -> OffHeapValueCache.newOffHeapValueCache(ValueCacheCodec.bytes()).build());
+    }
+}
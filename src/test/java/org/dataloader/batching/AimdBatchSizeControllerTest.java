@@ -0,0 +1,84 @@
+package org.dataloader.batching;
+
+import org.dataloader.fixtures.TestingClock;
+import org.dataloader.impl.DataLoaderAssertionException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class AimdBatchSizeControllerTest {
+
+    private static final Duration FAST = Duration.ofMillis(10);
+    private static final Duration SLOW = Duration.ofMillis(200);
+
+    private final TestingClock clock = new TestingClock();
+    private final AimdBatchSizeController controller = AimdBatchSizeController.newController(Duration.ofMillis(100))
+            .minBatchSize(5)
+            .maxBatchSize(40)
+            .initialBatchSize(20)
+            .increaseBy(10)
+            .decreaseFactor(0.5)
+            .clock(clock)
+            .build();
+
+    @Test
+    void full_batches_within_the_latency_target_grow_the_batch_size() {
+        assertThat(controller.getBatchSize(), equalTo(20));
+
+        controller.onBatchCompleted(20, FAST, true);
+        assertThat(controller.getBatchSize(), equalTo(30));
+
+        controller.onBatchCompleted(30, FAST, true);
+        controller.onBatchCompleted(40, FAST, true);
+        assertThat(controller.getBatchSize(), equalTo(40));
+    }
+
+    @Test
+    void smaller_batches_do_not_grow_the_batch_size() {
+        controller.onBatchCompleted(3, FAST, true);
+
+        assertThat(controller.getBatchSize(), equalTo(20));
+    }
+
+    @Test
+    void slow_or_failed_batches_shrink_the_batch_size() {
+        controller.onBatchCompleted(20, SLOW, true);
+        assertThat(controller.getBatchSize(), equalTo(10));
+
+        clock.jump(1000);
+        controller.onBatchCompleted(3, FAST, false);
+        assertThat(controller.getBatchSize(), equalTo(5));
+
+        clock.jump(1000);
+        controller.onBatchCompleted(5, SLOW, true);
+        assertThat(controller.getBatchSize(), equalTo(5));
+    }
+
+    @Test
+    void batches_in_flight_when_the_batch_size_shrank_do_not_shrink_it_again() {
+        controller.onBatchCompleted(20, SLOW, true);
+        assertThat(controller.getBatchSize(), equalTo(10));
+
+        // these started before the batch size shrank
+        clock.jump(5);
+        controller.onBatchCompleted(20, SLOW, true);
+        controller.onBatchCompleted(20, FAST, false);
+        assertThat(controller.getBatchSize(), equalTo(10));
+
+        // while this one started after it did
+        clock.jump(300);
+        controller.onBatchCompleted(10, SLOW, true);
+        assertThat(controller.getBatchSize(), equalTo(5));
+    }
+
+    @Test
+    void invalid_settings_are_rejected() {
+        assertThrows(DataLoaderAssertionException.class, () -> AimdBatchSizeController.newController(FAST).minBatchSize(0).build());
+        assertThrows(DataLoaderAssertionException.class, () -> AimdBatchSizeController.newController(FAST).minBatchSize(10).maxBatchSize(5).build());
+        assertThrows(DataLoaderAssertionException.class, () -> AimdBatchSizeController.newController(FAST).decreaseFactor(1).build());
+    }
+}
@@ -0,0 +1,203 @@
+package org.dataloader.batching;
+
+import org.dataloader.BatchLoader;
+import org.dataloader.DataLoader;
+import org.dataloader.impl.DataLoaderAssertionException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.awaitility.Awaitility.await;
+import static org.dataloader.DataLoaderFactory.newDataLoader;
+import static org.dataloader.impl.CompletableFutureKit.cause;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class BatchAggregatorTest {
+
+    private static final Duration LONG_WINDOW = Duration.ofHours(1);
+
+    private final List<List<Integer>> loadCalls = new ArrayList<>();
+
+    private final BatchLoader<Integer, String> batchLoader = keys -> {
+        synchronized (loadCalls) {
+            loadCalls.add(new ArrayList<>(keys));
+        }
+        return CompletableFuture.completedFuture(keys.stream().map(key -> "v" + key).collect(Collectors.toList()));
+    };
+
+    @Test
+    void batches_from_many_data_loaders_are_merged_into_one_call() {
+        BatchAggregator<Integer, String> aggregator = BatchAggregator.newBatchAggregator(batchLoader)
+                .window(LONG_WINDOW)
+                .build();
+        DataLoader<Integer, String> firstLoader = newDataLoader(aggregator);
+        DataLoader<Integer, String> secondLoader = newDataLoader(aggregator);
+
+        CompletableFuture<List<String>> first = firstLoader.loadMany(asList(1, 2));
+        firstLoader.dispatch();
+        CompletableFuture<List<String>> second = secondLoader.loadMany(asList(3, 2));
+        secondLoader.dispatch();
+        assertThat(loadCalls.size(), equalTo(0));
+
+        aggregator.flush();
+
+        assertThat(loadCalls, equalTo(singletonList(asList(1, 2, 3))));
+        assertThat(first.join(), equalTo(asList("v1", "v2")));
+        assertThat(second.join(), equalTo(asList("v3", "v2")));
+        assertThat(aggregator.getAggregatedBatchCount(), equalTo(2L));
+        assertThat(aggregator.getBatchLoaderCallCount(), equalTo(1L));
+    }
+
+    @Test
+    void held_batches_are_sent_once_the_maximum_batch_size_is_reached() {
+        BatchAggregator<Integer, String> aggregator = BatchAggregator.newBatchAggregator(batchLoader)
+                .window(LONG_WINDOW)
+                .maxBatchSize(4)
+                .build();
+        DataLoader<Integer, String> firstLoader = newDataLoader(aggregator);
+        DataLoader<Integer, String> secondLoader = newDataLoader(aggregator);
+
+        CompletableFuture<List<String>> first = firstLoader.loadMany(asList(1, 2));
+        firstLoader.dispatch();
+        assertThat(first.isDone(), equalTo(false));
+
+        CompletableFuture<List<String>> second = secondLoader.loadMany(asList(3, 4));
+        secondLoader.dispatch();
+
+        assertThat(loadCalls, equalTo(singletonList(asList(1, 2, 3, 4))));
+        assertThat(first.join(), equalTo(asList("v1", "v2")));
+        assertThat(second.join(), equalTo(asList("v3", "v4")));
+    }
+
+    @Test
+    void merged_keys_are_split_into_calls_of_the_maximum_batch_size() {
+        BatchAggregator<Integer, String> aggregator = BatchAggregator.newBatchAggregator(batchLoader)
+                .window(LONG_WINDOW)
+                .maxBatchSize(2)
+                .build();
+
+        List<String> values = aggregator.load(asList(1, 2, 3, 4, 5)).toCompletableFuture().join();
+
+        assertThat(values, equalTo(asList("v1", "v2", "v3", "v4", "v5")));
+        assertThat(loadCalls, equalTo(asList(asList(1, 2), asList(3, 4), singletonList(5))));
+    }
+
+    @Test
+    void held_batches_are_sent_when_the_window_closes() {
+        BatchAggregator<Integer, String> aggregator = BatchAggregator.newBatchAggregator(batchLoader)
+                .window(Duration.ofMillis(10))
+                .build();
+        DataLoader<Integer, String> loader = newDataLoader(aggregator);
+
+        CompletableFuture<String> value = loader.load(1);
+        loader.dispatch();
+
+        await().until(value::isDone);
+        assertThat(value.join(), equalTo("v1"));
+    }
+
+    @Test
+    void a_closed_window_hands_its_batches_to_the_send_executor() {
+        List<Runnable> sends = new ArrayList<>();
+        ManualScheduler scheduler = new ManualScheduler();
+        try {
+            BatchAggregator<Integer, String> aggregator = BatchAggregator.newBatchAggregator(batchLoader)
+                    .window(LONG_WINDOW)
+                    .scheduler(scheduler)
+                    .sendExecutor(sends::add)
+                    .build();
+
+            CompletableFuture<List<String>> values = aggregator.load(asList(1, 2)).toCompletableFuture();
+            scheduler.windowTimers.get(0).run();
+            assertThat(loadCalls.size(), equalTo(0));
+
+            sends.get(0).run();
+            assertThat(loadCalls, equalTo(singletonList(asList(1, 2))));
+            assertThat(values.join(), equalTo(asList("v1", "v2")));
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    void a_timer_of_an_already_closed_window_does_not_close_the_next_one() {
+        ManualScheduler scheduler = new ManualScheduler();
+        try {
+            BatchAggregator<Integer, String> aggregator = BatchAggregator.newBatchAggregator(batchLoader)
+                    .window(LONG_WINDOW)
+                    .scheduler(scheduler)
+                    .sendExecutor(Runnable::run)
+                    .build();
+
+            aggregator.load(singletonList(1));
+            aggregator.flush();
+            CompletableFuture<List<String>> next = aggregator.load(singletonList(2)).toCompletableFuture();
+
+            // the first window's timer fires late, after the window was flushed and the next one opened
+            scheduler.windowTimers.get(0).run();
+            assertThat(next.isDone(), equalTo(false));
+
+            scheduler.windowTimers.get(1).run();
+            assertThat(next.join(), equalTo(singletonList("v2")));
+            assertThat(loadCalls, equalTo(asList(singletonList(1), singletonList(2))));
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    void a_failed_call_fails_every_merged_batch() {
+        BatchLoader<Integer, String> failingBatchLoader = keys -> {
+            throw new IllegalStateException("backend down");
+        };
+        BatchAggregator<Integer, String> aggregator = BatchAggregator.newBatchAggregator(failingBatchLoader)
+                .window(LONG_WINDOW)
+                .build();
+        DataLoader<Integer, String> firstLoader = newDataLoader(aggregator);
+        DataLoader<Integer, String> secondLoader = newDataLoader(aggregator);
+
+        CompletableFuture<String> first = firstLoader.load(1);
+        firstLoader.dispatch();
+        CompletableFuture<String> second = secondLoader.load(2);
+        secondLoader.dispatch();
+        aggregator.flush();
+
+        assertThat(cause(first), instanceOf(IllegalStateException.class));
+        assertThat(cause(second), instanceOf(IllegalStateException.class));
+    }
+
+    /**
+     * Keeps the window timers to run by hand rather than running them when they are due
+     */
+    private static class ManualScheduler extends ScheduledThreadPoolExecutor {
+        final List<Runnable> windowTimers = new ArrayList<>();
+
+        ManualScheduler() {
+            super(1);
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            windowTimers.add(command);
+            return super.schedule(() -> {
+            }, 1, TimeUnit.HOURS);
+        }
+    }
+
+    @Test
+    void the_window_must_be_greater_than_zero() {
+        assertThrows(DataLoaderAssertionException.class, () -> BatchAggregator.newBatchAggregator(batchLoader).window(Duration.ZERO).build());
+    }
+}
@@ -0,0 +1,83 @@
+package org.dataloader.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class LongFutureCacheTest {
+
+    @Test
+    void keeps_the_first_future_for_a_key() {
+        LongFutureCache<String> cache = new LongFutureCache<>();
+        CompletableFuture<String> first = CompletableFuture.completedFuture("a");
+
+        assertThat(cache.putIfAbsent(1L, first), nullValue());
+        assertThat(cache.putIfAbsent(1L, CompletableFuture.completedFuture("b")), sameInstance(first));
+        assertThat(cache.get(1L), sameInstance(first));
+        assertThat(cache.get(2L), nullValue());
+        assertThat(cache.size(), equalTo(1));
+    }
+
+    @Test
+    void finds_every_key_after_growing_and_deleting() {
+        LongFutureCache<Long> cache = new LongFutureCache<>();
+        int count = 10_000;
+        for (long key = 0; key < count; key++) {
+            cache.putIfAbsent(key, CompletableFuture.completedFuture(key));
+        }
+        assertThat(cache.size(), equalTo(count));
+
+        // deleting every other key leaves removed slots in the probe runs of their neighbours
+        for (long key = 0; key < count; key += 2) {
+            cache.delete(key);
+        }
+        assertThat(cache.size(), equalTo(count / 2));
+        for (long key = 0; key < count; key++) {
+            CompletableFuture<Long> future = cache.get(key);
+            if (key % 2 == 0) {
+                assertThat(future, nullValue());
+            } else {
+                assertThat(future.join(), equalTo(key));
+            }
+        }
+        assertThat(cache.getAll().size(), equalTo(count / 2));
+    }
+
+    @Test
+    void re_adds_deleted_keys_without_running_out_of_slots() {
+        LongFutureCache<Long> cache = new LongFutureCache<>();
+        for (long round = 0; round < 1_000; round++) {
+            for (long key = 0; key < 5; key++) {
+                assertThat(cache.putIfAbsent(key, CompletableFuture.completedFuture(round)), nullValue());
+            }
+            for (long key = 0; key < 5; key++) {
+                assertThat(cache.get(key).join(), equalTo(round));
+                cache.delete(key);
+            }
+        }
+        assertThat(cache.size(), equalTo(0));
+        assertThat(cache.getAll().size(), equalTo(0));
+    }
+
+    @Test
+    void boxed_methods_work_on_long_keys() {
+        LongFutureCache<String> cache = new LongFutureCache<>();
+        cache.putIfAbsentAtomically(Long.MIN_VALUE, CompletableFuture.completedFuture("min"));
+        cache.putIfAbsentAtomically(0L, CompletableFuture.completedFuture("zero"));
+
+        assertThat(cache.containsKey(Long.MIN_VALUE), equalTo(true));
+        assertThat(cache.get((Object) 0L).join(), equalTo("zero"));
+
+        cache.delete((Object) 0L);
+        assertThat(cache.containsKey(0L), equalTo(false));
+
+        cache.clear();
+        assertThat(cache.size(), equalTo(0));
+        assertThat(cache.containsKey(Long.MIN_VALUE), equalTo(false));
+    }
+}
@@ -72,6 +72,22 @@ public class DispatchPredicateTest {
 
     }
 
+    @Test
+    public void predicates_declare_whether_they_are_time_based() {
+        DispatchPredicate depth = DispatchPredicate.dispatchIfDepthGreaterThan(4);
+        DispatchPredicate longerThan = DispatchPredicate.dispatchIfLongerThan(Duration.ofMillis(200));
+        DispatchPredicate custom = (k, dl) -> true;
+
+        assertFalse(depth.isTimeBased());
+        assertFalse(DispatchPredicate.DISPATCH_ALWAYS.isTimeBased());
+        assertFalse(DispatchPredicate.loadTriggered(custom).isTimeBased());
+        assertTrue(longerThan.isTimeBased());
+        assertTrue(custom.isTimeBased());
+
+        assertFalse(depth.and(DispatchPredicate.DISPATCH_ALWAYS).negate().isTimeBased());
+        assertTrue(depth.or(longerThan).isTimeBased());
+    }
+
     @Test
     public void combined_some_things() {
 
@@ -0,0 +1,80 @@
+package org.dataloader.registries;
+
+import org.dataloader.fixtures.TestKit;
+import org.dataloader.impl.DataLoaderAssertionException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.awaitility.Awaitility.await;
+import static org.dataloader.fixtures.TestKit.snooze;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class HashedWheelTimerTest {
+
+    @Test
+    void tasks_run_once_their_delay_is_up() {
+        try (HashedWheelTimer timer = HashedWheelTimer.newHashedWheelTimer().tickDuration(Duration.ofMillis(5)).ticksPerWheel(8).build()) {
+            AtomicInteger ran = new AtomicInteger();
+            timer.schedule(ran::incrementAndGet, Duration.ofMillis(10));
+            // further away than one turn of the wheel
+            timer.schedule(ran::incrementAndGet, Duration.ofMillis(100));
+            assertThat(timer.getPendingCount(), equalTo(2));
+
+            await().untilAtomic(ran, is(2));
+            assertThat(timer.getPendingCount(), equalTo(0));
+        }
+    }
+
+    @Test
+    void cancelled_tasks_are_removed_straight_away() {
+        try (HashedWheelTimer timer = HashedWheelTimer.newHashedWheelTimer().tickDuration(Duration.ofMillis(5)).build()) {
+            AtomicBoolean ran = new AtomicBoolean();
+            DispatchTimer.Timeout timeout = timer.schedule(() -> ran.set(true), Duration.ofMillis(20));
+
+            assertThat(timeout.cancel(), equalTo(true));
+            assertThat(timer.getPendingCount(), equalTo(0));
+            assertThat(timeout.cancel(), equalTo(false));
+
+            snooze(100);
+            assertThat(ran.get(), equalTo(false));
+        }
+    }
+
+    @Test
+    void closing_drops_the_pending_tasks() {
+        HashedWheelTimer timer = HashedWheelTimer.newHashedWheelTimer().build();
+        timer.schedule(() -> {
+        }, Duration.ofHours(1));
+
+        timer.close();
+
+        assertThat(timer.getPendingCount(), equalTo(0));
+        assertThrows(DataLoaderAssertionException.class, () -> timer.schedule(() -> {
+        }, Duration.ZERO));
+    }
+
+    @Test
+    void closing_a_registry_cancels_its_scheduled_checks() {
+        try (HashedWheelTimer timer = HashedWheelTimer.newHashedWheelTimer().build()) {
+            ScheduledDataLoaderRegistry registry = ScheduledDataLoaderRegistry.newScheduledRegistry()
+                    .register("a", TestKit.idLoader())
+                    .register("b", TestKit.idLoader())
+                    .dispatchPredicate(DispatchPredicate.dispatchIfLongerThan(Duration.ofHours(1)))
+                    .dispatchTimer(timer)
+                    .build();
+            assertThat(registry.getDispatchTimer(), equalTo(timer));
+
+            registry.dispatchAll();
+            assertThat(timer.getPendingCount(), equalTo(2));
+
+            registry.close();
+            assertThat(timer.getPendingCount(), equalTo(0));
+        }
+    }
+}
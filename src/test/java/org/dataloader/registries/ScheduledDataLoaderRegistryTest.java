@@ -3,6 +3,7 @@ package org.dataloader.registries;
 import org.awaitility.core.ConditionTimeoutException;
 import org.dataloader.DataLoader;
 import org.dataloader.DataLoaderRegistry;
+import org.dataloader.fixtures.TestKit;
 import org.dataloader.fixtures.parameterized.TestDataLoaderFactory;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -13,19 +14,29 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static java.util.Arrays.asList;
+import static java.util.Collections.singleton;
 import static java.util.Collections.singletonList;
 import static org.awaitility.Awaitility.await;
 import static org.awaitility.Duration.TWO_SECONDS;
+import static org.dataloader.DataLoaderOptions.newOptions;
+import static org.dataloader.instrumentation.DataLoaderInstrumentationHelper.NOOP_INSTRUMENTATION;
 import static org.dataloader.fixtures.TestKit.snooze;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -350,6 +361,50 @@ public class ScheduledDataLoaderRegistryTest {
         registry.close();
     }
 
+    @ParameterizedTest
+    @MethodSource("org.dataloader.fixtures.parameterized.TestDataLoaderFactories#get")
+    public void declared_dependencies_dispatch_chained_data_loaders_without_ticker_mode(TestDataLoaderFactory factory) {
+        List<Collection<String>> bCalls = new ArrayList<>();
+        DataLoaderRegistry dependencies = DataLoaderRegistry.newRegistry()
+                .dependsOn("b", "a")
+                .build();
+
+        ScheduledDataLoaderRegistry registry = ScheduledDataLoaderRegistry.newScheduledRegistry()
+                .register("a", factory.idLoaderDelayed(Duration.ofMillis(100)))
+                .register("b", factory.idLoader(bCalls))
+                .registerAll(dependencies)
+                .dispatchPredicate(alwaysDispatch)
+                .schedule(Duration.ofMillis(10))
+                .build();
+        assertThat(registry.getDispatchLevels(), equalTo(asList(singletonList("a"), singletonList("b"))));
+
+        DataLoader<String, String> dlA = registry.getDataLoader("a");
+        DataLoader<String, String> dlB = registry.getDataLoader("b");
+        CompletableFuture<String> chainedCF = dlA.load("AK1").thenCompose(dlB::load);
+
+        registry.dispatchAll();
+
+        await().atMost(TWO_SECONDS).until(chainedCF::isDone);
+        assertThat(chainedCF.join(), equalTo("AK1"));
+        assertThat(bCalls, equalTo(singletonList(singletonList("AK1"))));
+        registry.close();
+    }
+
+    @Test
+    public void the_builder_declares_dependencies() {
+        ScheduledDataLoaderRegistry registry = ScheduledDataLoaderRegistry.newScheduledRegistry()
+                .register("a", TestKit.idLoader())
+                .register("b", TestKit.idLoader())
+                .dependsOn("b", "a")
+                .build();
+
+        assertThat(registry.getDownstreamKeys("a"), equalTo(singleton("b")));
+        ScheduledDataLoaderRegistry combined = registry.combine(DataLoaderRegistry.newRegistry().build());
+        assertThat(combined.getDownstreamKeys("a"), equalTo(singleton("b")));
+        registry.close();
+        combined.close();
+    }
+
     @Test
     public void executors_are_shutdown() {
         ScheduledDataLoaderRegistry registry = ScheduledDataLoaderRegistry.newScheduledRegistry().build();
@@ -371,4 +426,140 @@ public class ScheduledDataLoaderRegistryTest {
 
 
     }
+
+    @Test
+    public void a_registry_on_a_dispatch_timer_hands_out_no_executor() {
+        try (HashedWheelTimer timer = HashedWheelTimer.newHashedWheelTimer().build()) {
+            ScheduledDataLoaderRegistry registry = ScheduledDataLoaderRegistry.newScheduledRegistry()
+                    .dispatchTimer(timer)
+                    .build();
+
+            assertThat(registry.getDispatchTimer(), equalTo(timer));
+            assertThat(registry.getScheduledExecutorService(), nullValue());
+            registry.close();
+        }
+    }
+
+    @Test
+    public void event_driven_mode_dispatches_when_a_load_makes_the_predicate_true() {
+        List<List<String>> calls = new ArrayList<>();
+        ScheduledThreadPoolExecutor executorService = new ScheduledThreadPoolExecutor(1);
+
+        ScheduledDataLoaderRegistry registry = ScheduledDataLoaderRegistry.newScheduledRegistry()
+                .register("a", TestKit.idLoader(newOptions().build(), calls))
+                .dispatchPredicate(DispatchPredicate.dispatchIfDepthGreaterThan(2))
+                .scheduledExecutorService(executorService)
+                .eventDrivenMode(true)
+                .build();
+        assertThat(registry.isEventDrivenMode(), equalTo(true));
+
+        DataLoader<String, String> dlA = registry.getDataLoader("a");
+        dlA.load("K1");
+        dlA.load("K2");
+        assertThat(registry.dispatchAllWithCount(), equalTo(0));
+        // nothing is polled for a load triggered predicate
+        assertThat(executorService.getQueue().size(), equalTo(0));
+
+        CompletableFuture<String> k3 = dlA.load("K3");
+        assertThat(calls, equalTo(singletonList(asList("K1", "K2", "K3"))));
+        assertTrue(k3.isDone());
+
+        // once dispatched, dispatchAll has to be called again to restart the process
+        dlA.load("K4");
+        dlA.load("K5");
+        dlA.load("K6");
+        assertThat(calls.size(), equalTo(1));
+
+        registry.close();
+        executorService.shutdown();
+    }
+
+    @Test
+    public void event_driven_mode_does_not_instrument_its_data_loaders() {
+        List<List<String>> callsA = new ArrayList<>();
+        List<List<String>> callsB = new ArrayList<>();
+        DataLoader<String, String> dlA = TestKit.idLoader("a", newOptions().build(), callsA);
+        DataLoader<String, String> dlB = TestKit.idLoader("b", newOptions().build(), callsB);
+
+        ScheduledDataLoaderRegistry registry = ScheduledDataLoaderRegistry.newScheduledRegistry()
+                .register("a", dlA)
+                .dispatchPredicate(DispatchPredicate.dispatchIfDepthGreaterThan(1))
+                .eventDrivenMode(true)
+                .build();
+        registry.register("b", dlB);
+
+        // the registry is told about loads without instrumenting, and hence transforming, its data loaders
+        assertThat(registry.getDataLoader("a"), sameInstance(dlA));
+        assertThat(registry.getDataLoader("b"), sameInstance(dlB));
+        assertThat(dlA.getOptions().getInstrumentation(), sameInstance(NOOP_INSTRUMENTATION));
+
+        assertThat(registry.dispatchAllWithCount(), equalTo(0));
+        dlA.load("A1");
+        dlA.load("A2");
+        dlB.load("B1");
+        dlB.load("B2");
+        assertThat(callsA, equalTo(singletonList(asList("A1", "A2"))));
+        assertThat(callsB, equalTo(singletonList(asList("B1", "B2"))));
+
+        // once unregistered, the data loader no longer tells the registry about its loads
+        registry.dispatchAll();
+        registry.unregister("b");
+        dlB.load("B3");
+        dlB.load("B4");
+        assertThat(callsB.size(), equalTo(1));
+
+        registry.close();
+    }
+
+    @Test
+    public void event_driven_mode_does_not_miss_a_load_queued_while_the_predicate_is_tested() throws Exception {
+        ScheduledThreadPoolExecutor executorService = new ScheduledThreadPoolExecutor(1);
+        ExecutorService loadingThread = Executors.newSingleThreadExecutor();
+        try {
+            for (int i = 0; i < 500; i++) {
+                ScheduledDataLoaderRegistry registry = ScheduledDataLoaderRegistry.newScheduledRegistry()
+                        .register("a", TestKit.idLoader())
+                        .dispatchPredicate(DispatchPredicate.dispatchIfDepthGreaterThan(0))
+                        .scheduledExecutorService(executorService)
+                        .eventDrivenMode(true)
+                        .build();
+                DataLoader<String, String> dlA = registry.getDataLoader("a");
+                String key = "K" + i;
+
+                // the load races the empty dispatch, which leaves the data loader awaiting loads
+                CountDownLatch start = new CountDownLatch(1);
+                Future<CompletableFuture<String>> load = loadingThread.submit(() -> {
+                    start.await();
+                    return dlA.load(key);
+                });
+                start.countDown();
+                registry.dispatchAll();
+
+                assertThat(load.get().get(5, TimeUnit.SECONDS), equalTo(key));
+                registry.close();
+            }
+        } finally {
+            loadingThread.shutdownNow();
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void event_driven_mode_still_reschedules_time_based_predicates() {
+        ScheduledThreadPoolExecutor executorService = new ScheduledThreadPoolExecutor(1);
+
+        ScheduledDataLoaderRegistry registry = ScheduledDataLoaderRegistry.newScheduledRegistry()
+                .register("a", TestKit.idLoader(), DispatchPredicate.dispatchIfDepthGreaterThan(2))
+                .register("b", TestKit.idLoader(), neverDispatch)
+                .scheduledExecutorService(executorService)
+                .schedule(Duration.ofHours(1))
+                .eventDrivenMode(true)
+                .build();
+
+        registry.dispatchAll();
+        assertThat(executorService.getQueue().size(), equalTo(1));
+
+        registry.close();
+        executorService.shutdownNow();
+    }
 }
@@ -24,6 +24,39 @@ public class StatisticsTest {
         assertThat(combine.getBatchInvokeCount(), equalTo(12L));
     }
 
+    @Test
+    public void combine_keeps_the_larger_batch_size() throws Exception {
+        Statistics one = Statistics.newStatistics().loadCount(1).batchSize(20).build();
+        Statistics two = Statistics.newStatistics().loadCount(6).batchSize(50).build();
+
+        assertThat(one.combine(two).getBatchSize(), equalTo(50L));
+        assertThat(two.combine(one).getBatchSize(), equalTo(50L));
+        assertThat(one.toMap().get("batchSize"), equalTo(20L));
+    }
+
+    @Test
+    public void combine_adds_the_value_cache_hits() throws Exception {
+        Statistics one = Statistics.newStatistics().loadCount(10).cacheHitCount(2).valueCacheHitCount(4).build();
+        Statistics two = Statistics.newStatistics().loadCount(10).cacheHitCount(4).valueCacheHitCount(4).build();
+
+        Statistics combine = one.combine(two);
+        assertThat(combine.getValueCacheHitCount(), equalTo(8L));
+        // 14 loads missed the cache map and 8 of those were found in the value cache
+        assertThat(combine.getValueCacheHitRatio(), equalTo(8d / 14d));
+        assertThat(one.toMap().get("valueCacheHitRatio"), equalTo(0.5d));
+    }
+
+    @Test
+    public void combine_adds_the_coalesced_keys() throws Exception {
+        Statistics one = Statistics.newStatistics().loadCount(10).batchLoadCount(8).coalescedCount(2).build();
+        Statistics two = Statistics.newStatistics().loadCount(10).batchLoadCount(2).coalescedCount(3).build();
+
+        Statistics combine = one.combine(two);
+        assertThat(combine.getCoalescedCount(), equalTo(5L));
+        assertThat(combine.getCoalescedRatio(), equalTo(0.5d));
+        assertThat(one.toMap().get("coalescedCount"), equalTo(2L));
+    }
+
     @Test
     public void to_map_works() throws Exception {
 